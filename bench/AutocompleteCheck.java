@@ -0,0 +1,126 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ *
+ * The AutocompleteCheck class checks CompletionTrie against sorting the songs
+ * that start with a prefix. AutocompleteBenchmark in the jmh folder measures
+ * the completions next to scanning every title.
+ *
+ * The check adds and removes songs and plays them at random, with titles and
+ * artists that share words and differ in case, accents and spacing, and
+ * compares the completions of random prefixes after every round.
+ */
+public class AutocompleteCheck {
+
+    private static final int CHECK_SONGS = 4000;
+    private static final String[] WORDS = {"Love", "love", "Night", "Heart", "Fire", "Río", "rio", "Blue",
+        "Moon", "Dance", "Star", "Café", "Gold", "Rain", "Summer", "Sun", "Lost", "Home", "Road", "Dream",
+        "Heartbeat", "Nightfall", "Lover", "Stars", "Dancer", "Golden"};
+
+    /**
+     *
+     * Runs the check.
+     *
+     * @param args not used.
+     */
+    public static void main(String[] args) {
+        check(new Random(1));
+        System.out.println("OK: completions match sorting the songs that start with the prefix");
+    }
+
+    private static void check(Random random) {
+        List<Songs> pool = new ArrayList<>();
+        Set<Songs> distinct = new HashSet<>();
+        while (pool.size() < CHECK_SONGS) {
+            String title = random.nextInt(10) == 0 ? WORDS[random.nextInt(WORDS.length)] : title(random);
+            String spaced = random.nextInt(20) == 0 ? title.replace(" ", "  ") : title;
+            Songs song = new Songs(spaced, "Artist " + random.nextInt(60), "Genre", "Album", 1, 2000, 3.0);
+            song.setPlayCount(random.nextInt(50));
+            if (distinct.add(song)) {
+                pool.add(song);
+            }
+        }
+        CompletionTrie titles = new CompletionTrie(new ArrayList<Songs>(), false);
+        CompletionTrie artists = new CompletionTrie(new ArrayList<Songs>(), true);
+        Set<Songs> indexed = new HashSet<>();
+        for (int round = 0; round < 60; round++) {
+            for (int i = 0; i < 200; i++) {
+                Songs song = pool.get(random.nextInt(pool.size()));
+                int action = random.nextInt(round < 30 ? 4 : 3);
+                if (action == 0 || action == 3) {
+                    if (indexed.add(song)) {
+                        titles.add(song);
+                        artists.add(song);
+                    }
+                } else if (action == 1) {
+                    boolean had = indexed.remove(song);
+                    expect(titles.remove(song) == had && artists.remove(song) == had, "remove " + song.getTitle());
+                } else if (indexed.contains(song)) {
+                    song.setPlayCount(song.getPlayCount() + 1 + random.nextInt(20));
+                    titles.promote(song);
+                    artists.promote(song);
+                }
+            }
+            expect(titles.size() == indexed.size(), titles.size() + " songs instead of " + indexed.size());
+            for (int i = 0; i < 40; i++) {
+                Songs song = pool.get(random.nextInt(pool.size()));
+                boolean byArtist = random.nextBoolean();
+                String key = byArtist ? song.getArtist() : song.getTitle();
+                String prefix = key.substring(0, random.nextInt(key.length() + 1));
+                if (random.nextInt(5) == 0) {
+                    prefix = prefix.toUpperCase();
+                }
+                List<Songs> expected = scan(indexed, prefix, byArtist);
+                List<Songs> found = (byArtist ? artists : titles).complete(prefix, CompletionTrie.TOP);
+                expect(found.equals(expected.subList(0, Math.min(CompletionTrie.TOP, expected.size()))),
+                        "'" + prefix + "' completes to " + titles(found) + " instead of " + titles(expected));
+            }
+        }
+    }
+
+    /**
+     *
+     * Completes a prefix without the trie, by checking and sorting every song.
+     */
+    private static List<Songs> scan(Iterable<Songs> songs, String prefix, boolean byArtist) {
+        String key = CompletionTrie.normalize(prefix);
+        if (!key.isEmpty() && Character.isWhitespace(prefix.charAt(prefix.length() - 1))) {
+            key += ' ';
+        }
+        List<Songs> matches = new ArrayList<>();
+        for (Songs song : songs) {
+            if (CompletionTrie.normalize(byArtist ? song.getArtist() : song.getTitle()).startsWith(key)) {
+                matches.add(song);
+            }
+        }
+        matches.sort(CompletionTrie::rank);
+        return matches;
+    }
+
+    private static String title(Random random) {
+        StringBuilder title = new StringBuilder(WORDS[random.nextInt(WORDS.length)]);
+        int words = 1 + random.nextInt(3);
+        for (int i = 0; i < words; i++) {
+            title.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return title.toString();
+    }
+
+    private static List<String> titles(List<Songs> songs) {
+        List<String> titles = new ArrayList<>();
+        for (Songs song : songs) {
+            titles.add(song.getTitle() + "/" + song.getArtist() + "/" + song.getPlayCount());
+        }
+        return titles;
+    }
+
+    private static void expect(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
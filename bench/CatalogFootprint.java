@@ -0,0 +1,118 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ *
+ * The CatalogFootprint class checks that SongCatalog finds, adds and removes
+ * songs as a map by title and artist would, then reports how many bytes of
+ * heap each song of a generated library takes in its Songs object and
+ * strings, the song list, the catalog and the indexes of the service.
+ *
+ * The check runs random adds and removes on a few titles shared by many
+ * artists, so titles go from none to one song to many and back, and compares
+ * every lookup, the songs of each title and the size with the model.
+ */
+public class CatalogFootprint {
+
+    private static final int DEFAULT_SONGS = 500000;
+
+    /**
+     *
+     * Runs the check and the report.
+     *
+     * @param args optional number of songs in the generated library
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SONGS;
+        check(new Random(1));
+        System.out.println("OK: the catalog matches a map by title and artist");
+
+        Random random = new Random(2);
+        long base = usedMemory();
+        List<Songs> songs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Songs song = new Songs("Song title " + i, "Artist " + random.nextInt(count / 10 + 1),
+                    "Genre " + random.nextInt(30), "Album " + random.nextInt(count / 8 + 1), 1 + i % 12,
+                    1950 + i % 70, (i % 11) / 2.0);
+            song.setPlayCount(i % 1000);
+            songs.add(song);
+        }
+        long afterSongs = usedMemory();
+        CustomLinkedList songList = new CustomLinkedList();
+        for (Songs song : songs) {
+            songList.add(song);
+        }
+        long afterList = usedMemory();
+        SongCatalog songMap = new SongCatalog();
+        for (Songs song : songs) {
+            songMap.add(song);
+        }
+        long afterCatalog = usedMemory();
+        MusicLibraryService library = new MusicLibraryService(songList, songMap, new PlaylistLibrary(), null);
+        long afterIndexes = usedMemory();
+        // the list holding the songs while they are measured is not counted
+        long holder = 4L * count;
+        System.out.printf("%,d songs, bytes per song:%n", library.songCount());
+        System.out.printf("  Songs and strings %7.1f%n", (afterSongs - base - holder) / (double) count);
+        System.out.printf("  song list         %7.1f%n", (afterList - afterSongs) / (double) count);
+        System.out.printf("  catalog           %7.1f%n", (afterCatalog - afterList) / (double) count);
+        System.out.printf("  service indexes   %7.1f%n", (afterIndexes - afterCatalog) / (double) count);
+        System.out.printf("  total             %7.1f%n", (afterIndexes - base - holder) / (double) count);
+    }
+
+    private static void check(Random random) {
+        SongCatalog catalog = new SongCatalog();
+        Map<String, Songs> model = new HashMap<>();
+        for (int round = 0; round < 200000; round++) {
+            String title = "Title " + random.nextInt(20);
+            String artist = "Artist " + random.nextInt(8);
+            String key = title + "\u0000" + artist;
+            if (random.nextInt(3) > 0) {
+                Songs song = new Songs(title, artist, "Genre", "Album", 1, 2000, 3.0);
+                boolean added = catalog.add(song);
+                expect(added == !model.containsKey(key), "add " + key + " returned " + added);
+                if (added) {
+                    model.put(key, song);
+                }
+            } else {
+                boolean removed = catalog.remove(new Songs(title, artist, "", "", 0, 0, 0));
+                expect(removed == (model.remove(key) != null), "remove " + key + " returned " + removed);
+            }
+            expect(catalog.get(title, artist) == model.get(key), "get " + key);
+            expect(catalog.contains(title, artist) == model.containsKey(key), "contains " + key);
+            expect(catalog.size() == model.size(), "size " + catalog.size() + " instead of " + model.size());
+            for (Songs song : catalog.getByTitle(title)) {
+                expect(model.get(title + "\u0000" + song.getArtist()) == song, "title " + title + " has a stray");
+            }
+        }
+        Set<Songs> iterated = new HashSet<>();
+        for (Songs song : catalog) {
+            expect(iterated.add(song), "iterates " + song.getTitle() + " twice");
+        }
+        expect(iterated.equals(new HashSet<>(model.values())), "iterates other songs than the model has");
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void expect(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
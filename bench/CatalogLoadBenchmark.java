@@ -0,0 +1,187 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Iterator;
+
+/**
+ *
+ * The CatalogLoadBenchmark class measures how long it takes to load a
+ * generated music library file of increasing size.
+ *
+ * Each size is loaded a few times after a warmup pass, and the best time is
+ * reported together with the time per song. With a linear loader the time per
+ * song stays roughly flat as the catalog grows. The same songs are also
+ * written to a binary catalog, and the time to map it is reported alongside.
+ *
+ * Before timing anything, songs with empty and repeated artists, genres and
+ * albums are written to a binary catalog and read back, and every field must
+ * come back as it was written.
+ */
+public class CatalogLoadBenchmark {
+
+    private static final int[] SIZES = {10000, 100000, 500000, 1000000, 2000000};
+    private static final int RUNS = 3;
+
+    /**
+     *
+     * Runs the benchmark for every catalog size.
+     *
+     * @param args optional list of catalog sizes to use instead of the
+     *             defaults.
+     * @throws IOException if a temporary catalog file cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        int[] sizes = SIZES;
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        checkRoundTrip();
+        System.out.println("OK: a binary catalog reads back every field as written");
+
+        // warm up the loader so the first measured size is not interpreted
+        File warmup = writeCatalog(50000);
+        for (int i = 0; i < 5; i++) {
+            load(warmup);
+        }
+        warmup.delete();
+
+        System.out.printf("%12s %12s %12s %12s %12s%n", "songs", "csv ms", "ns/song", "binary ms", "ns/song");
+        for (int size : sizes) {
+            File file = writeCatalog(size);
+            long best = Long.MAX_VALUE;
+            for (int run = 0; run < RUNS; run++) {
+                best = Math.min(best, load(file));
+            }
+
+            File binary = File.createTempFile("catalog", ".bin");
+            binary.deleteOnExit();
+            CustomLinkedList songList = new CustomLinkedList();
+            MusicLibraryApp.readMusicLibraryDataFromFile(file.getPath(), songList, new SongCatalog());
+            BinaryCatalog.write(binary.getPath(), songList);
+            file.delete();
+            long bestBinary = Long.MAX_VALUE;
+            for (int run = 0; run < RUNS; run++) {
+                bestBinary = Math.min(bestBinary, loadBinary(binary));
+            }
+            binary.delete();
+
+            System.out.printf("%12d %12.1f %12.1f %12.1f %12.1f%n", size, best / 1e6, (double) best / size,
+                    bestBinary / 1e6, (double) bestBinary / size);
+        }
+    }
+
+    /**
+     *
+     * Writes songs whose artist, genre and album are empty, shared or unique
+     * to a binary catalog, reads it back and compares every field.
+     *
+     * @throws IOException if the catalog cannot be written or read.
+     */
+    private static void checkRoundTrip() throws IOException {
+        CustomLinkedList written = new CustomLinkedList();
+        SongCatalog writtenMap = new SongCatalog();
+        for (int i = 0; i < 200; i++) {
+            // an empty value takes no heap bytes, so a new value written next
+            // starts at the same offset
+            Songs song = new Songs("Title " + i, i % 3 == 0 ? "" : "Artist " + i % 7, i % 4 == 1 ? ""
+                    : "Genre " + i, i % 5 == 0 ? "" : "Album " + i % 11, i % 12, 1960 + i % 60, (i % 11) / 2.0);
+            song.setPlayCount(i * 7);
+            if (writtenMap.add(song)) {
+                written.add(song);
+            }
+        }
+        File binary = File.createTempFile("catalog", ".bin");
+        binary.deleteOnExit();
+        BinaryCatalog.write(binary.getPath(), written, 3);
+        CustomLinkedList read = new CustomLinkedList();
+        int generation = BinaryCatalog.read(binary.getPath(), read, new SongCatalog());
+        binary.delete();
+        if (generation != 3 || read.size() != written.size()) {
+            throw new IllegalStateException("Read " + read.size() + " songs of generation " + generation);
+        }
+        Iterator<Songs> songs = read.iterator();
+        for (Songs expected : written) {
+            Songs actual = songs.next();
+            if (!expected.getTitle().equals(actual.getTitle()) || !expected.getArtist().equals(actual.getArtist())
+                    || !expected.getGenre().equals(actual.getGenre())
+                    || !expected.getAlbum().equals(actual.getAlbum())
+                    || expected.getTrackNumber() != actual.getTrackNumber() || expected.getYear() != actual.getYear()
+                    || expected.getRating() != actual.getRating()
+                    || expected.getPlayCount() != actual.getPlayCount()) {
+                throw new IllegalStateException("Read back " + describe(actual) + " instead of "
+                        + describe(expected));
+            }
+        }
+    }
+
+    private static String describe(Songs song) {
+        return "'" + song.getTitle() + "', '" + song.getArtist() + "', '" + song.getGenre() + "', '"
+                + song.getAlbum() + "', " + song.getTrackNumber() + ", " + song.getYear() + ", "
+                + song.getRating() + ", " + song.getPlayCount();
+    }
+
+    /**
+     *
+     * Loads a catalog file into a fresh list and map and returns the elapsed
+     * time.
+     *
+     * @param file the catalog file to load.
+     * @return the elapsed time in nanoseconds.
+     */
+    private static long load(File file) {
+        CustomLinkedList songList = new CustomLinkedList();
+        SongCatalog songMap = new SongCatalog();
+        long start = System.nanoTime();
+        MusicLibraryApp.readMusicLibraryDataFromFile(file.getPath(), songList, songMap);
+        long elapsed = System.nanoTime() - start;
+        if (songList.size() == 0) {
+            throw new IllegalStateException("Catalog did not load");
+        }
+        return elapsed;
+    }
+
+    /**
+     *
+     * Maps a binary catalog file into a fresh list and map and returns the
+     * elapsed time.
+     *
+     * @param file the binary catalog file to load.
+     * @return the elapsed time in nanoseconds.
+     * @throws IOException if the catalog cannot be read.
+     */
+    private static long loadBinary(File file) throws IOException {
+        CustomLinkedList songList = new CustomLinkedList();
+        SongCatalog songMap = new SongCatalog();
+        long start = System.nanoTime();
+        BinaryCatalog.read(file.getPath(), songList, songMap);
+        long elapsed = System.nanoTime() - start;
+        if (songList.size() == 0) {
+            throw new IllegalStateException("Catalog did not load");
+        }
+        return elapsed;
+    }
+
+    /**
+     *
+     * Writes a temporary catalog file with the given number of songs.
+     *
+     * @param size the number of songs to write.
+     * @return the temporary file.
+     * @throws IOException if the file cannot be written.
+     */
+    static File writeCatalog(int size) throws IOException {
+        File file = File.createTempFile("catalog", ".txt");
+        file.deleteOnExit();
+        try (PrintWriter writer = new PrintWriter(file)) {
+            for (int i = 0; i < size; i++) {
+                writer.println("Title " + i + ",Artist " + (i % 5000) + ",Genre " + (i % 40) + ",Album "
+                        + (i % 20000) + "," + (i % 12 + 1) + "," + (1960 + i % 60) + "," + (i % 50) / 10.0);
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,78 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ *
+ * The CsvImportBenchmark class measures how fast a CSV music library file can
+ * be parsed, in megabytes per second, comparing CatalogCsvReader with the old
+ * BufferedReader and String.split approach.
+ *
+ * Only parsing is measured: the songs are counted and then dropped, so the
+ * cost of the list and map the app stores them in does not hide the parser.
+ */
+public class CsvImportBenchmark {
+
+    private static final int DEFAULT_SONGS = 3000000;
+    private static final int RUNS = 5;
+
+    /**
+     *
+     * Runs the benchmark.
+     *
+     * @param args optional number of songs in the generated file.
+     * @throws IOException if the file cannot be written or read.
+     */
+    public static void main(String[] args) throws IOException {
+        int songs = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SONGS;
+        File file = CatalogLoadBenchmark.writeCatalog(songs);
+        double megabytes = file.length() / (1024.0 * 1024.0);
+        System.out.printf("%d songs, %.1f MB%n", songs, megabytes);
+
+        long sink = 0;
+        long bestStreaming = Long.MAX_VALUE;
+        long bestSplit = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            sink += new CatalogCsvReader().read(file.getPath(), song -> {
+            });
+            bestStreaming = Math.min(bestStreaming, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            sink += readWithSplit(file);
+            bestSplit = Math.min(bestSplit, System.nanoTime() - start);
+        }
+        file.delete();
+
+        System.out.printf("%-20s %10.1f MB/s%n", "CatalogCsvReader", megabytes / (bestStreaming / 1e9));
+        System.out.printf("%-20s %10.1f MB/s%n", "split", megabytes / (bestSplit / 1e9));
+        // printed so the parsed songs cannot be optimised away
+        System.out.println("(" + sink + " songs parsed)");
+    }
+
+    /**
+     *
+     * Parses the file the way readMusicLibraryDataFromFile used to.
+     *
+     * @param file the file to parse.
+     * @return the number of songs parsed.
+     * @throws IOException if the file cannot be read.
+     */
+    private static long readWithSplit(File file) throws IOException {
+        long count = 0;
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] songData = line.split(",");
+                Songs song = new Songs(songData[0], songData[1], songData[2], songData[3],
+                        Integer.parseInt(songData[4]), Integer.parseInt(songData[5]),
+                        Double.parseDouble(songData[6]));
+                if (song.getYear() >= 0) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
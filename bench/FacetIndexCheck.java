@@ -0,0 +1,208 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ *
+ * The FacetIndexCheck class checks RoaringBitmap and FacetIndex against plain
+ * sets and a scan of the songs. FacetIndexBenchmark in the jmh folder
+ * measures the filters and counts next to the scan.
+ *
+ * The bitmap check builds sets sparse and dense enough to use both kinds of
+ * container, changes them at random and compares every operation with a
+ * BitSet. The facet check adds and removes songs at random and compares the
+ * matches and counts of random filters with a scan.
+ */
+public class FacetIndexCheck {
+
+    private static final int CHECK_SONGS = 20000;
+
+    /**
+     *
+     * Runs the checks.
+     *
+     * @param args not used.
+     */
+    public static void main(String[] args) {
+        checkBitmaps(new Random(1));
+        System.out.println("OK: bitmaps match BitSets in every operation");
+        checkFacets(new Random(2));
+        System.out.println("OK: filters and counts match a scan of the songs");
+    }
+
+    private static void checkBitmaps(Random random) {
+        int range = 5 * 65536;
+        for (int round = 0; round < 20; round++) {
+            // from a few IDs per chunk up to most of them
+            double density = round % 2 == 0 ? 0.005 * (round + 1) : 0.1 * (round % 10);
+            RoaringBitmap a = new RoaringBitmap();
+            RoaringBitmap b = new RoaringBitmap();
+            BitSet expectedA = new BitSet();
+            BitSet expectedB = new BitSet();
+            for (int i = 0; i < range * density; i++) {
+                int x = random.nextInt(range);
+                expect(a.add(x) != expectedA.get(x), "add " + x);
+                expectedA.set(x);
+                int y = random.nextInt(range);
+                b.add(y);
+                expectedB.set(y);
+            }
+            // remove enough to turn some bitmaps back into arrays
+            for (int i = 0; i < range * density / 2; i++) {
+                int x = random.nextInt(range);
+                expect(a.remove(x) == expectedA.get(x), "remove " + x);
+                expectedA.clear(x);
+            }
+            compare(a, expectedA);
+            BitSet and = (BitSet) expectedA.clone();
+            and.and(expectedB);
+            compare(RoaringBitmap.and(a, b), and);
+            expect(RoaringBitmap.andCardinality(a, b) == and.cardinality(), "andCardinality");
+            BitSet or = (BitSet) expectedA.clone();
+            or.or(expectedB);
+            compare(RoaringBitmap.or(a, b), or);
+            for (int i = 0; i < 100; i++) {
+                int x = random.nextInt(range);
+                expect(a.contains(x) == expectedA.get(x), "contains " + x);
+            }
+        }
+    }
+
+    private static void compare(RoaringBitmap bitmap, BitSet expected) {
+        expect(bitmap.cardinality() == expected.cardinality(),
+                "cardinality " + bitmap.cardinality() + " instead of " + expected.cardinality());
+        int[] all = bitmap.page(0, Integer.MAX_VALUE);
+        int[] wanted = expected.stream().toArray();
+        expect(Arrays.equals(all, wanted), "the IDs differ");
+        int offset = wanted.length / 3;
+        expect(Arrays.equals(bitmap.page(offset, 1000),
+                Arrays.copyOfRange(wanted, offset, Math.min(wanted.length, offset + 1000))),
+                "the page at " + offset + " differs");
+    }
+
+    private static void checkFacets(Random random) {
+        List<Songs> pool = new ArrayList<>();
+        SongSearchIndex byId = new SongSearchIndex();
+        for (int i = 0; i < CHECK_SONGS; i++) {
+            Songs song = new Songs("Track " + i, "Artist " + random.nextInt(300), "Genre " + random.nextInt(12),
+                    "Album", 1, 1960 + random.nextInt(60), random.nextInt(51) / 10.0);
+            byId.add(song);
+            pool.add(song);
+        }
+        Set<Songs> indexed = new LinkedHashSet<>(pool.subList(0, CHECK_SONGS / 2));
+        FacetIndex index = new FacetIndex(indexed);
+        for (int step = 0; step < 30; step++) {
+            for (int i = 0; i < 500; i++) {
+                Songs song = pool.get(random.nextInt(pool.size()));
+                if (random.nextBoolean()) {
+                    index.add(song);
+                    indexed.add(song);
+                } else {
+                    index.remove(song);
+                    indexed.remove(song);
+                }
+            }
+            Map<FacetIndex.Facet, List<String>> filter = filter(
+                    random.nextBoolean() ? null : "Genre " + random.nextInt(12) + "|Genre " + random.nextInt(12),
+                    random.nextBoolean() ? null : (1960 + random.nextInt(60)) + "-" + (1970 + random.nextInt(60)),
+                    random.nextInt(4) > 0 ? null : "Artist " + random.nextInt(300),
+                    random.nextBoolean() ? null : random.nextInt(6) + "-5");
+            List<Songs> expected = scan(indexed, filter);
+            RoaringBitmap matches = index.match(filter);
+            expect(matches.cardinality() == expected.size(),
+                    filter + ": " + matches.cardinality() + " matches instead of " + expected.size());
+            List<Songs> found = new ArrayList<>();
+            for (int id : matches.page(0, Integer.MAX_VALUE)) {
+                found.add(byId.getSong(id));
+            }
+            expect(found.containsAll(expected), filter + ": the matches differ");
+            for (FacetIndex.Facet facet : FacetIndex.Facet.values()) {
+                Map<String, Integer> counts = new TreeMap<>();
+                for (Songs song : expected) {
+                    counts.merge(FacetIndex.valueOf(facet, song), 1, Integer::sum);
+                }
+                expect(counts.equals(index.count(facet, matches, byId::getSong)),
+                        filter + ": the " + facet + " counts differ");
+            }
+        }
+    }
+
+    /**
+     *
+     * Filters the songs the way it would be done without the index, with a
+     * chain of checks on every song.
+     */
+    private static List<Songs> scan(Collection<Songs> songs, Map<FacetIndex.Facet, List<String>> filter) {
+        List<Predicate<Songs>> checks = new ArrayList<>();
+        for (Map.Entry<FacetIndex.Facet, List<String>> entry : filter.entrySet()) {
+            Predicate<Songs> any = song -> false;
+            for (String value : entry.getValue()) {
+                any = any.or(check(entry.getKey(), value));
+            }
+            checks.add(any);
+        }
+        List<Songs> matches = new ArrayList<>();
+        for (Songs song : songs) {
+            boolean match = true;
+            for (Predicate<Songs> check : checks) {
+                if (!check.test(song)) {
+                    match = false;
+                    break;
+                }
+            }
+            if (match) {
+                matches.add(song);
+            }
+        }
+        return matches;
+    }
+
+    private static Predicate<Songs> check(FacetIndex.Facet facet, String value) {
+        int dash = value.indexOf('-', 1);
+        switch (facet) {
+            case GENRE:
+                return song -> song.getGenre().equals(value);
+            case ARTIST:
+                return song -> song.getArtist().equals(value);
+            default:
+                int from = Integer.parseInt(dash > 0 ? value.substring(0, dash) : value);
+                int to = dash > 0 ? Integer.parseInt(value.substring(dash + 1)) : from;
+                if (facet == FacetIndex.Facet.YEAR) {
+                    return song -> song.getYear() >= from && song.getYear() <= to;
+                }
+                return song -> Math.floor(song.getRating()) >= from && Math.floor(song.getRating()) <= to;
+        }
+    }
+
+    private static Map<FacetIndex.Facet, List<String>> filter(String genres, String years, String artists,
+            String ratings) {
+        Map<FacetIndex.Facet, List<String>> filter = new EnumMap<>(FacetIndex.Facet.class);
+        String[] values = {genres, years, artists, ratings};
+        FacetIndex.Facet[] facets = {FacetIndex.Facet.GENRE, FacetIndex.Facet.YEAR, FacetIndex.Facet.ARTIST,
+            FacetIndex.Facet.RATING};
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                List<String> split = new ArrayList<>();
+                Collections.addAll(split, values[i].split("\\|"));
+                filter.put(facets[i], split);
+            }
+        }
+        return filter;
+    }
+
+    private static void expect(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
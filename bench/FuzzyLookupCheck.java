@@ -0,0 +1,165 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ *
+ * The FuzzyLookupCheck class checks FuzzyIndex against a scan of every term
+ * with a plain Levenshtein distance. FuzzyLookupBenchmark in the jmh folder
+ * measures the lookups next to the scan.
+ *
+ * The titles are made of two to four words drawn from a few thousand made up
+ * words, so that many titles share words and are close to each other the way
+ * real titles are. The queries are titles with one or two random typos.
+ */
+public class FuzzyLookupCheck {
+
+    private static final int CHECK_TITLES = 5000;
+    private static final int WORDS = 5000;
+    private static final String[] SYLLABLES = {"la", "mo", "ri", "ka", "ne", "so", "ta", "vi", "lu", "dor",
+        "sun", "night", "love", "fire", "ra", "in", "el", "blue", "gold", "heart", "ro", "mi", "be", "yo",
+        "da", "zen", "star", "moon", "shi", "ver", "an", "go"};
+
+    /**
+     *
+     * Runs the check.
+     *
+     * @param args not used.
+     */
+    public static void main(String[] args) {
+        check(new Random(1));
+        System.out.println("OK: suggestions match a scan of every term");
+    }
+
+    private static void check(Random random) {
+        List<String> words = words(random);
+        List<String> pool = new ArrayList<>();
+        for (int i = 0; i < CHECK_TITLES; i++) {
+            String title = title(random, words);
+            // a few differ only in case, which counts as no difference
+            pool.add(i % 50 == 0 ? title.toUpperCase(Locale.ROOT) : title);
+        }
+        FuzzyIndex index = new FuzzyIndex();
+        Map<String, Integer> counts = new HashMap<>();
+        for (int step = 0; step < 40; step++) {
+            // adds terms for a while, then mostly takes them out again
+            for (int i = 0; i < 400; i++) {
+                String term = pool.get(random.nextInt(step < 20 ? pool.size() : pool.size() / 4));
+                if (step < 20 || random.nextInt(3) > 0) {
+                    index.add(term);
+                    counts.merge(term, 1, Integer::sum);
+                } else {
+                    boolean had = counts.containsKey(term);
+                    expect(index.remove(term) == had, "remove " + term);
+                    if (had && counts.merge(term, -1, Integer::sum) == 0) {
+                        counts.remove(term);
+                    }
+                }
+            }
+            for (int i = 0; i < 20; i++) {
+                String query = typo(random, random.nextBoolean() ? typo(random, pool.get(random.nextInt(pool.size())))
+                        : pool.get(random.nextInt(pool.size())));
+                Map<String, Integer> expected = new HashMap<>();
+                for (String term : counts.keySet()) {
+                    int distance = levenshtein(query, term);
+                    if (distance <= FuzzyIndex.MAX_DISTANCE) {
+                        expected.put(term, distance);
+                    }
+                }
+                List<FuzzyIndex.Match> matches = index.search(query, FuzzyIndex.MAX_DISTANCE, Integer.MAX_VALUE);
+                expect(matches.size() == expected.size(), query + ": " + matches + " instead of " + expected);
+                int last = 0;
+                for (FuzzyIndex.Match match : matches) {
+                    expect(expected.get(match.term) == match.distance, query + ": " + match);
+                    expect(counts.get(match.term) == match.count, query + ": the count of " + match.term);
+                    expect(match.distance >= last, query + ": not closest first");
+                    last = match.distance;
+                }
+            }
+        }
+        expect(index.size() == counts.size(), index.size() + " terms instead of " + counts.size());
+    }
+
+    /**
+     *
+     * The textbook distance, filling in the whole table.
+     */
+    private static int levenshtein(String a, String b) {
+        a = a.toLowerCase(Locale.ROOT);
+        b = b.toLowerCase(Locale.ROOT);
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int replace = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(replace, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    private static List<String> words(Random random) {
+        List<String> words = new ArrayList<>(WORDS);
+        for (int i = 0; i < WORDS; i++) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 1 + random.nextInt(3);
+            for (int s = 0; s < syllables; s++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+            words.add(word.toString());
+        }
+        return words;
+    }
+
+    private static String title(Random random, List<String> words) {
+        StringBuilder title = new StringBuilder();
+        int count = 2 + random.nextInt(3);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                title.append(' ');
+            }
+            // a few words are far more common than the rest
+            title.append(words.get((int) (Math.pow(random.nextDouble(), 2) * words.size())));
+        }
+        return title.toString();
+    }
+
+    /**
+     *
+     * Inserts, deletes or replaces one character.
+     */
+    private static String typo(Random random, String text) {
+        StringBuilder typo = new StringBuilder(text);
+        int at = random.nextInt(text.length());
+        char c = (char) ('a' + random.nextInt(26));
+        switch (random.nextInt(3)) {
+            case 0:
+                typo.insert(at, c);
+                break;
+            case 1:
+                typo.deleteCharAt(at);
+                break;
+            default:
+                typo.setCharAt(at, c);
+                break;
+        }
+        return typo.toString();
+    }
+
+    private static void expect(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.Set;
+
+/**
+ *
+ * The PagingCheck class checks that paging through the sorted songs by
+ * continuing after the last song shown, as the console and the HTTP API do,
+ * shows every song that stays in the library exactly once while songs are
+ * added and deleted between pages. PagingBenchmark in the jmh folder
+ * measures the first page next to printing the whole library.
+ */
+public class PagingCheck {
+
+    private static final int CHECK_SONGS = 3000;
+
+    /**
+     *
+     * Runs the check.
+     *
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        check(new Random(1));
+        System.out.println("OK: every song that stays is shown once, in order, while the library changes");
+    }
+
+    private static void check(Random random) {
+        MusicLibraryService library = library(random, CHECK_SONGS);
+        int next = CHECK_SONGS;
+        for (SortedSongIndex.Order order : SortedSongIndex.Order.values()) {
+            for (boolean descending : new boolean[] {false, true}) {
+                Set<Songs> kept = new HashSet<>(library.getSongs());
+                Set<Songs> shown = new HashSet<>();
+                List<Songs> sequence = new ArrayList<>();
+                Songs last = null;
+                List<Songs> page;
+                do {
+                    page = library.getSongsSorted(order, last, 1 + random.nextInt(50), descending);
+                    for (Songs song : page) {
+                        expect(shown.add(song), order + " shows " + song.getTitle() + " twice");
+                        sequence.add(song);
+                        last = song;
+                    }
+                    // change the library between pages, the song just shown included
+                    for (int i = 0; i < 5; i++) {
+                        List<Songs> songs = library.getSongs();
+                        Songs victim = random.nextBoolean() && last != null ? last
+                                : songs.get(random.nextInt(songs.size()));
+                        library.deleteSong(victim.getTitle(), victim.getArtist());
+                        kept.remove(victim);
+                        library.addSong(song(random, next++));
+                    }
+                } while (!page.isEmpty());
+                for (Songs song : kept) {
+                    expect(shown.contains(song), order + " skips " + song.getTitle());
+                }
+                // the songs of the whole walk that are still there are in order
+                List<Songs> remaining = new ArrayList<>();
+                for (Songs song : sequence) {
+                    if (library.getSong(song.getTitle(), song.getArtist()) == song) {
+                        remaining.add(song);
+                    }
+                }
+                List<Songs> sorted = new ArrayList<>();
+                Songs after = null;
+                do {
+                    page = library.getSongsSorted(order, after, 100, descending);
+                    sorted.addAll(page);
+                    after = page.isEmpty() ? null : page.get(page.size() - 1);
+                } while (!page.isEmpty());
+                sorted.retainAll(new HashSet<>(remaining));
+                expect(sorted.equals(remaining), order + " shows songs out of order");
+            }
+        }
+
+        // a user who types a page size and then stops
+        StringBuilder output = new StringBuilder();
+        PrintStream out = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+                output.append((char) b);
+            }
+        }, true);
+        PagedOutput pages = new PagedOutput(new Scanner(new ByteArrayInputStream("3\n\n0\n".getBytes())), out, 2);
+        int accepted = 0;
+        while (pages.println("line " + accepted)) {
+            accepted++;
+        }
+        pages.finish();
+        expect(accepted == 8 && output.toString().contains("line 7") && !output.toString().contains("line 8"),
+                "paging shows " + accepted + " lines: " + output);
+    }
+
+    private static MusicLibraryService library(Random random, int size) {
+        CustomLinkedList songList = new CustomLinkedList();
+        SongCatalog songMap = new SongCatalog();
+        for (int i = 0; i < size; i++) {
+            Songs song = song(random, i);
+            songList.add(song);
+            songMap.add(song);
+        }
+        return new MusicLibraryService(songList, songMap, new PlaylistLibrary(), null);
+    }
+
+    private static Songs song(Random random, int number) {
+        Songs song = new Songs("Song " + Integer.toString(random.nextInt(1 << 30), 36) + " " + number,
+                "Artist " + random.nextInt(500), "Genre", "Album", 1, 1950 + random.nextInt(70),
+                random.nextInt(11) / 2.0);
+        song.setPlayCount(random.nextInt(1000));
+        return song;
+    }
+
+    private static void expect(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
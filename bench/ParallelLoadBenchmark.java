@@ -0,0 +1,75 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ *
+ * The ParallelLoadBenchmark class measures how loading a CSV music library
+ * file with ParallelCatalogLoader scales with the number of threads.
+ *
+ * Each thread count loads the same generated file into a fresh song list and
+ * song map, and the best of a few runs is reported with its speedup over one
+ * thread.
+ */
+public class ParallelLoadBenchmark {
+
+    private static final int[] THREADS = {1, 4, 16, 32};
+    private static final int DEFAULT_SONGS = 3000000;
+    private static final int RUNS = 3;
+
+    /**
+     *
+     * Runs the benchmark.
+     *
+     * @param args optional number of songs in the generated file.
+     * @throws IOException if the file cannot be written or read.
+     */
+    public static void main(String[] args) throws IOException {
+        int songs = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SONGS;
+        File file = CatalogLoadBenchmark.writeCatalog(songs);
+        double megabytes = file.length() / (1024.0 * 1024.0);
+        System.out.printf("%d songs, %.1f MB, %d cores%n", songs, megabytes,
+                Runtime.getRuntime().availableProcessors());
+
+        // warm up every code path before measuring
+        for (int i = 0; i < 2; i++) {
+            load(file, 4);
+        }
+
+        System.out.printf("%8s %12s %12s %10s%n", "threads", "best ms", "MB/s", "speedup");
+        long single = 0;
+        for (int threads : THREADS) {
+            long best = Long.MAX_VALUE;
+            for (int run = 0; run < RUNS; run++) {
+                best = Math.min(best, load(file, threads));
+            }
+            if (threads == 1) {
+                single = best;
+            }
+            System.out.printf("%8d %12.1f %12.1f %10.2f%n", threads, best / 1e6, megabytes / (best / 1e9),
+                    (double) single / best);
+        }
+        file.delete();
+    }
+
+    /**
+     *
+     * Loads the file with the given number of threads and returns the elapsed
+     * time.
+     *
+     * @param file    the file to load.
+     * @param threads the number of threads to parse with.
+     * @return the elapsed time in nanoseconds.
+     * @throws IOException if the file cannot be read.
+     */
+    private static long load(File file, int threads) throws IOException {
+        CustomLinkedList songList = new CustomLinkedList();
+        SongCatalog songMap = new SongCatalog();
+        long start = System.nanoTime();
+        new ParallelCatalogLoader(threads).load(file.getPath(), songList, songMap);
+        long elapsed = System.nanoTime() - start;
+        if (songList.size() == 0) {
+            throw new IllegalStateException("Catalog did not load");
+        }
+        return elapsed;
+    }
+}
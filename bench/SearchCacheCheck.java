@@ -0,0 +1,158 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ *
+ * The SearchCacheCheck class checks that the search cache of
+ * MusicLibraryService never returns a stale result. SearchCacheBenchmark in
+ * the jmh folder compares the hit rates and search times of the policies.
+ *
+ * The check runs random adds, deletes, updates, batches, undos and redos on
+ * a small library and, after each, compares word and substring searches
+ * from a small set of queries, so most of them are answered by the cache,
+ * with checking every song.
+ */
+public class SearchCacheCheck {
+
+    private static final int CHECK_SONGS = 600;
+    private static final String[] WORDS = {"love", "night", "heart", "fire", "blue", "moon", "dance", "star",
+        "gold", "rain", "summer", "sun", "lost", "home", "road", "dream", "river", "stone", "light", "wild"};
+    private static final String[] GENRES = {"Rock", "Pop", "Jazz", "Blues", "Folk", "Soul"};
+
+    /**
+     *
+     * Runs the check.
+     *
+     * @param args not used.
+     */
+    public static void main(String[] args) {
+        check(new Random(1));
+        System.out.println("OK: cached searches match checking every song after every change");
+    }
+
+    private static void check(Random random) {
+        MusicLibraryService library = new MusicLibraryService(new CustomLinkedList(), new SongCatalog(),
+                new PlaylistLibrary(), null);
+        library.configureSearchCache(SearchCache.Policy.TINY_LFU, 64 * 1024);
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            queries.add(query(random));
+        }
+        for (String word : WORDS) {
+            queries.add(word.substring(0, 2));
+            queries.add(word.substring(word.length() - 3));
+        }
+        queries.add("");
+        queries.add("Rock");
+        queries.add("Album");
+
+        int next = 0;
+        for (int round = 0; round < 3000; round++) {
+            int action = random.nextInt(10);
+            List<Songs> present = library.getSongs();
+            if (action < 3 || present.isEmpty()) {
+                library.addSong(song(random, next++, 40));
+            } else if (action == 3) {
+                Songs song = present.get(random.nextInt(present.size()));
+                library.deleteSong(song.getTitle(), song.getArtist());
+            } else if (action == 4) {
+                Songs song = present.get(random.nextInt(present.size()));
+                Songs changes = new Songs(song.getTitle(), song.getArtist(), GENRES[random.nextInt(GENRES.length)],
+                        "Album " + WORDS[random.nextInt(WORDS.length)], 1, 2000, 3.0);
+                library.updateSong(changes);
+            } else if (action == 5) {
+                library.undo();
+            } else if (action == 6) {
+                library.redo();
+            } else if (action == 7 && random.nextInt(20) == 0) {
+                // large enough for the whole cache to be dropped
+                List<Songs> batch = new ArrayList<>();
+                for (int i = 0; i < 300; i++) {
+                    batch.add(song(random, next++, 40));
+                }
+                library.addSongs(batch);
+            } else if (action == 7) {
+                List<Songs> batch = new ArrayList<>();
+                for (int i = 0; i < 5; i++) {
+                    batch.add(present.get(random.nextInt(present.size())));
+                }
+                library.deleteSongs(batch);
+            } else if (library.songCount() > CHECK_SONGS) {
+                Songs song = present.get(random.nextInt(present.size()));
+                library.deleteSong(song.getTitle(), song.getArtist());
+            }
+            List<Songs> songs = library.getSongs();
+            songs.sort(Comparator.comparingInt(Songs::getId));
+            for (int i = 0; i < 4; i++) {
+                String query = queries.get(random.nextInt(queries.size()));
+                expect(library.search(query).equals(scanWords(songs, query)), "words '" + query + "'");
+                expect(library.searchSubstring(query).equals(scanText(songs, query)), "text '" + query + "'");
+            }
+        }
+        System.out.println(cacheStats(library));
+    }
+
+    private static List<Songs> scanWords(List<Songs> songs, String query) {
+        List<Songs> matches = new ArrayList<>();
+        for (Songs song : songs) {
+            Set<String> tokens = SongSearchIndex.tokensOf(song);
+            for (List<String> group : SongSearchIndex.parseQuery(query)) {
+                if (!group.isEmpty() && tokens.containsAll(group)) {
+                    matches.add(song);
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static List<Songs> scanText(List<Songs> songs, String query) {
+        List<Songs> matches = new ArrayList<>();
+        for (Songs song : songs) {
+            if (TrigramIndex.contains(song, query)) {
+                matches.add(song);
+            }
+        }
+        return matches;
+    }
+
+    private static Songs song(Random random, int number, int artists) {
+        String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " "
+                + number;
+        return new Songs(title, "Artist " + random.nextInt(artists + 1), GENRES[random.nextInt(GENRES.length)],
+                "Album " + WORDS[random.nextInt(WORDS.length)], 1, 1960 + random.nextInt(60), 3.0);
+    }
+
+    /**
+     *
+     * Makes a query of one to three words, sometimes with an alternative.
+     */
+    private static String query(Random random) {
+        StringBuilder query = new StringBuilder(WORDS[random.nextInt(WORDS.length)]);
+        int words = random.nextInt(3);
+        for (int i = 0; i < words; i++) {
+            query.append(' ').append(random.nextBoolean() ? WORDS[random.nextInt(WORDS.length)]
+                    : GENRES[random.nextInt(GENRES.length)]);
+        }
+        if (random.nextInt(4) == 0) {
+            query.append(" OR ").append(WORDS[random.nextInt(WORDS.length)]).append(' ').append(
+                    GENRES[random.nextInt(GENRES.length)]);
+        }
+        return query.toString();
+    }
+
+    private static String cacheStats(MusicLibraryService library) {
+        String stats = library.stats();
+        return stats.substring(stats.indexOf("Search cache"), stats.indexOf(System.lineSeparator() + "Undo") < 0
+                ? stats.length() : stats.indexOf(System.lineSeparator() + "Undo"));
+    }
+
+    private static void expect(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -0,0 +1,421 @@
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ *
+ * The ServiceStressCheck class hammers a MusicLibraryService from many threads
+ * with a random mix of adds, deletes, undos, redos, updates, playlist changes,
+ * plays, batches of them and reads on a small set of songs, so that threads keep
+ * running into each other on the same songs and playlists. Pages of the
+ * sorted indexes, which are read without locking, are checked to be in order
+ * while the other threads write. The undo history is given a small memory
+ * budget, so most of it lives in its spill file.
+ *
+ * Afterwards it checks that the library is consistent: the song list,
+ * catalog, search, sorted, facet, fuzzy and completion indexes and
+ * leaderboards agree, the number of songs matches the successful adds,
+ * deletes, undos and redos, every playlist only holds songs in the library
+ * and the reverse index agrees with the playlists, also after the whole
+ * history is undone. Finally
+ * the journal is replayed into an empty library, which must end up with
+ * exactly the same songs and playlists, proving the records were written in
+ * the same order as the changes were made.
+ */
+public class ServiceStressCheck {
+
+    private static final int DEFAULT_THREADS = 32;
+    private static final int DEFAULT_OPERATIONS = 20000;
+    private static final int SONGS = 500;
+    private static final int PLAYLISTS = 8;
+    private static final int GENRES = 7;
+    private static final int HISTORY_DEPTH = 2000;
+    private static final long HISTORY_MEMORY_BYTES = 64 * 1024;
+
+    /**
+     *
+     * Runs the check.
+     *
+     * @param args optional number of threads and operations per thread.
+     * @throws Exception if the check fails or the journal cannot be used.
+     */
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_THREADS;
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_OPERATIONS;
+
+        File directory = Files.createTempDirectory("stress").toFile();
+        String journalFile = new File(directory, "library.journal").getPath();
+        MutationJournal journal = new MutationJournal(journalFile, 1, 1);
+        CommandHistory history = new CommandHistory(HISTORY_DEPTH, HISTORY_MEMORY_BYTES,
+                new File(directory, "library.history").getPath());
+        MusicLibraryService library = new MusicLibraryService(new CustomLinkedList(), new SongCatalog(),
+                new PlaylistLibrary(), journal, history);
+
+        AtomicInteger added = new AtomicInteger();
+        AtomicInteger deleted = new AtomicInteger();
+        AtomicInteger restored = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final long seed = t;
+            Thread worker = new Thread(() -> {
+                Random random = new Random(seed);
+                try {
+                    start.await();
+                    for (int i = 0; i < operations; i++) {
+                        run(library, random, added, deleted, restored);
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        if (failure.get() != null) {
+            throw new IllegalStateException("A worker failed", failure.get());
+        }
+        System.out.printf("%d threads x %d operations in %.1f ms: %d adds, %d deletes, %+d from undo and redo%n",
+                threads, operations, elapsed / 1e6, added.get(), deleted.get(), restored.get());
+        System.out.println(library.stats());
+
+        List<Songs> songs = library.getSongs();
+        check(songs.size() == added.get() - deleted.get() + restored.get(),
+                songs.size() + " songs after " + added + " adds, " + deleted + " deletes and " + restored
+                + " from undo and redo");
+
+        // undoing the whole history, much of it from the spill file, must
+        // leave the library as consistent as before
+        System.out.println(library.undoAll() + " changes undone at the end");
+        songs = library.getSongs();
+        check(library.songCount() == songs.size(), "songCount disagrees with the song list");
+        Set<Songs> inLibrary = new HashSet<>(songs);
+        check(inLibrary.size() == songs.size(), "the song list holds a song twice");
+        for (int i = 0; i < SONGS; i++) {
+            Songs song = library.getSong(title(i), artist(i));
+            check((song != null) == inLibrary.contains(song(i)), "the catalog disagrees about " + title(i));
+            check(library.searchSubstring(title(i)).contains(song(i)) == inLibrary.contains(song(i)),
+                    "the search index disagrees about " + title(i));
+            String typo = title(i).substring(0, title(i).length() - 1).toUpperCase();
+            check(library.suggestSongs(typo, Integer.MAX_VALUE).contains(song(i)) == inLibrary.contains(song(i)),
+                    "the fuzzy index disagrees about " + title(i));
+        }
+        List<Songs> mostPlayed = library.getTopSongs(SortedSongIndex.Order.PLAY_COUNT, null, CompletionTrie.TOP);
+        List<Songs> completed = library.completeSongs("", false, CompletionTrie.TOP);
+        check(completed.size() == mostPlayed.size(), "the completions hold " + completed.size() + " songs");
+        for (int i = 0; i < completed.size(); i++) {
+            check(completed.get(i).getPlayCount() == mostPlayed.get(i).getPlayCount(),
+                    "the completions miss plays or updates at " + completed.get(i).getTitle());
+        }
+        List<Songs> byTitle = library.getSongsSorted(SortedSongIndex.Order.TITLE, 0, Integer.MAX_VALUE, false);
+        check(byTitle.size() == songs.size() && inLibrary.containsAll(byTitle),
+                "the sorted index disagrees with the song list");
+        for (int i = 1; i < byTitle.size(); i++) {
+            check(String.CASE_INSENSITIVE_ORDER.compare(byTitle.get(i - 1).getTitle(),
+                    byTitle.get(i).getTitle()) <= 0,
+                    "the sorted index is out of order at " + byTitle.get(i).getTitle());
+        }
+        int rated = 0;
+        for (Songs song : songs) {
+            rated += song.getRating() >= 2.5 ? 1 : 0;
+        }
+        check(library.countSongsInRange(SortedSongIndex.Order.RATING, 2.5, Double.POSITIVE_INFINITY) == rated,
+                "the rating index misses songs whose rating was updated");
+        for (SortedSongIndex.Order order : new SortedSongIndex.Order[]{SortedSongIndex.Order.PLAY_COUNT,
+                SortedSongIndex.Order.RATING}) {
+            checkLeaderboard(library.getTopSongs(order, null, Integer.MAX_VALUE), order, songs, null);
+            for (int g = 0; g < GENRES; g++) {
+                checkLeaderboard(library.getTopSongs(order, "Genre " + g, Integer.MAX_VALUE), order, songs,
+                        "Genre " + g);
+            }
+        }
+        FacetResult everything = library.filterSongs(Collections.emptyMap(), 0, Integer.MAX_VALUE);
+        check(everything.getTotal() == songs.size() && inLibrary.containsAll(everything.getSongs()),
+                "the facet index disagrees with the song list");
+        for (int stars = 0; stars <= 5; stars++) {
+            Set<Songs> expected = new HashSet<>();
+            for (Songs song : songs) {
+                if ((int) song.getRating() == stars) {
+                    expected.add(song);
+                }
+            }
+            FacetResult withStars = library.filterSongs(Collections.singletonMap(FacetIndex.Facet.RATING,
+                    Collections.singletonList(Integer.toString(stars))), 0, Integer.MAX_VALUE);
+            check(withStars.getTotal() == expected.size() && expected.containsAll(withStars.getSongs()),
+                    "the facet index misses songs whose rating was updated to " + stars + " stars");
+            check(expected.size() == everything.getCounts(FacetIndex.Facet.RATING).getOrDefault(
+                    Integer.toString(stars), 0), "the facet counts of " + stars + " stars are wrong");
+        }
+        for (String playlistName : library.getPlaylistNames()) {
+            for (Songs song : library.getPlaylist(playlistName)) {
+                check(inLibrary.contains(song), playlistName + " holds the deleted song " + song.getTitle());
+                check(library.getPlaylistsContaining(song).contains(playlistName),
+                        "the reverse index misses " + song.getTitle() + " in " + playlistName);
+            }
+        }
+        library.closeHistory();
+        journal.close();
+
+        // an empty library rebuilt from the journal alone must match
+        CustomLinkedList replayedSongs = new CustomLinkedList();
+        SongCatalog replayedMap = new SongCatalog();
+        PlaylistLibrary replayedPlaylists = new PlaylistLibrary();
+        MutationJournal.replay(journalFile, 0, 0, replayer(replayedSongs, replayedMap, replayedPlaylists));
+        Set<Songs> replayed = new HashSet<>();
+        for (Songs song : replayedSongs) {
+            replayed.add(song);
+        }
+        check(replayed.equals(inLibrary), "the replayed journal has different songs");
+        for (Songs song : replayedSongs) {
+            check(song.getRating() == library.getSong(song.getTitle(), song.getArtist()).getRating(),
+                    "the replayed journal has a different rating for " + song.getTitle());
+            check(song.getPlayCount() == library.getSong(song.getTitle(), song.getArtist()).getPlayCount(),
+                    "the replayed journal has a different play count for " + song.getTitle());
+        }
+        Set<String> replayedNames = new HashSet<>();
+        for (String playlistName : replayedPlaylists.getPlaylistNames()) {
+            replayedNames.add(playlistName);
+        }
+        check(replayedNames.equals(new HashSet<>(library.getPlaylistNames())),
+                "the replayed journal has different playlists");
+        for (String playlistName : library.getPlaylistNames()) {
+            List<Songs> replayedPlaylist = new ArrayList<>();
+            for (Songs song : replayedPlaylists.getPlaylist(playlistName)) {
+                replayedPlaylist.add(song);
+            }
+            check(replayedPlaylist.equals(library.getPlaylist(playlistName)),
+                    "the replayed journal has a different " + playlistName);
+        }
+
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+        System.out.println("OK: " + songs.size() + " songs, " + library.getPlaylistNames().size()
+                + " playlists, journal replays to the same library");
+    }
+
+    /**
+     *
+     * Runs one random operation.
+     */
+    private static void run(MusicLibraryService library, Random random, AtomicInteger added, AtomicInteger deleted,
+            AtomicInteger restored) {
+        int i = random.nextInt(SONGS);
+        String playlistName = "Playlist " + random.nextInt(PLAYLISTS);
+        int operation = random.nextInt(100);
+        if (operation < 25) {
+            if (library.addSong(song(i))) {
+                added.incrementAndGet();
+            }
+        } else if (operation < 40) {
+            if (library.deleteSong(title(i), artist(i)) != null) {
+                deleted.incrementAndGet();
+            }
+        } else if (operation < 43) {
+            HistoryEntry undone = library.undo();
+            if (undone != null) {
+                restored.addAndGet(-undone.songChange());
+            }
+        } else if (operation < 45) {
+            HistoryEntry redone = library.redo();
+            if (redone != null) {
+                restored.addAndGet(redone.songChange());
+            }
+        } else if (operation < 47) {
+            library.createPlaylist(playlistName);
+        } else if (operation < 65) {
+            Songs song = library.getSong(title(i), artist(i));
+            if (song != null) {
+                library.addSongToPlaylist(playlistName, song);
+            }
+        } else if (operation < 72) {
+            library.removeSongFromPlaylist(playlistName, song(i));
+        } else if (operation < 75) {
+            added.addAndGet(library.addSongs(batch(random)).size());
+        } else if (operation < 78) {
+            deleted.addAndGet(library.deleteSongs(batch(random)).size());
+        } else if (operation < 80) {
+            library.addSongsToPlaylist(playlistName, batch(random));
+        } else if (operation < 83) {
+            library.getPlaylist(playlistName);
+        } else if (operation < 84) {
+            library.playPlaylist(playlistName);
+        } else if (operation < 85) {
+            library.recordPlays(batch(random));
+        } else if (operation < 93) {
+            library.searchSubstring(title(i));
+        } else if (operation < 96) {
+            Songs changes = song(i);
+            changes.setRating(random.nextInt(50) / 10.0);
+            library.updateSong(changes);
+        } else if (operation < 97) {
+            library.deletePlaylist(playlistName);
+        } else if (operation < 98) {
+            library.getSongsByTitle(title(i));
+            library.getPlaylistsContaining(song(i));
+        } else {
+            // the sorted indexes are read without locking while others write
+            List<Songs> page = library.getSongsSorted(SortedSongIndex.Order.TITLE, song(i), 20, false);
+            check(page.size() <= 20 && !page.contains(null), "a page of titles is torn");
+            for (int p = 1; p < page.size(); p++) {
+                check(String.CASE_INSENSITIVE_ORDER.compare(page.get(p - 1).getTitle(), page.get(p).getTitle()) <= 0,
+                        "a page of titles is out of order at " + page.get(p).getTitle());
+            }
+            List<Songs> rated = library.getSongsInRange(SortedSongIndex.Order.RATING, 2.5, 4.0, 0, 20, true);
+            for (Songs song : rated) {
+                check(song.getRating() >= 2.5 && song.getRating() <= 4.0, "a rating page has " + song.getRating());
+            }
+            check(library.countSongsInRange(SortedSongIndex.Order.RATING, 2.5, 4.0) >= 0, "a negative count");
+        }
+    }
+
+    /**
+     *
+     * Checks that a leaderboard holds exactly the songs of its genre, or of
+     * the library, from the highest value down.
+     */
+    private static void checkLeaderboard(List<Songs> board, SortedSongIndex.Order order, List<Songs> songs,
+            String genre) {
+        Set<Songs> expected = new HashSet<>();
+        for (Songs song : songs) {
+            if (genre == null || song.getGenre().equals(genre)) {
+                expected.add(song);
+            }
+        }
+        check(board.size() == expected.size() && expected.containsAll(board),
+                "the " + order + " leaderboard of " + (genre == null ? "the library" : genre) + " has other songs");
+        for (int i = 1; i < board.size(); i++) {
+            check(valueOf(order, board.get(i - 1)) >= valueOf(order, board.get(i)),
+                    "the " + order + " leaderboard is out of order at " + board.get(i).getTitle());
+        }
+    }
+
+    private static double valueOf(SortedSongIndex.Order order, Songs song) {
+        return order == SortedSongIndex.Order.RATING ? song.getRating() : song.getPlayCount();
+    }
+
+    /**
+     *
+     * Returns a replayer that applies the journal to the given structures the
+     * same way the application does on startup.
+     */
+    private static MutationJournal.Replayer replayer(CustomLinkedList songList, SongCatalog songMap,
+            PlaylistLibrary playlistLibrary) {
+        return new MutationJournal.Replayer() {
+            @Override
+            public void addSong(Songs song) {
+                if (songMap.add(song)) {
+                    songList.add(song);
+                }
+            }
+
+            @Override
+            public void deleteSong(String title, String artist) {
+                Songs song = songMap.get(title, artist);
+                if (song != null) {
+                    songList.remove(song);
+                    songMap.remove(song);
+                    playlistLibrary.removeSongFromAllPlaylists(song);
+                }
+            }
+
+            @Override
+            public void createPlaylist(String playlistName) {
+                playlistLibrary.addPlaylist(playlistName, new Playlist());
+            }
+
+            @Override
+            public void addToPlaylist(String playlistName, String songTitle, String songArtist) {
+                Songs song = songMap.get(songTitle, songArtist);
+                if (song != null) {
+                    playlistLibrary.addSongToPlaylist(playlistName, song);
+                }
+            }
+
+            @Override
+            public void removeFromPlaylist(String playlistName, String songTitle, String songArtist) {
+                Songs song = songMap.get(songTitle, songArtist);
+                if (song != null) {
+                    playlistLibrary.removeSongFromPlaylist(playlistName, song);
+                }
+            }
+
+            @Override
+            public void insertIntoPlaylist(String playlistName, int index, String songTitle, String songArtist) {
+                Songs song = songMap.get(songTitle, songArtist);
+                if (song != null) {
+                    playlistLibrary.insertSongIntoPlaylist(playlistName, index, song);
+                }
+            }
+
+            @Override
+            public void removeFromPlaylistAt(String playlistName, int index, String songTitle, String songArtist) {
+                Songs song = songMap.get(songTitle, songArtist);
+                if (song != null) {
+                    playlistLibrary.removeSongFromPlaylistAt(playlistName, index, song);
+                }
+            }
+
+            @Override
+            public void deletePlaylist(String playlistName) {
+                playlistLibrary.removePlaylist(playlistName);
+            }
+
+            @Override
+            public void updateSong(Songs song) {
+                Songs current = songMap.get(song.getTitle(), song.getArtist());
+                if (current != null) {
+                    current.setDetails(song);
+                }
+            }
+        };
+    }
+
+    /**
+     *
+     * Returns a few random songs, which may repeat.
+     */
+    private static List<Songs> batch(Random random) {
+        List<Songs> songs = new ArrayList<>();
+        for (int n = 1 + random.nextInt(8); n > 0; n--) {
+            songs.add(song(random.nextInt(SONGS)));
+        }
+        return songs;
+    }
+
+    private static Songs song(int i) {
+        return new Songs(title(i), artist(i), "Genre " + (i % GENRES), "Album " + (i % 50), i % 12 + 1,
+                1960 + i % 60, i % 5 + 1);
+    }
+
+    private static String title(int i) {
+        return "Song" + i + "x";
+    }
+
+    private static String artist(int i) {
+        return "Artist " + (i % 40);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *
+ * The SortedIndexCheck class checks SortedSongIndex against sorting the songs
+ * in full. SortedIndexBenchmark in the jmh folder measures the pages and
+ * ranges.
+ *
+ * The check makes thousands of random adds and removes on a small index in
+ * every order and compares pages, ranges and counts, both ways round, with a
+ * list sorted from scratch.
+ */
+public class SortedIndexCheck {
+
+    private static final int CHECK_SONGS = 3000;
+    private static final int CHECK_STEPS = 20000;
+
+    /**
+     *
+     * Runs the check for every order.
+     *
+     * @param args not used.
+     */
+    public static void main(String[] args) {
+        for (SortedSongIndex.Order order : SortedSongIndex.Order.values()) {
+            check(order, new Random(order.ordinal()));
+        }
+        System.out.println("OK: every order matches a full sort after " + CHECK_STEPS + " random changes");
+    }
+
+    /**
+     *
+     * Makes random changes to an index and compares every way of reading it
+     * with a list of the same songs sorted from scratch.
+     */
+    private static void check(SortedSongIndex.Order order, Random random) {
+        SortedSongIndex index = new SortedSongIndex(order, new ArrayList<>());
+        List<Songs> songs = new ArrayList<>();
+        Songs[] pool = new Songs[CHECK_SONGS];
+        for (int i = 0; i < pool.length; i++) {
+            pool[i] = song(random.nextInt(CHECK_SONGS * 4));
+        }
+        for (int step = 0; step < CHECK_STEPS; step++) {
+            Songs song = pool[random.nextInt(pool.length)];
+            // grow for the first half, then mostly shrink, to exercise merges
+            boolean add = random.nextInt(100) < (step < CHECK_STEPS / 2 ? 70 : 30);
+            if (add) {
+                boolean expected = !songs.contains(song);
+                if (index.add(song) != expected) {
+                    throw new IllegalStateException(order + ": add of " + song.getTitle() + " disagrees");
+                }
+                if (expected) {
+                    songs.add(song);
+                }
+            } else if (index.remove(song) != songs.remove(song)) {
+                throw new IllegalStateException(order + ": remove of " + song.getTitle() + " disagrees");
+            }
+            if (step % 500 == 0 || step == CHECK_STEPS - 1) {
+                compare(order, index, songs, random);
+            }
+        }
+        // a tree built in one go must read the same as one built song by song
+        compare(order, new SortedSongIndex(order, songs), songs, random);
+    }
+
+    private static void compare(SortedSongIndex.Order order, SortedSongIndex index, List<Songs> songs,
+            Random random) {
+        List<Songs> sorted = new ArrayList<>(songs);
+        sorted.sort((a, b) -> {
+            // sorting through a second index would prove nothing, so the order
+            // is spelled out again here
+            int comparison = 0;
+            if (order.isNumeric()) {
+                comparison = Double.compare(numberOf(order, a), numberOf(order, b));
+            } else if (order == SortedSongIndex.Order.ARTIST) {
+                comparison = String.CASE_INSENSITIVE_ORDER.compare(a.getArtist(), b.getArtist());
+            }
+            if (comparison == 0) {
+                comparison = String.CASE_INSENSITIVE_ORDER.compare(a.getTitle(), b.getTitle());
+            }
+            return comparison != 0 ? comparison : a.compareTo(b);
+        });
+        expect(index.size() == sorted.size(), order + ": size " + index.size() + " instead of " + sorted.size());
+        expect(index.page(0, Integer.MAX_VALUE, false).equals(sorted), order + ": the order is wrong");
+        List<Songs> reversed = new ArrayList<>(sorted);
+        Collections.reverse(reversed);
+        expect(index.page(0, Integer.MAX_VALUE, true).equals(reversed), order + ": the reverse order is wrong");
+        for (int i = 0; i < 20; i++) {
+            int offset = random.nextInt(sorted.size() + 10);
+            int limit = random.nextInt(100);
+            expect(index.page(offset, limit, false).equals(slice(sorted, offset, limit)),
+                    order + ": page " + offset + "+" + limit + " is wrong");
+            expect(index.page(offset, limit, true).equals(slice(reversed, offset, limit)),
+                    order + ": reverse page " + offset + "+" + limit + " is wrong");
+            List<Songs> expected = new ArrayList<>();
+            if (order.isNumeric()) {
+                double from = order == SortedSongIndex.Order.YEAR ? 1960 + random.nextInt(60)
+                        : order == SortedSongIndex.Order.RATING ? random.nextInt(6) : random.nextInt(100);
+                double to = from + random.nextInt(15);
+                for (Songs song : sorted) {
+                    double value = numberOf(order, song);
+                    if (value >= from && value <= to) {
+                        expected.add(song);
+                    }
+                }
+                expect(index.count(from, to) == expected.size(), order + ": count " + from + "-" + to);
+                expect(index.range(from, to, offset % 50, limit, false)
+                        .equals(slice(expected, offset % 50, limit)), order + ": range " + from + "-" + to);
+            } else {
+                String word = order == SortedSongIndex.Order.TITLE ? "track" : "artist ";
+                String from = word + random.nextInt(30);
+                String to = random.nextBoolean() ? from : word.toUpperCase() + random.nextInt(30);
+                for (Songs song : sorted) {
+                    String text = order == SortedSongIndex.Order.TITLE ? song.getTitle() : song.getArtist();
+                    if (SortedSongIndex.comparePrefix(text, from) >= 0
+                            && SortedSongIndex.comparePrefix(text, to) <= 0) {
+                        expected.add(song);
+                    }
+                }
+                expect(index.count(from, to) == expected.size(), order + ": count " + from + "-" + to);
+                expect(index.range(from, to, offset % 50, limit, false)
+                        .equals(slice(expected, offset % 50, limit)), order + ": range " + from + "-" + to);
+            }
+        }
+    }
+
+    private static double numberOf(SortedSongIndex.Order order, Songs song) {
+        switch (order) {
+            case YEAR:
+                return song.getYear();
+            case RATING:
+                return song.getRating();
+            default:
+                return song.getPlayCount();
+        }
+    }
+
+    private static List<Songs> slice(List<Songs> songs, int offset, int limit) {
+        return new ArrayList<>(songs.subList(Math.min(offset, songs.size()), Math.min(songs.size(), offset + limit)));
+    }
+
+    private static Songs song(int i) {
+        // mixed case titles, so that ignoring case matters
+        String title = (i % 3 == 0 ? "Track" : "track") + i;
+        Songs song = new Songs(title, "Artist " + (i % 2000), "Genre " + (i % 20), "Album " + (i % 10000),
+                i % 12 + 1, 1960 + i % 60, (i % 50) / 10.0);
+        song.setPlayCount(i * 7919 % 120);
+        return song;
+    }
+
+    private static void expect(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
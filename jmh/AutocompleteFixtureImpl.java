@@ -0,0 +1,71 @@
+import benchmarks.AutocompleteFixture;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *
+ * Completes prefixes for AutocompleteBenchmark. The titles share words that
+ * differ in case and accents, and a few songs are played far more than the
+ * rest, so the ranking of the completions matters.
+ */
+public class AutocompleteFixtureImpl implements AutocompleteFixture {
+
+    private static final String[] WORDS = {"Love", "love", "Night", "Heart", "Fire", "Río", "rio", "Blue",
+        "Moon", "Dance", "Star", "Café", "Gold", "Rain", "Summer", "Sun", "Lost", "Home", "Road", "Dream",
+        "Heartbeat", "Nightfall", "Lover", "Stars", "Dancer", "Golden"};
+
+    private List<Songs> songs;
+    private CompletionTrie titles;
+    private String[] prefixes;
+    private int next;
+
+    @Override
+    public void setUp(int librarySize, int letters) {
+        Random random = new Random(2);
+        songs = new ArrayList<>(librarySize);
+        for (int i = 0; i < librarySize; i++) {
+            Songs song = new Songs(title(random) + " " + i, "Artist " + random.nextInt(librarySize / 20 + 1),
+                    "Genre", "Album", 1, 2000, 3.0);
+            song.setPlayCount((int) (1000 * Math.pow(random.nextDouble(), 8)));
+            songs.add(song);
+        }
+        titles = new CompletionTrie(songs, false);
+        prefixes = new String[256];
+        for (int i = 0; i < prefixes.length; i++) {
+            String title = songs.get(random.nextInt(librarySize)).getTitle();
+            prefixes[i] = title.substring(0, Math.min(letters, title.length()));
+        }
+    }
+
+    @Override
+    public int complete() {
+        return titles.complete(prefixes[next++ & 255], CompletionTrie.TOP).size();
+    }
+
+    @Override
+    public int scan() {
+        String prefix = prefixes[next++ & 255];
+        String key = CompletionTrie.normalize(prefix);
+        if (!key.isEmpty() && Character.isWhitespace(prefix.charAt(prefix.length() - 1))) {
+            key += ' ';
+        }
+        List<Songs> matches = new ArrayList<>();
+        for (Songs song : songs) {
+            if (CompletionTrie.normalize(song.getTitle()).startsWith(key)) {
+                matches.add(song);
+            }
+        }
+        matches.sort(CompletionTrie::rank);
+        return matches.size();
+    }
+
+    private static String title(Random random) {
+        StringBuilder title = new StringBuilder(WORDS[random.nextInt(WORDS.length)]);
+        int words = 1 + random.nextInt(3);
+        for (int i = 0; i < words; i++) {
+            title.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return title.toString();
+    }
+}
@@ -0,0 +1,83 @@
+import benchmarks.BatchOperationsFixture;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * Runs the add, playlist and delete steps for BatchOperationsBenchmark. The
+ * new songs are numbered past the loaded ones and are made once, so every
+ * call works on the same block.
+ */
+public class BatchOperationsFixtureImpl implements BatchOperationsFixture {
+
+    private static final String PLAYLIST = "Mix";
+
+    private MusicLibraryService library;
+    private TemporaryJournal journal;
+    private List<List<Songs>> batches;
+    private int librarySize;
+
+    @Override
+    public void setUp(int librarySize, int blockSize, int batchSize, boolean journaled) {
+        this.librarySize = librarySize;
+        journal = journaled ? new TemporaryJournal("batch") : null;
+        library = BenchmarkSongs.service(BenchmarkSongs.library(librarySize), 0,
+                journal != null ? journal.journal() : null);
+        library.createPlaylist(PLAYLIST);
+        batches = new ArrayList<>();
+        for (int start = 0; start < blockSize; start += batchSize) {
+            List<Songs> batch = new ArrayList<>(batchSize);
+            for (int i = start; i < Math.min(blockSize, start + batchSize); i++) {
+                batch.add(BenchmarkSongs.song(librarySize + i));
+            }
+            batches.add(batch);
+        }
+    }
+
+    @Override
+    public int single() {
+        for (List<Songs> batch : batches) {
+            for (Songs song : batch) {
+                library.addSong(song);
+            }
+        }
+        for (List<Songs> batch : batches) {
+            for (Songs song : batch) {
+                library.addSongToPlaylist(PLAYLIST, song);
+            }
+        }
+        for (List<Songs> batch : batches) {
+            for (Songs song : batch) {
+                library.deleteSong(song.getTitle(), song.getArtist());
+            }
+        }
+        return library.songCount();
+    }
+
+    @Override
+    public int batch() {
+        for (List<Songs> batch : batches) {
+            library.addSongs(batch);
+        }
+        for (List<Songs> batch : batches) {
+            library.addSongsToPlaylist(PLAYLIST, batch);
+        }
+        for (List<Songs> batch : batches) {
+            library.deleteSongs(batch);
+        }
+        return library.songCount();
+    }
+
+    @Override
+    public void tearDown() {
+        if (journal != null) {
+            journal.close();
+        }
+        if (library.songCount() != librarySize) {
+            throw new IllegalStateException(library.songCount() + " songs left instead of " + librarySize);
+        }
+        if (!library.getPlaylist(PLAYLIST).isEmpty()) {
+            throw new IllegalStateException(library.getPlaylist(PLAYLIST).size() + " songs left in the playlist");
+        }
+    }
+}
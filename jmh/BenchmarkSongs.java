@@ -0,0 +1,85 @@
+/**
+ *
+ * The BenchmarkSongs class generates the songs used by the JMH fixtures. The
+ * artist, genre and album values repeat the way a real catalog does.
+ */
+final class BenchmarkSongs {
+
+    private BenchmarkSongs() {
+    }
+
+    /**
+     *
+     * Creates a song from its position in a generated library.
+     *
+     * @param i the position of the song
+     * @return the song
+     */
+    static Songs song(int i) {
+        return new Songs("Title " + i, "Artist " + (i % 5000), "Genre " + (i % 40), "Album " + (i % 20000),
+                i % 12 + 1, 1960 + i % 60, (i % 50) / 10.0);
+    }
+
+    /**
+     *
+     * Creates a library of songs.
+     *
+     * @param size the number of songs
+     * @return the songs, in order
+     */
+    static Songs[] library(int size) {
+        Songs[] songs = new Songs[size];
+        for (int i = 0; i < size; i++) {
+            songs[i] = song(i);
+        }
+        return songs;
+    }
+
+    /**
+     *
+     * Creates a library service holding the songs, with playlists that each
+     * hold 50 of them picked at random.
+     *
+     * @param songs     the songs
+     * @param playlists the number of playlists, named "Playlist 0" and on
+     * @param journal   the journal of the changes, or null
+     * @return the service
+     */
+    static MusicLibraryService service(Songs[] songs, int playlists, MutationJournal journal) {
+        CustomLinkedList songList = new CustomLinkedList();
+        SongCatalog songMap = new SongCatalog();
+        for (Songs song : songs) {
+            songList.add(song);
+            songMap.add(song);
+        }
+        PlaylistLibrary playlistLibrary = new PlaylistLibrary();
+        java.util.Random random = new java.util.Random(42);
+        for (int p = 0; p < playlists; p++) {
+            Playlist playlist = new Playlist();
+            for (int i = 0; i < 50; i++) {
+                playlist.addSong(songs[random.nextInt(songs.length)]);
+            }
+            playlistLibrary.addPlaylist("Playlist " + p, playlist);
+        }
+        return new MusicLibraryService(songList, songMap, playlistLibrary, journal);
+    }
+
+    /**
+     *
+     * Returns positions in a random but repeatable order, so fixtures can
+     * pick a different song on every call without calling a random number
+     * generator in the measured code.
+     *
+     * @param size  the number of songs to choose from
+     * @param count the number of positions to return
+     * @return the positions
+     */
+    static int[] positions(int size, int count) {
+        java.util.Random random = new java.util.Random(42);
+        int[] positions = new int[count];
+        for (int i = 0; i < count; i++) {
+            positions[i] = random.nextInt(size);
+        }
+        return positions;
+    }
+}
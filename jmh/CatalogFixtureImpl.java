@@ -0,0 +1,58 @@
+import benchmarks.CatalogFixture;
+import java.io.File;
+
+/**
+ *
+ * Loads and saves catalog files for CatalogBenchmark.
+ */
+public class CatalogFixtureImpl implements CatalogFixture {
+
+    private CustomLinkedList songList;
+    private File csvFile;
+    private File binaryFile;
+    private File outputFile;
+
+    @Override
+    public void setUp(int librarySize) throws Exception {
+        songList = new CustomLinkedList();
+        for (Songs song : BenchmarkSongs.library(librarySize)) {
+            songList.add(song);
+        }
+        csvFile = File.createTempFile("catalog", ".txt");
+        binaryFile = File.createTempFile("catalog", ".bin");
+        outputFile = File.createTempFile("catalog", ".out");
+        MusicLibraryApp.saveMusicLibraryDataToFile(csvFile.getPath(), songList);
+        BinaryCatalog.write(binaryFile.getPath(), songList);
+    }
+
+    @Override
+    public int loadCsv() throws Exception {
+        CustomLinkedList loaded = new CustomLinkedList();
+        MusicLibraryApp.readMusicLibraryDataFromFile(csvFile.getPath(), loaded, new SongCatalog());
+        return loaded.size();
+    }
+
+    @Override
+    public int loadBinary() throws Exception {
+        CustomLinkedList loaded = new CustomLinkedList();
+        BinaryCatalog.read(binaryFile.getPath(), loaded, new SongCatalog());
+        return loaded.size();
+    }
+
+    @Override
+    public void saveCsv() throws Exception {
+        MusicLibraryApp.saveMusicLibraryDataToFile(outputFile.getPath(), songList);
+    }
+
+    @Override
+    public void saveBinary() throws Exception {
+        BinaryCatalog.write(outputFile.getPath(), songList);
+    }
+
+    @Override
+    public void tearDown() {
+        csvFile.delete();
+        binaryFile.delete();
+        outputFile.delete();
+    }
+}
@@ -0,0 +1,130 @@
+import benchmarks.FacetIndexFixture;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ *
+ * Runs the filters for FacetIndexBenchmark. The artist and genre names are
+ * shared between songs, as they are in a loaded catalog, and the years and
+ * ratings are scattered independently of them. The scan turns the filter
+ * into a chain of checks once, so it only pays for the checks themselves.
+ */
+public class FacetIndexFixtureImpl implements FacetIndexFixture {
+
+    private static final int GENRES = 40;
+    private static final int ARTISTS = 50000;
+
+    private List<Songs> library;
+    private FacetIndex index;
+    private Map<FacetIndex.Facet, List<String>> filter;
+    private RoaringBitmap matches;
+    private List<Predicate<Songs>> checks;
+
+    @Override
+    public void setUp(int librarySize, String name) {
+        Map<Integer, String> artists = new HashMap<>();
+        String[] genres = new String[GENRES];
+        library = new ArrayList<>(librarySize);
+        for (int i = 0; i < librarySize; i++) {
+            String artist = artists.computeIfAbsent(i % ARTISTS, a -> "Artist " + a);
+            if (genres[i % GENRES] == null) {
+                genres[i % GENRES] = "Genre " + (i % GENRES);
+            }
+            long mixed = (i + 1) * 0x9E3779B97F4A7C15L;
+            Songs song = new Songs("Track " + i, artist, genres[i % GENRES], "Album", 1,
+                    1960 + (int) ((mixed >>> 40) % 60), (int) ((mixed >>> 20 & 0xFFFFF) % 51) / 10.0);
+            song.setId(i);
+            library.add(song);
+        }
+        index = new FacetIndex(library);
+        filter = new EnumMap<>(FacetIndex.Facet.class);
+        switch (name) {
+            case "genreDecade":
+                filter.put(FacetIndex.Facet.GENRE, Arrays.asList("Genre 7"));
+                filter.put(FacetIndex.Facet.YEAR, Arrays.asList("1990-1999"));
+                break;
+            case "twoGenresDecadeRating":
+                filter.put(FacetIndex.Facet.GENRE, Arrays.asList("Genre 7", "Genre 8"));
+                filter.put(FacetIndex.Facet.YEAR, Arrays.asList("1990-1999"));
+                filter.put(FacetIndex.Facet.RATING, Arrays.asList("4-5"));
+                break;
+            case "artist":
+                filter.put(FacetIndex.Facet.ARTIST, Arrays.asList("Artist 123"));
+                break;
+            case "genreDecadeTwoArtists":
+                filter.put(FacetIndex.Facet.GENRE, Arrays.asList("Genre 3"));
+                filter.put(FacetIndex.Facet.YEAR, Arrays.asList("1970-1979"));
+                filter.put(FacetIndex.Facet.ARTIST, Arrays.asList("Artist 123", "Artist 163"));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown filter " + name);
+        }
+        matches = index.match(filter);
+        checks = new ArrayList<>();
+        for (Map.Entry<FacetIndex.Facet, List<String>> entry : filter.entrySet()) {
+            Predicate<Songs> any = song -> false;
+            for (String value : entry.getValue()) {
+                any = any.or(check(entry.getKey(), value));
+            }
+            checks.add(any);
+        }
+        if (scan() != matches.cardinality()) {
+            throw new IllegalStateException("the index found " + matches.cardinality() + " songs, the scan "
+                    + scan());
+        }
+    }
+
+    @Override
+    public int match() {
+        return index.match(filter).cardinality();
+    }
+
+    @Override
+    public int count() {
+        int values = 0;
+        for (FacetIndex.Facet facet : FacetIndex.Facet.values()) {
+            values += index.count(facet, matches, library::get).size();
+        }
+        return values;
+    }
+
+    @Override
+    public int scan() {
+        int count = 0;
+        for (Songs song : library) {
+            boolean match = true;
+            for (Predicate<Songs> check : checks) {
+                if (!check.test(song)) {
+                    match = false;
+                    break;
+                }
+            }
+            if (match) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static Predicate<Songs> check(FacetIndex.Facet facet, String value) {
+        int dash = value.indexOf('-', 1);
+        switch (facet) {
+            case GENRE:
+                return song -> song.getGenre().equals(value);
+            case ARTIST:
+                return song -> song.getArtist().equals(value);
+            default:
+                int from = Integer.parseInt(dash > 0 ? value.substring(0, dash) : value);
+                int to = dash > 0 ? Integer.parseInt(value.substring(dash + 1)) : from;
+                if (facet == FacetIndex.Facet.YEAR) {
+                    return song -> song.getYear() >= from && song.getYear() <= to;
+                }
+                return song -> Math.floor(song.getRating()) >= from && Math.floor(song.getRating()) <= to;
+        }
+    }
+}
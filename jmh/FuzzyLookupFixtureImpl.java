@@ -0,0 +1,150 @@
+import benchmarks.FuzzyLookupFixture;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ *
+ * Runs the lookups for FuzzyLookupBenchmark. The titles are made of two to
+ * four words drawn from a few thousand made up words, so that many titles
+ * share words and are close to each other the way real titles are. The
+ * queries are titles with one or two random typos.
+ */
+public class FuzzyLookupFixtureImpl implements FuzzyLookupFixture {
+
+    private static final int WORDS = 5000;
+    private static final String[] SYLLABLES = {"la", "mo", "ri", "ka", "ne", "so", "ta", "vi", "lu", "dor",
+        "sun", "night", "love", "fire", "ra", "in", "el", "blue", "gold", "heart", "ro", "mi", "be", "yo",
+        "da", "zen", "star", "moon", "shi", "ver", "an", "go"};
+
+    private List<String> titles;
+    private FuzzyIndex index;
+    private String[] queries;
+    private int next;
+
+    @Override
+    public void setUp(int librarySize) {
+        Random random = new Random(2);
+        List<String> words = words(random);
+        TreeSet<String> distinct = new TreeSet<>();
+        while (distinct.size() < librarySize) {
+            distinct.add(title(random, words));
+        }
+        titles = new ArrayList<>(distinct);
+        // the tree is built in a random order, as songs arrive
+        Collections.shuffle(titles, random);
+        index = new FuzzyIndex(titles);
+        queries = new String[256];
+        for (int i = 0; i < queries.length; i++) {
+            String title = titles.get(random.nextInt(titles.size()));
+            queries[i] = typo(random, i % 3 == 0 ? typo(random, title) : title);
+        }
+        for (int i = 0; i < 3; i++) {
+            if (scan(queries[i]) != search(queries[i])) {
+                throw new IllegalStateException("the scan found other titles for " + queries[i]);
+            }
+        }
+    }
+
+    @Override
+    public int search() {
+        return search(queries[next++ & 255]);
+    }
+
+    @Override
+    public int scan() {
+        return scan(queries[next++ & 255]);
+    }
+
+    private int search(String query) {
+        return index.search(query, FuzzyIndex.MAX_DISTANCE, Integer.MAX_VALUE).size();
+    }
+
+    private int scan(String query) {
+        int count = 0;
+        for (String title : titles) {
+            if (levenshtein(query, title) <= FuzzyIndex.MAX_DISTANCE) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     *
+     * The textbook distance, filling in the whole table, as a scan without
+     * the index would.
+     */
+    private static int levenshtein(String a, String b) {
+        a = a.toLowerCase(Locale.ROOT);
+        b = b.toLowerCase(Locale.ROOT);
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int replace = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(replace, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    private static List<String> words(Random random) {
+        List<String> words = new ArrayList<>(WORDS);
+        for (int i = 0; i < WORDS; i++) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 1 + random.nextInt(3);
+            for (int s = 0; s < syllables; s++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+            words.add(word.toString());
+        }
+        return words;
+    }
+
+    private static String title(Random random, List<String> words) {
+        StringBuilder title = new StringBuilder();
+        int count = 2 + random.nextInt(3);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                title.append(' ');
+            }
+            // a few words are far more common than the rest
+            title.append(words.get((int) (Math.pow(random.nextDouble(), 2) * words.size())));
+        }
+        return title.toString();
+    }
+
+    /**
+     *
+     * Inserts, deletes or replaces one character.
+     */
+    private static String typo(Random random, String text) {
+        StringBuilder typo = new StringBuilder(text);
+        int at = random.nextInt(text.length());
+        char c = (char) ('a' + random.nextInt(26));
+        switch (random.nextInt(3)) {
+            case 0:
+                typo.insert(at, c);
+                break;
+            case 1:
+                typo.deleteCharAt(at);
+                break;
+            default:
+                typo.setCharAt(at, c);
+                break;
+        }
+        return typo.toString();
+    }
+}
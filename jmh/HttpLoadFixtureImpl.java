@@ -0,0 +1,107 @@
+import benchmarks.HttpLoadFixture;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ *
+ * Sends requests for HttpLoadBenchmark. Each benchmark thread sends its
+ * requests one after another, and reads every response to the end so that
+ * its connection is kept alive and reused.
+ */
+public class HttpLoadFixtureImpl implements HttpLoadFixture {
+
+    private static final int PLAYLISTS = 100;
+
+    private LibraryHttpServer server;
+    private TemporaryJournal journal;
+    private Songs[] songs;
+    private String base;
+    private int writePercent;
+
+    @Override
+    public void setUp(int librarySize, int writePercent, boolean journaled) {
+        this.writePercent = writePercent;
+        journal = journaled ? new TemporaryJournal("httpload") : null;
+        songs = BenchmarkSongs.library(librarySize);
+        MusicLibraryService library = BenchmarkSongs.service(songs, PLAYLISTS,
+                journal != null ? journal.journal() : null);
+        try {
+            server = new LibraryHttpServer(library, new PlayCounter(library), new InetSocketAddress("127.0.0.1", 0));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        server.start();
+        base = "http://127.0.0.1:" + server.getPort();
+    }
+
+    @Override
+    public int request(Random random, int next) {
+        int kind = random.nextInt(100);
+        if (kind < writePercent) {
+            Songs song = BenchmarkSongs.song(songs.length + next);
+            return send("POST", base + "/songs", "{\"title\":\"" + song.getTitle() + "\",\"artist\":\""
+                    + song.getArtist() + "\",\"genre\":\"Rock\",\"year\":2001,\"rating\":4}");
+        }
+        Songs song = songs[random.nextInt(songs.length)];
+        if (kind < 70) {
+            return send("GET", base + "/songs?title=" + encode(song.getTitle()) + "&artist="
+                    + encode(song.getArtist()), null);
+        } else if (kind < 85) {
+            return send("GET", base + "/playlists/" + encode("Playlist " + random.nextInt(PLAYLISTS)), null);
+        }
+        return send("GET", base + "/search?q=" + encode(song.getTitle()), null);
+    }
+
+    private static int send(String method, String url, String body) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setRequestMethod(method);
+            if (body != null) {
+                connection.setDoOutput(true);
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(body.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            int status = connection.getResponseCode();
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    response.write(buffer, 0, read);
+                }
+            }
+            if (status >= 500) {
+                throw new IllegalStateException(method + " " + url + " failed: " + response);
+            }
+            return response.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String encode(String text) {
+        try {
+            return URLEncoder.encode(text, "UTF-8").replace("+", "%20");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void tearDown() {
+        server.stop();
+        if (journal != null) {
+            journal.close();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+import benchmarks.PagingFixture;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Scanner;
+
+/**
+ *
+ * Shows songs for PagingBenchmark. The text goes to a stream that throws it
+ * away, so the numbers are the cost of reading and formatting the songs.
+ */
+public class PagingFixtureImpl implements PagingFixture {
+
+    private static final int PAGE = 20;
+
+    private MusicLibraryService library;
+    private PrintStream discard;
+
+    @Override
+    public void setUp(int librarySize) {
+        library = BenchmarkSongs.service(BenchmarkSongs.library(librarySize), 0, null);
+        discard = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }, true);
+    }
+
+    @Override
+    public int firstPage() {
+        PagedOutput pages = new PagedOutput(new Scanner(""), discard, PAGE);
+        int shown = 0;
+        for (Songs song : library.getSongsSorted(SortedSongIndex.Order.TITLE, null, PAGE, false)) {
+            pages.println(song.getTitle() + " by " + song.getArtist());
+            shown++;
+        }
+        pages.finish();
+        return shown;
+    }
+
+    @Override
+    public int everySong() {
+        int printed = 0;
+        for (Songs song : library.getSongs()) {
+            discard.println(song.getTitle() + " by " + song.getArtist());
+            printed++;
+        }
+        return printed;
+    }
+}
@@ -0,0 +1,71 @@
+import benchmarks.PlayCounterFixture;
+import java.util.Collections;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Records play events for PlayCounterBenchmark. The counter is flushed every
+ * 250 milliseconds while the benchmark runs, as the served application does,
+ * so the measured threads share the counters with a flush.
+ */
+public class PlayCounterFixtureImpl implements PlayCounterFixture {
+
+    private MusicLibraryService library;
+    private PlayCounter counter;
+    private ScheduledExecutorService flusher;
+    private Songs[] songs;
+    private int[] positions;
+
+    @Override
+    public void setUp(int librarySize) {
+        CustomLinkedList songList = new CustomLinkedList();
+        SongCatalog songMap = new SongCatalog();
+        songs = BenchmarkSongs.library(librarySize);
+        for (Songs song : songs) {
+            songList.add(song);
+            songMap.add(song);
+        }
+        library = new MusicLibraryService(songList, songMap, new PlaylistLibrary(), null);
+        counter = new PlayCounter(library);
+        positions = BenchmarkSongs.positions(librarySize, 1 << 16);
+        flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "play-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(counter::flush, 250, 250, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void record(int event) {
+        counter.record(songs[positions[event & (positions.length - 1)]]);
+    }
+
+    @Override
+    public void recordDirect(int event) {
+        library.recordPlays(Collections.singletonList(songs[positions[event & (positions.length - 1)]]));
+    }
+
+    @Override
+    public void tearDown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        counter.flush();
+        long recorded = counter.recorded();
+        if (recorded > 0) {
+            long played = 0;
+            for (Songs song : songs) {
+                played += song.getPlayCount();
+            }
+            if (played != recorded) {
+                throw new IllegalStateException(recorded + " plays recorded but " + played + " reached the library");
+            }
+        }
+    }
+}
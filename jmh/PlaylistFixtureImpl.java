@@ -0,0 +1,60 @@
+import benchmarks.PlaylistFixture;
+
+/**
+ *
+ * Drives a Playlist for PlaylistBenchmark.
+ */
+public class PlaylistFixtureImpl implements PlaylistFixture {
+
+    private Playlist playlist;
+    private Songs extra;
+    private int[] positions;
+    private int next;
+
+    @Override
+    public void setUp(int playlistSize) {
+        playlist = new Playlist();
+        for (Songs song : BenchmarkSongs.library(playlistSize)) {
+            playlist.addSong(song);
+        }
+        extra = BenchmarkSongs.song(playlistSize);
+        positions = BenchmarkSongs.positions(playlistSize, 1 << 16);
+    }
+
+    @Override
+    public int addAndRemove() {
+        playlist.addSong(extra);
+        int size = playlist.size();
+        playlist.removeSong(extra);
+        return size;
+    }
+
+    @Override
+    public int removeAndRestore() {
+        Songs song = playlist.get(positions[next++ & (positions.length - 1)]);
+        playlist.removeSong(song);
+        int size = playlist.size();
+        playlist.addSong(song);
+        return size;
+    }
+
+    @Override
+    public Object get() {
+        return playlist.get(positions[next++ & (positions.length - 1)]);
+    }
+
+    @Override
+    public int insertAndRemove() {
+        int index = positions[next++ & (positions.length - 1)];
+        playlist.insert(index, extra);
+        int size = playlist.size();
+        playlist.remove(index);
+        return size;
+    }
+
+    @Override
+    public int move() {
+        playlist.move(positions[next++ & (positions.length - 1)], positions[next++ & (positions.length - 1)]);
+        return playlist.size();
+    }
+}
@@ -0,0 +1,64 @@
+import benchmarks.PlaylistLibraryFixture;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ *
+ * Drives a PlaylistLibrary for PlaylistLibraryBenchmark. The songs of the
+ * library are spread evenly over a fixed number of playlists.
+ */
+public class PlaylistLibraryFixtureImpl implements PlaylistLibraryFixture {
+
+    private static final int PLAYLISTS = 100;
+
+    private PlaylistLibrary playlistLibrary;
+    private String[] names;
+    private Songs extra;
+    private int[] positions;
+    private int next;
+    private File file;
+
+    @Override
+    public void setUp(int librarySize) {
+        playlistLibrary = new PlaylistLibrary();
+        names = new String[PLAYLISTS];
+        for (int i = 0; i < PLAYLISTS; i++) {
+            names[i] = "Playlist " + i;
+            playlistLibrary.addPlaylist(names[i], new Playlist());
+        }
+        Songs[] songs = BenchmarkSongs.library(librarySize);
+        for (int i = 0; i < songs.length; i++) {
+            playlistLibrary.addSongToPlaylist(names[i % PLAYLISTS], songs[i]);
+        }
+        extra = BenchmarkSongs.song(librarySize);
+        positions = BenchmarkSongs.positions(PLAYLISTS, 1 << 16);
+        try {
+            file = File.createTempFile("playlists", ".txt");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public Object getPlaylist() {
+        return playlistLibrary.getPlaylist(names[positions[next++ & (positions.length - 1)]]);
+    }
+
+    @Override
+    public boolean addAndRemoveSong() {
+        String name = names[positions[next++ & (positions.length - 1)]];
+        playlistLibrary.addSongToPlaylist(name, extra);
+        playlistLibrary.removeSongFromPlaylist(name, extra);
+        return !playlistLibrary.isPlaylistEmpty(name);
+    }
+
+    @Override
+    public void save() throws Exception {
+        MusicLibraryApp.savePlaylistDataToFile(file.getPath(), playlistLibrary, 0);
+    }
+
+    @Override
+    public void tearDown() {
+        file.delete();
+    }
+}
@@ -0,0 +1,117 @@
+import benchmarks.SearchCacheFixture;
+import java.util.Random;
+
+/**
+ *
+ * Runs the searches for SearchCacheBenchmark. A few queries are asked for far
+ * more often than the rest, following a Zipf distribution, and every 20000
+ * searches start with a burst of 3000 queries that are each asked for once,
+ * which a cache should not let push out the popular ones.
+ */
+public class SearchCacheFixtureImpl implements SearchCacheFixture {
+
+    private static final int QUERIES = 20000;
+    private static final int SEARCHES = 200000;
+    private static final long BUDGET = 512L * 1024;
+    private static final String[] WORDS = {"love", "night", "heart", "fire", "blue", "moon", "dance", "star",
+        "gold", "rain", "summer", "sun", "lost", "home", "road", "dream", "river", "stone", "light", "wild"};
+    private static final String[] GENRES = {"Rock", "Pop", "Jazz", "Blues", "Folk", "Soul"};
+
+    private MusicLibraryService library;
+    private String[] stream;
+    private Random noise;
+    private int songs;
+    private int next;
+
+    @Override
+    public void setUp(int librarySize, String policy) {
+        songs = librarySize;
+        Random random = new Random(2);
+        CustomLinkedList songList = new CustomLinkedList();
+        SongCatalog songMap = new SongCatalog();
+        for (int i = 0; i < librarySize; i++) {
+            Songs song = song(random, i, librarySize / 10);
+            songList.add(song);
+            songMap.add(song);
+        }
+        library = new MusicLibraryService(songList, songMap, new PlaylistLibrary(), null);
+        if (policy.equals("NONE")) {
+            library.configureSearchCache(SearchCache.Policy.LRU, 0);
+        } else {
+            library.configureSearchCache(SearchCache.Policy.valueOf(policy), BUDGET);
+        }
+
+        String[] queries = new String[QUERIES];
+        double[] cumulative = new double[QUERIES];
+        double total = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = query(random);
+            total += 1.0 / (i + 1);
+            cumulative[i] = total;
+        }
+        stream = new String[SEARCHES];
+        for (int i = 0; i < SEARCHES; i++) {
+            // the queries asked for once are made as they are searched for
+            if (i % 20000 >= 3000) {
+                double target = random.nextDouble() * total;
+                int low = 0;
+                int high = QUERIES - 1;
+                while (low < high) {
+                    int middle = (low + high) >>> 1;
+                    if (cumulative[middle] < target) {
+                        low = middle + 1;
+                    } else {
+                        high = middle;
+                    }
+                }
+                stream[i] = queries[low];
+            }
+        }
+        noise = new Random(3);
+    }
+
+    @Override
+    public int search() {
+        String query = stream[next];
+        next = next + 1 < SEARCHES ? next + 1 : 0;
+        if (query == null) {
+            query = query(noise) + " " + noise.nextInt(songs);
+        }
+        return library.search(query).size();
+    }
+
+    @Override
+    public void tearDown() {
+        String stats = library.stats();
+        int start = stats.indexOf("Search cache");
+        if (start >= 0) {
+            int end = stats.indexOf(System.lineSeparator() + "Undo", start);
+            System.out.println(stats.substring(start, end < 0 ? stats.length() : end));
+        }
+    }
+
+    private static Songs song(Random random, int number, int artists) {
+        String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " "
+                + number;
+        return new Songs(title, "Artist " + random.nextInt(artists + 1), GENRES[random.nextInt(GENRES.length)],
+                "Album " + WORDS[random.nextInt(WORDS.length)], 1, 1960 + random.nextInt(60), 3.0);
+    }
+
+    /**
+     *
+     * Makes a query of one to three words, sometimes with an alternative.
+     */
+    private static String query(Random random) {
+        StringBuilder query = new StringBuilder(WORDS[random.nextInt(WORDS.length)]);
+        int words = random.nextInt(3);
+        for (int i = 0; i < words; i++) {
+            query.append(' ').append(random.nextBoolean() ? WORDS[random.nextInt(WORDS.length)]
+                    : GENRES[random.nextInt(GENRES.length)]);
+        }
+        if (random.nextInt(4) == 0) {
+            query.append(" OR ").append(WORDS[random.nextInt(WORDS.length)]).append(' ').append(
+                    GENRES[random.nextInt(GENRES.length)]);
+        }
+        return query.toString();
+    }
+}
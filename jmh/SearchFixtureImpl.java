@@ -0,0 +1,53 @@
+import benchmarks.SearchFixture;
+
+/**
+ *
+ * Runs queries for SearchBenchmark. The queries cycle through artists so that
+ * each call looks up a different posting list.
+ */
+public class SearchFixtureImpl implements SearchFixture {
+
+    private CustomLinkedList songList;
+    private SongSearchIndex searchIndex;
+    private String[] substrings;
+    private String[] words;
+    private int next;
+
+    @Override
+    public void setUp(int librarySize) {
+        songList = new CustomLinkedList();
+        for (Songs song : BenchmarkSongs.library(librarySize)) {
+            songList.add(song);
+        }
+        searchIndex = new SongSearchIndex(songList);
+        substrings = new String[256];
+        words = new String[256];
+        for (int i = 0; i < substrings.length; i++) {
+            substrings[i] = "tist " + (i * 17 % 5000);
+            words[i] = "artist " + (i * 17 % 5000) + " genre " + (i % 40);
+        }
+    }
+
+    @Override
+    public int substring() {
+        return searchIndex.searchSubstring(substrings[next++ & 255]).size();
+    }
+
+    @Override
+    public int words() {
+        return searchIndex.search(words[next++ & 255]).size();
+    }
+
+    @Override
+    public int scan() {
+        String query = substrings[next++ & 255];
+        int count = 0;
+        for (Songs song : songList) {
+            if (song.getTitle().contains(query) || song.getArtist().contains(query)
+                    || song.getGenre().contains(query) || song.getAlbum().contains(query)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
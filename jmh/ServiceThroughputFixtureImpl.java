@@ -0,0 +1,73 @@
+import benchmarks.ServiceThroughputFixture;
+import java.util.Random;
+
+/**
+ *
+ * Runs the operation mix for ServiceThroughputBenchmark. The songs a thread
+ * adds are numbered past the loaded ones, so they are new to the library.
+ */
+public class ServiceThroughputFixtureImpl implements ServiceThroughputFixture {
+
+    private static final int PLAYLISTS = 200;
+
+    private MusicLibraryService library;
+    private TemporaryJournal journal;
+    private Songs[] songs;
+    private int writePercent;
+
+    @Override
+    public void setUp(int librarySize, int writePercent, boolean journaled) {
+        this.writePercent = writePercent;
+        journal = journaled ? new TemporaryJournal("throughput") : null;
+        songs = BenchmarkSongs.library(librarySize);
+        library = BenchmarkSongs.service(songs, PLAYLISTS, journal != null ? journal.journal() : null);
+    }
+
+    @Override
+    public int operate(Random random, int next) {
+        if (random.nextInt(100) < writePercent) {
+            return write(random, songs.length + next);
+        }
+        return read(random);
+    }
+
+    private int read(Random random) {
+        Songs song = songs[random.nextInt(songs.length)];
+        int kind = random.nextInt(10);
+        if (kind < 6) {
+            return library.getSong(song.getTitle(), song.getArtist()) != null ? 1 : 0;
+        } else if (kind < 8) {
+            return library.getPlaylist("Playlist " + random.nextInt(PLAYLISTS)) != null ? 1 : 0;
+        }
+        return library.search(song.getTitle()).size();
+    }
+
+    private int write(Random random, int next) {
+        int kind = random.nextInt(4);
+        if (kind == 0) {
+            return library.addSong(BenchmarkSongs.song(next)) ? 1 : 0;
+        } else if (kind == 1) {
+            Songs song = songs[random.nextInt(songs.length)];
+            library.addSongToPlaylist("Playlist " + random.nextInt(PLAYLISTS), song);
+            library.removeSongFromPlaylist("Playlist " + random.nextInt(PLAYLISTS), song);
+            return 1;
+        } else if (kind == 2) {
+            Songs song = BenchmarkSongs.song(next);
+            library.addSong(song);
+            return library.deleteSong(song.getTitle(), song.getArtist()) != null ? 1 : 0;
+        }
+        Songs song = songs[random.nextInt(songs.length)];
+        if (library.deleteSong(song.getTitle(), song.getArtist()) != null) {
+            library.undo();
+            return 1;
+        }
+        return 0;
+    }
+
+    @Override
+    public void tearDown() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+}
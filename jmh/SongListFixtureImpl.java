@@ -0,0 +1,55 @@
+import benchmarks.SongListFixture;
+
+/**
+ *
+ * Drives a CustomLinkedList for SongListBenchmark.
+ */
+public class SongListFixtureImpl implements SongListFixture {
+
+    private CustomLinkedList songList;
+    private Songs[] songs;
+    private Songs extra;
+    private int[] positions;
+    private int next;
+
+    @Override
+    public void setUp(int librarySize) {
+        songs = BenchmarkSongs.library(librarySize);
+        songList = new CustomLinkedList();
+        for (Songs song : songs) {
+            songList.add(song);
+        }
+        extra = BenchmarkSongs.song(librarySize);
+        positions = BenchmarkSongs.positions(librarySize, 1 << 16);
+    }
+
+    @Override
+    public int addAndRemove() {
+        songList.add(extra);
+        int size = songList.size();
+        songList.remove(extra);
+        return size;
+    }
+
+    @Override
+    public boolean removeAndRestore() {
+        Songs song = songs[positions[next++ & (positions.length - 1)]];
+        boolean removed = songList.remove(song);
+        songList.add(song);
+        return removed;
+    }
+
+    @Override
+    public int size() {
+        return songList.size();
+    }
+
+    @Override
+    public long iterate() {
+        long sum = 0;
+        for (Songs song : songList) {
+            sum += song.getYear();
+        }
+        return sum;
+    }
+}
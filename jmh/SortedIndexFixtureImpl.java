@@ -0,0 +1,67 @@
+import benchmarks.SortedIndexFixture;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ *
+ * Reads the sorted indexes for SortedIndexBenchmark. The offsets, decades and
+ * prefixes cycle through positions picked at random once, so each call reads
+ * a different part of the tree.
+ */
+public class SortedIndexFixtureImpl implements SortedIndexFixture {
+
+    private static final int PAGE = 50;
+
+    private List<Songs> library;
+    private SortedSongIndex byTitle;
+    private SortedSongIndex byYear;
+    private SortedSongIndex byRating;
+    private int[] positions;
+    private int next;
+
+    @Override
+    public void setUp(int librarySize) {
+        library = new ArrayList<>(Arrays.asList(BenchmarkSongs.library(librarySize)));
+        byTitle = new SortedSongIndex(SortedSongIndex.Order.TITLE, library);
+        byYear = new SortedSongIndex(SortedSongIndex.Order.YEAR, library);
+        byRating = new SortedSongIndex(SortedSongIndex.Order.RATING, library);
+        positions = BenchmarkSongs.positions(librarySize, 1 << 16);
+    }
+
+    private int position() {
+        return positions[next++ & (positions.length - 1)];
+    }
+
+    @Override
+    public int page() {
+        return byTitle.page(position(), PAGE, false).size();
+    }
+
+    @Override
+    public int decade() {
+        int position = position();
+        int decade = 1960 + 10 * (position % 6);
+        return byYear.count(decade, decade + 9) + byYear.range(decade, decade + 9, position % 1000, PAGE, false)
+                .size();
+    }
+
+    @Override
+    public int rated() {
+        return byRating.range(4.5, Double.POSITIVE_INFINITY, 0, PAGE, true).size();
+    }
+
+    @Override
+    public int prefix() {
+        String prefix = "title " + position() % 1000;
+        return byTitle.range(prefix, prefix, 0, PAGE, false).size();
+    }
+
+    @Override
+    public int sortCopy() {
+        List<Songs> copy = new ArrayList<>(library);
+        copy.sort(Comparator.naturalOrder());
+        return copy.get(position()).getYear();
+    }
+}
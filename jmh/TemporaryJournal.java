@@ -0,0 +1,57 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+
+/**
+ *
+ * The TemporaryJournal class opens a MutationJournal in a new temporary
+ * folder for the fixtures that measure journaled changes, and deletes the
+ * folder again when it is closed.
+ */
+final class TemporaryJournal {
+
+    private final File directory;
+    private final MutationJournal journal;
+
+    /**
+     *
+     * Creates the folder and opens a journal in it.
+     *
+     * @param prefix the start of the folder name
+     */
+    TemporaryJournal(String prefix) {
+        try {
+            directory = Files.createTempDirectory(prefix).toFile();
+            journal = new MutationJournal(new File(directory, "library.journal").getPath(), 1, 2);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     *
+     * Returns the journal.
+     *
+     * @return the journal
+     */
+    MutationJournal journal() {
+        return journal;
+    }
+
+    /**
+     *
+     * Closes the journal and deletes the folder with everything in it.
+     */
+    void close() {
+        try {
+            journal.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,46 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ *
+ * Benchmarks completing a title from its first letters, keystroke by
+ * keystroke, through the completion trie and by scanning every title.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AutocompleteBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int librarySize;
+
+    @Param({"1", "2", "3", "4", "8", "12"})
+    public int letters;
+
+    private AutocompleteFixture fixture;
+
+    @Setup
+    public void setUp() {
+        fixture = Fixtures.create(AutocompleteFixture.class, "AutocompleteFixtureImpl");
+        fixture.setUp(librarySize, letters);
+    }
+
+    @Benchmark
+    public int complete() {
+        return fixture.complete();
+    }
+
+    @Benchmark
+    public int scan() {
+        return fixture.scan();
+    }
+}
@@ -0,0 +1,36 @@
+package benchmarks;
+
+/**
+ *
+ * Completes the first letters of song titles, through the completion trie
+ * and by checking and sorting every song.
+ */
+public interface AutocompleteFixture {
+
+    /**
+     *
+     * Creates a library of songs, indexes their titles and takes the typed
+     * prefixes from titles in the library.
+     *
+     * @param librarySize the number of songs
+     * @param letters     the number of letters typed
+     */
+    void setUp(int librarySize, int letters);
+
+    /**
+     *
+     * Completes the next prefix through the trie.
+     *
+     * @return the number of songs suggested
+     */
+    int complete();
+
+    /**
+     *
+     * Completes the next prefix by checking every title and sorting the
+     * songs that start with it.
+     *
+     * @return the number of songs that start with the prefix
+     */
+    int scan();
+}
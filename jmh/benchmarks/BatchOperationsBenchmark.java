@@ -0,0 +1,59 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ *
+ * Benchmarks adding a block of songs, putting them in a playlist and deleting
+ * them, one song at a time and through the batch methods of the service.
+ * With the journal on, the numbers include waiting for the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BatchOperationsBenchmark {
+
+    @Param({"100000"})
+    public int librarySize;
+
+    @Param({"2000"})
+    public int blockSize;
+
+    @Param({"100", "1000"})
+    public int batchSize;
+
+    @Param({"false", "true"})
+    public boolean journal;
+
+    private BatchOperationsFixture fixture;
+
+    @Setup
+    public void setUp() {
+        fixture = Fixtures.create(BatchOperationsFixture.class, "BatchOperationsFixtureImpl");
+        fixture.setUp(librarySize, blockSize, batchSize, journal);
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.tearDown();
+    }
+
+    @Benchmark
+    public int single() {
+        return fixture.single();
+    }
+
+    @Benchmark
+    public int batch() {
+        return fixture.batch();
+    }
+}
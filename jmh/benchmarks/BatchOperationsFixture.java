@@ -0,0 +1,46 @@
+package benchmarks;
+
+/**
+ *
+ * Adds a block of new songs to a library, puts them in a playlist and
+ * deletes them again, one at a time or in batches.
+ */
+public interface BatchOperationsFixture {
+
+    /**
+     *
+     * Creates a library of songs with an empty playlist, with a journal in a
+     * temporary folder if asked for, and the block of new songs.
+     *
+     * @param librarySize the number of songs loaded
+     * @param blockSize   the number of songs added and deleted
+     * @param batchSize   the number of songs in each batch
+     * @param journal     whether the changes are written to a journal
+     */
+    void setUp(int librarySize, int blockSize, int batchSize, boolean journal);
+
+    /**
+     *
+     * Adds the block, puts it in the playlist and deletes it, calling the
+     * service once for every song.
+     *
+     * @return the number of songs in the library afterwards
+     */
+    int single();
+
+    /**
+     *
+     * Adds the block, puts it in the playlist and deletes it, calling the
+     * batch methods of the service once for every batch.
+     *
+     * @return the number of songs in the library afterwards
+     */
+    int batch();
+
+    /**
+     *
+     * Checks that the library and the playlist are back as they were loaded,
+     * closes the journal and deletes its folder.
+     */
+    void tearDown();
+}
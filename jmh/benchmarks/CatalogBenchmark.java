@@ -0,0 +1,60 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ *
+ * Benchmarks loading and saving the music library in the CSV and binary
+ * formats. Each operation handles the whole library, so one call is one
+ * sample.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CatalogBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int librarySize;
+
+    private CatalogFixture fixture;
+
+    @Setup
+    public void setUp() throws Exception {
+        fixture = Fixtures.create(CatalogFixture.class, "CatalogFixtureImpl");
+        fixture.setUp(librarySize);
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.tearDown();
+    }
+
+    @Benchmark
+    public int loadCsv() throws Exception {
+        return fixture.loadCsv();
+    }
+
+    @Benchmark
+    public int loadBinary() throws Exception {
+        return fixture.loadBinary();
+    }
+
+    @Benchmark
+    public void saveCsv() throws Exception {
+        fixture.saveCsv();
+    }
+
+    @Benchmark
+    public void saveBinary() throws Exception {
+        fixture.saveBinary();
+    }
+}
@@ -0,0 +1,57 @@
+package benchmarks;
+
+/**
+ *
+ * Loads and saves a music library in the CSV and binary formats.
+ */
+public interface CatalogFixture {
+
+    /**
+     *
+     * Writes a CSV and a binary catalog holding the given number of songs.
+     *
+     * @param librarySize the number of songs
+     * @throws Exception if the files cannot be written
+     */
+    void setUp(int librarySize) throws Exception;
+
+    /**
+     *
+     * Loads the CSV file.
+     *
+     * @return the number of songs loaded
+     * @throws Exception if the file cannot be read
+     */
+    int loadCsv() throws Exception;
+
+    /**
+     *
+     * Maps the binary catalog.
+     *
+     * @return the number of songs loaded
+     * @throws Exception if the file cannot be read
+     */
+    int loadBinary() throws Exception;
+
+    /**
+     *
+     * Writes the library to a CSV file.
+     *
+     * @throws Exception if the file cannot be written
+     */
+    void saveCsv() throws Exception;
+
+    /**
+     *
+     * Writes the library to a binary catalog.
+     *
+     * @throws Exception if the file cannot be written
+     */
+    void saveBinary() throws Exception;
+
+    /**
+     *
+     * Deletes the files the fixture created.
+     */
+    void tearDown();
+}
@@ -0,0 +1,51 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ *
+ * Benchmarks facet filters through the bitmaps of the facet index, the facet
+ * counts of their matches, and the same filters as a scan of every song.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FacetIndexBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public int librarySize;
+
+    @Param({"genreDecade", "twoGenresDecadeRating", "artist", "genreDecadeTwoArtists"})
+    public String filter;
+
+    private FacetIndexFixture fixture;
+
+    @Setup
+    public void setUp() {
+        fixture = Fixtures.create(FacetIndexFixture.class, "FacetIndexFixtureImpl");
+        fixture.setUp(librarySize, filter);
+    }
+
+    @Benchmark
+    public int match() {
+        return fixture.match();
+    }
+
+    @Benchmark
+    public int count() {
+        return fixture.count();
+    }
+
+    @Benchmark
+    public int scan() {
+        return fixture.scan();
+    }
+}
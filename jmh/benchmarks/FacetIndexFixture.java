@@ -0,0 +1,44 @@
+package benchmarks;
+
+/**
+ *
+ * Filters a library of songs by genre, year, artist and rating, through the
+ * facet index and by scanning the songs.
+ */
+public interface FacetIndexFixture {
+
+    /**
+     *
+     * Creates a library of songs and indexes it.
+     *
+     * @param librarySize the number of songs
+     * @param filter      the name of the filter to run, one of genreDecade,
+     *                    twoGenresDecadeRating, artist and genreDecadeTwoArtists
+     */
+    void setUp(int librarySize, String filter);
+
+    /**
+     *
+     * Finds the songs that match the filter through the index.
+     *
+     * @return the number of matching songs
+     */
+    int match();
+
+    /**
+     *
+     * Counts the values of every facet among the songs that match the
+     * filter.
+     *
+     * @return the number of values counted
+     */
+    int count();
+
+    /**
+     *
+     * Finds the songs that match the filter by checking every song.
+     *
+     * @return the number of matching songs
+     */
+    int scan();
+}
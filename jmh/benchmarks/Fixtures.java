@@ -0,0 +1,35 @@
+package benchmarks;
+
+/**
+ *
+ * The Fixtures class creates the objects that drive the application code for
+ * the benchmarks.
+ *
+ * JMH does not accept benchmarks in the default package, and classes in a
+ * named package cannot refer to the application classes, which live in the
+ * default package. Each benchmark therefore talks to a fixture interface from
+ * this package, and the implementation of that interface lives next to the
+ * application classes and is loaded by name.
+ */
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    /**
+     *
+     * Creates a fixture implementation from the default package.
+     *
+     * @param type      the fixture interface
+     * @param className the name of the class implementing it
+     * @param <T>       the fixture type
+     * @return a new fixture
+     */
+    static <T> T create(Class<T> type, String className) {
+        try {
+            return type.cast(Class.forName(className).getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create fixture " + className, e);
+        }
+    }
+}
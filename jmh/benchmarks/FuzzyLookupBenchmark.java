@@ -0,0 +1,43 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ *
+ * Benchmarks finding the titles within two typos of a misspelled title
+ * through the fuzzy index, next to working out the distance to every title.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FuzzyLookupBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int librarySize;
+
+    private FuzzyLookupFixture fixture;
+
+    @Setup
+    public void setUp() {
+        fixture = Fixtures.create(FuzzyLookupFixture.class, "FuzzyLookupFixtureImpl");
+        fixture.setUp(librarySize);
+    }
+
+    @Benchmark
+    public int search() {
+        return fixture.search();
+    }
+
+    @Benchmark
+    public int scan() {
+        return fixture.scan();
+    }
+}
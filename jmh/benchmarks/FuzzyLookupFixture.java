@@ -0,0 +1,34 @@
+package benchmarks;
+
+/**
+ *
+ * Finds the titles within two typos of a misspelled title, through the fuzzy
+ * index and by scanning every title.
+ */
+public interface FuzzyLookupFixture {
+
+    /**
+     *
+     * Creates the distinct titles of a library, indexes them and makes the
+     * misspelled queries.
+     *
+     * @param librarySize the number of distinct titles
+     */
+    void setUp(int librarySize);
+
+    /**
+     *
+     * Looks up the next query through the index.
+     *
+     * @return the number of titles found
+     */
+    int search();
+
+    /**
+     *
+     * Looks up the next query by working out its distance to every title.
+     *
+     * @return the number of titles found
+     */
+    int scan();
+}
@@ -0,0 +1,95 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ *
+ * Benchmarks the latency of the HTTP API of the library, served on a local
+ * port, at a rising number of clients each sending one request after another.
+ * The sampled times give the median and 99th percentile next to the mean.
+ * With the journal on, adding a song includes waiting for the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HttpLoadBenchmark {
+
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    @Param({"100000"})
+    public int librarySize;
+
+    @Param({"0", "5"})
+    public int writePercent;
+
+    @Param({"false", "true"})
+    public boolean journal;
+
+    private HttpLoadFixture fixture;
+
+    @Setup
+    public void setUp() {
+        fixture = Fixtures.create(HttpLoadFixture.class, "HttpLoadFixtureImpl");
+        fixture.setUp(librarySize, writePercent, journal);
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.tearDown();
+    }
+
+    /**
+     *
+     * The random numbers of one client, and the numbers of the songs it
+     * adds, which no other client uses.
+     */
+    @State(Scope.Thread)
+    public static class Worker {
+
+        Random random;
+        int next;
+
+        @Setup
+        public void setUp() {
+            int thread = THREADS.getAndIncrement();
+            random = new Random(thread);
+            next = thread * 10000000;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int clients1(Worker worker) {
+        return fixture.request(worker.random, worker.next++);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int clients4(Worker worker) {
+        return fixture.request(worker.random, worker.next++);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public int clients16(Worker worker) {
+        return fixture.request(worker.random, worker.next++);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public int clients64(Worker worker) {
+        return fixture.request(worker.random, worker.next++);
+    }
+}
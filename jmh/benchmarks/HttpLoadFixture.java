@@ -0,0 +1,39 @@
+package benchmarks;
+
+import java.util.Random;
+
+/**
+ *
+ * Sends requests to the HTTP API of a library served on a local port.
+ */
+public interface HttpLoadFixture {
+
+    /**
+     *
+     * Creates a library of songs and playlists, with a journal in a temporary
+     * folder if asked for, and starts serving it.
+     *
+     * @param librarySize  the number of songs
+     * @param writePercent the percentage of requests that add a song
+     * @param journal      whether the new songs are written to a journal
+     */
+    void setUp(int librarySize, int writePercent, boolean journal);
+
+    /**
+     *
+     * Sends one request of the mix and reads the whole response: mostly song
+     * lookups, with playlist reads, searches and a share of new songs.
+     *
+     * @param random the random numbers of the calling thread
+     * @param next   a number no other call uses, for the song the request
+     *               adds
+     * @return the length of the response
+     */
+    int request(Random random, int next);
+
+    /**
+     *
+     * Stops the server, closes the journal and deletes its folder.
+     */
+    void tearDown();
+}
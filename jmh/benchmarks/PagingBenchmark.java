@@ -0,0 +1,43 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ *
+ * Benchmarks showing the first page of the sorted songs for libraries of
+ * growing size, next to printing the whole library one line at a time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PagingBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int librarySize;
+
+    private PagingFixture fixture;
+
+    @Setup
+    public void setUp() {
+        fixture = Fixtures.create(PagingFixture.class, "PagingFixtureImpl");
+        fixture.setUp(librarySize);
+    }
+
+    @Benchmark
+    public int firstPage() {
+        return fixture.firstPage();
+    }
+
+    @Benchmark
+    public int everySong() {
+        return fixture.everySong();
+    }
+}
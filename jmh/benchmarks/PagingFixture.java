@@ -0,0 +1,34 @@
+package benchmarks;
+
+/**
+ *
+ * Shows the first page of the songs sorted by title, and for comparison
+ * prints every song of the library one line at a time.
+ */
+public interface PagingFixture {
+
+    /**
+     *
+     * Creates a library of songs and an output that throws the text away.
+     *
+     * @param librarySize the number of songs
+     */
+    void setUp(int librarySize);
+
+    /**
+     *
+     * Reads the first page of songs by title and shows it through a paged
+     * output, as the console does.
+     *
+     * @return the number of songs shown
+     */
+    int firstPage();
+
+    /**
+     *
+     * Prints every song of the library, as the console did before paging.
+     *
+     * @return the number of songs printed
+     */
+    int everySong();
+}
@@ -0,0 +1,102 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ *
+ * Benchmarks how many play events a second the library takes in, through the
+ * PlayCounter at a rising number of threads and, for comparison, straight
+ * into the library. A small library makes the threads play the same songs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PlayCounterBenchmark {
+
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    @Param({"1000", "100000"})
+    public int librarySize;
+
+    private PlayCounterFixture fixture;
+
+    @Setup
+    public void setUp() {
+        fixture = Fixtures.create(PlayCounterFixture.class, "PlayCounterFixtureImpl");
+        fixture.setUp(librarySize);
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.tearDown();
+    }
+
+    /**
+     *
+     * The events of one benchmark thread, starting at a different place for
+     * each thread.
+     */
+    @State(Scope.Thread)
+    public static class Events {
+
+        int next;
+
+        @Setup
+        public void setUp() {
+            next = THREADS.getAndIncrement() * 7919;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void counter1(Events events) {
+        fixture.record(events.next++);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void counter2(Events events) {
+        fixture.record(events.next++);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void counter4(Events events) {
+        fixture.record(events.next++);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void counter8(Events events) {
+        fixture.record(events.next++);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void counter16(Events events) {
+        fixture.record(events.next++);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void direct1(Events events) {
+        fixture.recordDirect(events.next++);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void direct8(Events events) {
+        fixture.recordDirect(events.next++);
+    }
+}
@@ -0,0 +1,42 @@
+package benchmarks;
+
+/**
+ *
+ * Records play events for a library of songs, through a PlayCounter or
+ * straight into the library.
+ */
+public interface PlayCounterFixture {
+
+    /**
+     *
+     * Creates a library of songs and starts flushing its play counter in the
+     * background.
+     *
+     * @param librarySize the number of songs
+     */
+    void setUp(int librarySize);
+
+    /**
+     *
+     * Records a play of a song through the play counter.
+     *
+     * @param event the number of the event, which picks the song
+     */
+    void record(int event);
+
+    /**
+     *
+     * Adds a play of a song straight to the library, as playing a playlist
+     * does.
+     *
+     * @param event the number of the event, which picks the song
+     */
+    void recordDirect(int event);
+
+    /**
+     *
+     * Stops the background flush, flushes the last plays and checks that
+     * every play recorded through the counter reached the library.
+     */
+    void tearDown();
+}
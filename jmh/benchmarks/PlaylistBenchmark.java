@@ -0,0 +1,57 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ *
+ * Benchmarks adding, removing, reading and moving songs in a Playlist.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PlaylistBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int librarySize;
+
+    private PlaylistFixture fixture;
+
+    @Setup
+    public void setUp() {
+        fixture = Fixtures.create(PlaylistFixture.class, "PlaylistFixtureImpl");
+        fixture.setUp(librarySize);
+    }
+
+    @Benchmark
+    public int addAndRemove() {
+        return fixture.addAndRemove();
+    }
+
+    @Benchmark
+    public int removeAndRestore() {
+        return fixture.removeAndRestore();
+    }
+
+    @Benchmark
+    public Object get() {
+        return fixture.get();
+    }
+
+    @Benchmark
+    public int insertAndRemove() {
+        return fixture.insertAndRemove();
+    }
+
+    @Benchmark
+    public int move() {
+        return fixture.move();
+    }
+}
@@ -0,0 +1,56 @@
+package benchmarks;
+
+/**
+ *
+ * Drives a Playlist of songs.
+ */
+public interface PlaylistFixture {
+
+    /**
+     *
+     * Fills the playlist with the given number of songs.
+     *
+     * @param playlistSize the number of songs in the playlist
+     */
+    void setUp(int playlistSize);
+
+    /**
+     *
+     * Adds a song to the end of the playlist and removes it again.
+     *
+     * @return the playlist size after the add
+     */
+    int addAndRemove();
+
+    /**
+     *
+     * Removes a song from a random position and adds it back at the end.
+     *
+     * @return the playlist size after the remove
+     */
+    int removeAndRestore();
+
+    /**
+     *
+     * Returns the song at a random position.
+     *
+     * @return the song found
+     */
+    Object get();
+
+    /**
+     *
+     * Inserts a song at a random position and removes it again.
+     *
+     * @return the playlist size after the insert
+     */
+    int insertAndRemove();
+
+    /**
+     *
+     * Moves the song at a random position to another random position.
+     *
+     * @return the playlist size
+     */
+    int move();
+}
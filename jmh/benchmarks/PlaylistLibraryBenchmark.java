@@ -0,0 +1,55 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ *
+ * Benchmarks looking up, editing and saving the playlists of a
+ * PlaylistLibrary.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PlaylistLibraryBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int librarySize;
+
+    private PlaylistLibraryFixture fixture;
+
+    @Setup
+    public void setUp() {
+        fixture = Fixtures.create(PlaylistLibraryFixture.class, "PlaylistLibraryFixtureImpl");
+        fixture.setUp(librarySize);
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.tearDown();
+    }
+
+    @Benchmark
+    public Object getPlaylist() {
+        return fixture.getPlaylist();
+    }
+
+    @Benchmark
+    public boolean addAndRemoveSong() {
+        return fixture.addAndRemoveSong();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void save() throws Exception {
+        fixture.save();
+    }
+}
@@ -0,0 +1,47 @@
+package benchmarks;
+
+/**
+ *
+ * Drives a PlaylistLibrary whose playlists hold the songs of a library.
+ */
+public interface PlaylistLibraryFixture {
+
+    /**
+     *
+     * Creates a library of songs and spreads them over a fixed number of
+     * playlists.
+     *
+     * @param librarySize the number of songs
+     */
+    void setUp(int librarySize);
+
+    /**
+     *
+     * Looks up a random playlist by name.
+     *
+     * @return the playlist found
+     */
+    Object getPlaylist();
+
+    /**
+     *
+     * Adds a song to a random playlist and removes it again.
+     *
+     * @return true if the playlist was found
+     */
+    boolean addAndRemoveSong();
+
+    /**
+     *
+     * Writes every playlist to a playlist file.
+     *
+     * @throws Exception if the file cannot be written
+     */
+    void save() throws Exception;
+
+    /**
+     *
+     * Deletes any files the fixture created.
+     */
+    void tearDown();
+}
@@ -0,0 +1,48 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ *
+ * Benchmarks searchSongs-style queries through the indexes and through a full
+ * scan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int librarySize;
+
+    private SearchFixture fixture;
+
+    @Setup
+    public void setUp() {
+        fixture = Fixtures.create(SearchFixture.class, "SearchFixtureImpl");
+        fixture.setUp(librarySize);
+    }
+
+    @Benchmark
+    public int substring() {
+        return fixture.substring();
+    }
+
+    @Benchmark
+    public int words() {
+        return fixture.words();
+    }
+
+    @Benchmark
+    public int scan() {
+        return fixture.scan();
+    }
+}
@@ -0,0 +1,49 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ *
+ * Benchmarks searches from a stream where a few queries are far more popular
+ * than the rest, mixed with bursts of queries asked for once, with the LRU
+ * and TINY_LFU search caches and without a cache. The hit rate of the cache
+ * is printed at the end of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchCacheBenchmark {
+
+    @Param({"20000"})
+    public int librarySize;
+
+    @Param({"NONE", "LRU", "TINY_LFU"})
+    public String policy;
+
+    private SearchCacheFixture fixture;
+
+    @Setup
+    public void setUp() {
+        fixture = Fixtures.create(SearchCacheFixture.class, "SearchCacheFixtureImpl");
+        fixture.setUp(librarySize, policy);
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.tearDown();
+    }
+
+    @Benchmark
+    public int search() {
+        return fixture.search();
+    }
+}
@@ -0,0 +1,33 @@
+package benchmarks;
+
+/**
+ *
+ * Runs a stream of searches against a library with its search cache under
+ * one of the eviction policies, or without a cache.
+ */
+public interface SearchCacheFixture {
+
+    /**
+     *
+     * Creates a library of songs, sets up its search cache and makes the
+     * stream of searches.
+     *
+     * @param librarySize the number of songs
+     * @param policy      LRU or TINY_LFU, or NONE for no cache
+     */
+    void setUp(int librarySize, String policy);
+
+    /**
+     *
+     * Runs the next search of the stream.
+     *
+     * @return the number of songs found
+     */
+    int search();
+
+    /**
+     *
+     * Prints how often the cache hit.
+     */
+    void tearDown();
+}
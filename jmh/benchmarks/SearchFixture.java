@@ -0,0 +1,40 @@
+package benchmarks;
+
+/**
+ *
+ * Runs searchSongs-style queries over a library of songs.
+ */
+public interface SearchFixture {
+
+    /**
+     *
+     * Creates a library of songs and indexes it.
+     *
+     * @param librarySize the number of songs
+     */
+    void setUp(int librarySize);
+
+    /**
+     *
+     * Runs a substring query through the trigram index.
+     *
+     * @return the number of matching songs
+     */
+    int substring();
+
+    /**
+     *
+     * Runs a two word query through the token index.
+     *
+     * @return the number of matching songs
+     */
+    int words();
+
+    /**
+     *
+     * Runs a substring query by scanning every song, as searchSongs used to.
+     *
+     * @return the number of matching songs
+     */
+    int scan();
+}
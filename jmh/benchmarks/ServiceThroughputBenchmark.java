@@ -0,0 +1,112 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ *
+ * Benchmarks how many operations a second a MusicLibraryService handles at a
+ * rising number of threads, for a mix that is mostly reads with a share of
+ * changes. With the journal on, the numbers include waiting for the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ServiceThroughputBenchmark {
+
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    @Param({"100000"})
+    public int librarySize;
+
+    @Param({"0", "10", "50"})
+    public int writePercent;
+
+    @Param({"false", "true"})
+    public boolean journal;
+
+    private ServiceThroughputFixture fixture;
+
+    @Setup
+    public void setUp() {
+        fixture = Fixtures.create(ServiceThroughputFixture.class, "ServiceThroughputFixtureImpl");
+        fixture.setUp(librarySize, writePercent, journal);
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.tearDown();
+    }
+
+    /**
+     *
+     * The random numbers of one benchmark thread, and the numbers of the
+     * songs it adds, which no other thread uses.
+     */
+    @State(Scope.Thread)
+    public static class Worker {
+
+        Random random;
+        int next;
+
+        @Setup
+        public void setUp() {
+            int thread = THREADS.getAndIncrement();
+            random = new Random(thread);
+            next = thread * 10000000;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int mix1(Worker worker) {
+        return fixture.operate(worker.random, worker.next++);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public int mix2(Worker worker) {
+        return fixture.operate(worker.random, worker.next++);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int mix4(Worker worker) {
+        return fixture.operate(worker.random, worker.next++);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public int mix8(Worker worker) {
+        return fixture.operate(worker.random, worker.next++);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public int mix16(Worker worker) {
+        return fixture.operate(worker.random, worker.next++);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public int mix32(Worker worker) {
+        return fixture.operate(worker.random, worker.next++);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public int mix64(Worker worker) {
+        return fixture.operate(worker.random, worker.next++);
+    }
+}
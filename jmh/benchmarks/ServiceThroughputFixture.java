@@ -0,0 +1,42 @@
+package benchmarks;
+
+import java.util.Random;
+
+/**
+ *
+ * Runs a mix of reads and changes against a MusicLibraryService shared by the
+ * benchmark threads.
+ */
+public interface ServiceThroughputFixture {
+
+    /**
+     *
+     * Creates a library of songs and playlists, with a journal in a temporary
+     * folder if asked for.
+     *
+     * @param librarySize  the number of songs
+     * @param writePercent the percentage of operations that change the library
+     * @param journal      whether the changes are written to a journal
+     */
+    void setUp(int librarySize, int writePercent, boolean journal);
+
+    /**
+     *
+     * Runs one operation of the mix: mostly song lookups, searches and
+     * playlist reads, with a share of adds, deletes, undos and playlist
+     * changes.
+     *
+     * @param random the random numbers of the calling thread
+     * @param next   a number no other call uses, for the songs the operation
+     *               adds
+     * @return a value depending on the result, so the call is not optimized
+     *         away
+     */
+    int operate(Random random, int next);
+
+    /**
+     *
+     * Closes the journal and deletes its folder.
+     */
+    void tearDown();
+}
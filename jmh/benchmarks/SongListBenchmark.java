@@ -0,0 +1,53 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ *
+ * Benchmarks the CustomLinkedList that holds the music library.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SongListBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int librarySize;
+
+    private SongListFixture fixture;
+
+    @Setup
+    public void setUp() {
+        fixture = Fixtures.create(SongListFixture.class, "SongListFixtureImpl");
+        fixture.setUp(librarySize);
+    }
+
+    @Benchmark
+    public int addAndRemove() {
+        return fixture.addAndRemove();
+    }
+
+    @Benchmark
+    public boolean removeAndRestore() {
+        return fixture.removeAndRestore();
+    }
+
+    @Benchmark
+    public int size() {
+        return fixture.size();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long iterate() {
+        return fixture.iterate();
+    }
+}
@@ -0,0 +1,48 @@
+package benchmarks;
+
+/**
+ *
+ * Drives a CustomLinkedList holding a library of songs.
+ */
+public interface SongListFixture {
+
+    /**
+     *
+     * Fills the list with the given number of songs.
+     *
+     * @param librarySize the number of songs in the list
+     */
+    void setUp(int librarySize);
+
+    /**
+     *
+     * Appends a song and removes it again, leaving the list as it was.
+     *
+     * @return the list size after the append
+     */
+    int addAndRemove();
+
+    /**
+     *
+     * Removes a song from a random position and appends it again.
+     *
+     * @return true if the song was found and removed
+     */
+    boolean removeAndRestore();
+
+    /**
+     *
+     * Returns the size of the list.
+     *
+     * @return the number of songs in the list
+     */
+    int size();
+
+    /**
+     *
+     * Walks the whole list.
+     *
+     * @return a value computed from every song, so the walk cannot be skipped
+     */
+    long iterate();
+}
@@ -0,0 +1,58 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ *
+ * Benchmarks pages and ranges read from the sorted indexes, next to sorting
+ * a copy of the library for each page as was done before them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SortedIndexBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int librarySize;
+
+    private SortedIndexFixture fixture;
+
+    @Setup
+    public void setUp() {
+        fixture = Fixtures.create(SortedIndexFixture.class, "SortedIndexFixtureImpl");
+        fixture.setUp(librarySize);
+    }
+
+    @Benchmark
+    public int page() {
+        return fixture.page();
+    }
+
+    @Benchmark
+    public int decade() {
+        return fixture.decade();
+    }
+
+    @Benchmark
+    public int rated() {
+        return fixture.rated();
+    }
+
+    @Benchmark
+    public int prefix() {
+        return fixture.prefix();
+    }
+
+    @Benchmark
+    public int sortCopy() {
+        return fixture.sortCopy();
+    }
+}
@@ -0,0 +1,58 @@
+package benchmarks;
+
+/**
+ *
+ * Reads pages and ranges of a library from its sorted indexes, and sorts the
+ * library for a page the way it was done before them.
+ */
+public interface SortedIndexFixture {
+
+    /**
+     *
+     * Creates a library of songs and indexes it in every order.
+     *
+     * @param librarySize the number of songs
+     */
+    void setUp(int librarySize);
+
+    /**
+     *
+     * Reads a page of songs by title at a random offset.
+     *
+     * @return the number of songs on the page
+     */
+    int page();
+
+    /**
+     *
+     * Counts the songs of a random decade and reads a page of them.
+     *
+     * @return the count plus the number of songs on the page
+     */
+    int decade();
+
+    /**
+     *
+     * Reads the first page of the songs rated 4.5 or more, best first.
+     *
+     * @return the number of songs on the page
+     */
+    int rated();
+
+    /**
+     *
+     * Reads the first page of the titles starting with a random prefix.
+     *
+     * @return the number of songs on the page
+     */
+    int prefix();
+
+    /**
+     *
+     * Sorts a copy of the library and picks a song from it, as a page cost
+     * before the indexes.
+     *
+     * @return the year of the song picked
+     */
+    int sortCopy();
+}
@@ -0,0 +1,279 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ *
+ * The BinaryCatalog class reads and writes the music library in a versioned
+ * binary format that is memory-mapped instead of parsed.
+ *
+ * The file starts with a header (magic number, format version, song count, the
+ * journal generation the snapshot covers and the offset of the string heap),
+ * followed by one fixed-width record per song
+ * and then a heap holding the UTF-8 bytes of every title, artist, genre and
+ * album. A record stores the heap offset and length of each string, the track
+ * number, year and play count as ints and the rating as a double. An artist,
+ * genre or album value is written to the heap once, and every record with
+ * that value points at the same bytes.
+ *
+ * Reading maps the file and decodes every record when it is loaded, since
+ * the catalog keys songs by title and artist and the library's indexes read
+ * every string at startup anyway. A shared value is decoded once, the first
+ * time its heap offset is seen, and handed to every song that has it.
+ */
+class BinaryCatalog {
+
+    static final int MAGIC = 0x4D4C4942; // "MLIB"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 24;
+    static final int RECORD_SIZE = 4 * 8 + 3 * 4 + 8;
+
+    private BinaryCatalog() {
+    }
+
+    /**
+     *
+     * Converts a CSV music library file into the binary format.
+     *
+     * @param args the CSV file to read and the binary file to write
+     * @throws IOException if either file cannot be used
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: BinaryCatalog <music_library.txt> <music_library.bin>");
+            return;
+        }
+        CustomLinkedList songList = new CustomLinkedList();
+        MusicLibraryApp.readMusicLibraryDataFromFile(args[0], songList, new SongCatalog());
+        write(args[1], songList);
+        System.out.println("Converted " + songList.size() + " songs to " + args[1]);
+    }
+
+    /**
+     *
+     * Maps a binary catalog file and adds its songs to the song list and song
+     * catalog.
+     *
+     * @param catalogFile the path of the binary catalog file
+     * @param songList    the custom linked list where songs will be stored
+     * @param songMap     the catalog where songs will be stored by title and
+     *                    artist
+     * @return the journal generation the catalog covers
+     * @throws IOException if the file cannot be read or is not a catalog of a
+     *                     supported version
+     */
+    static int read(String catalogFile, CustomLinkedList songList, SongCatalog songMap)
+            throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(new File(catalogFile).toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException(catalogFile + " is not a music catalog file");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException(catalogFile + " has unsupported catalog version " + version);
+        }
+        int count = buffer.getInt(8);
+        long heapOffset = buffer.getLong(16);
+        if (HEADER_SIZE + (long) count * RECORD_SIZE != heapOffset || heapOffset > buffer.limit()) {
+            throw new IOException(catalogFile + " is truncated or corrupt");
+        }
+
+        StringDecoder strings = new StringDecoder(buffer, (int) heapOffset);
+        for (int i = 0; i < count; i++) {
+            int record = HEADER_SIZE + i * RECORD_SIZE;
+            Songs song = new Songs(strings.decode(record), strings.shared(record + 8), strings.shared(record + 16),
+                    strings.shared(record + 24), buffer.getInt(record + 32), buffer.getInt(record + 36),
+                    buffer.getDouble(record + 44));
+            song.setPlayCount(buffer.getInt(record + 40));
+            if (songMap.add(song)) {
+                songList.add(song);
+            }
+        }
+        return buffer.getInt(12);
+    }
+
+    /**
+     *
+     * Writes the songs in the list to a binary catalog file. The file is
+     * written next to the target and then moved over it, so a catalog that is
+     * currently mapped is never truncated underneath its readers.
+     *
+     * @param catalogFile the path of the binary catalog file
+     * @param songList    the songs to be written
+     * @throws IOException if the file cannot be written
+     */
+    static void write(String catalogFile, CustomLinkedList songList) throws IOException {
+        write(catalogFile, songList, 0);
+    }
+
+    /**
+     *
+     * Writes the songs in the list to a binary catalog file that covers every
+     * journal segment up to the given generation.
+     *
+     * @param catalogFile the path of the binary catalog file
+     * @param songList    the songs to be written
+     * @param generation  the last journal generation included in the songs
+     * @throws IOException if the file cannot be written
+     */
+    static void write(String catalogFile, CustomLinkedList songList, int generation) throws IOException {
+        int count = songList.size();
+        ByteBuffer records = ByteBuffer.allocate(HEADER_SIZE + count * RECORD_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        StringHeap heap = new StringHeap();
+
+        records.position(HEADER_SIZE);
+        for (Songs song : songList) {
+            heap.put(records, song.getTitle());
+            heap.putShared(records, song.getArtist());
+            heap.putShared(records, song.getGenre());
+            heap.putShared(records, song.getAlbum());
+            records.putInt(song.getTrackNumber());
+            records.putInt(song.getYear());
+            records.putInt(song.getPlayCount());
+            records.putDouble(song.getRating());
+        }
+        records.putInt(0, MAGIC);
+        records.putInt(4, VERSION);
+        records.putInt(8, count);
+        records.putInt(12, generation);
+        records.putLong(16, records.capacity());
+        records.clear();
+
+        File target = new File(catalogFile).getAbsoluteFile();
+        File temp = new File(target.getParentFile(), target.getName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (records.hasRemaining()) {
+                channel.write(records);
+            }
+            ByteBuffer heapBytes = ByteBuffer.wrap(heap.bytes, 0, heap.size);
+            while (heapBytes.hasRemaining()) {
+                channel.write(heapBytes);
+            }
+            channel.force(true);
+        }
+        try {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     *
+     * A growable byte array holding the UTF-8 bytes of the strings of every
+     * song.
+     */
+    private static class StringHeap {
+
+        byte[] bytes = new byte[1 << 16];
+        int size;
+        // the offset and length of every artist, genre and album written
+        private final HashMap<String, int[]> shared = new HashMap<>();
+
+        /**
+         *
+         * Appends a string to the heap and writes its offset and length to the
+         * record.
+         */
+        void put(ByteBuffer record, String value) {
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            if (size + encoded.length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(size + encoded.length, bytes.length * 2));
+            }
+            System.arraycopy(encoded, 0, bytes, size, encoded.length);
+            record.putInt(size);
+            record.putInt(encoded.length);
+            size += encoded.length;
+        }
+
+        /**
+         *
+         * Writes the offset and length of a value that many songs share to
+         * the record, appending it to the heap only the first time.
+         */
+        void putShared(ByteBuffer record, String value) {
+            int[] written = shared.get(value);
+            if (written == null) {
+                int offset = size;
+                put(record, value);
+                shared.put(value, new int[] {offset, size - offset});
+                return;
+            }
+            record.putInt(written[0]);
+            record.putInt(written[1]);
+        }
+    }
+
+    /**
+     *
+     * Decodes the strings of the records of a mapped catalog file, reading
+     * the bytes through one view of the heap into one reused array.
+     */
+    private static class StringDecoder {
+
+        private final ByteBuffer buffer;
+        private final ByteBuffer view;
+        private final int heap;
+        private final HashMap<Integer, String> shared = new HashMap<>();
+        private byte[] bytes = new byte[256];
+
+        StringDecoder(ByteBuffer buffer, int heap) {
+            this.buffer = buffer;
+            this.view = buffer.duplicate();
+            this.heap = heap;
+        }
+
+        /**
+         *
+         * Decodes the string whose offset and length are at the given
+         * position of a record.
+         */
+        String decode(int field) {
+            int offset = buffer.getInt(field);
+            int length = buffer.getInt(field + 4);
+            if (length > bytes.length) {
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            }
+            view.position(heap + offset);
+            view.get(bytes, 0, length);
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+
+        /**
+         *
+         * Decodes an artist, genre or album, or returns the string already
+         * decoded from the same heap offset. An empty value takes no bytes,
+         * so the value written after it starts at the same offset, and it is
+         * never cached.
+         */
+        String shared(int field) {
+            if (buffer.getInt(field + 4) == 0) {
+                return "";
+            }
+            Integer offset = buffer.getInt(field);
+            String value = shared.get(offset);
+            if (value == null) {
+                value = decode(field);
+                shared.put(offset, value);
+            }
+            return value;
+        }
+    }
+}
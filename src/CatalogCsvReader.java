@@ -0,0 +1,407 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ *
+ * The CatalogCsvReader class streams songs out of a CSV music library file
+ * without splitting lines into String arrays.
+ *
+ * The file is read in large chunks through a FileChannel. Each row is scanned
+ * byte by byte to find its fields, the track number, year and rating are
+ * parsed straight from the bytes, and only the four text fields become
+ * Strings. Fields may be wrapped in double quotes, in which case they can
+ * contain commas, line breaks and doubled quotes.
+ *
+ * Rows that cannot be turned into a song are skipped and reported with their
+ * line number instead of stopping the import.
+ */
+class CatalogCsvReader {
+
+    static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+    static final int FIELD_COUNT = 7;
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final int MAX_FIELDS = 16;
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private byte[] buffer;
+    private int limit;
+    private boolean endOfInput;
+    private long readPosition;
+    private long readEnd;
+
+    private final int[] fieldStart = new int[MAX_FIELDS];
+    private final int[] fieldEnd = new int[MAX_FIELDS];
+    private final boolean[] fieldEscaped = new boolean[MAX_FIELDS];
+    private int fieldCount;
+    private int lineBreaks;
+
+    private long line;
+    private long rows;
+    private long errorCount;
+    private final List<String> errors = new ArrayList<>();
+
+    /**
+     *
+     * Constructs a new CatalogCsvReader object with the default chunk size.
+     */
+    CatalogCsvReader() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     *
+     * Constructs a new CatalogCsvReader object.
+     *
+     * @param bufferSize the number of bytes read from the file at a time
+     */
+    CatalogCsvReader(int bufferSize) {
+        buffer = new byte[bufferSize];
+    }
+
+    /**
+     *
+     * Reads every row of a CSV music library file and hands the songs to the
+     * sink in file order.
+     *
+     * @param musicLibraryFile the path of the CSV file
+     * @param sink             receives each song that was read
+     * @return the number of songs read
+     * @throws IOException if the file cannot be read
+     */
+    long read(String musicLibraryFile, Consumer<Songs> sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(new File(musicLibraryFile).toPath(), StandardOpenOption.READ)) {
+            return read(channel, sink);
+        }
+    }
+
+    /**
+     *
+     * Reads every row from a channel and hands the songs to the sink in order.
+     *
+     * @param channel the channel to read from
+     * @param sink    receives each song that was read
+     * @return the number of songs read
+     * @throws IOException if the channel cannot be read
+     */
+    long read(FileChannel channel, Consumer<Songs> sink) throws IOException {
+        return read(channel, 0, channel.size(), 1, sink);
+    }
+
+    /**
+     *
+     * Reads the rows between two byte offsets of a channel and hands the songs
+     * to the sink in order. The range must start at the beginning of a row and
+     * end at the end of one.
+     *
+     * @param channel   the channel to read from
+     * @param start     the offset of the first byte to read
+     * @param end       the offset just after the last byte to read
+     * @param firstLine the line number of the first row, used in error
+     *                  messages
+     * @param sink      receives each song that was read
+     * @return the number of songs read
+     * @throws IOException if the channel cannot be read
+     */
+    long read(FileChannel channel, long start, long end, long firstLine, Consumer<Songs> sink)
+            throws IOException {
+        limit = 0;
+        endOfInput = false;
+        readPosition = start;
+        readEnd = end;
+        line = firstLine;
+        rows = 0;
+        errorCount = 0;
+        errors.clear();
+
+        int position = 0;
+        fill(channel, 0);
+        while (position < limit || !endOfInput) {
+            int rowEnd = scanRow(position);
+            if (rowEnd < 0) {
+                // the row runs past the end of the chunk; move it to the front and read more
+                if (position == 0 && limit == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                fill(channel, position);
+                position = 0;
+                continue;
+            }
+            handleRow(sink);
+            line += lineBreaks + 1;
+            position = rowEnd;
+        }
+        return rows;
+    }
+
+    /**
+     *
+     * Returns the number of rows that could not be read by the last call to
+     * read.
+     *
+     * @return the number of malformed rows
+     */
+    long getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     *
+     * Returns a description of each malformed row, with its line number. Only
+     * the first hundred are kept.
+     *
+     * @return the error messages
+     */
+    List<String> getErrors() {
+        return errors;
+    }
+
+    /**
+     *
+     * Moves the bytes from keepFrom to the front of the buffer and reads as
+     * many more bytes as fit after them.
+     */
+    private void fill(FileChannel channel, int keepFrom) throws IOException {
+        int kept = limit - keepFrom;
+        System.arraycopy(buffer, keepFrom, buffer, 0, kept);
+        limit = kept;
+        int wanted = (int) Math.min(buffer.length - limit, readEnd - readPosition);
+        ByteBuffer target = ByteBuffer.wrap(buffer, limit, wanted);
+        while (target.hasRemaining()) {
+            int read = channel.read(target, readPosition);
+            if (read < 0) {
+                break;
+            }
+            readPosition += read;
+        }
+        if (readPosition >= readEnd || target.hasRemaining()) {
+            endOfInput = true;
+        }
+        limit = target.position();
+    }
+
+    /**
+     *
+     * Finds the fields of the row starting at position.
+     *
+     * @return the position just after the row, or -1 if the row is not
+     *         complete in the buffer yet
+     */
+    private int scanRow(int position) {
+        fieldCount = 0;
+        lineBreaks = 0;
+        int i = position;
+        while (true) {
+            boolean escaped = false;
+            int start;
+            int end;
+            if (i < limit && buffer[i] == '"') {
+                start = ++i;
+                while (true) {
+                    if (i >= limit) {
+                        if (!endOfInput) {
+                            return -1;
+                        }
+                        fieldCount = -1; // unterminated quote
+                        return limit;
+                    }
+                    byte b = buffer[i];
+                    if (b == '"') {
+                        if (i + 1 >= limit && !endOfInput) {
+                            return -1;
+                        }
+                        if (i + 1 < limit && buffer[i + 1] == '"') {
+                            escaped = true;
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    if (b == '\n') {
+                        lineBreaks++;
+                    }
+                    i++;
+                }
+                end = i++;
+                // anything between the closing quote and the next comma is ignored
+                while (i < limit && buffer[i] != ',' && buffer[i] != '\n' && buffer[i] != '\r') {
+                    i++;
+                }
+            } else {
+                start = i;
+                while (i < limit && buffer[i] != ',' && buffer[i] != '\n' && buffer[i] != '\r') {
+                    i++;
+                }
+                end = i;
+            }
+            if (i >= limit && !endOfInput) {
+                return -1;
+            }
+            if (fieldCount < MAX_FIELDS) {
+                fieldStart[fieldCount] = start;
+                fieldEnd[fieldCount] = end;
+                fieldEscaped[fieldCount] = escaped;
+            }
+            fieldCount++;
+
+            if (i >= limit) {
+                return i;
+            }
+            if (buffer[i] == ',') {
+                i++;
+                continue;
+            }
+            if (buffer[i] == '\r') {
+                if (i + 1 >= limit && !endOfInput) {
+                    return -1;
+                }
+                if (i + 1 < limit && buffer[i + 1] == '\n') {
+                    i++;
+                }
+            }
+            return i + 1;
+        }
+    }
+
+    /**
+     *
+     * Turns the fields of the current row into a song, or records why it
+     * could not.
+     */
+    private void handleRow(Consumer<Songs> sink) {
+        if (fieldCount == -1) {
+            error("unterminated quoted field");
+            return;
+        }
+        if (fieldCount == 1 && fieldStart[0] == fieldEnd[0]) {
+            return; // blank line
+        }
+        if (fieldCount < FIELD_COUNT) {
+            error("expected " + FIELD_COUNT + " fields but found " + fieldCount);
+            return;
+        }
+        int trackNumber;
+        int year;
+        double rating;
+        try {
+            trackNumber = parseInt(4, "track number");
+            year = parseInt(5, "year");
+            rating = parseDouble(6, "rating");
+        } catch (NumberFormatException e) {
+            error(e.getMessage());
+            return;
+        }
+        sink.accept(new Songs(text(0), text(1), text(2), text(3), trackNumber, year, rating));
+        rows++;
+    }
+
+    private void error(String message) {
+        errorCount++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add("line " + line + ": " + message);
+        }
+    }
+
+    private String text(int field) {
+        String value = new String(buffer, fieldStart[field], fieldEnd[field] - fieldStart[field],
+                StandardCharsets.UTF_8);
+        return fieldEscaped[field] ? value.replace("\"\"", "\"") : value;
+    }
+
+    /**
+     *
+     * Parses an int straight from the bytes of a field, allowing spaces around
+     * it.
+     */
+    private int parseInt(int field, String name) {
+        int i = fieldStart[field];
+        int end = fieldEnd[field];
+        while (i < end && buffer[i] == ' ') {
+            i++;
+        }
+        while (end > i && buffer[end - 1] == ' ') {
+            end--;
+        }
+        boolean negative = i < end && buffer[i] == '-';
+        if (negative || (i < end && buffer[i] == '+')) {
+            i++;
+        }
+        if (i == end || end - i > 10) {
+            throw badNumber(field, name);
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw badNumber(field, name);
+            }
+            value = value * 10 + digit;
+        }
+        value = negative ? -value : value;
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw badNumber(field, name);
+        }
+        return (int) value;
+    }
+
+    /**
+     *
+     * Parses a double straight from the bytes of a field. Plain decimals with
+     * up to 15 significant digits are converted exactly; anything else, such
+     * as an exponent, is handed to Double.parseDouble.
+     */
+    private double parseDouble(int field, String name) {
+        int i = fieldStart[field];
+        int end = fieldEnd[field];
+        while (i < end && buffer[i] == ' ') {
+            i++;
+        }
+        while (end > i && buffer[end - 1] == ' ') {
+            end--;
+        }
+        int start = i;
+        boolean negative = i < end && buffer[i] == '-';
+        if (negative || (i < end && buffer[i] == '+')) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (; i < end; i++) {
+            byte b = buffer[i];
+            if (b == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            } else {
+                break;
+            }
+        }
+        if (i == end && digits > 0 && digits <= 15) {
+            double value = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+            return negative ? -value : value;
+        }
+        try {
+            return Double.parseDouble(new String(buffer, start, end - start, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            throw badNumber(field, name);
+        }
+    }
+
+    private NumberFormatException badNumber(int field, String name) {
+        return new NumberFormatException("bad " + name + " '" + new String(buffer, fieldStart[field],
+                fieldEnd[field] - fieldStart[field], StandardCharsets.UTF_8) + "'");
+    }
+}
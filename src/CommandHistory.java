@@ -0,0 +1,312 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ *
+ * The CommandHistory class keeps the changes made to the library that can be
+ * undone and redone, newest last.
+ *
+ * The entries live in a ring buffer of fixed depth. Recording a change drops
+ * every entry that was undone but not redone, and once the buffer is full the
+ * oldest entry is dropped to make room, so the history never grows past its
+ * depth. Undo and redo only move a cursor between the entries, which takes
+ * constant time whatever the depth.
+ *
+ * The entries held in memory are also kept within a byte budget. When a new
+ * entry takes the history over it, the oldest entries in memory are written to
+ * a spill file in their compact binary form and read back only when they are
+ * undone or redone. The entries on disk are always the oldest ones, so the
+ * spill file only grows at its end and loses entries from its start, and it is
+ * compacted once most of it is no longer used. Without a spill file the
+ * oldest entries are dropped instead.
+ *
+ * The history is not thread safe; MusicLibraryService only uses it while
+ * holding its write lock.
+ */
+class CommandHistory {
+
+    private static final long COMPACT_MIN_BYTES = 64 * 1024;
+
+    private final HistoryEntry[] entries;
+    private final long[] entryBytes;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final long byteBudget;
+    private final File spillFile;
+    private RandomAccessFile spill;
+
+    private int head;
+    private int size;
+    private int undoable;
+    private int spilled;
+    private long memoryBytes;
+    private long spillStart;
+    private long spillEnd;
+    private int modCount;
+
+    /**
+     *
+     * Constructs a new empty CommandHistory object.
+     *
+     * @param depth      the largest number of entries kept
+     * @param byteBudget the estimated bytes the entries in memory may take
+     * @param spillFile  the file older entries are moved to, or null to drop
+     *                   them instead; any old content is discarded
+     */
+    CommandHistory(int depth, long byteBudget, String spillFile) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("The history must hold at least one entry");
+        }
+        entries = new HistoryEntry[depth];
+        entryBytes = new long[depth];
+        offsets = new long[depth];
+        lengths = new int[depth];
+        this.byteBudget = byteBudget;
+        this.spillFile = spillFile == null ? null : new File(spillFile);
+    }
+
+    /**
+     *
+     * Records a change that has just been made. Every entry that was undone
+     * and not redone is dropped, as it no longer follows from the library.
+     *
+     * @param entry the change
+     */
+    void record(HistoryEntry entry) {
+        modCount++;
+        truncate(undoable);
+        if (size == entries.length) {
+            dropOldest();
+        }
+        int slot = slot(size);
+        entries[slot] = entry;
+        entryBytes[slot] = entry.estimatedBytes();
+        memoryBytes += entryBytes[slot];
+        size++;
+        undoable = size;
+        // the newest entry stays in memory even if it is over the budget alone
+        while (memoryBytes > byteBudget && spilled < size - 1) {
+            if (spillFile == null || !spillNext()) {
+                dropOldest();
+            }
+        }
+    }
+
+    /**
+     *
+     * Returns the entry the next undo applies, reading it back from the spill
+     * file if it is there.
+     *
+     * @return the newest entry that has not been undone, or null if there is
+     *         nothing to undo
+     */
+    HistoryEntry peekUndo() {
+        return undoable == 0 ? null : get(undoable - 1);
+    }
+
+    /**
+     *
+     * Returns the entry the next redo applies, reading it back from the spill
+     * file if it is there.
+     *
+     * @return the oldest undone entry, or null if there is nothing to redo
+     */
+    HistoryEntry peekRedo() {
+        return undoable == size ? null : get(undoable);
+    }
+
+    /**
+     *
+     * Marks the entry returned by peekUndo as undone.
+     */
+    void undone() {
+        if (undoable == 0) {
+            throw new IllegalStateException("Nothing to undo");
+        }
+        modCount++;
+        undoable--;
+    }
+
+    /**
+     *
+     * Marks the entry returned by peekRedo as redone.
+     */
+    void redone() {
+        if (undoable == size) {
+            throw new IllegalStateException("Nothing to redo");
+        }
+        modCount++;
+        undoable++;
+    }
+
+    /**
+     *
+     * Returns a number that changes whenever the history does, so a caller
+     * can tell whether an entry it peeked at is still the one to apply.
+     *
+     * @return the modification count
+     */
+    int modCount() {
+        return modCount;
+    }
+
+    int undoCount() {
+        return undoable;
+    }
+
+    int redoCount() {
+        return size - undoable;
+    }
+
+    /**
+     *
+     * Describes the entries held and where they are.
+     *
+     * @return a printable summary of the history
+     */
+    String stats() {
+        return String.format("Undo history: %d of %d entries (%d to undo, %d to redo)%n"
+                + "  %d in memory, about %,d of %,d bytes; %d on disk, %,d bytes",
+                size, entries.length, undoable, size - undoable, size - spilled, memoryBytes, byteBudget,
+                spilled, spillEnd - spillStart);
+    }
+
+    /**
+     *
+     * Drops every entry and deletes the spill file.
+     */
+    void close() {
+        truncate(0);
+        head = 0;
+        undoable = 0;
+        if (spill != null) {
+            try {
+                spill.close();
+            } catch (IOException e) {
+                // the file is deleted below anyway
+            }
+            spill = null;
+        }
+        if (spillFile != null) {
+            spillFile.delete();
+        }
+    }
+
+    private HistoryEntry get(int index) {
+        int slot = slot(index);
+        if (index >= spilled) {
+            return entries[slot];
+        }
+        try {
+            byte[] bytes = new byte[lengths[slot]];
+            spill.seek(offsets[slot]);
+            spill.readFully(bytes);
+            return HistoryEntry.readFrom(new DataInputStream(new ByteArrayInputStream(bytes)));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read the undo history from " + spillFile, e);
+        }
+    }
+
+    /**
+     *
+     * Drops the entries from the given index on.
+     */
+    private void truncate(int newSize) {
+        for (int i = newSize; i < size; i++) {
+            int slot = slot(i);
+            if (i >= spilled) {
+                memoryBytes -= entryBytes[slot];
+            }
+            entries[slot] = null;
+        }
+        if (newSize < spilled) {
+            spillEnd = offsets[slot(newSize)];
+            spilled = newSize;
+        }
+        size = Math.min(size, newSize);
+        if (spilled == 0) {
+            spillStart = 0;
+            spillEnd = 0;
+        }
+    }
+
+    private void dropOldest() {
+        int slot = slot(0);
+        if (spilled > 1) {
+            spilled--;
+            spillStart = offsets[slot(1)];
+        } else if (spilled == 1) {
+            spilled = 0;
+            spillStart = 0;
+            spillEnd = 0;
+        } else {
+            memoryBytes -= entryBytes[slot];
+        }
+        entries[slot] = null;
+        head = (head + 1) % entries.length;
+        size--;
+        undoable = Math.max(0, undoable - 1);
+    }
+
+    /**
+     *
+     * Moves the oldest entry still in memory to the end of the spill file.
+     *
+     * @return false if the spill file cannot be written
+     */
+    private boolean spillNext() {
+        int slot = slot(spilled);
+        try {
+            if (spill == null) {
+                spill = new RandomAccessFile(spillFile, "rw");
+                spill.setLength(0);
+            }
+            compactSpill();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            entries[slot].writeTo(new DataOutputStream(bytes));
+            spill.seek(spillEnd);
+            spill.write(bytes.toByteArray());
+            offsets[slot] = spillEnd;
+            lengths[slot] = bytes.size();
+            spillEnd += bytes.size();
+        } catch (IOException e) {
+            return false;
+        }
+        memoryBytes -= entryBytes[slot];
+        entries[slot] = null;
+        spilled++;
+        return true;
+    }
+
+    /**
+     *
+     * Moves the entries on disk to the start of the spill file once the
+     * dropped entries before them take more room than they do.
+     */
+    private void compactSpill() throws IOException {
+        long live = spillEnd - spillStart;
+        if (spillStart < COMPACT_MIN_BYTES || spillStart < live) {
+            return;
+        }
+        byte[] bytes = new byte[(int) live];
+        spill.seek(spillStart);
+        spill.readFully(bytes);
+        spill.seek(0);
+        spill.write(bytes);
+        spill.setLength(live);
+        for (int i = 0; i < spilled; i++) {
+            offsets[slot(i)] -= spillStart;
+        }
+        spillStart = 0;
+        spillEnd = live;
+    }
+
+    private int slot(int index) {
+        return (head + index) % entries.length;
+    }
+}
@@ -0,0 +1,525 @@
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ *
+ * The CompletionTrie class completes the first letters of a title or an
+ * artist to the most played songs that start with them, fast enough to run
+ * on every keystroke.
+ *
+ * The keys are normalized, lowercased with accents and repeated spaces taken
+ * out, and kept in a radix trie: a chain of nodes with one child each is
+ * folded into one node whose label holds all their characters, so the trie
+ * has at most two nodes per key. Every node knows how many songs are below
+ * it, and a node with more than TOP songs below it keeps its TOP most played
+ * ones in order. Completing a prefix is then a walk down as many nodes as the
+ * prefix crosses and a copy of one list, whatever the size of the library.
+ * A node with TOP songs or fewer below it keeps no list, which leaves most
+ * nodes without one, and its few songs are gathered when it is asked for.
+ *
+ * The lists are kept up to date as songs come and go. An added song is
+ * offered to the lists on its path from the bottom up, and once one list
+ * turns it away, the lists above it, whose last songs are at least as
+ * played, would turn it away as well. A removed song is taken out of the
+ * lists that hold it, which are built again from the lists of the children.
+ * A song whose play count went up moves up in the lists the same way an
+ * added song goes in.
+ *
+ * Like SortedSongIndex, a song must be removed before its title, artist or
+ * play count changes and added again afterwards, except that promote may be
+ * called after a play count only went up. The trie is not thread safe.
+ */
+final class CompletionTrie {
+
+    /**
+     *
+     * The number of completions kept at each node, and the most a completion
+     * returns.
+     */
+    static final int TOP = 10;
+
+    private static final char[] NO_LABEL = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final Songs[] NO_SONGS = new Songs[0];
+
+    private final boolean byArtist;
+    private final Node root = new Node(NO_LABEL);
+
+    /**
+     *
+     * Constructs a new CompletionTrie object holding the given songs.
+     *
+     * @param songs    the songs of the library
+     * @param byArtist true to complete artists, false to complete titles
+     */
+    CompletionTrie(Iterable<Songs> songs, boolean byArtist) {
+        this.byArtist = byArtist;
+        for (Songs song : songs) {
+            add(song);
+        }
+    }
+
+    /**
+     *
+     * Adds a song under its title or artist.
+     *
+     * @param song the song to be added
+     */
+    void add(Songs song) {
+        add(normalize(keyOf(song)), song);
+    }
+
+    private void add(String key, Songs song) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        node.size++;
+        path.add(node);
+        int i = 0;
+        while (i < key.length()) {
+            int at = childIndex(node, key.charAt(i));
+            if (at < 0) {
+                Node leaf = new Node(key.substring(i).toCharArray());
+                node.children = insertChild(node.children, -at - 1, leaf);
+                node = leaf;
+                node.size++;
+                path.add(node);
+                break;
+            }
+            Node child = node.children[at];
+            int common = commonPrefix(child.label, key, i);
+            if (common < child.label.length) {
+                // the key leaves the label part way, so the label is split
+                Node split = new Node(Arrays.copyOf(child.label, common));
+                child.label = Arrays.copyOfRange(child.label, common, child.label.length);
+                split.children = new Node[]{child};
+                split.size = child.size;
+                split.top = child.top == null ? null : child.top.clone();
+                node.children[at] = split;
+                child = split;
+            }
+            node = child;
+            node.size++;
+            path.add(node);
+            i += common;
+        }
+        if (node.songCount == node.songs.length) {
+            node.songs = Arrays.copyOf(node.songs, Math.max(1, node.songCount * 2));
+        }
+        node.songs[node.songCount++] = song;
+        for (int k = path.size() - 1; k >= 0; k--) {
+            Node above = path.get(k);
+            if (above.size <= TOP) {
+                continue;
+            }
+            if (above.top == null) {
+                // just grew past TOP songs
+                above.top = best(above);
+            } else if (!offer(above.top, song)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     *
+     * Removes a song.
+     *
+     * @param song the song to be removed
+     * @return true if the song was in the trie
+     */
+    boolean remove(Songs song) {
+        List<Node> path = path(normalize(keyOf(song)));
+        if (path == null) {
+            return false;
+        }
+        Node node = path.get(path.size() - 1);
+        int at = -1;
+        for (int i = 0; i < node.songCount; i++) {
+            if (node.songs[i] == song) {
+                at = i;
+                break;
+            }
+        }
+        if (at < 0) {
+            return false;
+        }
+        node.songs[at] = node.songs[--node.songCount];
+        node.songs[node.songCount] = null;
+        if (node.songCount == 0) {
+            node.songs = NO_SONGS;
+        }
+        for (Node above : path) {
+            above.size--;
+        }
+        for (int k = path.size() - 1; k >= 0; k--) {
+            Node above = path.get(k);
+            if (k > 0 && above.songCount == 0) {
+                Node parent = path.get(k - 1);
+                if (above.children.length == 0) {
+                    parent.children = removeChild(parent.children, above);
+                    continue;
+                }
+                if (above.children.length == 1) {
+                    // no key ends here any more, so the node and its only
+                    // child become one
+                    Node child = above.children[0];
+                    char[] label = Arrays.copyOf(above.label, above.label.length + child.label.length);
+                    System.arraycopy(child.label, 0, label, above.label.length, child.label.length);
+                    above.label = label;
+                    above.children = child.children;
+                    above.songs = child.songs;
+                    above.songCount = child.songCount;
+                }
+            }
+            if (above.size <= TOP) {
+                above.top = null;
+            } else if (indexOf(above.top, song) >= 0) {
+                above.top = best(above);
+            }
+        }
+        return true;
+    }
+
+    /**
+     *
+     * Moves a song up the completions after its play count went up. The song
+     * must not have been removed for the change.
+     *
+     * @param song the song that was played
+     */
+    void promote(Songs song) {
+        List<Node> path = path(normalize(keyOf(song)));
+        if (path == null) {
+            return;
+        }
+        for (int k = path.size() - 1; k >= 0; k--) {
+            Songs[] top = path.get(k).top;
+            if (top == null) {
+                continue;
+            }
+            int at = indexOf(top, song);
+            if (at >= 0) {
+                // the rest of the list is still in order around it
+                while (at > 0 && rank(top[at - 1], song) > 0) {
+                    top[at] = top[at - 1];
+                    at--;
+                }
+                top[at] = song;
+            } else if (!offer(top, song)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     *
+     * Returns the most played songs whose normalized title or artist starts
+     * with the normalized prefix.
+     *
+     * @param prefix the letters typed so far
+     * @param limit  the largest number of songs to return, at most TOP
+     * @return the songs, the most played first
+     */
+    List<Songs> complete(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (!key.isEmpty() && Character.isWhitespace(prefix.charAt(prefix.length() - 1))) {
+            // a space typed after a word only completes to the next word
+            key += ' ';
+        }
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            int at = childIndex(node, key.charAt(i));
+            if (at < 0) {
+                return new ArrayList<>();
+            }
+            Node child = node.children[at];
+            int common = commonPrefix(child.label, key, i);
+            if (i + common < key.length() && common < child.label.length) {
+                return new ArrayList<>();
+            }
+            node = child;
+            i += common;
+        }
+        Songs[] top = node.top != null ? node.top : best(node);
+        int count = Math.min(Math.min(limit, TOP), top.length);
+        List<Songs> completions = new ArrayList<>(count);
+        for (int k = 0; k < count && top[k] != null; k++) {
+            completions.add(top[k]);
+        }
+        return completions;
+    }
+
+    int size() {
+        return root.size;
+    }
+
+    /**
+     *
+     * Describes how many nodes the trie has, how many keep a list and about
+     * how much memory it takes, counting object headers and references as a
+     * 64-bit JVM with compressed references lays them out.
+     *
+     * @return a printable summary of the trie
+     */
+    String stats() {
+        long nodes = 0;
+        long lists = 0;
+        long labels = 0;
+        long bytes = 0;
+        List<Node> pending = new ArrayList<>();
+        pending.add(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.remove(pending.size() - 1);
+            nodes++;
+            labels += node.label.length;
+            // the node, then its label, children, songs and list arrays
+            bytes += 40 + align(16 + 2L * node.label.length);
+            bytes += node.children.length == 0 ? 0 : align(16 + 4L * node.children.length);
+            bytes += node.songs.length == 0 ? 0 : align(16 + 4L * node.songs.length);
+            if (node.top != null) {
+                lists++;
+                bytes += align(16 + 4L * TOP);
+            }
+            pending.addAll(Arrays.asList(node.children));
+        }
+        return String.format("Completions by %s: %,d songs, %,d nodes (%,d keep their top %d), "
+                + "%,d label characters, about %,d bytes, %.1f bytes per song", byArtist ? "artist" : "title",
+                root.size, nodes, lists, TOP, labels, bytes, root.size == 0 ? 0.0 : (double) bytes / root.size);
+    }
+
+    /**
+     *
+     * Puts text in the form keys are compared in: lowercase, without accents
+     * and with every run of spaces made one space.
+     *
+     * @param text the title, artist or prefix
+     * @return the normalized text
+     */
+    static String normalize(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                // split letters from their accents and drop the accents
+                text = Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}", "")
+                        .toLowerCase(Locale.ROOT);
+                break;
+            }
+        }
+        char[] out = new char[text.length()];
+        int length = 0;
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = length > 0;
+                continue;
+            }
+            if (space) {
+                out[length++] = ' ';
+                space = false;
+            }
+            out[length++] = c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        return new String(out, 0, length);
+    }
+
+    /**
+     *
+     * Orders songs the most played first. The rest only makes the order the
+     * same every time; it is written out rather than chained from
+     * Comparator, as it runs for every list a song is offered to.
+     */
+    static int rank(Songs a, Songs b) {
+        if (a.getPlayCount() != b.getPlayCount()) {
+            return a.getPlayCount() > b.getPlayCount() ? -1 : 1;
+        }
+        int order = String.CASE_INSENSITIVE_ORDER.compare(a.getTitle(), b.getTitle());
+        if (order == 0) {
+            order = String.CASE_INSENSITIVE_ORDER.compare(a.getArtist(), b.getArtist());
+        }
+        if (order == 0) {
+            order = a.getTitle().compareTo(b.getTitle());
+        }
+        return order != 0 ? order : a.getArtist().compareTo(b.getArtist());
+    }
+
+    private String keyOf(Songs song) {
+        return byArtist ? song.getArtist() : song.getTitle();
+    }
+
+    /**
+     *
+     * Returns the nodes from the root to the node where a key ends, or null
+     * if no song has the key.
+     */
+    private List<Node> path(String key) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int i = 0;
+        while (i < key.length()) {
+            int at = childIndex(node, key.charAt(i));
+            if (at < 0) {
+                return null;
+            }
+            node = node.children[at];
+            if (commonPrefix(node.label, key, i) < node.label.length) {
+                return null;
+            }
+            path.add(node);
+            i += node.label.length;
+        }
+        return path;
+    }
+
+    /**
+     *
+     * Works out the TOP most played songs below a node from the songs that
+     * end at it and the lists of its children, gathering the songs of a child
+     * too small to keep a list.
+     */
+    private static Songs[] best(Node node) {
+        Songs[] best = new Songs[TOP];
+        int count = 0;
+        for (int i = 0; i < node.songCount; i++) {
+            count = insert(best, count, node.songs[i]);
+        }
+        List<Node> pending = new ArrayList<>(Arrays.asList(node.children));
+        while (!pending.isEmpty()) {
+            Node child = pending.remove(pending.size() - 1);
+            if (child.top != null) {
+                for (Songs song : child.top) {
+                    count = insert(best, count, song);
+                }
+                continue;
+            }
+            for (int i = 0; i < child.songCount; i++) {
+                count = insert(best, count, child.songs[i]);
+            }
+            pending.addAll(Arrays.asList(child.children));
+        }
+        return count == TOP ? best : Arrays.copyOf(best, count);
+    }
+
+    /**
+     *
+     * Puts a song into its place in a full list if it ranks above the last
+     * one, which drops out.
+     */
+    private static boolean offer(Songs[] top, Songs song) {
+        if (rank(song, top[top.length - 1]) >= 0 || indexOf(top, song) >= 0) {
+            return false;
+        }
+        insert(top, top.length - 1, song);
+        return true;
+    }
+
+    /**
+     *
+     * Puts a song into its place among the first count songs of a list,
+     * dropping the last if the list is full, and returns the new count.
+     */
+    private static int insert(Songs[] list, int count, Songs song) {
+        if (count == list.length && rank(song, list[count - 1]) >= 0) {
+            return count;
+        }
+        int at = Math.min(count, list.length - 1);
+        while (at > 0 && rank(list[at - 1], song) > 0) {
+            list[at] = list[at - 1];
+            at--;
+        }
+        list[at] = song;
+        return Math.min(count + 1, list.length);
+    }
+
+    private static int indexOf(Songs[] list, Songs song) {
+        for (int i = 0; i < list.length; i++) {
+            if (list[i] == song) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     *
+     * Finds the child whose label starts with a character by binary search,
+     * returning -(insertion point) - 1 when there is none.
+     */
+    private static int childIndex(Node node, char c) {
+        int low = 0;
+        int high = node.children.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char first = node.children[mid].label[0];
+            if (first < c) {
+                low = mid + 1;
+            } else if (first > c) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -low - 1;
+    }
+
+    private static Node[] insertChild(Node[] children, int at, Node child) {
+        Node[] grown = new Node[children.length + 1];
+        System.arraycopy(children, 0, grown, 0, at);
+        grown[at] = child;
+        System.arraycopy(children, at, grown, at + 1, children.length - at);
+        return grown;
+    }
+
+    private static Node[] removeChild(Node[] children, Node child) {
+        if (children.length == 1) {
+            return NO_CHILDREN;
+        }
+        Node[] shrunk = new Node[children.length - 1];
+        int k = 0;
+        for (Node other : children) {
+            if (other != child) {
+                shrunk[k++] = other;
+            }
+        }
+        return shrunk;
+    }
+
+    private static int commonPrefix(char[] label, String key, int from) {
+        int length = Math.min(label.length, key.length() - from);
+        for (int i = 0; i < length; i++) {
+            if (label[i] != key.charAt(from + i)) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     *
+     * A node of the trie: the characters on the way to it from its parent,
+     * its children in order of their first character, the songs whose key
+     * ends here, and the list of the most played songs below it.
+     */
+    private static final class Node {
+
+        char[] label;
+        Node[] children = NO_CHILDREN;
+        Songs[] songs = NO_SONGS;
+        int songCount;
+        // songs at and below this node
+        int size;
+        Songs[] top;
+
+        Node(char[] label) {
+            this.label = label;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * The DeletedSong class remembers a song that was deleted from the library
+ * together with where it was in each playlist, so undo can put it back
+ * exactly as it was.
+ */
+class DeletedSong {
+
+    private final Songs song;
+    private final Map<String, List<Integer>> playlistPositions;
+
+    /**
+     *
+     * Constructs a new DeletedSong object.
+     *
+     * @param song              the song that was deleted
+     * @param playlistPositions the positions the song was removed from, in
+     *                          ascending order, for each playlist that held it
+     */
+    DeletedSong(Songs song, Map<String, List<Integer>> playlistPositions) {
+        this.song = song;
+        this.playlistPositions = playlistPositions;
+    }
+
+    /**
+     *
+     * Returns the song that was deleted.
+     *
+     * @return the deleted song
+     */
+    Songs getSong() {
+        return song;
+    }
+
+    /**
+     *
+     * Returns the positions the song was removed from in each playlist.
+     *
+     * @return the positions by playlist name
+     */
+    Map<String, List<Integer>> getPlaylistPositions() {
+        return playlistPositions;
+    }
+}
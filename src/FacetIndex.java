@@ -0,0 +1,253 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+
+/**
+ *
+ * The FacetIndex class filters songs by genre, year, artist and rating at the
+ * same time and counts how many of the matching songs have each value, the
+ * way a shop lists the brands and price ranges next to its results.
+ *
+ * Every value of every facet maps to a RoaringBitmap of the IDs of the songs
+ * with that value, plus one bitmap of every indexed song. A filter keeps the
+ * songs that have any of the chosen values of a facet (OR) and that pass
+ * every facet with chosen values (AND), so it is answered with a few bitmap
+ * operations instead of checking every song. Ratings are grouped into whole
+ * stars: bucket 4 holds ratings from 4.0 up to but not including 5.0. A
+ * decade is the range of its years, such as 1990-1999.
+ *
+ * The counts are worked out from the bitmaps, as the size of the AND of the
+ * matches with each value, when the matches are many, and by looking at the
+ * matching songs one by one when they are few, which is cheaper than
+ * visiting the bitmaps of thousands of artists.
+ *
+ * Songs must already have their ID from the SongSearchIndex, and a song must
+ * be removed before any of its facet values change and added back after.
+ */
+final class FacetIndex {
+
+    /**
+     *
+     * The fields a song can be filtered by.
+     */
+    enum Facet {
+        GENRE, YEAR, ARTIST, RATING
+    }
+
+    // counting by the songs is cheaper than by the bitmaps below one match in
+    // this many songs
+    private static final int SCAN_RATIO = 64;
+
+    private final EnumMap<Facet, HashMap<String, RoaringBitmap>> facets = new EnumMap<>(Facet.class);
+    private final RoaringBitmap all = new RoaringBitmap();
+
+    /**
+     *
+     * Constructs a new FacetIndex object holding every song in the list.
+     *
+     * @param songList the songs to be indexed, which must have IDs
+     */
+    FacetIndex(Iterable<Songs> songList) {
+        for (Facet facet : Facet.values()) {
+            facets.put(facet, new HashMap<>());
+        }
+        for (Songs song : songList) {
+            add(song);
+        }
+        all.trimToSize();
+        for (HashMap<String, RoaringBitmap> values : facets.values()) {
+            for (RoaringBitmap bitmap : values.values()) {
+                bitmap.trimToSize();
+            }
+        }
+    }
+
+    /**
+     *
+     * Adds a song under each of its facet values.
+     *
+     * @param song the song to be indexed
+     */
+    void add(Songs song) {
+        if (!all.add(song.getId())) {
+            return;
+        }
+        for (Facet facet : Facet.values()) {
+            HashMap<String, RoaringBitmap> values = facets.get(facet);
+            String value = valueOf(facet, song);
+            RoaringBitmap bitmap = values.get(value);
+            if (bitmap == null) {
+                bitmap = new RoaringBitmap();
+                values.put(value, bitmap);
+            }
+            bitmap.add(song.getId());
+        }
+    }
+
+    /**
+     *
+     * Removes a song from the index. A value no song has any more is dropped.
+     *
+     * @param song the song to be removed
+     */
+    void remove(Songs song) {
+        if (song.getId() < 0 || !all.remove(song.getId())) {
+            return;
+        }
+        for (Facet facet : Facet.values()) {
+            HashMap<String, RoaringBitmap> values = facets.get(facet);
+            String value = valueOf(facet, song);
+            RoaringBitmap bitmap = values.get(value);
+            if (bitmap != null && bitmap.remove(song.getId()) && bitmap.isEmpty()) {
+                values.remove(value);
+            }
+        }
+    }
+
+    /**
+     *
+     * Returns the IDs of the songs that pass a filter.
+     *
+     * @param filter the accepted values of each facet; a facet that is
+     *               missing or has no values accepts every song, and a year
+     *               or rating value such as 1990-1999 accepts the range
+     * @return the matching IDs, which may be a set held by the index and
+     *         must not be changed
+     * @throws NumberFormatException if a range is not made of two whole
+     *                               numbers
+     */
+    RoaringBitmap match(Map<Facet, ? extends Collection<String>> filter) {
+        RoaringBitmap matches = null;
+        for (Map.Entry<Facet, ? extends Collection<String>> entry : filter.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                continue;
+            }
+            HashMap<String, RoaringBitmap> values = facets.get(entry.getKey());
+            boolean numeric = entry.getKey() == Facet.YEAR || entry.getKey() == Facet.RATING;
+            List<RoaringBitmap> accepted = new ArrayList<>();
+            for (String value : entry.getValue()) {
+                int dash = value.indexOf('-', 1);
+                if (numeric && dash > 0) {
+                    // a range stands for every value in it that a song has
+                    int from = Integer.parseInt(value.substring(0, dash).trim());
+                    int to = Integer.parseInt(value.substring(dash + 1).trim());
+                    for (Map.Entry<String, RoaringBitmap> candidate : values.entrySet()) {
+                        int number = Integer.parseInt(candidate.getKey());
+                        if (number >= from && number <= to) {
+                            accepted.add(candidate.getValue());
+                        }
+                    }
+                } else if (values.containsKey(value)) {
+                    accepted.add(values.get(value));
+                }
+            }
+            RoaringBitmap union = accepted.size() == 1 ? accepted.get(0) : RoaringBitmap.or(accepted);
+            matches = matches == null ? union : RoaringBitmap.and(matches, union);
+        }
+        return matches == null ? all : matches;
+    }
+
+    /**
+     *
+     * Counts how many of the matching songs have each value of a facet.
+     *
+     * @param facet   the facet to count
+     * @param matches the IDs returned by match
+     * @param songs   finds a song by its ID
+     * @return the values that at least one match has, with their counts
+     */
+    Map<String, Integer> count(Facet facet, RoaringBitmap matches, IntFunction<Songs> songs) {
+        Map<String, Integer> counts = new HashMap<>();
+        HashMap<String, RoaringBitmap> values = facets.get(facet);
+        if ((long) matches.cardinality() * SCAN_RATIO < all.cardinality()
+                || matches.cardinality() < values.size()) {
+            for (int id : matches.page(0, matches.cardinality())) {
+                counts.merge(valueOf(facet, songs.apply(id)), 1, Integer::sum);
+            }
+        } else {
+            for (Map.Entry<String, RoaringBitmap> entry : values.entrySet()) {
+                int count = RoaringBitmap.andCardinality(matches, entry.getValue());
+                if (count > 0) {
+                    counts.put(entry.getKey(), count);
+                }
+            }
+        }
+        return new TreeMap<>(counts);
+    }
+
+    /**
+     *
+     * Returns the values of a facet that any song has, in order.
+     *
+     * @param facet the facet
+     * @return the values of the facet
+     */
+    List<String> values(Facet facet) {
+        List<String> values = new ArrayList<>(facets.get(facet).keySet());
+        values.sort(facet == Facet.YEAR ? (a, b) -> Integer.compare(Integer.parseInt(a), Integer.parseInt(b))
+                : String.CASE_INSENSITIVE_ORDER);
+        return values;
+    }
+
+    int size() {
+        return all.cardinality();
+    }
+
+    /**
+     *
+     * Returns the facet value of a song: its genre, its year or its artist
+     * as they are, or its rating in whole stars.
+     *
+     * @param facet the facet
+     * @param song  the song
+     * @return the value of the song
+     */
+    static String valueOf(Facet facet, Songs song) {
+        switch (facet) {
+            case GENRE:
+                return song.getGenre();
+            case YEAR:
+                return Integer.toString(song.getYear());
+            case ARTIST:
+                return song.getArtist();
+            default:
+                return Integer.toString((int) Math.floor(song.getRating()));
+        }
+    }
+
+    /**
+     *
+     * Describes how many values each facet has and how much memory the
+     * bitmaps take.
+     *
+     * @return a printable summary of the index
+     */
+    String stats() {
+        StringBuilder out = new StringBuilder();
+        long total = all.sizeInBytes();
+        out.append(String.format("Facet index: %,d songs", all.cardinality()));
+        for (Facet facet : Facet.values()) {
+            long bytes = 0;
+            int flat = 0;
+            int containers = 0;
+            int bitmaps = 0;
+            for (RoaringBitmap bitmap : facets.get(facet).values()) {
+                bytes += bitmap.sizeInBytes();
+                flat += bitmap.isFlat() ? 1 : 0;
+                containers += bitmap.containers();
+                bitmaps += bitmap.bitmapContainers();
+            }
+            total += bytes;
+            out.append(String.format("%n  %s: %,d values (%,d flat), %,d containers (%,d bitmaps), about %,d bytes",
+                    facet.name().toLowerCase(), facets.get(facet).size(), flat, containers, bitmaps, bytes));
+        }
+        out.append(String.format("%n  total about %,d bytes, %.1f bytes per song", total,
+                all.isEmpty() ? 0.0 : (double) total / all.cardinality()));
+        return out.toString();
+    }
+}
@@ -0,0 +1,61 @@
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * The FacetResult class is the answer to a faceted filter: how many songs
+ * matched, one page of them, and how many of the matches have each genre,
+ * year, artist and rating.
+ */
+class FacetResult {
+
+    private final int total;
+    private final List<Songs> songs;
+    private final Map<FacetIndex.Facet, Map<String, Integer>> counts;
+
+    /**
+     *
+     * Constructs a new FacetResult object.
+     *
+     * @param total  the number of matching songs
+     * @param songs  the requested page of the matching songs
+     * @param counts the number of matches with each value, for every facet
+     */
+    FacetResult(int total, List<Songs> songs, Map<FacetIndex.Facet, Map<String, Integer>> counts) {
+        this.total = total;
+        this.songs = songs;
+        this.counts = counts;
+    }
+
+    /**
+     *
+     * Returns the number of songs that matched.
+     *
+     * @return the number of matches
+     */
+    int getTotal() {
+        return total;
+    }
+
+    /**
+     *
+     * Returns the requested page of the matching songs, in the order they
+     * were added to the library.
+     *
+     * @return the songs of the page
+     */
+    List<Songs> getSongs() {
+        return songs;
+    }
+
+    /**
+     *
+     * Returns how many of the matching songs have each value of a facet.
+     *
+     * @param facet the facet
+     * @return the values at least one match has, with their counts
+     */
+    Map<String, Integer> getCounts(FacetIndex.Facet facet) {
+        return counts.get(facet);
+    }
+}
@@ -0,0 +1,319 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ *
+ * The FuzzyIndex class finds the titles or artists that are spelled almost
+ * like a query, so a typo can be answered with "did you mean" instead of
+ * "not found".
+ *
+ * Two terms are as far apart as their Levenshtein distance ignoring case:
+ * the number of characters that have to be inserted, deleted or replaced to
+ * turn one into the other. The terms are kept lowercased in sorted order,
+ * which makes the dictionary a trie in all but name: terms that share a
+ * prefix sit next to each other. A search walks the terms in order and keeps
+ * one row of the distance table per character of the current term, like a
+ * Levenshtein automaton stepping through it, so the rows of a prefix are
+ * worked out once for every term that shares it. As soon as a row shows that
+ * every extension of a prefix is more than the allowed distance away, the
+ * search jumps past all the terms that start with it with one lookup in the
+ * sorted map. A search within two edits therefore looks at the prefixes that
+ * are close to the query and a few characters beyond them, not at every
+ * term.
+ *
+ * Each term is counted once per song that has it, so the index follows the
+ * songs as they are added and deleted, and terms that only differ in case
+ * are kept apart under the same lowercased key.
+ *
+ * The index is not thread safe. Searches may run at the same time as each
+ * other but not while a term is added or removed.
+ */
+final class FuzzyIndex {
+
+    /**
+     *
+     * The largest distance suggestions are looked for within by default.
+     */
+    static final int MAX_DISTANCE = 2;
+
+    private final TreeMap<String, Spelling> terms = new TreeMap<>();
+    private int size;
+
+    /**
+     *
+     * Constructs a new, empty FuzzyIndex object.
+     */
+    FuzzyIndex() {
+    }
+
+    /**
+     *
+     * Constructs a new FuzzyIndex object holding the given terms, each
+     * counted once per time it appears.
+     *
+     * @param terms the terms to be indexed
+     */
+    FuzzyIndex(Iterable<String> terms) {
+        for (String term : terms) {
+            add(term);
+        }
+    }
+
+    /**
+     *
+     * Counts one more song with a term.
+     *
+     * @param term the title or artist of the song
+     */
+    void add(String term) {
+        String key = term.toLowerCase(Locale.ROOT);
+        Spelling first = terms.get(key);
+        for (Spelling spelling = first; spelling != null; spelling = spelling.next) {
+            if (spelling.term.equals(term)) {
+                spelling.count++;
+                return;
+            }
+        }
+        Spelling added = new Spelling(term);
+        added.next = first;
+        // the lowercased key is the term itself for many terms
+        terms.put(key.equals(term) ? term : key, added);
+        size++;
+    }
+
+    /**
+     *
+     * Counts one song fewer with a term, dropping the term with its last
+     * song.
+     *
+     * @param term the title or artist of the song
+     * @return true if the term was in the index
+     */
+    boolean remove(String term) {
+        String key = term.toLowerCase(Locale.ROOT);
+        Spelling previous = null;
+        for (Spelling spelling = terms.get(key); spelling != null; spelling = spelling.next) {
+            if (spelling.term.equals(term)) {
+                if (--spelling.count == 0) {
+                    if (previous != null) {
+                        previous.next = spelling.next;
+                    } else if (spelling.next != null) {
+                        terms.put(key, spelling.next);
+                    } else {
+                        terms.remove(key);
+                    }
+                    size--;
+                }
+                return true;
+            }
+            previous = spelling;
+        }
+        return false;
+    }
+
+    /**
+     *
+     * Returns the number of songs that have exactly a term.
+     *
+     * @param term the term
+     * @return the count of the term
+     */
+    int count(String term) {
+        for (Spelling spelling = terms.get(term.toLowerCase(Locale.ROOT)); spelling != null;
+                spelling = spelling.next) {
+            if (spelling.term.equals(term)) {
+                return spelling.count;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     *
+     * Returns the terms within MAX_DISTANCE of a query, closest first.
+     *
+     * @param query the misspelled term
+     * @param limit the largest number of terms to return
+     * @return the closest terms
+     */
+    List<String> suggest(String query, int limit) {
+        List<String> suggestions = new ArrayList<>();
+        for (Match match : search(query, MAX_DISTANCE, limit)) {
+            suggestions.add(match.term);
+        }
+        return suggestions;
+    }
+
+    /**
+     *
+     * Returns the terms within a distance of a query, ordered by distance,
+     * then by how many songs have them, then by the term ignoring case.
+     *
+     * @param query       the misspelled term
+     * @param maxDistance the largest number of edits allowed
+     * @param limit       the largest number of terms to return
+     * @return the closest terms with their distances
+     */
+    List<Match> search(String query, int maxDistance, int limit) {
+        List<Match> matches = new ArrayList<>();
+        if (terms.isEmpty() || limit <= 0) {
+            return matches;
+        }
+        char[] folded = query.toLowerCase(Locale.ROOT).toCharArray();
+        int n = folded.length;
+        // a prefix more than maxDistance longer than the query is too far
+        // whatever its characters, so no deeper row is ever needed
+        int deepest = n + maxDistance + 1;
+        // rows[p][j] is the distance between the first p characters of the
+        // current term and the first j characters of the query
+        int[][] rows = new int[deepest + 1][n + 1];
+        for (int j = 0; j <= n; j++) {
+            rows[0][j] = j;
+        }
+        String previous = "";
+        // the rows are those of previous up to this depth
+        int valid = 0;
+        Map.Entry<String, Spelling> entry = terms.firstEntry();
+        while (entry != null) {
+            String key = entry.getKey();
+            int end = Math.min(key.length(), deepest);
+            int dead = 0;
+            for (int p = Math.min(valid, commonPrefix(previous, key)) + 1; p <= end; p++) {
+                int[] above = rows[p - 1];
+                int[] row = rows[p];
+                char c = key.charAt(p - 1);
+                row[0] = p;
+                int rowMin = p;
+                for (int j = 1; j <= n; j++) {
+                    int cell = Math.min(above[j - 1] + (c == folded[j - 1] ? 0 : 1),
+                            Math.min(above[j], row[j - 1]) + 1);
+                    row[j] = cell;
+                    rowMin = Math.min(rowMin, cell);
+                }
+                if (rowMin > maxDistance) {
+                    dead = p;
+                    break;
+                }
+            }
+            previous = key;
+            if (dead > 0) {
+                // every term that starts with these characters is too far
+                valid = dead - 1;
+                entry = skip(key.substring(0, dead));
+                continue;
+            }
+            // a term that got here is no longer than deepest
+            valid = end;
+            int distance = rows[end][n];
+            if (distance <= maxDistance) {
+                for (Spelling spelling = entry.getValue(); spelling != null; spelling = spelling.next) {
+                    matches.add(new Match(spelling.term, distance, spelling.count));
+                }
+            }
+            entry = terms.higherEntry(key);
+        }
+        matches.sort(Comparator.comparingInt((Match match) -> match.distance)
+                .thenComparing(match -> -match.count)
+                .thenComparing(match -> match.term, String.CASE_INSENSITIVE_ORDER)
+                .thenComparing(match -> match.term));
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    /**
+     *
+     * Returns the number of distinct terms.
+     *
+     * @return the number of terms
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     *
+     * Describes how many terms the index holds.
+     *
+     * @param name what the terms are, such as "titles"
+     * @return a printable summary of the index
+     */
+    String stats(String name) {
+        long characters = 0;
+        for (String key : terms.keySet()) {
+            characters += key.length();
+        }
+        return String.format("Fuzzy %s: %,d terms under %,d lowercased keys, %.1f characters on average", name,
+                size, terms.size(), terms.isEmpty() ? 0.0 : (double) characters / terms.size());
+    }
+
+    /**
+     *
+     * Returns the first entry after every key that starts with a prefix,
+     * which is the first key from the prefix with its last character raised
+     * by one.
+     */
+    private Map.Entry<String, Spelling> skip(String prefix) {
+        int last = prefix.length() - 1;
+        char c = prefix.charAt(last);
+        if (c == Character.MAX_VALUE) {
+            Map.Entry<String, Spelling> entry = terms.higherEntry(prefix);
+            while (entry != null && entry.getKey().startsWith(prefix)) {
+                entry = terms.higherEntry(entry.getKey());
+            }
+            return entry;
+        }
+        return terms.ceilingEntry(prefix.substring(0, last) + (char) (c + 1));
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    /**
+     *
+     * A term found by a search, with its distance from the query and the
+     * number of songs that have it.
+     */
+    static final class Match {
+
+        final String term;
+        final int distance;
+        final int count;
+
+        Match(String term, int distance, int count) {
+            this.term = term;
+            this.distance = distance;
+            this.count = count;
+        }
+
+        @Override
+        public String toString() {
+            return term + " (" + distance + ")";
+        }
+    }
+
+    /**
+     *
+     * One way of writing a lowercased key, with the number of songs that
+     * write it so. Spellings of the same key that differ in case are chained.
+     */
+    private static final class Spelling {
+
+        final String term;
+        int count = 1;
+        Spelling next;
+
+        Spelling(String term) {
+            this.term = term;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * The GenreLeaderboards class keeps the songs of every genre sorted by play
+ * count and by rating, so the most played and best rated songs of a genre are
+ * read without looking at the rest of the library.
+ *
+ * Each genre has a SortedSongIndex per order, so moving a song after a play
+ * or a change of rating takes O(log n), and the top k songs of a genre take
+ * O(log n + k). The leaderboards of the whole library are the sorted indexes
+ * MusicLibraryService already keeps. A genre's trees are dropped when its last
+ * song leaves it.
+ *
+ * Like SortedSongIndex, a song must be removed before its genre, rating or
+ * play count changes and added again afterwards.
+ */
+final class GenreLeaderboards {
+
+    private final HashMap<String, SortedSongIndex> byPlayCount = new HashMap<>();
+    private final HashMap<String, SortedSongIndex> byRating = new HashMap<>();
+
+    /**
+     *
+     * Constructs a new GenreLeaderboards object holding the given songs.
+     *
+     * @param songs the songs of the library
+     */
+    GenreLeaderboards(Iterable<Songs> songs) {
+        Map<String, List<Songs>> genres = new HashMap<>();
+        for (Songs song : songs) {
+            genres.computeIfAbsent(song.getGenre(), genre -> new ArrayList<>()).add(song);
+        }
+        for (Map.Entry<String, List<Songs>> genre : genres.entrySet()) {
+            byPlayCount.put(genre.getKey(), new SortedSongIndex(SortedSongIndex.Order.PLAY_COUNT, genre.getValue()));
+            byRating.put(genre.getKey(), new SortedSongIndex(SortedSongIndex.Order.RATING, genre.getValue()));
+        }
+    }
+
+    /**
+     *
+     * Adds a song to the leaderboards of its genre.
+     *
+     * @param song the song to be added
+     */
+    void add(Songs song) {
+        byPlayCount.computeIfAbsent(song.getGenre(),
+                genre -> new SortedSongIndex(SortedSongIndex.Order.PLAY_COUNT, new ArrayList<>())).add(song);
+        byRating.computeIfAbsent(song.getGenre(),
+                genre -> new SortedSongIndex(SortedSongIndex.Order.RATING, new ArrayList<>())).add(song);
+    }
+
+    /**
+     *
+     * Removes a song from the leaderboards of its genre.
+     *
+     * @param song the song to be removed
+     */
+    void remove(Songs song) {
+        removePlays(song);
+        SortedSongIndex rating = byRating.get(song.getGenre());
+        if (rating != null && rating.remove(song) && rating.size() == 0) {
+            byRating.remove(song.getGenre());
+        }
+    }
+
+    /**
+     *
+     * Removes a song from the play count leaderboard of its genre only, before
+     * its play count changes.
+     *
+     * @param song the song to be removed
+     */
+    void removePlays(Songs song) {
+        SortedSongIndex plays = byPlayCount.get(song.getGenre());
+        if (plays != null && plays.remove(song) && plays.size() == 0) {
+            byPlayCount.remove(song.getGenre());
+        }
+    }
+
+    /**
+     *
+     * Adds a song back to the play count leaderboard of its genre, after its
+     * play count changed.
+     *
+     * @param song the song to be added
+     */
+    void addPlays(Songs song) {
+        byPlayCount.computeIfAbsent(song.getGenre(),
+                genre -> new SortedSongIndex(SortedSongIndex.Order.PLAY_COUNT, new ArrayList<>())).add(song);
+    }
+
+    /**
+     *
+     * Returns the songs of a genre with the most plays or the highest rating,
+     * highest first.
+     *
+     * @param order PLAY_COUNT or RATING
+     * @param genre the genre
+     * @param count the largest number of songs to return
+     * @return the top songs, which may be fewer than asked for
+     * @throws IllegalArgumentException if the order is not PLAY_COUNT or
+     *                                  RATING
+     */
+    List<Songs> top(SortedSongIndex.Order order, String genre, int count) {
+        SortedSongIndex board;
+        if (order == SortedSongIndex.Order.PLAY_COUNT) {
+            board = byPlayCount.get(genre);
+        } else if (order == SortedSongIndex.Order.RATING) {
+            board = byRating.get(genre);
+        } else {
+            throw new IllegalArgumentException("There is no leaderboard by " + order);
+        }
+        return board == null ? new ArrayList<>() : board.page(0, count, true);
+    }
+
+    /**
+     *
+     * Describes how many genres have leaderboards.
+     *
+     * @return a printable summary of the leaderboards
+     */
+    String stats() {
+        return "Genre leaderboards: " + byPlayCount.size() + " genres by play count, " + byRating.size()
+                + " by rating";
+    }
+}
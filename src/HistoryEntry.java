@@ -0,0 +1,317 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ *
+ * The HistoryEntry class is one change to the library that can be undone and
+ * redone, such as adding a song, deleting a batch of songs or editing a
+ * playlist.
+ *
+ * A change is kept as the list of simple steps it was made of, each of which
+ * has an opposite: adding a song and deleting it, inserting a song into a
+ * playlist at a position and removing it from there, creating a playlist and
+ * deleting it. Redo repeats the steps in order and undo applies their
+ * opposites in reverse order, so deleting a song is recorded as removing it
+ * from each of its playlist positions, last position first, followed by the
+ * delete itself.
+ *
+ * The steps are held in parallel arrays, and an entry can be written to and
+ * read back from a compact binary form when the history moves it to disk.
+ */
+final class HistoryEntry {
+
+    static final byte ADD_SONG = 1;
+    static final byte DELETE_SONG = 2;
+    static final byte INSERT_INTO_PLAYLIST = 3;
+    static final byte REMOVE_FROM_PLAYLIST = 4;
+    static final byte CREATE_PLAYLIST = 5;
+    static final byte DELETE_PLAYLIST = 6;
+
+    private final String label;
+    private byte[] kinds;
+    private Songs[] songs;
+    private String[] playlists;
+    private int[] indexes;
+    private int size;
+
+    /**
+     *
+     * Constructs a new HistoryEntry object without any steps.
+     *
+     * @param label a short description of the change, shown to the user
+     * @param steps the expected number of steps
+     */
+    HistoryEntry(String label, int steps) {
+        this.label = label;
+        int capacity = Math.max(1, steps);
+        kinds = new byte[capacity];
+        songs = new Songs[capacity];
+        playlists = new String[capacity];
+        indexes = new int[capacity];
+    }
+
+    /**
+     *
+     * Adds a step that added a song to the library.
+     *
+     * @param song the song that was added
+     */
+    void songAdded(Songs song) {
+        step(ADD_SONG, song, null, 0);
+    }
+
+    /**
+     *
+     * Adds a step that deleted a song from the library. The song must already
+     * have been removed from its playlists by earlier steps.
+     *
+     * @param song the song that was deleted
+     */
+    void songDeleted(Songs song) {
+        step(DELETE_SONG, song, null, 0);
+    }
+
+    /**
+     *
+     * Adds a step that inserted a song into a playlist.
+     *
+     * @param playlistName the name of the playlist
+     * @param index        the position the song was inserted at
+     * @param song         the song that was inserted
+     */
+    void songInserted(String playlistName, int index, Songs song) {
+        step(INSERT_INTO_PLAYLIST, song, playlistName, index);
+    }
+
+    /**
+     *
+     * Adds a step that removed the song at a position of a playlist.
+     *
+     * @param playlistName the name of the playlist
+     * @param index        the position the song was removed from
+     * @param song         the song that was removed
+     */
+    void songRemoved(String playlistName, int index, Songs song) {
+        step(REMOVE_FROM_PLAYLIST, song, playlistName, index);
+    }
+
+    /**
+     *
+     * Adds a step that created an empty playlist.
+     *
+     * @param playlistName the name of the playlist
+     */
+    void playlistCreated(String playlistName) {
+        step(CREATE_PLAYLIST, null, playlistName, 0);
+    }
+
+    /**
+     *
+     * Adds a step that deleted an empty playlist. The songs of the playlist
+     * must already have been removed by earlier steps.
+     *
+     * @param playlistName the name of the playlist
+     */
+    void playlistDeleted(String playlistName) {
+        step(DELETE_PLAYLIST, null, playlistName, 0);
+    }
+
+    /**
+     *
+     * Returns the step that undoes a step of the given kind.
+     *
+     * @param kind the kind of step
+     * @return the opposite kind of step
+     */
+    static byte opposite(byte kind) {
+        switch (kind) {
+            case ADD_SONG:
+                return DELETE_SONG;
+            case DELETE_SONG:
+                return ADD_SONG;
+            case INSERT_INTO_PLAYLIST:
+                return REMOVE_FROM_PLAYLIST;
+            case REMOVE_FROM_PLAYLIST:
+                return INSERT_INTO_PLAYLIST;
+            case CREATE_PLAYLIST:
+                return DELETE_PLAYLIST;
+            case DELETE_PLAYLIST:
+                return CREATE_PLAYLIST;
+            default:
+                throw new IllegalArgumentException("Unknown step " + kind);
+        }
+    }
+
+    /**
+     *
+     * Returns the short description of the change.
+     *
+     * @return the label of the entry
+     */
+    String getLabel() {
+        return label;
+    }
+
+    /**
+     *
+     * Returns the number of steps in the change.
+     *
+     * @return the number of steps
+     */
+    int size() {
+        return size;
+    }
+
+    // the kind, song, playlist name and position of each step; the song is
+    // null for steps that create or delete a playlist, and the position only
+    // applies to steps that insert into or remove from a playlist
+
+    byte kind(int step) {
+        return kinds[step];
+    }
+
+    Songs song(int step) {
+        return songs[step];
+    }
+
+    String playlist(int step) {
+        return playlists[step];
+    }
+
+    int index(int step) {
+        return indexes[step];
+    }
+
+    /**
+     *
+     * Returns how many songs the change added to the library, less the songs
+     * it deleted.
+     *
+     * @return the change in the number of songs when the entry is redone
+     */
+    int songChange() {
+        int change = 0;
+        for (int i = 0; i < size; i++) {
+            if (kinds[i] == ADD_SONG) {
+                change++;
+            } else if (kinds[i] == DELETE_SONG) {
+                change--;
+            }
+        }
+        return change;
+    }
+
+    /**
+     *
+     * Estimates how much memory the entry keeps alive, counting the songs it
+     * added or deleted as its own, since a deleted song is held by nothing
+     * else.
+     *
+     * @return the estimated size in bytes
+     */
+    long estimatedBytes() {
+        // the object, the label and the four arrays
+        long bytes = 96 + 2L * label.length() + (long) kinds.length * (1 + 4 + 4 + 4);
+        for (int i = 0; i < size; i++) {
+            if (kinds[i] == ADD_SONG || kinds[i] == DELETE_SONG) {
+                bytes += 120 + 2L * (songs[i].getTitle().length() + songs[i].getArtist().length());
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     *
+     * Writes the entry in its binary form.
+     *
+     * @param out the stream to write to
+     * @throws IOException if the entry cannot be written
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeUTF(label);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeByte(kinds[i]);
+            switch (kinds[i]) {
+                case ADD_SONG:
+                case DELETE_SONG:
+                    Songs song = songs[i];
+                    out.writeUTF(song.getTitle());
+                    out.writeUTF(song.getArtist());
+                    out.writeUTF(song.getGenre());
+                    out.writeUTF(song.getAlbum());
+                    out.writeInt(song.getTrackNumber());
+                    out.writeInt(song.getYear());
+                    out.writeDouble(song.getRating());
+                    out.writeInt(song.getPlayCount());
+                    break;
+                case INSERT_INTO_PLAYLIST:
+                case REMOVE_FROM_PLAYLIST:
+                    out.writeUTF(playlists[i]);
+                    out.writeInt(indexes[i]);
+                    out.writeUTF(songs[i].getTitle());
+                    out.writeUTF(songs[i].getArtist());
+                    break;
+                default:
+                    out.writeUTF(playlists[i]);
+            }
+        }
+    }
+
+    /**
+     *
+     * Reads an entry back from its binary form. Songs of playlist steps are
+     * read as keys only, holding just their title and artist.
+     *
+     * @param in the stream to read from
+     * @return the entry
+     * @throws IOException if the entry cannot be read
+     */
+    static HistoryEntry readFrom(DataInputStream in) throws IOException {
+        String label = in.readUTF();
+        int size = in.readInt();
+        HistoryEntry entry = new HistoryEntry(label, size);
+        for (int i = 0; i < size; i++) {
+            byte kind = in.readByte();
+            switch (kind) {
+                case ADD_SONG:
+                case DELETE_SONG:
+                    Songs song = new Songs(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readInt(),
+                            in.readInt(), in.readDouble());
+                    song.setPlayCount(in.readInt());
+                    entry.step(kind, song, null, 0);
+                    break;
+                case INSERT_INTO_PLAYLIST:
+                case REMOVE_FROM_PLAYLIST:
+                    String playlistName = in.readUTF();
+                    int index = in.readInt();
+                    entry.step(kind, new Songs(in.readUTF(), in.readUTF(), "", "", 0, 0, 0), playlistName, index);
+                    break;
+                case CREATE_PLAYLIST:
+                case DELETE_PLAYLIST:
+                    entry.step(kind, null, in.readUTF(), 0);
+                    break;
+                default:
+                    throw new IOException("Unknown step " + kind + " in the undo history");
+            }
+        }
+        return entry;
+    }
+
+    private void step(byte kind, Songs song, String playlistName, int index) {
+        if (size == kinds.length) {
+            int capacity = size * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            songs = Arrays.copyOf(songs, capacity);
+            playlists = Arrays.copyOf(playlists, capacity);
+            indexes = Arrays.copyOf(indexes, capacity);
+        }
+        kinds[size] = kind;
+        songs[size] = song;
+        playlists[size] = playlistName;
+        indexes[size] = index;
+        size++;
+    }
+}
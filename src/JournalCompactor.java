@@ -0,0 +1,133 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ *
+ * The JournalCompactor class folds the mutation journal into fresh snapshots
+ * of the music library and the playlists once the journal has grown past a
+ * size limit.
+ *
+ * Compaction starts a new journal segment and takes a shallow copy of the song
+ * list and playlists on the calling thread, which only copies references. The
+ * snapshot files are then written on a background thread while the
+ * application keeps running, and the old journal segments are deleted once
+ * the snapshots are on disk. Both snapshots are forced to disk and renamed
+ * into place, and the directory holding them is forced too where the
+ * platform allows it, before any segment is deleted, so a crash never leaves
+ * a snapshot that claims a generation whose records are gone.
+ */
+class JournalCompactor {
+
+    private final MutationJournal journal;
+    private final String journalFile;
+    private final String catalogFile;
+    private final String playlistsFile;
+    private final long thresholdBytes;
+    private Thread running;
+
+    /**
+     *
+     * Constructs a new JournalCompactor object.
+     *
+     * @param journal        the journal to be compacted
+     * @param journalFile    the path of the active journal segment
+     * @param catalogFile    the path of the binary catalog snapshot
+     * @param playlistsFile  the path of the playlist snapshot
+     * @param thresholdBytes the journal size that triggers a compaction
+     */
+    JournalCompactor(MutationJournal journal, String journalFile, String catalogFile, String playlistsFile,
+            long thresholdBytes) {
+        this.journal = journal;
+        this.journalFile = journalFile;
+        this.catalogFile = catalogFile;
+        this.playlistsFile = playlistsFile;
+        this.thresholdBytes = thresholdBytes;
+    }
+
+    /**
+     *
+     * Starts a compaction if the journal is over the size limit and no
+     * compaction is already running.
+     *
+     * @param songList        the songs currently in the library
+     * @param playlistLibrary the playlists currently in the library
+     */
+    void compactIfNeeded(CustomLinkedList songList, PlaylistLibrary playlistLibrary) {
+        try {
+            if (journal.size() >= thresholdBytes && (running == null || !running.isAlive())) {
+                compact(songList, playlistLibrary);
+            }
+        } catch (IOException e) {
+            System.out.println("Could not compact the journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     *
+     * Starts a new journal segment and writes snapshots covering the old ones
+     * on a background thread.
+     *
+     * @param songList        the songs currently in the library
+     * @param playlistLibrary the playlists currently in the library
+     * @throws IOException if the journal cannot switch segments
+     */
+    void compact(CustomLinkedList songList, PlaylistLibrary playlistLibrary) throws IOException {
+        awaitIdle();
+        final int generation = journal.rotate();
+
+        final CustomLinkedList songs = new CustomLinkedList();
+        for (Songs song : songList) {
+            songs.add(song);
+        }
+        final PlaylistLibrary playlists = new PlaylistLibrary();
+        for (String playlistName : playlistLibrary.getPlaylistNames()) {
+            playlists.addPlaylist(playlistName, new Playlist(playlistLibrary.getPlaylist(playlistName)));
+        }
+
+        running = new Thread(() -> {
+            try {
+                BinaryCatalog.write(catalogFile, songs, generation);
+                MusicLibraryApp.savePlaylistDataToFile(playlistsFile, playlists, generation);
+                syncDirectory(catalogFile);
+                syncDirectory(playlistsFile);
+                MutationJournal.deleteSegmentsThrough(journalFile, generation);
+            } catch (IOException e) {
+                System.out.println("Could not write snapshot: " + e.getMessage());
+            }
+        }, "journal-compactor");
+        running.start();
+    }
+
+    /**
+     *
+     * Forces the directory holding a file to disk, so that the renaming of a
+     * snapshot reaches the disk before the segments it replaces are deleted.
+     * Some platforms cannot open a directory, in which case this does
+     * nothing.
+     */
+    private static void syncDirectory(String file) {
+        File directory = new File(file).getAbsoluteFile().getParentFile();
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // not supported here; the snapshot itself is already on disk
+        }
+    }
+
+    /**
+     *
+     * Waits for a running compaction to finish.
+     */
+    void awaitIdle() {
+        if (running == null) {
+            return;
+        }
+        try {
+            running.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,895 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ * The LibraryHttpServer class serves a MusicLibraryService as a JSON API over
+ * HTTP, using the HTTP server that comes with the JDK.
+ *
+ * Every request runs on its own virtual thread when the Java runtime has them,
+ * and on a fixed pool of worker threads otherwise. The requests call the
+ * service directly, which lets many of them run at once.
+ *
+ * The endpoints are:
+ *
+ * GET /songs?title=&amp;artist= returns one song, GET /songs?title= the songs
+ * with a title, and GET /songs?offset=&amp;limit= a page of the library in
+ * title order. Adding sort=title, artist, year, rating or play_count pages
+ * through the songs in that order, backwards with order=desc, and
+ * from=&amp;to= for numbers or prefix= for titles and artists limit the page
+ * to a range. A page that may not be the last comes with a next token, which
+ * given as after= returns the page that follows it, even if songs were added
+ * or deleted in between.
+ * POST /songs adds the song in the body, or every song of an array in one
+ * batch. PUT /songs changes the values given in the body of the song with its
+ * title and artist, and DELETE /songs?title=&amp;artist= deletes a song. POST
+ * /songs/delete deletes every song named in an array in one batch.
+ *
+ * POST /undo undoes the last change, or every change with all=true, and POST
+ * /redo makes the last undone change again.
+ *
+ * GET /search?q= finds songs containing the text, or every word with
+ * mode=words.
+ *
+ * GET /playlists lists the playlist names and POST /playlists creates the
+ * playlist named in the body. GET and DELETE /playlists/{name} return and
+ * delete a playlist. POST /playlists/{name}/songs adds the song named in the
+ * body, or every song named in an array, where an entry without an artist
+ * means the first song with its title; titles that are not found are listed
+ * with the songs spelled almost like them. DELETE
+ * /playlists/{name}/songs?title=&amp;artist= removes one. POST
+ * /playlists/{name}/play plays a playlist, adding to the play count of its
+ * songs.
+ *
+ * GET /top?by=plays or by=rating returns the most played or best rated songs,
+ * with genre= for one genre and limit= for how many.
+ *
+ * GET /facets?genre=&amp;year=&amp;artist=&amp;rating= returns the songs that
+ * have any of the values given for each of those fields, where values are
+ * separated by | and years and ratings (in whole stars) may be ranges such as
+ * 1990-1999. The answer holds the number of matches, a page of them set by
+ * offset= and limit=, and for every field the values the matches have with
+ * how many have each, the facet_limit= most common of them.
+ *
+ * GET /suggest?q= returns the songs whose titles are within two typos of
+ * the text, closest first, or with field=artist the artists that are, and
+ * limit= for how many.
+ *
+ * GET /complete?q= completes the first letters of a title to the most
+ * played songs whose titles start with them, ignoring case and accents, or
+ * of an artist with field=artist, with limit= for how many, up to ten.
+ *
+ * POST /plays records a play of the song named in the body, or of every song
+ * named in an array, and answers 202 at once; the plays reach the play counts
+ * and leaderboards with the next flush of the PlayCounter.
+ *
+ * Errors are returned as {"error": "..."} with a matching status code.
+ */
+class LibraryHttpServer {
+
+    private static final int WORKER_THREADS = 64;
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int DEFAULT_FACET_LIMIT = 20;
+    private static final int DEFAULT_SUGGESTIONS = 5;
+
+    static {
+        // the server writes the headers and the body of a response separately,
+        // and with Nagle's algorithm on, each response then waits for the
+        // client's delayed ACK, about 40 ms, on a kept-alive connection
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final MusicLibraryService library;
+    private final PlayCounter plays;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     *
+     * Constructs a new LibraryHttpServer object bound to an address. The
+     * server does not accept requests until it is started.
+     *
+     * @param library the library to serve
+     * @param plays   the counter play events are recorded in, which the
+     *                caller flushes
+     * @param address the address to listen on; port 0 picks a free port
+     * @throws IOException if the address cannot be bound
+     */
+    LibraryHttpServer(MusicLibraryService library, PlayCounter plays, InetSocketAddress address)
+            throws IOException {
+        this.library = library;
+        this.plays = plays;
+        this.server = HttpServer.create(address, 0);
+        this.executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/songs", exchange -> handle(exchange, this::songs));
+        server.createContext("/search", exchange -> handle(exchange, this::search));
+        server.createContext("/undo", exchange -> handle(exchange, this::undo));
+        server.createContext("/redo", exchange -> handle(exchange, this::redo));
+        server.createContext("/playlists", exchange -> handle(exchange, this::playlists));
+        server.createContext("/top", exchange -> handle(exchange, this::top));
+        server.createContext("/plays", exchange -> handle(exchange, this::plays));
+        server.createContext("/facets", exchange -> handle(exchange, this::facets));
+        server.createContext("/suggest", exchange -> handle(exchange, this::suggest));
+        server.createContext("/complete", exchange -> handle(exchange, this::complete));
+    }
+
+    /**
+     *
+     * Starts accepting requests.
+     */
+    void start() {
+        server.start();
+    }
+
+    /**
+     *
+     * Stops accepting requests and waits up to a second for the running ones
+     * to finish.
+     */
+    void stop() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     *
+     * Returns the port the server listens on.
+     *
+     * @return the port number
+     */
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     *
+     * Returns an executor that runs each task on a new virtual thread, or a
+     * fixed pool of daemon threads on a Java runtime without virtual threads.
+     *
+     * @return the executor for requests
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+            // looked up at runtime, as the application is built for Java 8
+            Method virtualThreads = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtualThreads.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newFixedThreadPool(WORKER_THREADS, task -> {
+                Thread thread = new Thread(task, "http-worker-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private Response songs(Request request) {
+        if (request.path.size() == 1 && request.path.get(0).equals("delete")) {
+            return deleteSongs(request);
+        }
+        if (!request.path.isEmpty()) {
+            throw new HttpException(404, "Not found");
+        }
+        switch (request.method) {
+            case "GET":
+                String title = request.query.get("title");
+                String artist = request.query.get("artist");
+                if (title != null && artist != null) {
+                    Songs song = library.getSong(title, artist);
+                    if (song == null) {
+                        throw new HttpException(404, "No song " + title + " by " + artist);
+                    }
+                    return Response.ok(song(new StringBuilder(), song));
+                }
+                if (title != null) {
+                    return Response.ok(songs(new StringBuilder(), library.getSongsByTitle(title)));
+                }
+                return sortedSongs(request);
+            case "POST":
+                Object value = request.jsonValue();
+                if (value instanceof List) {
+                    return addSongs(objects(value));
+                }
+                Songs song = songOf(object(value), null);
+                if (!library.addSong(song)) {
+                    throw new HttpException(409, "The library already has " + song.getTitle() + " by "
+                            + song.getArtist());
+                }
+                return new Response(201, song(new StringBuilder(), song));
+            case "PUT":
+                Map<String, Object> body = request.json();
+                Songs current = library.getSong(text(body, "title", null), text(body, "artist", null));
+                Songs updated = current == null ? null : library.updateSong(songOf(body, current));
+                if (updated == null) {
+                    throw new HttpException(404, "No song " + body.get("title") + " by " + body.get("artist"));
+                }
+                return Response.ok(song(new StringBuilder(), updated));
+            case "DELETE":
+                DeletedSong deleted = library.deleteSong(request.param("title"), request.param("artist"));
+                if (deleted == null) {
+                    throw new HttpException(404, "No song " + request.param("title") + " by "
+                            + request.param("artist"));
+                }
+                StringBuilder result = new StringBuilder("{\"song\":");
+                song(result, deleted.getSong()).append(",\"playlists\":");
+                Json.strings(result, deleted.getPlaylistPositions().keySet());
+                return Response.ok(result.append('}'));
+            default:
+                throw new HttpException(405, "Method not allowed");
+        }
+    }
+
+    private Response addSongs(List<Map<String, Object>> objects) {
+        List<Songs> batch = new ArrayList<>(objects.size());
+        for (Map<String, Object> object : objects) {
+            batch.add(songOf(object, null));
+        }
+        List<Songs> added = library.addSongs(batch);
+        StringBuilder out = new StringBuilder("{\"added\":");
+        songs(out, added).append(",\"skipped\":").append(batch.size() - added.size());
+        return new Response(201, out.append('}'));
+    }
+
+    private Response deleteSongs(Request request) {
+        if (!request.method.equals("POST")) {
+            throw new HttpException(405, "Method not allowed");
+        }
+        List<Map<String, Object>> objects = objects(request.jsonValue());
+        List<Songs> keys = new ArrayList<>(objects.size());
+        for (Map<String, Object> object : objects) {
+            Songs song = library.getSong(text(object, "title", null), text(object, "artist", null));
+            if (song != null) {
+                keys.add(song);
+            }
+        }
+        StringBuilder out = new StringBuilder("{\"deleted\":[");
+        boolean first = true;
+        for (DeletedSong deleted : library.deleteSongs(keys)) {
+            if (!first) {
+                out.append(',');
+            }
+            out.append("{\"song\":");
+            song(out, deleted.getSong()).append(",\"playlists\":");
+            Json.strings(out, deleted.getPlaylistPositions().keySet()).append('}');
+            first = false;
+        }
+        return Response.ok(out.append("]}"));
+    }
+
+    /**
+     *
+     * Returns a page of the songs sorted by title, artist, year, rating or
+     * play count, optionally only those from a range: from= and to= give the
+     * lowest and highest number, both included, and prefix= the first letters
+     * of the title or artist. Without sort= the songs are sorted by title.
+     */
+    private Response sortedSongs(Request request) {
+        SortedSongIndex.Order order;
+        try {
+            order = SortedSongIndex.Order.valueOf(request.query.getOrDefault("sort", "title")
+                    .toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("The parameter sort must be title, artist, year, rating or play_count");
+        }
+        boolean descending = "desc".equals(request.query.get("order"));
+        int offset = request.intParam("offset", 0);
+        int limit = request.intParam("limit", DEFAULT_LIMIT);
+        String token = request.query.get("after");
+        Songs after = token == null ? null : songOfToken(order, token);
+        int total;
+        List<Songs> page;
+        String prefix = request.query.get("prefix");
+        if (order.isNumeric() && (request.query.containsKey("from") || request.query.containsKey("to"))) {
+            double from = request.doubleParam("from", Double.NEGATIVE_INFINITY);
+            double to = request.doubleParam("to", Double.POSITIVE_INFINITY);
+            total = library.countSongsInRange(order, from, to);
+            page = after != null ? library.getSongsInRange(order, from, to, after, limit, descending)
+                    : library.getSongsInRange(order, from, to, offset, limit, descending);
+        } else if (!order.isNumeric() && prefix != null) {
+            total = library.countSongsInRange(order, prefix, prefix);
+            page = after != null ? library.getSongsInRange(order, prefix, prefix, after, limit, descending)
+                    : library.getSongsInRange(order, prefix, prefix, offset, limit, descending);
+        } else {
+            total = library.songCount();
+            page = after != null ? library.getSongsSorted(order, after, limit, descending)
+                    : library.getSongsSorted(order, offset, limit, descending);
+        }
+        StringBuilder out = new StringBuilder();
+        out.append("{\"total\":").append(total);
+        if (after == null) {
+            out.append(",\"offset\":").append(offset);
+        }
+        out.append(",\"next\":");
+        if (page.size() < limit || page.isEmpty()) {
+            out.append("null");
+        } else {
+            Json.string(out, tokenOf(order, page.get(page.size() - 1)));
+        }
+        out.append(",\"songs\":");
+        songs(out, page);
+        return Response.ok(out.append('}'));
+    }
+
+    /**
+     *
+     * Returns the token a sorted page continues after a song with: the
+     * number the song is sorted by, its title and its artist, so the page can
+     * be found again after the song is changed or deleted.
+     */
+    private static String tokenOf(SortedSongIndex.Order order, Songs song) {
+        double number = order == SortedSongIndex.Order.YEAR ? song.getYear()
+                : order == SortedSongIndex.Order.RATING ? song.getRating()
+                : order == SortedSongIndex.Order.PLAY_COUNT ? song.getPlayCount() : 0;
+        String key = number + "\u0000" + song.getTitle() + "\u0000" + song.getArtist();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     *
+     * Returns a song that sorts where the song of a token did, which does not
+     * have to be in the library.
+     */
+    private static Songs songOfToken(SortedSongIndex.Order order, String token) {
+        String[] parts;
+        double number;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\u0000", 3);
+            number = Double.parseDouble(parts[0]);
+        } catch (IllegalArgumentException e) {
+            parts = new String[0];
+            number = 0;
+        }
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("The parameter after must be a next token of an earlier page");
+        }
+        Songs song = new Songs(parts[1], parts[2], "", "", 0,
+                order == SortedSongIndex.Order.YEAR ? (int) number : 0,
+                order == SortedSongIndex.Order.RATING ? number : 0);
+        if (order == SortedSongIndex.Order.PLAY_COUNT) {
+            song.setPlayCount((int) number);
+        }
+        return song;
+    }
+
+    private Response top(Request request) {
+        if (!request.method.equals("GET")) {
+            throw new HttpException(405, "Method not allowed");
+        }
+        String by = request.query.get("by");
+        SortedSongIndex.Order order;
+        if (by == null || by.equals("plays")) {
+            order = SortedSongIndex.Order.PLAY_COUNT;
+        } else if (by.equals("rating")) {
+            order = SortedSongIndex.Order.RATING;
+        } else {
+            throw new IllegalArgumentException("The parameter by must be plays or rating");
+        }
+        List<Songs> top = library.getTopSongs(order, request.query.get("genre"), request.intParam("limit", 10));
+        return Response.ok(songs(new StringBuilder(), top));
+    }
+
+    private Response suggest(Request request) {
+        if (!request.method.equals("GET")) {
+            throw new HttpException(405, "Method not allowed");
+        }
+        String text = request.param("q");
+        int limit = request.intParam("limit", DEFAULT_SUGGESTIONS);
+        String field = request.query.get("field");
+        if (field == null || field.equals("title")) {
+            return Response.ok(songs(new StringBuilder(), library.suggestSongs(text, limit)));
+        }
+        if (field.equals("artist")) {
+            return Response.ok(Json.strings(new StringBuilder(), library.suggestArtists(text, limit)));
+        }
+        throw new IllegalArgumentException("The parameter field must be title or artist");
+    }
+
+    private Response complete(Request request) {
+        if (!request.method.equals("GET")) {
+            throw new HttpException(405, "Method not allowed");
+        }
+        String field = request.query.get("field");
+        if (field != null && !field.equals("title") && !field.equals("artist")) {
+            throw new IllegalArgumentException("The parameter field must be title or artist");
+        }
+        List<Songs> completions = library.completeSongs(request.param("q"), "artist".equals(field),
+                request.intParam("limit", CompletionTrie.TOP));
+        return Response.ok(songs(new StringBuilder(), completions));
+    }
+
+    private Response facets(Request request) {
+        if (!request.method.equals("GET")) {
+            throw new HttpException(405, "Method not allowed");
+        }
+        Map<FacetIndex.Facet, List<String>> filter = new EnumMap<>(FacetIndex.Facet.class);
+        for (FacetIndex.Facet facet : FacetIndex.Facet.values()) {
+            String values = request.query.get(facet.name().toLowerCase(Locale.ROOT));
+            if (values != null) {
+                filter.put(facet, Arrays.asList(values.split("\\|")));
+            }
+        }
+        int offset = request.intParam("offset", 0);
+        FacetResult result;
+        try {
+            result = library.filterSongs(filter, offset, request.intParam("limit", DEFAULT_LIMIT));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Year and rating ranges must look like 1990-1999");
+        }
+        int facetLimit = request.intParam("facet_limit", DEFAULT_FACET_LIMIT);
+        StringBuilder out = new StringBuilder();
+        out.append("{\"total\":").append(result.getTotal()).append(",\"offset\":").append(offset)
+                .append(",\"songs\":");
+        songs(out, result.getSongs()).append(",\"facets\":{");
+        for (FacetIndex.Facet facet : FacetIndex.Facet.values()) {
+            if (facet.ordinal() > 0) {
+                out.append(',');
+            }
+            out.append('"').append(facet.name().toLowerCase(Locale.ROOT)).append("\":{");
+            List<Map.Entry<String, Integer>> counts = new ArrayList<>(result.getCounts(facet).entrySet());
+            // most common first; the counts come in value order, which breaks ties
+            counts.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+            for (int i = 0; i < Math.min(facetLimit, counts.size()); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                Json.string(out, counts.get(i).getKey()).append(':').append(counts.get(i).getValue());
+            }
+            out.append('}');
+        }
+        return Response.ok(out.append("}}"));
+    }
+
+    private Response plays(Request request) {
+        if (!request.method.equals("POST")) {
+            throw new HttpException(405, "Method not allowed");
+        }
+        Object value = request.jsonValue();
+        List<Map<String, Object>> objects = value instanceof List ? objects(value)
+                : Collections.singletonList(object(value));
+        int recorded = 0;
+        List<String> missing = new ArrayList<>();
+        for (Map<String, Object> object : objects) {
+            String title = text(object, "title", null);
+            Songs song = library.getSong(title, text(object, "artist", null));
+            if (song == null) {
+                missing.add(title);
+            } else {
+                plays.record(song);
+                recorded++;
+            }
+        }
+        StringBuilder out = new StringBuilder("{\"recorded\":").append(recorded).append(",\"missing\":");
+        Json.strings(out, missing);
+        return new Response(202, out.append('}'));
+    }
+
+    private Response search(Request request) {
+        if (!request.method.equals("GET")) {
+            throw new HttpException(405, "Method not allowed");
+        }
+        String query = request.param("q");
+        List<Songs> results = "words".equals(request.query.get("mode")) ? library.search(query)
+                : library.searchSubstring(query);
+        return Response.ok(songs(new StringBuilder(), results));
+    }
+
+    private Response undo(Request request) {
+        if (!request.method.equals("POST")) {
+            throw new HttpException(405, "Method not allowed");
+        }
+        if ("true".equals(request.query.get("all"))) {
+            return Response.ok(new StringBuilder("{\"undone\":").append(library.undoAll()).append('}'));
+        }
+        HistoryEntry undone = library.undo();
+        if (undone == null) {
+            throw new HttpException(404, "There is nothing to undo");
+        }
+        return Response.ok(Json.string(new StringBuilder("{\"undone\":"), undone.getLabel()).append('}'));
+    }
+
+    private Response redo(Request request) {
+        if (!request.method.equals("POST")) {
+            throw new HttpException(405, "Method not allowed");
+        }
+        HistoryEntry redone = library.redo();
+        if (redone == null) {
+            throw new HttpException(404, "There is nothing to redo");
+        }
+        return Response.ok(Json.string(new StringBuilder("{\"redone\":"), redone.getLabel()).append('}'));
+    }
+
+    private Response playlists(Request request) {
+        if (request.path.isEmpty()) {
+            switch (request.method) {
+                case "GET":
+                    return Response.ok(Json.strings(new StringBuilder(), library.getPlaylistNames()));
+                case "POST":
+                    String playlistName = text(request.json(), "name", null);
+                    if (!library.createPlaylist(playlistName)) {
+                        throw new HttpException(409, "There already is a playlist called " + playlistName);
+                    }
+                    return new Response(201, Json.string(new StringBuilder("{\"name\":"), playlistName)
+                            .append('}'));
+                default:
+                    throw new HttpException(405, "Method not allowed");
+            }
+        }
+
+        String playlistName = request.path.get(0);
+        if (request.path.size() == 1) {
+            switch (request.method) {
+                case "GET":
+                    List<Songs> playlist = library.getPlaylist(playlistName);
+                    if (playlist == null) {
+                        throw new HttpException(404, "No playlist called " + playlistName);
+                    }
+                    return Response.ok(songs(new StringBuilder(), playlist));
+                case "DELETE":
+                    if (!library.deletePlaylist(playlistName)) {
+                        throw new HttpException(404, "No playlist called " + playlistName);
+                    }
+                    return Response.ok(Json.string(new StringBuilder("{\"deleted\":"), playlistName).append('}'));
+                default:
+                    throw new HttpException(405, "Method not allowed");
+            }
+        }
+        if (request.path.size() == 2 && request.path.get(1).equals("play")) {
+            if (!request.method.equals("POST")) {
+                throw new HttpException(405, "Method not allowed");
+            }
+            List<Songs> played = library.playPlaylist(playlistName);
+            if (played == null) {
+                throw new HttpException(404, "No playlist called " + playlistName);
+            }
+            return Response.ok(songs(new StringBuilder(), played));
+        }
+        if (request.path.size() != 2 || !request.path.get(1).equals("songs")) {
+            throw new HttpException(404, "Not found");
+        }
+        switch (request.method) {
+            case "POST":
+                Object value = request.jsonValue();
+                if (value instanceof List) {
+                    return addSongsToPlaylist(playlistName, objects(value));
+                }
+                Map<String, Object> body = object(value);
+                Songs song = library.getSong(text(body, "title", null), text(body, "artist", null));
+                if (song == null || !library.addSongToPlaylist(playlistName, song)) {
+                    throw new HttpException(404, "No playlist called " + playlistName + " or no song "
+                            + body.get("title") + " by " + body.get("artist"));
+                }
+                return Response.ok(song(new StringBuilder(), song));
+            case "DELETE":
+                Songs toRemove = library.getSong(request.param("title"), request.param("artist"));
+                if (toRemove == null || !library.removeSongFromPlaylist(playlistName, toRemove)) {
+                    throw new HttpException(404, "The playlist " + playlistName + " does not have "
+                            + request.param("title") + " by " + request.param("artist"));
+                }
+                return Response.ok(song(new StringBuilder(), toRemove));
+            default:
+                throw new HttpException(405, "Method not allowed");
+        }
+    }
+
+    private Response addSongsToPlaylist(String playlistName, List<Map<String, Object>> objects) {
+        List<Songs> batch = new ArrayList<>(objects.size());
+        List<String> missing = new ArrayList<>();
+        for (Map<String, Object> object : objects) {
+            String title = text(object, "title", null);
+            Songs song;
+            if (object.get("artist") == null) {
+                List<Songs> withTitle = library.getSongsByTitle(title);
+                song = withTitle.isEmpty() ? null : withTitle.get(0);
+            } else {
+                song = library.getSong(title, text(object, "artist", null));
+            }
+            if (song == null) {
+                missing.add(title);
+            } else {
+                batch.add(song);
+            }
+        }
+        List<Songs> added = library.addSongsToPlaylist(playlistName, batch);
+        if (added == null) {
+            throw new HttpException(404, "No playlist called " + playlistName);
+        }
+        StringBuilder out = new StringBuilder("{\"added\":");
+        songs(out, added).append(",\"missing\":");
+        Json.strings(out, missing);
+        out.append(",\"suggestions\":{");
+        for (int i = 0; i < missing.size(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            Json.string(out, missing.get(i)).append(':');
+            songs(out, library.suggestSongs(missing.get(i), DEFAULT_SUGGESTIONS));
+        }
+        return Response.ok(out.append("}}"));
+    }
+
+    /**
+     *
+     * Runs a route and sends its response, turning exceptions into error
+     * responses.
+     */
+    private void handle(HttpExchange exchange, Route route) throws IOException {
+        Response response;
+        try {
+            response = route.handle(new Request(exchange));
+        } catch (HttpException e) {
+            response = Response.error(e.status, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            response = Response.error(400, e.getMessage());
+        } catch (RuntimeException e) {
+            response = Response.error(500, String.valueOf(e.getMessage()));
+        }
+        byte[] bytes = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     *
+     * Builds a song from a JSON object. Values missing from the object are
+     * taken from the defaults song, or left empty when there is none.
+     */
+    private static Songs songOf(Map<String, Object> object, Songs defaults) {
+        Songs song = new Songs(text(object, "title", null), text(object, "artist", null),
+                text(object, "genre", defaults == null ? "" : defaults.getGenre()),
+                text(object, "album", defaults == null ? "" : defaults.getAlbum()),
+                (int) number(object, "trackNumber", defaults == null ? 0 : defaults.getTrackNumber()),
+                (int) number(object, "year", defaults == null ? 0 : defaults.getYear()),
+                number(object, "rating", defaults == null ? 0 : defaults.getRating()));
+        song.setPlayCount((int) number(object, "playCount", defaults == null ? 0 : defaults.getPlayCount()));
+        return song;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> object(Object value) {
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException("The body must be a JSON object");
+        }
+        return (Map<String, Object>) value;
+    }
+
+    private static List<Map<String, Object>> objects(Object value) {
+        if (!(value instanceof List)) {
+            throw new IllegalArgumentException("The body must be a JSON array");
+        }
+        List<?> array = (List<?>) value;
+        List<Map<String, Object>> objects = new ArrayList<>(array.size());
+        for (Object element : array) {
+            if (!(element instanceof Map)) {
+                throw new IllegalArgumentException("Every element of the array must be a JSON object");
+            }
+            objects.add(object(element));
+        }
+        return objects;
+    }
+
+    /**
+     *
+     * Returns a string field of a JSON object. A field without a default must
+     * be present.
+     */
+    private static String text(Map<String, Object> object, String name, String defaultValue) {
+        Object value = object.get(name);
+        if (value == null && defaultValue != null) {
+            return defaultValue;
+        }
+        if (!(value instanceof String)) {
+            throw new IllegalArgumentException("The field " + name + " must be a string");
+        }
+        return (String) value;
+    }
+
+    private static double number(Map<String, Object> object, String name, double defaultValue) {
+        Object value = object.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!(value instanceof Double)) {
+            throw new IllegalArgumentException("The field " + name + " must be a number");
+        }
+        return (Double) value;
+    }
+
+    private static StringBuilder song(StringBuilder out, Songs song) {
+        out.append("{\"title\":");
+        Json.string(out, song.getTitle()).append(",\"artist\":");
+        Json.string(out, song.getArtist()).append(",\"genre\":");
+        Json.string(out, song.getGenre()).append(",\"album\":");
+        Json.string(out, song.getAlbum()).append(",\"trackNumber\":").append(song.getTrackNumber())
+                .append(",\"year\":").append(song.getYear()).append(",\"rating\":");
+        double rating = song.getRating();
+        out.append(Double.isNaN(rating) || Double.isInfinite(rating) ? "null" : Double.toString(rating));
+        return out.append(",\"playCount\":").append(song.getPlayCount()).append('}');
+    }
+
+    private static StringBuilder songs(StringBuilder out, List<Songs> songs) {
+        out.append('[');
+        for (int i = 0; i < songs.size(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            song(out, songs.get(i));
+        }
+        return out.append(']');
+    }
+
+    /**
+     *
+     * Handles the requests to one context.
+     */
+    private interface Route {
+
+        Response handle(Request request);
+    }
+
+    /**
+     *
+     * The parts of a request the routes need: the method, the decoded path
+     * segments after the context, the query parameters and the body.
+     */
+    private static final class Request {
+
+        final String method;
+        final List<String> path = new ArrayList<>();
+        final Map<String, String> query = new HashMap<>();
+        private final String body;
+
+        Request(HttpExchange exchange) throws IOException {
+            method = exchange.getRequestMethod();
+            String context = exchange.getHttpContext().getPath();
+            String rawPath = exchange.getRequestURI().getRawPath().substring(context.length());
+            if (!rawPath.isEmpty() && !rawPath.startsWith("/")) {
+                throw new HttpException(404, "Not found");
+            }
+            for (String segment : rawPath.split("/")) {
+                if (!segment.isEmpty()) {
+                    path.add(decode(segment));
+                }
+            }
+            String rawQuery = exchange.getRequestURI().getRawQuery();
+            if (rawQuery != null) {
+                for (String pair : rawQuery.split("&")) {
+                    int equals = pair.indexOf('=');
+                    if (equals > 0) {
+                        query.put(decode(pair.substring(0, equals)), decode(pair.substring(equals + 1)));
+                    }
+                }
+            }
+            body = readBody(exchange.getRequestBody());
+        }
+
+        String param(String name) {
+            String value = query.get(name);
+            if (value == null) {
+                throw new IllegalArgumentException("Missing parameter " + name);
+            }
+            return value;
+        }
+
+        int intParam(String name, int defaultValue) {
+            String value = query.get(name);
+            if (value == null) {
+                return defaultValue;
+            }
+            try {
+                return Math.max(0, Integer.parseInt(value));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("The parameter " + name + " must be a number");
+            }
+        }
+
+        double doubleParam(String name, double defaultValue) {
+            String value = query.get(name);
+            if (value == null) {
+                return defaultValue;
+            }
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("The parameter " + name + " must be a number");
+            }
+        }
+
+        Map<String, Object> json() {
+            return object(jsonValue());
+        }
+
+        Object jsonValue() {
+            return Json.parse(body);
+        }
+
+        private static String decode(String text) {
+            try {
+                return URLDecoder.decode(text, "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static String readBody(InputStream in) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, read);
+            }
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     *
+     * A status code with a JSON body.
+     */
+    private static final class Response {
+
+        final int status;
+        final String body;
+
+        Response(int status, CharSequence body) {
+            this.status = status;
+            this.body = body.toString();
+        }
+
+        static Response ok(CharSequence body) {
+            return new Response(200, body);
+        }
+
+        static Response error(int status, String message) {
+            return new Response(status, Json.string(new StringBuilder("{\"error\":"), message).append('}'));
+        }
+    }
+
+    /**
+     *
+     * Ends a request with the given status code and message.
+     */
+    private static final class HttpException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
@@ -1,15 +1,26 @@
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
-import java.util.Stack;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -17,42 +28,141 @@ import java.util.Stack;
  * application for managing a music library and playlists.
  *
  * It allows users to display all songs, add a song, delete a song, search for
- * songs, manage playlists, and undo the last delete operation.
+ * songs, manage playlists, and undo and redo changes to the library.
  *
  * @author S05ad1
  */
 public class MusicLibraryApp {
 
+    /**
+     * The journal size at which it is folded into fresh snapshot files.
+     */
+    private static final long JOURNAL_COMPACTION_BYTES = 4L * 1024 * 1024;
+
+    /**
+     * How long the journal waits to gather more changes into one disk flush.
+     */
+    private static final long JOURNAL_COMMIT_DELAY_MILLIS = 2;
+
+    /**
+     * Marks the line of the playlist file that records its journal generation.
+     */
+    private static final String GENERATION_PREFIX = "#generation=";
+
+    /**
+     * Separates the title of a playlist entry from its artist.
+     */
+    private static final char ARTIST_SEPARATOR = '\t';
+
+    /**
+     * The port the HTTP API listens on when none is given.
+     */
+    private static final int DEFAULT_PORT = 8080;
+
+    /**
+     * The number of changes that can be undone.
+     */
+    private static final int HISTORY_DEPTH = 1000;
+
+    /**
+     * The estimated bytes of undo history kept in memory before older changes
+     * are moved to the history file.
+     */
+    private static final long HISTORY_MEMORY_BYTES = 8L * 1024 * 1024;
+
+    /**
+     * How the search cache chooses the results to drop when it is full.
+     */
+    private static final SearchCache.Policy SEARCH_CACHE_POLICY = SearchCache.Policy.TINY_LFU;
+
+    /**
+     * The estimated bytes of search results kept for repeated searches.
+     */
+    private static final long SEARCH_CACHE_BYTES = 16L * 1024 * 1024;
+
+    /**
+     * The number of lines shown at a time when listing songs or playlists,
+     * until the user asks for another page size.
+     */
+    private static final int BROWSE_PAGE_SIZE = 20;
+
+    /**
+     * The number of songs shown on a leaderboard.
+     */
+    private static final int TOP_SONGS = 10;
+
+    /**
+     * How often the plays recorded through the HTTP API are added to the
+     * library, in milliseconds.
+     */
+    private static final long PLAY_FLUSH_MILLIS = 250;
+
+    /**
+     * The number of songs offered when a title is not found.
+     */
+    private static final int SUGGESTIONS = 5;
+
     /**
      *
-     * The main method that drives the application.
+     * The main method that drives the application. With --serve the library
+     * is served as a JSON API over HTTP on localhost instead of the menu, on
+     * the port given after it or 8080.
      *
-     * @param args Command-line arguments, not used in this application.
+     * @param args Command-line arguments: nothing, or --serve and an optional
+     *             port.
      */
     public static void main(String[] args) {
         CustomLinkedList songList = new CustomLinkedList();
-        HashMap<String, Songs> songMap = new HashMap<>();
+        SongCatalog songMap = new SongCatalog();
         PlaylistLibrary playlistLibrary = new PlaylistLibrary();
-        Stack<Songs> deletedSongs = new Stack<>(); // Create the deletedSongs stack
 
-        // Read music library data from file
+        // Read music library data from the binary catalog, or from the CSV
+        // file the first time the application runs
         String musicLibraryFile = "music_library.txt";
-        readMusicLibraryDataFromFile(musicLibraryFile, songList, songMap);
+        String catalogFile = "music_library.bin";
+        int songGeneration = loadMusicLibrary(catalogFile, musicLibraryFile, songList, songMap);
 
         // Read playlist data from file
         String playlistsFile = "playlists.txt";
-        // readPlaylistDataFromFile(playlistsFile, playlistLibrary, songMap);
+        int playlistGeneration = readPlaylistDataFromFile(playlistsFile, playlistLibrary, songMap);
+
+        // Replay the changes made since the snapshots were written
+        String journalFile = "music_library.journal";
+        MutationJournal journal = openJournal(journalFile, songGeneration, playlistGeneration, songList, songMap,
+                playlistLibrary);
+        JournalCompactor compactor = new JournalCompactor(journal, journalFile, catalogFile, playlistsFile,
+                JOURNAL_COMPACTION_BYTES);
+        // The undo history only lasts as long as the application runs
+        CommandHistory history = new CommandHistory(HISTORY_DEPTH, HISTORY_MEMORY_BYTES, "music_library.history");
+        MusicLibraryService library = new MusicLibraryService(songList, songMap, playlistLibrary, journal, history);
+        library.configureSearchCache(SEARCH_CACHE_POLICY, SEARCH_CACHE_BYTES);
+
+        if (args.length > 0 && args[0].equals("--serve")) {
+            serve(library, compactor, journal, args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT);
+            return;
+        }
 
         Scanner scanner = new Scanner(System.in);
 
         while (true) {
+            library.compactIfNeeded(compactor);
+
             System.out.println("\nChoose an option:");
             System.out.println("1. Display all songs");
             System.out.println("2. Add a song");
             System.out.println("3. Delete a song");
             System.out.println("4. Search for songs");
             System.out.println("5. Manage playlists");
-            System.out.println("6. Undo last delete");
+            System.out.println("6. Undo last change");
+            System.out.println("7. Show index statistics");
+            System.out.println("8. Import songs from a CSV file");
+            System.out.println("9. Export songs to a CSV file");
+            System.out.println("10. Redo last undone change");
+            System.out.println("11. Undo all changes");
+            System.out.println("12. Browse songs by title, artist, year, rating or play count");
+            System.out.println("13. Show the most played and best rated songs");
+            System.out.println("14. Filter songs by genre, decade, artist and rating");
+            System.out.println("15. Complete a title or artist from its first letters");
             System.out.println("0. Exit");
 
             int option = scanner.nextInt();
@@ -60,34 +170,79 @@ public class MusicLibraryApp {
             switch (option) {
                 case 1:
                     // Display all songs
-                    displaySongs(songList, songMap);
+                    displaySongs(scanner, library);
                     break;
                 case 2:
                     // Add a song
-                    addSong(scanner, songList, songMap);
+                    addSong(scanner, library);
                     break;
                 case 3:
                     // Delete a song
-                    deleteSong(scanner, songList, songMap, deletedSongs); // Pass the deletedSongs stack to the
-                                                                          // deleteSong method
+                    deleteSong(scanner, library);
                     break;
                 case 4:
                     // Search for songs
-                    searchSongs(scanner, songList, songMap);
+                    searchSongs(scanner, library);
                     break;
                 case 5:
                     // Manage playlists
-                    managePlaylists(scanner, playlistLibrary, songMap);
+                    managePlaylists(scanner, library);
                     break;
                 case 6:
-                    // Undo last delete
-                    undoDelete(deletedSongs, songList, songMap);
+                    // Undo last change
+                    undo(library);
+                    break;
+                case 7:
+                    // Show index statistics
+                    System.out.println(library.stats());
+                    System.out.println(SymbolTable.LIBRARY.stats());
+                    break;
+                case 8:
+                    // Import songs from a CSV file
+                    importSongs(scanner, library);
+                    break;
+                case 9:
+                    // Export songs to a CSV file
+                    System.out.println("Enter file name to export to:");
+                    scanner.nextLine(); // Consume newline character
+                    saveMusicLibraryDataToFile(scanner.nextLine(), library.getSongs());
+                    break;
+                case 10:
+                    // Redo last undone change
+                    redo(library);
+                    break;
+                case 11:
+                    // Undo all changes
+                    System.out.println(library.undoAll() + " changes have been undone!");
+                    break;
+                case 12:
+                    // Browse songs in order
+                    browseSongs(scanner, library);
+                    break;
+                case 13:
+                    // Show the leaderboards
+                    showTopSongs(scanner, library);
+                    break;
+                case 14:
+                    // Filter songs by their facets
+                    filterSongs(scanner, library);
+                    break;
+                case 15:
+                    // Complete titles and artists as they are typed
+                    completeSongs(scanner, library);
                     break;
                 case 0:
                     // Exit
+                    // Every change is already in the journal, so only the
+                    // last records need to reach the disk
                     System.out.println("Saving and exiting...");
-                    saveMusicLibraryDataToFile(musicLibraryFile, songList);
-                    savePlaylistDataToFile(playlistsFile, playlistLibrary);
+                    library.closeHistory();
+                    compactor.awaitIdle();
+                    try {
+                        journal.close();
+                    } catch (IOException e) {
+                        System.out.println("Could not save the journal: " + e.getMessage());
+                    }
                     System.exit(0);
                 default:
                     System.out.println("Invalid option. Please choose a valid option.");
@@ -99,29 +254,252 @@ public class MusicLibraryApp {
 
     /**
      *
-     * Reads the music library data from a file and populates the song list and
-     * song map.
+     * Serves the library as a JSON API over HTTP until the process is stopped,
+     * compacting the journal in the background as it grows and adding the
+     * plays recorded through the API to the library a few times a second.
+     * Stopping the process flushes the last plays and closes the journal.
      *
-     * @param musicLibraryFile The path of the music library file.
+     * @param library   The library to serve.
+     * @param compactor The compactor of the journal.
+     * @param journal   The journal the changes are recorded in.
+     * @param port      The port to listen on.
+     */
+    private static void serve(MusicLibraryService library, JournalCompactor compactor, MutationJournal journal,
+            int port) {
+        PlayCounter plays = new PlayCounter(library);
+        LibraryHttpServer server;
+        try {
+            server = new LibraryHttpServer(library, plays, new InetSocketAddress("127.0.0.1", port));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not listen on port " + port, e);
+        }
+        ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "journal-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenance.scheduleWithFixedDelay(() -> library.compactIfNeeded(compactor), 1, 1, TimeUnit.SECONDS);
+        maintenance.scheduleWithFixedDelay(plays::flush, PLAY_FLUSH_MILLIS, PLAY_FLUSH_MILLIS,
+                TimeUnit.MILLISECONDS);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            maintenance.shutdown();
+            try {
+                maintenance.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // the plays recorded since the last flush
+            plays.flush();
+            library.closeHistory();
+            compactor.awaitIdle();
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.out.println("Could not save the journal: " + e.getMessage());
+            }
+        }, "shutdown"));
+        server.start();
+        System.out.println("Serving the music library on http://127.0.0.1:" + server.getPort() + "/");
+    }
+
+    /**
+     *
+     * Loads the music library from the binary catalog file. If there is no
+     * catalog yet, the songs are read from the CSV file instead and written
+     * to a new catalog, so the conversion only happens once.
+     *
+     * @param catalogFile      The path of the binary catalog file.
+     * @param musicLibraryFile The path of the CSV music library file.
      * @param songList         The custom linked list where song data will be
      *                         stored.
-     * @param songMap          The hash map where song data will be stored with the
-     *                         song
-     *                         title as the key.
-     */
-    private static void readMusicLibraryDataFromFile(String musicLibraryFile, CustomLinkedList songList,
-            HashMap<String, Songs> songMap) {
-        // Implement logic to read music library data from the file
-        try (BufferedReader br = new BufferedReader(new FileReader(musicLibraryFile))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] songData = line.split(",");
-                Songs song = new Songs(songData[0], songData[1], songData[2], songData[3],
-                        Integer.parseInt(songData[4]), Integer.parseInt(songData[5]), Double.parseDouble(songData[6]));
-                songList.add(song);
-                songMap.put(song.getTitle(), song);
+     * @param songMap          The catalog where song data will be stored by
+     *                         title and artist.
+     * @return The journal generation the loaded songs cover.
+     */
+    private static int loadMusicLibrary(String catalogFile, String musicLibraryFile, CustomLinkedList songList,
+            SongCatalog songMap) {
+        if (new File(catalogFile).exists()) {
+            try {
+                return BinaryCatalog.read(catalogFile, songList, songMap);
+            } catch (IOException e) {
+                System.out.println("Could not read " + catalogFile + ": " + e.getMessage());
+                System.out.println("Falling back to " + musicLibraryFile + ".");
+            }
+        }
+        readMusicLibraryDataFromFile(musicLibraryFile, songList, songMap);
+        saveCatalog(catalogFile, songList);
+        return 0;
+    }
+
+    /**
+     *
+     * Replays the journal over the loaded snapshots and opens it for new
+     * changes.
+     *
+     * @param journalFile        The path of the active journal segment.
+     * @param songGeneration     The journal generation the song snapshot covers.
+     * @param playlistGeneration The journal generation the playlist snapshot
+     *                           covers.
+     * @param songList           The custom linked list holding the songs.
+     * @param songMap            The catalog holding the songs.
+     * @param playlistLibrary    The library holding the playlists.
+     * @return The journal, ready for appending.
+     */
+    private static MutationJournal openJournal(String journalFile, int songGeneration, int playlistGeneration,
+            CustomLinkedList songList, SongCatalog songMap, PlaylistLibrary playlistLibrary) {
+        MutationJournal.Replayer replayer = new MutationJournal.Replayer() {
+            @Override
+            public void addSong(Songs song) {
+                if (songMap.add(song)) {
+                    songList.add(song);
+                }
             }
+
+            @Override
+            public void deleteSong(String title, String artist) {
+                Songs song = songMap.get(title, artist);
+                if (song != null) {
+                    songList.remove(song);
+                    songMap.remove(song);
+                    playlistLibrary.removeSongFromAllPlaylists(song);
+                }
+            }
+
+            @Override
+            public void createPlaylist(String playlistName) {
+                playlistLibrary.addPlaylist(playlistName, new Playlist());
+            }
+
+            @Override
+            public void addToPlaylist(String playlistName, String songTitle, String songArtist) {
+                Songs song = lookUpSong(songMap, songTitle, songArtist);
+                if (song != null) {
+                    playlistLibrary.addSongToPlaylist(playlistName, song);
+                }
+            }
+
+            @Override
+            public void removeFromPlaylist(String playlistName, String songTitle, String songArtist) {
+                Songs song = lookUpSong(songMap, songTitle, songArtist);
+                if (song != null) {
+                    playlistLibrary.removeSongFromPlaylist(playlistName, song);
+                }
+            }
+
+            @Override
+            public void insertIntoPlaylist(String playlistName, int index, String songTitle, String songArtist) {
+                Songs song = songMap.get(songTitle, songArtist);
+                if (song != null) {
+                    playlistLibrary.insertSongIntoPlaylist(playlistName, index, song);
+                }
+            }
+
+            @Override
+            public void removeFromPlaylistAt(String playlistName, int index, String songTitle, String songArtist) {
+                Songs song = songMap.get(songTitle, songArtist);
+                if (song != null) {
+                    playlistLibrary.removeSongFromPlaylistAt(playlistName, index, song);
+                }
+            }
+
+            @Override
+            public void deletePlaylist(String playlistName) {
+                playlistLibrary.removePlaylist(playlistName);
+            }
+
+            @Override
+            public void updateSong(Songs song) {
+                Songs current = songMap.get(song.getTitle(), song.getArtist());
+                if (current != null) {
+                    current.setDetails(song);
+                }
+            }
+        };
+
+        try {
+            int lastGeneration = MutationJournal.replay(journalFile, songGeneration, playlistGeneration, replayer);
+            return new MutationJournal(journalFile, lastGeneration + 1, JOURNAL_COMMIT_DELAY_MILLIS);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not open the journal " + journalFile, e);
+        }
+    }
+
+    /**
+     *
+     * Writes the songs to the binary catalog file.
+     *
+     * @param catalogFile The path of the binary catalog file.
+     * @param songList    The songs to be saved.
+     */
+    private static void saveCatalog(String catalogFile, CustomLinkedList songList) {
+        try {
+            BinaryCatalog.write(catalogFile, songList);
+            System.out.println("Music library data saved to file.");
         } catch (IOException e) {
+            System.out.println("Could not save " + catalogFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     *
+     * Reads songs from a CSV file chosen by the user and adds them to the
+     * library.
+     *
+     * @param scanner The Scanner object used for reading user input.
+     * @param library The library the songs will be added to.
+     */
+    private static void importSongs(Scanner scanner, MusicLibraryService library) {
+        System.out.println("Enter file name to import from:");
+        scanner.nextLine(); // Consume newline character
+        String fileName = scanner.nextLine();
+
+        CustomLinkedList imported = new CustomLinkedList();
+        readMusicLibraryDataFromFile(fileName, imported, new SongCatalog());
+        List<Songs> songs = new ArrayList<>(imported.size());
+        for (Songs song : imported) {
+            songs.add(song);
+        }
+        int added = library.addSongs(songs).size();
+        System.out.println(added + " songs imported.");
+        if (added < imported.size()) {
+            System.out.println((imported.size() - added) + " songs were already in the library.");
+        }
+    }
+
+    /**
+     *
+     * Reads the music library data from a CSV file and populates the song list
+     * and song catalog. Large files are parsed on every core. Malformed rows
+     * are skipped and reported with their line numbers, and songs whose title
+     * and artist are already in the catalog are skipped and counted.
+     *
+     * @param musicLibraryFile The path of the music library file.
+     * @param songList         The custom linked list where song data will be
+     *                         stored.
+     * @param songMap          The catalog where song data will be stored by
+     *                         title and artist.
+     */
+    static void readMusicLibraryDataFromFile(String musicLibraryFile, CustomLinkedList songList,
+            SongCatalog songMap) {
+        ParallelCatalogLoader reader = new ParallelCatalogLoader(Runtime.getRuntime().availableProcessors());
+        try {
+            reader.load(musicLibraryFile, songList, songMap);
+        } catch (NoSuchFileException e) {
+            // nothing to read yet
+        } catch (IOException e) {
+            System.out.println("Could not read " + musicLibraryFile + ": " + e.getMessage());
+        }
+        if (reader.getErrorCount() > 0) {
+            System.out.println("Skipped " + reader.getErrorCount() + " malformed rows in " + musicLibraryFile + ":");
+            for (String error : reader.getErrors()) {
+                System.out.println("  " + error);
+            }
+        }
+        if (reader.getDuplicateCount() > 0) {
+            System.out.println("Skipped " + reader.getDuplicateCount() + " duplicate songs in " + musicLibraryFile
+                    + ".");
         }
     }
 
@@ -133,40 +511,54 @@ public class MusicLibraryApp {
      * @param playlistsFile   The path of the playlist data file.
      * @param playlistLibrary The PlaylistLibrary object where the playlist data
      *                        will be stored.
-     * @param songMap         The hash map where song data will be updated with the
-     *                        songs in the playlists.
+     * @param songMap         The catalog the songs in the playlists are looked
+     *                        up in.
+     * @return The journal generation the playlist file covers.
      */
-    private static void readPlaylistDataFromFile(String playlistsFile, PlaylistLibrary playlistLibrary,
-            HashMap<String, Songs> songMap) {
+    private static int readPlaylistDataFromFile(String playlistsFile, PlaylistLibrary playlistLibrary,
+            SongCatalog songMap) {
         // Implement logic to read playlist data from the file
+        int generation = 0;
         try (BufferedReader br = new BufferedReader(new FileReader(playlistsFile))) {
             String line;
             while ((line = br.readLine()) != null) {
+                if (line.startsWith(GENERATION_PREFIX)) {
+                    generation = Integer.parseInt(line.substring(GENERATION_PREFIX.length()).trim());
+                    continue;
+                }
+                if (line.isEmpty()) {
+                    continue;
+                }
                 String[] playlistData = line.split(",");
                 String playlistName = playlistData[0];
-                CustomLinkedList playlist = new CustomLinkedList();
+                Playlist playlist = new Playlist();
                 for (int i = 1; i < playlistData.length; i++) {
-                    Songs song = songMap.get(playlistData[i]);
+                    // entries written before playlists recorded the artist
+                    // only hold the title
+                    int separator = playlistData[i].indexOf(ARTIST_SEPARATOR);
+                    Songs song = separator < 0 ? lookUpSong(songMap, playlistData[i], null)
+                            : songMap.get(playlistData[i].substring(0, separator),
+                                    playlistData[i].substring(separator + 1));
                     if (song != null) {
-                        playlist.add(song);
+                        playlist.addSong(song);
                     }
                 }
                 playlistLibrary.addPlaylist(playlistName, playlist);
             }
         } catch (IOException e) {
         }
+        return generation;
     }
 
     /**
      *
-     * Adds a new song to the song list and song map.
+     * Adds a new song to the library, unless the library already has a song
+     * with the same title and artist.
      *
-     * @param scanner  The Scanner object used for reading user input.
-     * @param songList The custom linked list where the new song will be added.
-     * @param songMap  The hash map where the new song will be added with the
-     *                 song title as the key.
+     * @param scanner The Scanner object used for reading user input.
+     * @param library The library the new song will be added to.
      */
-    private static void addSong(Scanner scanner, CustomLinkedList songList, HashMap<String, Songs> songMap) {
+    private static void addSong(Scanner scanner, MusicLibraryService library) {
         System.out.println("Enter song title:");
         String title = scanner.next();
 
@@ -179,6 +571,9 @@ public class MusicLibraryApp {
         System.out.println("Enter song album:");
         String album = scanner.next();
 
+        System.out.println("Enter song track number:");
+        int trackNumber = scanner.nextInt();
+
         System.out.println("Enter song year:");
         int year = scanner.nextInt();
 
@@ -188,131 +583,169 @@ public class MusicLibraryApp {
         System.out.println("Enter song rating:");
         double rating = scanner.nextDouble();
 
-        Songs song = new Songs(title, artist, genre, album, year, playCount, rating);
-        songList.add(song);
-        songMap.put(title, song);
+        Songs song = new Songs(title, artist, genre, album, trackNumber, year, rating);
+        song.setPlayCount(playCount);
+        if (!library.addSong(song)) {
+            System.out.println("The library already has " + title + " by " + artist + ".");
+        }
     }
 
     /**
      *
-     * Deletes a song from the song list and song map, and pushes the deleted
-     * song onto the deletedSongs stack.
+     * Deletes a song from the library, which keeps it so the delete can be
+     * undone. The song is also removed from every playlist that holds it, and
+     * its positions there are kept with it. If several artists have a song
+     * with the given title, the user is asked which one to delete.
      *
-     * @param scanner      The Scanner object used for reading user input.
-     * @param songList     The custom linked list from which the song will be
-     *                     removed.
-     * @param songMap      The hash map from which the song will be removed.
-     * @param deletedSongs The stack where the deleted song will be pushed for
-     *                     potential undo operation.
+     * @param scanner The Scanner object used for reading user input.
+     * @param library The library the song will be deleted from.
      */
-    private static void deleteSong(Scanner scanner, CustomLinkedList songList, HashMap<String, Songs> songMap,
-            Stack<Songs> deletedSongs) {
+    private static void deleteSong(Scanner scanner, MusicLibraryService library) {
         System.out.println("Enter song title to delete:");
         scanner.nextLine(); // Consume newline character
         String titleToDelete = scanner.nextLine();
 
-        if (!songMap.containsKey(titleToDelete)) {
+        Songs songToDelete = findSong(scanner, library, titleToDelete);
+        if (songToDelete == null) {
+            songToDelete = suggestSong(scanner, library, titleToDelete);
+        }
+        DeletedSong deleted = songToDelete == null ? null
+                : library.deleteSong(songToDelete.getTitle(), songToDelete.getArtist());
+        if (deleted == null) {
             System.out.println("Could not find song to delete.");
             return;
         }
-
-        try {
-            // Find song in LinkedList and remove it
-            Songs deletedSong = songMap.get(titleToDelete);
-            boolean removedFromLinkedList = songList.remove(deletedSong);
-
-            // Remove song from HashMap
-            Songs removedSongFromHashMap = songMap.remove(titleToDelete);
-
-            if (removedFromLinkedList && removedSongFromHashMap != null) {
-                // Push the deleted song onto the stack
-                deletedSongs.push(deletedSong);
-                System.out.println("Song successfully deleted.");
-            } else {
-                System.out.println("Could not delete song.");
-            }
-        } catch (Exception e) {
-            System.out.println("An error occurred while deleting the song.");
+        System.out.println("Song successfully deleted.");
+        if (!deleted.getPlaylistPositions().isEmpty()) {
+            System.out.println("It was also removed from " + deleted.getPlaylistPositions().size() + " playlists.");
         }
     }
 
     /**
      *
-     * This method adds the last deleted song back to the songList and songMap
+     * This method undoes the last change to the library that has not been
+     * undone yet, such as adding or deleting songs or editing a playlist.
+     * Deleted songs are put back where they were in each playlist that held
+     * them.
      *
-     * @param deletedSongs a stack containing deleted songs
+     * @param library the library the change will be undone in
+     */
+    private static void undo(MusicLibraryService library) {
+        HistoryEntry undone = library.undo();
+        if (undone == null) {
+            System.out.println("There is nothing to undo!");
+        } else {
+            System.out.println("Undone: " + undone.getLabel());
+        }
+    }
+
+    /**
      *
-     * @param songList     a linked list of all songs
+     * This method makes the last undone change again, as long as no other
+     * change has been made since.
      *
-     * @param songMap      a hashmap of all songs
+     * @param library the library the change will be redone in
      */
-    private static void undoDelete(Stack<Songs> deletedSongs, CustomLinkedList songList,
-            HashMap<String, Songs> songMap) {
-
-        /**
-         *
-         * This method first checks if the deletedSongs stack is empty. If there
-         * are no songs in the stack, it prints a message and returns from the
-         * method. Otherwise, it retrieves the last deleted song from the stack
-         * using the pop method. It then adds the song back to the songList
-         * using the add method and to the songMap using the put method.
-         * Finally, it prints a message to indicate that the song has been
-         * restored.
-         */
-        if (deletedSongs.empty()) {
-            System.out.println("No songs have been deleted yet!");
-            return;
+    private static void redo(MusicLibraryService library) {
+        HistoryEntry redone = library.redo();
+        if (redone == null) {
+            System.out.println("There is nothing to redo!");
+        } else {
+            System.out.println("Redone: " + redone.getLabel());
         }
+    }
 
-        // Retrieve the last deleted song from the stack
-        Songs lastDeleted = deletedSongs.pop();
-
-        // Add the song back to the songList and songMap data structures
-        songList.add(lastDeleted);
-        songMap.put(lastDeleted.getTitle(), lastDeleted);
+    /**
+     *
+     * Finds the song with the given title. If several artists have a song with
+     * that title, the user is asked which artist they mean.
+     *
+     * @param scanner the Scanner object used for reading user input
+     * @param library the library of all songs
+     * @param title   the title of the song
+     * @return the song, or null if there is no such song
+     */
+    private static Songs findSong(Scanner scanner, MusicLibraryService library, String title) {
+        List<Songs> matches = library.getSongsByTitle(title);
+        if (matches.size() <= 1) {
+            return matches.isEmpty() ? null : matches.get(0);
+        }
+        System.out.println("There are " + matches.size() + " songs called " + title + ". Enter the artist:");
+        for (Songs song : matches) {
+            System.out.println("- " + song.getArtist());
+        }
+        return library.getSong(title, scanner.nextLine());
+    }
 
-        System.out.println("Song " + lastDeleted.getTitle() + " has been restored!");
+    /**
+     *
+     * Offers the songs whose titles are spelled almost like a title that was
+     * not found and lets the user pick one of them.
+     *
+     * @param scanner the Scanner object used for reading user input
+     * @param library the library of all songs
+     * @param title   the title that was not found
+     * @return the chosen song, or null if there was nothing close or the user
+     *         chose none
+     */
+    private static Songs suggestSong(Scanner scanner, MusicLibraryService library, String title) {
+        List<Songs> suggestions = library.suggestSongs(title, SUGGESTIONS);
+        if (suggestions.isEmpty()) {
+            return null;
+        }
+        System.out.println("No song is called " + title + ". Did you mean:");
+        for (int i = 0; i < suggestions.size(); i++) {
+            Songs song = suggestions.get(i);
+            System.out.println((i + 1) + ". " + song.getTitle() + " by " + song.getArtist());
+        }
+        System.out.println("Enter the number of the song, or 0 for none:");
+        try {
+            int choice = Integer.parseInt(scanner.nextLine().trim());
+            return choice >= 1 && choice <= suggestions.size() ? suggestions.get(choice - 1) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 
     /**
      *
-     * This method searches for songs in the songList and songMap that match the
-     * search query.
+     * Looks up a song recorded in a saved playlist or the journal. Entries
+     * written before the artist was recorded are matched on the title alone,
+     * taking the first song with that title.
      *
-     * @param scanner  a Scanner object to read input from the user
+     * @param songMap the catalog of all songs
+     * @param title   the title of the song
+     * @param artist  the artist of the song, or null if it was not recorded
+     * @return the song, or null if there is no such song
+     */
+    private static Songs lookUpSong(SongCatalog songMap, String title, String artist) {
+        if (artist != null) {
+            return songMap.get(title, artist);
+        }
+        List<Songs> matches = songMap.getByTitle(title);
+        return matches.isEmpty() ? null : matches.get(0);
+    }
+
+    /**
+     *
+     * This method searches for songs whose title, artist, genre or album
+     * contain the search query.
      *
-     * @param songList a linked list of all songs
+     * @param scanner     a Scanner object to read input from the user
      *
-     * @param songMap  a hashmap of all songs
+     * @param library the library of all songs
      */
-    private static void searchSongs(Scanner scanner, CustomLinkedList songList, HashMap<String, Songs> songMap) {
+    private static void searchSongs(Scanner scanner, MusicLibraryService library) {
         System.out.println("Enter search query:");
-        String searchQuery = scanner.next();
-
-        boolean foundSong = false;
-
-        // Search in LinkedList
-        System.out.println("\nResults from LinkedList:");
-        for (Songs song : songList) {
-            if (song.getTitle().contains(searchQuery) || song.getArtist().contains(searchQuery)
-                    || song.getGenre().contains(searchQuery) || song.getAlbum().contains(searchQuery)) {
-                System.out.println(song.getTitle() + " by " + song.getArtist());
-                foundSong = true;
-            }
-        }
+        scanner.nextLine(); // Consume newline character
+        String searchQuery = scanner.nextLine();
 
-        // Search in HashMap
-        System.out.println("\nResults from HashMap:");
-        for (String key : songMap.keySet()) {
-            Songs song = songMap.get(key);
-            if (song.getTitle().contains(searchQuery) || song.getArtist().contains(searchQuery)
-                    || song.getGenre().contains(searchQuery) || song.getAlbum().contains(searchQuery)) {
-                System.out.println(song.getTitle() + " by " + song.getArtist());
-                foundSong = true;
-            }
+        List<Songs> results = library.searchSubstring(searchQuery);
+        for (Songs song : results) {
+            System.out.println(song.getTitle() + " by " + song.getArtist());
         }
 
-        if (!foundSong) {
+        if (results.isEmpty()) {
             System.out.println("No matching songs found.");
         }
     }
@@ -322,18 +755,14 @@ public class MusicLibraryApp {
      * Manages playlists by providing options to create a new playlist, add
      * songs to an existing playlist,
      *
-     * remove songs from an existing playlist, display all playlists, or play a
-     * playlist.
+     * remove songs from an existing playlist, display all playlists, play a
+     * playlist, or find the playlists that contain a song.
      *
      * @param scanner         the scanner object to read user input
      *
-     * @param playlistLibrary the playlist library object containing all the
-     *                        playlists
-     *
-     * @param songMap         the hashmap object containing all the songs
+     * @param library the library containing all the songs and playlists
      */
-    private static void managePlaylists(Scanner scanner, PlaylistLibrary playlistLibrary,
-            HashMap<String, Songs> songMap) {
+    private static void managePlaylists(Scanner scanner, MusicLibraryService library) {
         while (true) {
             System.out.println("\nChoose an option:");
             System.out.println("1. Create a new playlist");
@@ -341,6 +770,7 @@ public class MusicLibraryApp {
             System.out.println("3. Remove songs from a playlist");
             System.out.println("4. Display all playlists");
             System.out.println("5. Play a playlist");
+            System.out.println("6. Find the playlists containing a song");
             System.out.println("0. Back");
             int option = scanner.nextInt();
 
@@ -350,30 +780,43 @@ public class MusicLibraryApp {
                     System.out.println("Enter playlist name:");
                     scanner.nextLine(); // Consume newline character
                     String newPlaylistName = scanner.nextLine();
-                    playlistLibrary.addPlaylist(newPlaylistName, new LinkedList<>());
-                    System.out.println("Playlist created.");
+                    if (library.createPlaylist(newPlaylistName)) {
+                        System.out.println("Playlist created.");
+                    } else {
+                        System.out.println("There already is a playlist called " + newPlaylistName + ".");
+                    }
                     break;
                 case 2:
                     // Add songs to a playlist
                     System.out.println("Enter playlist name:");
                     scanner.nextLine(); // Consume newline character
                     String playlistNameToAddSongs = scanner.nextLine();
-                    LinkedList<Songs> playlistToAddSongs = playlistLibrary.getPlaylist(playlistNameToAddSongs);
+                    List<Songs> playlistToAddSongs = library.getPlaylist(playlistNameToAddSongs);
                     if (playlistToAddSongs != null) {
+                        // the songs are collected first and added in one batch
+                        List<Songs> songsToAdd = new ArrayList<>();
                         while (true) {
                             System.out.println("Enter song title to add to playlist (0 to stop):");
                             String songTitle = scanner.nextLine();
                             if (songTitle.equals("0")) {
                                 break;
                             }
-                            Songs songToAdd = songMap.get(songTitle);
+                            Songs songToAdd = findSong(scanner, library, songTitle);
+                            if (songToAdd == null) {
+                                songToAdd = suggestSong(scanner, library, songTitle);
+                            }
                             if (songToAdd != null) {
-                                playlistToAddSongs.add(songToAdd);
-                                System.out.println("Song added to playlist.");
+                                songsToAdd.add(songToAdd);
                             } else {
                                 System.out.println("Song not found.");
                             }
                         }
+                        List<Songs> added = library.addSongsToPlaylist(playlistNameToAddSongs, songsToAdd);
+                        if (added == null) {
+                            System.out.println("Playlist not found.");
+                        } else {
+                            System.out.println(added.size() + " songs added to playlist.");
+                        }
                     } else {
                         System.out.println("Playlist not found.");
                     }
@@ -384,7 +827,7 @@ public class MusicLibraryApp {
                     System.out.println("Enter playlist name:");
                     scanner.nextLine(); // Consume newline character
                     String playlistNameToRemoveSongs = scanner.nextLine();
-                    LinkedList<Songs> playlistToRemoveSongs = playlistLibrary.getPlaylist(playlistNameToRemoveSongs);
+                    List<Songs> playlistToRemoveSongs = library.getPlaylist(playlistNameToRemoveSongs);
                     if (playlistToRemoveSongs != null) {
                         while (true) {
                             System.out.println("Enter song title to remove from playlist (0 to stop):");
@@ -392,9 +835,9 @@ public class MusicLibraryApp {
                             if (songTitle.equals("0")) {
                                 break;
                             }
-                            Songs songToRemove = songMap.get(songTitle);
-                            if (songToRemove != null) {
-                                playlistToRemoveSongs.remove(songToRemove);
+                            Songs songToRemove = findSong(scanner, library, songTitle);
+                            if (songToRemove != null
+                                    && library.removeSongFromPlaylist(playlistNameToRemoveSongs, songToRemove)) {
                                 System.out.println("Song removed from playlist.");
                             } else {
                                 System.out.println("Song not found.");
@@ -407,30 +850,63 @@ public class MusicLibraryApp {
 
                 case 4:
                     // Display all playlists
+                    scanner.nextLine(); // Consume newline character
                     System.out.println("Displaying all playlists:");
-                    for (String playlistName : playlistLibrary.getAllPlaylistNames()) {
-                        LinkedList<Songs> playlist = playlistLibrary.getPlaylist(playlistName);
-                        System.out.println("Playlist: " + playlistName);
+                    PagedOutput pages = new PagedOutput(scanner, System.out, BROWSE_PAGE_SIZE);
+                    showPlaylists:
+                    for (String playlistName : library.getPlaylistNames()) {
+                        List<Songs> playlist = library.getPlaylist(playlistName);
+                        if (playlist == null) {
+                            // deleted by someone else since the names were read
+                            continue;
+                        }
+                        if (!pages.println("Playlist: " + playlistName)) {
+                            break;
+                        }
                         for (Songs songs : playlist) {
-                            System.out.println("- " + songs.getTitle() + " by " + songs.getArtist());
+                            if (!pages.println("- " + songs.getTitle() + " by " + songs.getArtist())) {
+                                break showPlaylists;
+                            }
                         }
                     }
+                    pages.finish();
                     break;
                 case 5:
                     // Play a playlist
                     System.out.println("Enter playlist name:");
                     scanner.nextLine(); // Consume newline character
                     String playlistNameToPlay = scanner.nextLine();
-                    LinkedList<Songs> playlistToPlay = playlistLibrary.getPlaylist(playlistNameToPlay);
+                    List<Songs> playlistToPlay = library.playPlaylist(playlistNameToPlay);
                     if (playlistToPlay != null) {
                         System.out.println("Playing playlist: " + playlistNameToPlay);
+                        PagedOutput playing = new PagedOutput(scanner, System.out, BROWSE_PAGE_SIZE);
                         for (Songs songs : playlistToPlay) {
-                            System.out.println("- " + songs.getTitle() + " by " + songs.getArtist());
+                            if (!playing.println("- " + songs.getTitle() + " by " + songs.getArtist())) {
+                                break;
+                            }
                         }
+                        playing.finish();
                     } else {
                         System.out.println("Playlist not found.");
                     }
                     break;
+                case 6:
+                    // Find the playlists containing a song
+                    System.out.println("Enter song title:");
+                    scanner.nextLine(); // Consume newline character
+                    Songs songToFind = findSong(scanner, library, scanner.nextLine());
+                    if (songToFind == null) {
+                        System.out.println("Song not found.");
+                        break;
+                    }
+                    List<String> playlistNames = library.getPlaylistsContaining(songToFind);
+                    if (playlistNames.isEmpty()) {
+                        System.out.println(songToFind.getTitle() + " is not in any playlist.");
+                    }
+                    for (String playlistName : playlistNames) {
+                        System.out.println("- " + playlistName);
+                    }
+                    break;
                 case 0:
                     // Back
                     return;
@@ -441,39 +917,273 @@ public class MusicLibraryApp {
     }
 
     /**
-     * Display all the songs present in the music library.
+     * Display the songs present in the music library, sorted by title, a page
+     * at a time. Each page is read after the last song shown, so it neither
+     * repeats nor skips songs when the library changes in between.
      *
-     * @param songList a CustomLinkedList object representing the list of songs
-     *                 in the library.
-     * @param songMap  a HashMap object representing the mapping of song titles
-     *                 to song objects in the library.
+     * @param scanner the Scanner object used for reading user input
+     * @param library the library whose songs are displayed.
      */
-    private static void displaySongs(CustomLinkedList songList, HashMap<String, Songs> songMap) {
-        System.out.println("Displaying songs from LinkedList:");
-        for (Songs song : songList) {
-            System.out.println(song.getTitle() + " by " + song.getArtist());
+    private static void displaySongs(Scanner scanner, MusicLibraryService library) {
+        scanner.nextLine(); // Consume newline character
+        System.out.println("Displaying songs:");
+        PagedOutput pages = new PagedOutput(scanner, System.out, BROWSE_PAGE_SIZE);
+        Songs last = null;
+        List<Songs> page;
+        do {
+            page = library.getSongsSorted(SortedSongIndex.Order.TITLE, last, pages.getPageSize(), false);
+            for (Songs song : page) {
+                if (!pages.println(song.getTitle() + " by " + song.getArtist())) {
+                    return;
+                }
+                last = song;
+            }
+        } while (!page.isEmpty());
+        pages.finish();
+    }
+
+    /**
+     *
+     * Shows the songs with the most plays or the highest rating, in the whole
+     * library or in one genre.
+     *
+     * @param scanner the Scanner object used for reading user input
+     * @param library the library whose songs are ranked
+     */
+    private static void showTopSongs(Scanner scanner, MusicLibraryService library) {
+        System.out.println("Rank by: 1. Play count 2. Rating");
+        int choice = scanner.nextInt();
+        scanner.nextLine(); // Consume newline character
+        if (choice != 1 && choice != 2) {
+            System.out.println("Invalid option. Please choose a valid option.");
+            return;
+        }
+        System.out.println("Enter a genre, or nothing for the whole library:");
+        String genre = scanner.nextLine().trim();
+        List<Songs> top = library.getTopSongs(choice == 1 ? SortedSongIndex.Order.PLAY_COUNT
+                : SortedSongIndex.Order.RATING, genre.isEmpty() ? null : genre, TOP_SONGS);
+        if (top.isEmpty()) {
+            System.out.println("No songs found.");
+        }
+        for (int i = 0; i < top.size(); i++) {
+            Songs song = top.get(i);
+            System.out.println((i + 1) + ". " + song.getTitle() + " by " + song.getArtist() + " (played "
+                    + song.getPlayCount() + " times, rated " + song.getRating() + ")");
         }
+    }
 
-        System.out.println("\nDisplaying songs from HashMap:");
-        songMap.keySet().stream().map((key) -> songMap.get(key)).forEach((songs) -> {
-            System.out.println(songs.getTitle() + " by " + songs.getArtist());
-        });
+    /**
+     *
+     * Lets the user filter the songs by any mix of genres, a decade, artists
+     * and a lowest rating, and shows how many matches have each genre,
+     * decade, artist and rating next to the matches, a page at a time.
+     *
+     * @param scanner the Scanner object used for reading user input
+     * @param library the library whose songs are filtered
+     */
+    private static void filterSongs(Scanner scanner, MusicLibraryService library) {
+        scanner.nextLine(); // Consume newline character
+        Map<FacetIndex.Facet, List<String>> filter = new EnumMap<>(FacetIndex.Facet.class);
+        System.out.println("Enter genres separated by |, or nothing for any genre:");
+        filter.put(FacetIndex.Facet.GENRE, splitValues(scanner.nextLine()));
+        System.out.println("Enter a decade such as 1990, or nothing for any year:");
+        String decade = scanner.nextLine().trim();
+        System.out.println("Enter artists separated by |, or nothing for any artist:");
+        filter.put(FacetIndex.Facet.ARTIST, splitValues(scanner.nextLine()));
+        System.out.println("Enter the lowest rating in whole stars, or nothing for any rating:");
+        String lowest = scanner.nextLine().trim();
+        try {
+            if (!decade.isEmpty()) {
+                int first = Integer.parseInt(decade) / 10 * 10;
+                filter.put(FacetIndex.Facet.YEAR, Collections.singletonList(first + "-" + (first + 9)));
+            }
+            if (!lowest.isEmpty()) {
+                filter.put(FacetIndex.Facet.RATING,
+                        Collections.singletonList(Integer.parseInt(lowest) + "-" + Integer.MAX_VALUE));
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid number: " + e.getMessage());
+            return;
+        }
+
+        FacetResult result = library.filterSongs(filter, 0, BROWSE_PAGE_SIZE);
+        System.out.println(result.getTotal() + " songs found.");
+        for (FacetIndex.Facet facet : FacetIndex.Facet.values()) {
+            Map<String, Integer> counts = result.getCounts(facet);
+            if (facet == FacetIndex.Facet.YEAR) {
+                // years are shown by decade
+                Map<String, Integer> decades = new TreeMap<>();
+                for (Map.Entry<String, Integer> year : counts.entrySet()) {
+                    decades.merge(Integer.parseInt(year.getKey()) / 10 * 10 + "s", year.getValue(), Integer::sum);
+                }
+                counts = decades;
+            }
+            List<Map.Entry<String, Integer>> common = new ArrayList<>(counts.entrySet());
+            common.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+            StringBuilder line = new StringBuilder(facet == FacetIndex.Facet.YEAR ? "Decades:"
+                    : facet == FacetIndex.Facet.RATING ? "Stars:"
+                    : facet == FacetIndex.Facet.GENRE ? "Genres:" : "Artists:");
+            for (int i = 0; i < Math.min(TOP_SONGS, common.size()); i++) {
+                line.append(' ').append(common.get(i).getKey()).append(" (").append(common.get(i).getValue())
+                        .append(')');
+            }
+            if (common.size() > TOP_SONGS) {
+                line.append(" and ").append(common.size() - TOP_SONGS).append(" more");
+            }
+            System.out.println(line);
+        }
+        PagedOutput pages = new PagedOutput(scanner, System.out, BROWSE_PAGE_SIZE);
+        for (int offset = 0; offset < result.getTotal();) {
+            List<Songs> page = offset == 0 ? result.getSongs()
+                    : library.filterSongs(filter, offset, pages.getPageSize()).getSongs();
+            if (page.isEmpty()) {
+                break;
+            }
+            for (Songs song : page) {
+                if (!pages.println(song.getTitle() + " by " + song.getArtist() + " (" + song.getGenre() + ", "
+                        + song.getYear() + ", rated " + song.getRating() + ")")) {
+                    return;
+                }
+            }
+            offset += page.size();
+        }
+        pages.finish();
+    }
+
+    /**
+     *
+     * Completes the first letters of a title or an artist to the most played
+     * songs with titles and artists that start with them, for as many
+     * beginnings as the user types.
+     *
+     * @param scanner the Scanner object used for reading user input
+     * @param library the library whose songs are completed
+     */
+    private static void completeSongs(Scanner scanner, MusicLibraryService library) {
+        scanner.nextLine(); // Consume newline character
+        while (true) {
+            System.out.println("Enter the first letters of a title or artist (nothing to stop):");
+            String prefix = scanner.nextLine();
+            if (prefix.trim().isEmpty()) {
+                return;
+            }
+            List<Songs> titles = library.completeSongs(prefix, false, CompletionTrie.TOP);
+            List<Songs> artists = library.completeSongs(prefix, true, CompletionTrie.TOP);
+            if (titles.isEmpty() && artists.isEmpty()) {
+                System.out.println("No title or artist starts with " + prefix.trim() + ".");
+            }
+            if (!titles.isEmpty()) {
+                System.out.println("Titles:");
+                for (Songs song : titles) {
+                    System.out.println("  " + song.getTitle() + " by " + song.getArtist() + " (played "
+                            + song.getPlayCount() + " times)");
+                }
+            }
+            if (!artists.isEmpty()) {
+                System.out.println("Artists:");
+                for (Songs song : artists) {
+                    System.out.println("  " + song.getArtist() + ": " + song.getTitle() + " (played "
+                            + song.getPlayCount() + " times)");
+                }
+            }
+        }
+    }
+
+    private static List<String> splitValues(String line) {
+        List<String> values = new ArrayList<>();
+        for (String value : line.split("\\|")) {
+            if (!value.trim().isEmpty()) {
+                values.add(value.trim());
+            }
+        }
+        return values;
     }
 
     /**
-     * Save the music library data to a file.
+     *
+     * Lets the user browse the songs sorted by title, artist, year, rating or
+     * play count, a page at a time, optionally only those whose title or
+     * artist starts with some letters, from a range of years, or with at least
+     * some rating or plays. Ratings and play counts are shown from the highest
+     * down.
+     *
+     * @param scanner the Scanner object used for reading user input
+     * @param library the library whose songs are browsed
+     */
+    private static void browseSongs(Scanner scanner, MusicLibraryService library) {
+        System.out.println("Sort by: 1. Title 2. Artist 3. Year 4. Rating 5. Play count");
+        int choice = scanner.nextInt();
+        scanner.nextLine(); // Consume newline character
+        if (choice < 1 || choice > 5) {
+            System.out.println("Invalid option. Please choose a valid option.");
+            return;
+        }
+        SortedSongIndex.Order order = SortedSongIndex.Order.values()[choice - 1];
+
+        String prefix = "";
+        double from = Double.NEGATIVE_INFINITY;
+        double to = Double.POSITIVE_INFINITY;
+        try {
+            if (order == SortedSongIndex.Order.YEAR) {
+                System.out.println("Enter the first and last year separated by a space, or nothing for all years:");
+                String[] years = scanner.nextLine().trim().split("\\s+");
+                if (!years[0].isEmpty()) {
+                    from = Integer.parseInt(years[0]);
+                    to = years.length > 1 ? Integer.parseInt(years[1]) : from;
+                }
+            } else if (order.isNumeric()) {
+                System.out.println("Enter the lowest " + (order == SortedSongIndex.Order.RATING ? "rating"
+                        : "play count") + ", or nothing for all songs:");
+                String lowest = scanner.nextLine().trim();
+                if (!lowest.isEmpty()) {
+                    from = Double.parseDouble(lowest);
+                }
+            } else {
+                System.out.println("Enter the first letters, or nothing for all songs:");
+                prefix = scanner.nextLine().trim();
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid number: " + e.getMessage());
+            return;
+        }
+
+        boolean descending = order == SortedSongIndex.Order.RATING || order == SortedSongIndex.Order.PLAY_COUNT;
+        int total = order.isNumeric() ? library.countSongsInRange(order, from, to)
+                : prefix.isEmpty() ? library.songCount() : library.countSongsInRange(order, prefix, prefix);
+        System.out.println(total + " songs found.");
+        PagedOutput pages = new PagedOutput(scanner, System.out, BROWSE_PAGE_SIZE);
+        // each page follows the last song shown, whatever changed in between
+        Songs last = null;
+        List<Songs> page;
+        do {
+            int limit = pages.getPageSize();
+            page = order.isNumeric() ? library.getSongsInRange(order, from, to, last, limit, descending)
+                    : prefix.isEmpty() ? library.getSongsSorted(order, last, limit, false)
+                    : library.getSongsInRange(order, prefix, prefix, last, limit, false);
+            for (Songs song : page) {
+                if (!pages.println(song.getTitle() + " by " + song.getArtist() + " (" + song.getYear() + ", rated "
+                        + song.getRating() + ", played " + song.getPlayCount() + " times)")) {
+                    return;
+                }
+                last = song;
+            }
+        } while (!page.isEmpty());
+        pages.finish();
+    }
+
+    /**
+     * Save the music library data to a CSV file, in the same column order that
+     * readMusicLibraryDataFromFile reads.
      *
      * @param musicLibraryFile a String object representing the path of the file
      *                         where the data is to be saved.
-     * @param songList         a CustomLinkedList object representing the list of
-     *                         songs
-     *                         in the library.
+     * @param songList         the songs in the library.
      */
-    private static void saveMusicLibraryDataToFile(String musicLibraryFile, CustomLinkedList songList) {
+    static void saveMusicLibraryDataToFile(String musicLibraryFile, Iterable<Songs> songList) {
         try (PrintWriter writer = new PrintWriter(new FileWriter(musicLibraryFile))) {
             for (Songs song : songList) {
                 writer.println(song.getTitle() + "," + song.getArtist() + "," + song.getGenre() + "," + song.getAlbum()
-                        + "," + song.getYear() + "," + song.getPlayCount() + "," + song.getRating());
+                        + "," + song.getTrackNumber() + "," + song.getYear() + "," + song.getRating());
             }
             System.out.println("Music library data saved to file.");
         } catch (IOException e) {
@@ -481,47 +1191,49 @@ public class MusicLibraryApp {
     }
 
     /**
-     * Save the playlist data to a file.
+     * Save the playlist data to a file. The data is written to a temporary
+     * file, forced to disk and then renamed over the old file, so the file
+     * never holds only some of the playlists.
      *
      * @param playlistsFile   a String object representing the path of the file
      *                        where the data is to be saved.
      * @param playlistLibrary a PlaylistLibrary object representing the list of
      *                        playlists in the library.
+     * @param generation      the last journal generation included in the
+     *                        playlists.
+     * @throws IOException if the file cannot be written.
      */
-    private static void savePlaylistDataToFile(String playlistsFile, PlaylistLibrary playlistLibrary) {
-        try (PrintWriter writer = new PrintWriter(new File(playlistsFile))) {
+    static void savePlaylistDataToFile(String playlistsFile, PlaylistLibrary playlistLibrary, int generation)
+            throws IOException {
+        // the snapshot is written next to the file and renamed over it once it
+        // is on disk, so a crash leaves either the old or the new snapshot
+        File target = new File(playlistsFile).getAbsoluteFile();
+        File temp = new File(target.getParentFile(), target.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp);
+                PrintWriter writer = new PrintWriter(new OutputStreamWriter(out))) {
+            writer.println(GENERATION_PREFIX + generation);
             for (String playlistName : playlistLibrary.getPlaylistNames()) {
-                LinkedList<Songs> playlist = playlistLibrary.getPlaylist(playlistName);
-                if (!playlist.isEmpty()) {
-                    StringBuilder sb = new StringBuilder();
-                    sb.append(playlistName).append(",");
-                    for (int i = 0; i < playlist.size(); i++) {
-                        Songs song = playlist.get(i);
-                        sb.append(song.getTitle());
-                        if (i < playlist.size() - 1) {
-                            sb.append(",");
-                        }
-                    }
-                    writer.println(sb.toString());
+                Playlist playlist = playlistLibrary.getPlaylist(playlistName);
+                // empty playlists are written too, so they survive compaction
+                StringBuilder sb = new StringBuilder();
+                sb.append(playlistName);
+                for (Songs song : playlist) {
+                    sb.append(",").append(song.getTitle()).append(ARTIST_SEPARATOR).append(song.getArtist());
                 }
+                writer.println(sb.toString());
             }
-        } catch (FileNotFoundException e) {
+            writer.flush();
+            if (writer.checkError()) {
+                throw new IOException("Could not write " + temp);
+            }
+            out.getChannel().force(true);
+        }
+        try {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
         }
-    }
-
-    /**
-     * Delete a song from the music library.
-     *
-     * @param scanner  a Scanner object representing the input stream to get user
-     *                 input.
-     * @param songList a CustomLinkedList object representing the list of songs
-     *                 in the library.
-     * @param songMap  a HashMap object representing the mapping of song titles
-     *                 to song objects in the library.
-     */
-    private static void deleteSong(Scanner scanner, CustomLinkedList songList, HashMap<String, Songs> songMap) {
-        throw new UnsupportedOperationException("Not supported yet."); // Generated from
-                                                                       // nbfs://nbhost/SystemFileSystem/Templates/Classes/Code/GeneratedMethodBody
     }
 
 }
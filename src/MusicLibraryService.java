@@ -0,0 +1,1625 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ *
+ * The MusicLibraryService class holds a music library and its playlists and
+ * lets several threads add, delete, restore, search and organize songs at the
+ * same time.
+ *
+ * Every change to the library takes the write lock of one StampedLock around
+ * the structures the songs share: the song list, the search, sorted, facet,
+ * fuzzy and completion indexes, the playlists and the undo history. Changes
+ * are therefore made one at a time. Before that, a change to a song takes one
+ * of a fixed set of locks picked by the hash of the song's title and artist
+ * (lock striping). The stripe makes checking the song catalog and changing
+ * it one step for that song, so two changes to the same song are applied in
+ * the order they claimed it. Changes to different songs do not wait for each
+ * other there, and an add of a song that already exists is turned away
+ * without touching the write lock.
+ *
+ * The song catalog is concurrent on its own, so looking up a song by title
+ * and artist never locks, and neither does counting the songs. Reads of the
+ * sorted indexes, which browsing, ranges and leaderboards go through, are
+ * first tried without locking under an optimistic stamp and kept if no
+ * change was made meanwhile. Only when a change got in are they done again
+ * under the read lock. Other reads take the read lock, which any number of
+ * readers can hold together but which a change waits for. Each playlist is
+ * also kept as a read-only copy that is dropped whenever the playlist
+ * changes, so a playlist that has not changed is read without locking.
+ *
+ * Changes are recorded in the journal in the same order as they are made in
+ * memory, while the write lock is held, but waiting for the records to reach
+ * the disk happens after every lock has been released. That way many threads
+ * share each journal flush instead of queueing behind it. A method that
+ * changes the library returns once its change is on disk.
+ *
+ * Every change to the songs and playlists, other than updating the details
+ * of a song, is also recorded in a CommandHistory as one entry, a batch
+ * included, so it can be undone and redone. The history is changed under the
+ * write lock in the same order as the library, so the entry to undo always
+ * applies to the library as it is.
+ *
+ * The results of word and substring searches are kept in a SearchCache.
+ * Every song that is indexed or unindexed, whether it is added, deleted,
+ * changed, restored by an undo or taken back by a redo, drops the cached
+ * results it may belong to, so a cached result is always the one a search
+ * would find. A batch of more than CACHE_CLEAR_BATCH songs drops every cached
+ * result instead.
+ */
+class MusicLibraryService {
+
+    // a batch holds its stripes as the bits of a long
+    private static final int STRIPES = 64;
+    private static final int DEFAULT_HISTORY_DEPTH = 1000;
+    private static final long DEFAULT_HISTORY_BYTES = 8L * 1024 * 1024;
+    private static final long DEFAULT_CACHE_BYTES = 16L * 1024 * 1024;
+    private static final int CACHE_CLEAR_BATCH = 256;
+    // the cache keys and watch terms of word and substring searches
+    private static final String WORD_TERM = "w:";
+    private static final String TEXT_TERM = "s:";
+    private static final int GRAM = 3;
+
+    private final CustomLinkedList songList;
+    private final SongCatalog songMap;
+    private final SongSearchIndex searchIndex;
+    private final SortedSongIndex[] sortedIndexes;
+    private final GenreLeaderboards leaderboards;
+    private final FacetIndex facetIndex;
+    private final FuzzyIndex fuzzyTitles = new FuzzyIndex();
+    private final FuzzyIndex fuzzyArtists = new FuzzyIndex();
+    private final CompletionTrie titleCompletions;
+    private final CompletionTrie artistCompletions;
+    private final PlaylistLibrary playlistLibrary;
+    private final MutationJournal journal;
+    private final CommandHistory history;
+    private final ConcurrentHashMap<String, List<Songs>> playlistViews = new ConcurrentHashMap<>();
+    // replaced under the write lock
+    private SearchCache searchCache = new SearchCache(SearchCache.Policy.TINY_LFU, DEFAULT_CACHE_BYTES);
+
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     *
+     * Constructs a new MusicLibraryService object over a loaded library. The
+     * service takes over the structures, which must not be used directly
+     * afterwards.
+     *
+     * @param songList        the songs in the library
+     * @param songMap         the catalog of the same songs
+     * @param playlistLibrary the playlists
+     * @param journal         the journal changes are recorded in, or null to
+     *                        keep changes in memory only
+     */
+    MusicLibraryService(CustomLinkedList songList, SongCatalog songMap, PlaylistLibrary playlistLibrary,
+            MutationJournal journal) {
+        this(songList, songMap, playlistLibrary, journal,
+                new CommandHistory(DEFAULT_HISTORY_DEPTH, DEFAULT_HISTORY_BYTES, null));
+    }
+
+    /**
+     *
+     * Constructs a new MusicLibraryService object over a loaded library, with
+     * the given undo history.
+     *
+     * @param songList        the songs in the library
+     * @param songMap         the catalog of the same songs
+     * @param playlistLibrary the playlists
+     * @param journal         the journal changes are recorded in, or null to
+     *                        keep changes in memory only
+     * @param history         the history changes are recorded in to be undone
+     */
+    MusicLibraryService(CustomLinkedList songList, SongCatalog songMap, PlaylistLibrary playlistLibrary,
+            MutationJournal journal, CommandHistory history) {
+        this.history = history;
+        this.songList = songList;
+        this.songMap = songMap;
+        this.searchIndex = new SongSearchIndex(songList);
+        SortedSongIndex.Order[] orders = SortedSongIndex.Order.values();
+        this.sortedIndexes = new SortedSongIndex[orders.length];
+        for (SortedSongIndex.Order order : orders) {
+            sortedIndexes[order.ordinal()] = new SortedSongIndex(order, songList);
+        }
+        this.leaderboards = new GenreLeaderboards(songList);
+        // after the search index, which gives the songs their IDs
+        this.facetIndex = new FacetIndex(songList);
+        for (Songs song : songList) {
+            fuzzyTitles.add(song.getTitle());
+            fuzzyArtists.add(song.getArtist());
+        }
+        this.titleCompletions = new CompletionTrie(songList, false);
+        this.artistCompletions = new CompletionTrie(songList, true);
+        this.playlistLibrary = playlistLibrary;
+        this.journal = journal;
+        if (journal != null) {
+            journal.setSyncOnAppend(false);
+        }
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     *
+     * Adds a song to the library unless it already has a song with the same
+     * title and artist.
+     *
+     * @param song the song to be added
+     * @return true if the song was added
+     */
+    boolean addSong(Songs song) {
+        long sequence;
+        ReentrantLock stripe = stripeOf(song.getTitle(), song.getArtist());
+        stripe.lock();
+        try {
+            if (!songMap.add(song)) {
+                return false;
+            }
+            long stamp = lock.writeLock();
+            try {
+                songList.add(song);
+                index(song);
+                HistoryEntry entry = new HistoryEntry("Add " + describe(song), 1);
+                entry.songAdded(song);
+                history.record(entry);
+                sequence = journal == null ? 0 : journal.songAdded(song);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        } finally {
+            stripe.unlock();
+        }
+        sync(sequence);
+        return true;
+    }
+
+    /**
+     *
+     * Adds several songs to the library, skipping those whose title and
+     * artist are already taken, including by an earlier song of the batch.
+     *
+     * @param songs the songs to be added
+     * @return the songs that were added, in order
+     */
+    List<Songs> addSongs(Collection<Songs> songs) {
+        List<Songs> added = new ArrayList<>(songs.size());
+        long sequence = 0;
+        long held = lockStripes(songs);
+        try {
+            for (Songs song : songs) {
+                if (songMap.add(song)) {
+                    added.add(song);
+                }
+            }
+            if (added.isEmpty()) {
+                return added;
+            }
+            long stamp = lock.writeLock();
+            try {
+                HistoryEntry entry = new HistoryEntry("Add " + added.size() + " songs", added.size());
+                for (Songs song : added) {
+                    songList.add(song);
+                    entry.songAdded(song);
+                }
+                indexAll(added);
+                history.record(entry);
+                if (journal != null) {
+                    for (Songs song : added) {
+                        sequence = journal.songAdded(song);
+                    }
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        } finally {
+            unlockStripes(held);
+        }
+        sync(sequence);
+        return added;
+    }
+
+    /**
+     *
+     * Changes the genre, album, track number, year, rating and play count of
+     * a song in the library to those of the given song, which has the same
+     * title and artist.
+     *
+     * @param changes the song with the new values
+     * @return the updated song, or null if there is no such song
+     */
+    Songs updateSong(Songs changes) {
+        Songs song;
+        long sequence;
+        ReentrantLock stripe = stripeOf(changes.getTitle(), changes.getArtist());
+        stripe.lock();
+        try {
+            song = songMap.get(changes.getTitle(), changes.getArtist());
+            if (song == null) {
+                return null;
+            }
+            long stamp = lock.writeLock();
+            try {
+                // the song keeps its ID, so it is indexed again under its new words
+                unindex(song);
+                song.setDetails(changes);
+                index(song);
+                sequence = journal == null ? 0 : journal.songUpdated(song);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        } finally {
+            stripe.unlock();
+        }
+        sync(sequence);
+        return song;
+    }
+
+    /**
+     *
+     * Deletes a song from the library and from every playlist that holds it.
+     * The song and its playlist positions are kept in the history so the
+     * delete can be undone.
+     *
+     * @param title  the title of the song
+     * @param artist the artist of the song
+     * @return the deleted song with the positions it was removed from, or
+     *         null if there is no such song
+     */
+    DeletedSong deleteSong(String title, String artist) {
+        DeletedSong deleted;
+        long sequence;
+        ReentrantLock stripe = stripeOf(title, artist);
+        stripe.lock();
+        try {
+            Songs song = songMap.get(title, artist);
+            if (song == null || !songMap.remove(song)) {
+                return null;
+            }
+            long stamp = lock.writeLock();
+            try {
+                songList.remove(song);
+                unindex(song);
+                Map<String, List<Integer>> playlistPositions = playlistLibrary.removeSongFromAllPlaylists(song);
+                playlistViews.keySet().removeAll(playlistPositions.keySet());
+                deleted = new DeletedSong(song, playlistPositions);
+                HistoryEntry entry = new HistoryEntry("Delete " + describe(song), 1);
+                deletionSteps(entry, deleted);
+                history.record(entry);
+                sequence = journal == null ? 0 : journal.songDeleted(song);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        } finally {
+            stripe.unlock();
+        }
+        sync(sequence);
+        return deleted;
+    }
+
+    /**
+     *
+     * Deletes several songs from the library and from every playlist that
+     * holds them. Songs that are not in the library are skipped. The whole
+     * batch is kept as one history entry, so a single undo brings it all
+     * back.
+     *
+     * @param songs the songs to be deleted, found by title and artist
+     * @return the deleted songs with the positions they were removed from,
+     *         in the order they were deleted
+     */
+    List<DeletedSong> deleteSongs(Collection<Songs> songs) {
+        List<Songs> removed = new ArrayList<>(songs.size());
+        List<DeletedSong> deleted = new ArrayList<>(songs.size());
+        long sequence = 0;
+        long held = lockStripes(songs);
+        try {
+            for (Songs key : songs) {
+                Songs song = songMap.get(key.getTitle(), key.getArtist());
+                if (song != null && songMap.remove(song)) {
+                    removed.add(song);
+                }
+            }
+            if (removed.isEmpty()) {
+                return deleted;
+            }
+            long stamp = lock.writeLock();
+            try {
+                unindexAll(removed);
+                HistoryEntry entry = new HistoryEntry("Delete " + removed.size() + " songs", removed.size());
+                for (Songs song : removed) {
+                    songList.remove(song);
+                    // each song's positions are taken after the songs before it
+                    // are gone, which undo allows for by going backwards
+                    Map<String, List<Integer>> playlistPositions = playlistLibrary.removeSongFromAllPlaylists(song);
+                    playlistViews.keySet().removeAll(playlistPositions.keySet());
+                    DeletedSong deletedSong = new DeletedSong(song, playlistPositions);
+                    deleted.add(deletedSong);
+                    deletionSteps(entry, deletedSong);
+                    if (journal != null) {
+                        sequence = journal.songDeleted(song);
+                    }
+                }
+                history.record(entry);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        } finally {
+            unlockStripes(held);
+        }
+        sync(sequence);
+        return deleted;
+    }
+
+    /**
+     *
+     * Undoes the most recent change that has not been undone yet, as recorded
+     * in the history. A batch is undone as a whole.
+     *
+     * @return the entry that was undone, or null if there is nothing to undo
+     */
+    HistoryEntry undo() {
+        return step(true);
+    }
+
+    /**
+     *
+     * Redoes the change that was undone most recently, as long as no other
+     * change has been made since.
+     *
+     * @return the entry that was redone, or null if there is nothing to redo
+     */
+    HistoryEntry redo() {
+        return step(false);
+    }
+
+    /**
+     *
+     * Undoes every change in the history, newest first. Every stripe and the
+     * write lock are taken once for the whole run, and the journal is flushed
+     * once at the end.
+     *
+     * @return the number of changes undone
+     */
+    int undoAll() {
+        int undone = 0;
+        long sequence = 0;
+        long held = lockStripes(-1L);
+        try {
+            long stamp = lock.writeLock();
+            try {
+                for (HistoryEntry entry = history.peekUndo(); entry != null; entry = history.peekUndo()) {
+                    sequence = Math.max(sequence, apply(entry, true));
+                    history.undone();
+                    undone++;
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        } finally {
+            unlockStripes(held);
+        }
+        sync(sequence);
+        return undone;
+    }
+
+    /**
+     *
+     * Undoes or redoes one entry. The entry is looked at first, then the
+     * stripes of its songs are taken, and it is applied only if the history
+     * has not changed in between; otherwise it starts over.
+     */
+    private HistoryEntry step(boolean undo) {
+        while (true) {
+            HistoryEntry entry;
+            int modCount;
+            long stamp = lock.writeLock();
+            try {
+                entry = undo ? history.peekUndo() : history.peekRedo();
+                modCount = history.modCount();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            if (entry == null) {
+                return null;
+            }
+
+            List<Songs> songs = new ArrayList<>(entry.size());
+            for (int i = 0; i < entry.size(); i++) {
+                if (entry.song(i) != null) {
+                    songs.add(entry.song(i));
+                }
+            }
+            long sequence;
+            long held = lockStripes(songs);
+            try {
+                stamp = lock.writeLock();
+                try {
+                    if (history.modCount() != modCount) {
+                        continue;
+                    }
+                    sequence = apply(entry, undo);
+                    if (undo) {
+                        history.undone();
+                    } else {
+                        history.redone();
+                    }
+                } finally {
+                    lock.unlockWrite(stamp);
+                }
+            } finally {
+                unlockStripes(held);
+            }
+            sync(sequence);
+            return entry;
+        }
+    }
+
+    /**
+     *
+     * Applies the steps of an entry in order, or their opposites in reverse
+     * order, and records them in the journal. The caller holds the stripes of
+     * the songs of the entry and the write lock. Songs are found by title and
+     * artist, so an entry read back from the spill file applies the same way
+     * as one held in memory.
+     *
+     * @return the sequence number of the last journal record, or 0
+     */
+    private long apply(HistoryEntry entry, boolean undo) {
+        long sequence = 0;
+        List<Songs> indexed = new ArrayList<>();
+        List<Songs> unindexed = new ArrayList<>();
+        int steps = entry.size();
+        for (int n = 0; n < steps; n++) {
+            int i = undo ? steps - 1 - n : n;
+            byte kind = undo ? HistoryEntry.opposite(entry.kind(i)) : entry.kind(i);
+            Songs song = entry.song(i);
+            String playlistName = entry.playlist(i);
+            switch (kind) {
+                case HistoryEntry.ADD_SONG:
+                    if (songMap.add(song)) {
+                        songList.add(song);
+                        indexed.add(song);
+                        if (journal != null) {
+                            sequence = undo ? journal.songRestored(song) : journal.songAdded(song);
+                        }
+                    }
+                    break;
+                case HistoryEntry.DELETE_SONG:
+                    Songs current = songMap.get(song.getTitle(), song.getArtist());
+                    if (current != null && songMap.remove(current)) {
+                        songList.remove(current);
+                        unindexed.add(current);
+                        // earlier steps have already taken it out of its playlists
+                        playlistViews.keySet().removeAll(
+                                playlistLibrary.removeSongFromAllPlaylists(current).keySet());
+                        if (journal != null) {
+                            sequence = journal.songDeleted(current);
+                        }
+                    }
+                    break;
+                case HistoryEntry.INSERT_INTO_PLAYLIST:
+                    Songs inserted = songMap.get(song.getTitle(), song.getArtist());
+                    if (inserted != null
+                            && playlistLibrary.insertSongIntoPlaylist(playlistName, entry.index(i), inserted)) {
+                        playlistViews.remove(playlistName);
+                        if (journal != null) {
+                            sequence = journal.songInsertedIntoPlaylist(playlistName, entry.index(i), inserted);
+                        }
+                    }
+                    break;
+                case HistoryEntry.REMOVE_FROM_PLAYLIST:
+                    if (playlistLibrary.removeSongFromPlaylistAt(playlistName, entry.index(i), song)) {
+                        playlistViews.remove(playlistName);
+                        if (journal != null) {
+                            sequence = journal.songRemovedFromPlaylistAt(playlistName, entry.index(i), song);
+                        }
+                    }
+                    break;
+                case HistoryEntry.CREATE_PLAYLIST:
+                    if (playlistLibrary.getPlaylist(playlistName) == null) {
+                        playlistLibrary.addPlaylist(playlistName, new Playlist());
+                        playlistViews.remove(playlistName);
+                        if (journal != null) {
+                            sequence = journal.playlistCreated(playlistName);
+                        }
+                    }
+                    break;
+                case HistoryEntry.DELETE_PLAYLIST:
+                    if (playlistLibrary.getPlaylist(playlistName) != null) {
+                        playlistLibrary.removePlaylist(playlistName);
+                        playlistViews.remove(playlistName);
+                        if (journal != null) {
+                            sequence = journal.playlistDeleted(playlistName);
+                        }
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown step " + kind + " in the undo history");
+            }
+        }
+        unindexAll(unindexed);
+        indexAll(indexed);
+        return sequence;
+    }
+
+    /**
+     *
+     * Returns the song with the given title and artist. This never locks.
+     *
+     * @param title  the title of the song
+     * @param artist the artist of the song
+     * @return the song, or null if there is no such song
+     */
+    Songs getSong(String title, String artist) {
+        return songMap.get(title, artist);
+    }
+
+    /**
+     *
+     * Returns every song with the given title. This never locks.
+     *
+     * @param title the title to look up
+     * @return the songs with that title, which may be empty
+     */
+    List<Songs> getSongsByTitle(String title) {
+        return songMap.getByTitle(title);
+    }
+
+    /**
+     *
+     * Returns a copy of the songs in the library, in the order they were
+     * added.
+     *
+     * @return the songs in the library
+     */
+    List<Songs> getSongs() {
+        long stamp = lock.readLock();
+        try {
+            List<Songs> songs = new ArrayList<>(songList.size());
+            for (Songs song : songList) {
+                songs.add(song);
+            }
+            return songs;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     *
+     * Returns the number of songs in the library.
+     *
+     * @return the number of songs
+     */
+    int songCount() {
+        long stamp = lock.tryOptimisticRead();
+        int count = songList.size();
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                count = songList.size();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return count;
+    }
+
+    /**
+     *
+     * Returns the songs matching every word of a query, as described in
+     * SongSearchIndex.
+     *
+     * @param query the words to search for
+     * @return the matching songs
+     */
+    List<Songs> search(String query) {
+        List<List<String>> groups = SongSearchIndex.parseQuery(query);
+        // the alternatives and their words in any order find the same songs
+        TreeSet<String> alternatives = new TreeSet<>();
+        List<String> watch = new ArrayList<>();
+        List<Set<String>> required = new ArrayList<>();
+        for (List<String> group : groups) {
+            if (group.isEmpty()) {
+                continue;
+            }
+            TreeSet<String> words = new TreeSet<>(group);
+            alternatives.add(String.join(" ", words));
+            required.add(words);
+            // a song must have every word of an alternative to match it, so
+            // watching the longest, likely the rarest, is enough
+            String longest = words.first();
+            for (String word : words) {
+                longest = word.length() > longest.length() ? word : longest;
+            }
+            watch.add(WORD_TERM + longest);
+        }
+        String key = WORD_TERM + String.join(" | ", alternatives);
+        long stamp = lock.readLock();
+        try {
+            int[] ids = searchCache.get(key);
+            if (ids == null) {
+                ids = searchIndex.searchIds(groups);
+                searchCache.put(key, ids, watch, song -> {
+                    Set<String> tokens = SongSearchIndex.tokensOf(song);
+                    for (Set<String> words : required) {
+                        if (tokens.containsAll(words)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                });
+            }
+            return songsOf(ids);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     *
+     * Returns the songs whose title, artist, genre or album contain the query.
+     *
+     * @param query the text to look for
+     * @return the matching songs
+     */
+    List<Songs> searchSubstring(String query) {
+        String key = TEXT_TERM + query;
+        // a song containing the query contains its first three characters,
+        // while any song may contain a shorter query
+        List<String> watch = Collections.singletonList(query.length() < GRAM
+                ? SearchCache.ANY_SONG : TEXT_TERM + query.substring(0, GRAM));
+        long stamp = lock.readLock();
+        try {
+            int[] ids = searchCache.get(key);
+            if (ids == null) {
+                List<Songs> songs = searchIndex.searchSubstring(query);
+                ids = new int[songs.size()];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = songs.get(i).getId();
+                }
+                searchCache.put(key, ids, watch, song -> TrigramIndex.contains(song, query));
+                return songs;
+            }
+            return songsOf(ids);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     *
+     * Replaces the search cache with an empty one, for example to try another
+     * policy or budget. A budget of zero keeps no results.
+     *
+     * @param policy   how the cache chooses the results to drop
+     * @param maxBytes the most memory the cached results may take
+     */
+    void configureSearchCache(SearchCache.Policy policy, long maxBytes) {
+        long stamp = lock.writeLock();
+        try {
+            searchCache = new SearchCache(policy, maxBytes);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     *
+     * Returns a page of the songs sorted by title, artist, year or rating.
+     * Only the songs of the page are read, so this takes O(log n + k) for a
+     * page of k songs.
+     *
+     * @param order      the order to sort the songs in
+     * @param offset     the number of songs to skip
+     * @param limit      the largest number of songs to return
+     * @param descending true to start from the end of the order
+     * @return the songs of the page
+     */
+    List<Songs> getSongsSorted(SortedSongIndex.Order order, int offset, int limit, boolean descending) {
+        return readOptimistically(() -> sortedIndexes[order.ordinal()].page(offset, limit, descending));
+    }
+
+    /**
+     *
+     * Returns the page of the songs sorted by title, artist, year, rating or
+     * play count that follows the last song of the previous page. Unlike an
+     * offset, the song keeps its place when songs before it are added or
+     * deleted, even if it is deleted itself, so paging through a library
+     * that changes shows every song that stays exactly once. This takes
+     * O(log n + k) for a page of k songs.
+     *
+     * @param order      the order to sort the songs in
+     * @param after      the last song of the previous page, or null for the
+     *                   first page
+     * @param limit      the largest number of songs to return
+     * @param descending true to go from the end of the order
+     * @return the songs of the page
+     */
+    List<Songs> getSongsSorted(SortedSongIndex.Order order, Songs after, int limit, boolean descending) {
+        return readOptimistically(() -> sortedIndexes[order.ordinal()].page(after, limit, descending));
+    }
+
+    /**
+     *
+     * Returns a page of the songs whose year or rating lies in a range, both
+     * ends included, sorted by it.
+     *
+     * @param order      YEAR or RATING
+     * @param from       the lowest value, or negative infinity
+     * @param to         the highest value, or positive infinity
+     * @param offset     the number of songs of the range to skip
+     * @param limit      the largest number of songs to return
+     * @param descending true to start from the highest value
+     * @return the songs of the page
+     * @throws IllegalArgumentException if the order is by text
+     */
+    List<Songs> getSongsInRange(SortedSongIndex.Order order, double from, double to, int offset, int limit,
+            boolean descending) {
+        return readOptimistically(() -> sortedIndexes[order.ordinal()].range(from, to, offset, limit, descending));
+    }
+
+    /**
+     *
+     * Returns the page of the songs whose year, rating or play count lies in
+     * a range that follows the last song of the previous page, as
+     * getSongsSorted does for all songs.
+     *
+     * @param order      YEAR, RATING or PLAY_COUNT
+     * @param from       the lowest value, or negative infinity
+     * @param to         the highest value, or positive infinity
+     * @param after      the last song of the previous page, or null
+     * @param limit      the largest number of songs to return
+     * @param descending true to go from the highest value
+     * @return the songs of the page
+     * @throws IllegalArgumentException if the order is by title or artist
+     */
+    List<Songs> getSongsInRange(SortedSongIndex.Order order, double from, double to, Songs after, int limit,
+            boolean descending) {
+        return readOptimistically(() -> sortedIndexes[order.ordinal()].range(from, to, after, limit, descending));
+    }
+
+    /**
+     *
+     * Returns a page of the songs whose title or artist lies between two
+     * prefixes, ignoring case and both included, sorted by it. The same
+     * prefix twice gives the songs starting with it.
+     *
+     * @param order      TITLE or ARTIST
+     * @param from       the lowest prefix
+     * @param to         the highest prefix
+     * @param offset     the number of songs of the range to skip
+     * @param limit      the largest number of songs to return
+     * @param descending true to start from the end of the range
+     * @return the songs of the page
+     * @throws IllegalArgumentException if the order is by a number
+     */
+    List<Songs> getSongsInRange(SortedSongIndex.Order order, String from, String to, int offset, int limit,
+            boolean descending) {
+        return readOptimistically(() -> sortedIndexes[order.ordinal()].range(from, to, offset, limit, descending));
+    }
+
+    /**
+     *
+     * Returns the page of the songs whose title or artist lies between two
+     * prefixes that follows the last song of the previous page, as
+     * getSongsSorted does for all songs.
+     *
+     * @param order      TITLE or ARTIST
+     * @param from       the lowest prefix
+     * @param to         the highest prefix
+     * @param after      the last song of the previous page, or null
+     * @param limit      the largest number of songs to return
+     * @param descending true to go from the end of the range
+     * @return the songs of the page
+     * @throws IllegalArgumentException if the order is by a number
+     */
+    List<Songs> getSongsInRange(SortedSongIndex.Order order, String from, String to, Songs after, int limit,
+            boolean descending) {
+        return readOptimistically(() -> sortedIndexes[order.ordinal()].range(from, to, after, limit, descending));
+    }
+
+    /**
+     *
+     * Returns the number of songs whose year or rating lies in a range, both
+     * ends included, without reading them.
+     *
+     * @param order YEAR or RATING
+     * @param from  the lowest value
+     * @param to    the highest value
+     * @return the number of songs in the range
+     */
+    int countSongsInRange(SortedSongIndex.Order order, double from, double to) {
+        return readOptimistically(() -> sortedIndexes[order.ordinal()].count(from, to));
+    }
+
+    /**
+     *
+     * Returns the number of songs whose title or artist lies between two
+     * prefixes, without reading them.
+     *
+     * @param order TITLE or ARTIST
+     * @param from  the lowest prefix
+     * @param to    the highest prefix
+     * @return the number of songs in the range
+     */
+    int countSongsInRange(SortedSongIndex.Order order, String from, String to) {
+        return readOptimistically(() -> sortedIndexes[order.ordinal()].count(from, to));
+    }
+
+    /**
+     *
+     * Returns the songs with the most plays or the highest rating, in the
+     * whole library or in one genre, highest first. The leaderboards are kept
+     * up to date as songs are played and changed, so this takes
+     * O(log n + k).
+     *
+     * @param order PLAY_COUNT or RATING
+     * @param genre the genre, or null for the whole library
+     * @param count the largest number of songs to return
+     * @return the top songs
+     * @throws IllegalArgumentException if the order is not PLAY_COUNT or
+     *                                  RATING
+     */
+    List<Songs> getTopSongs(SortedSongIndex.Order order, String genre, int count) {
+        if (genre == null) {
+            if (order != SortedSongIndex.Order.PLAY_COUNT && order != SortedSongIndex.Order.RATING) {
+                throw new IllegalArgumentException("There is no leaderboard by " + order);
+            }
+            return readOptimistically(() -> sortedIndexes[order.ordinal()].page(0, count, true));
+        }
+        long stamp = lock.readLock();
+        try {
+            return leaderboards.top(order, genre, count);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     *
+     * Finds the songs that have any of the chosen genres, years, artists and
+     * rating buckets, for every facet with chosen values, and counts how many
+     * of them have each value of every facet.
+     *
+     * @param filter the accepted values of each facet, as FacetIndex.valueOf
+     *               gives them or as a range such as 1990-1999 for years and
+     *               ratings; a facet that is missing or has no values
+     *               accepts every song
+     * @param offset the number of matching songs to skip
+     * @param limit  the largest number of songs to return
+     * @return the number of matches, a page of them in the order they were
+     *         added, and the counts of each facet
+     */
+    FacetResult filterSongs(Map<FacetIndex.Facet, ? extends Collection<String>> filter, int offset, int limit) {
+        long stamp = lock.readLock();
+        try {
+            RoaringBitmap matches = facetIndex.match(filter);
+            List<Songs> songs = new ArrayList<>();
+            for (int id : matches.page(offset, limit)) {
+                songs.add(searchIndex.getSong(id));
+            }
+            Map<FacetIndex.Facet, Map<String, Integer>> counts = new EnumMap<>(FacetIndex.Facet.class);
+            for (FacetIndex.Facet facet : FacetIndex.Facet.values()) {
+                counts.put(facet, facetIndex.count(facet, matches, searchIndex::getSong));
+            }
+            return new FacetResult(matches.cardinality(), songs, counts);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     *
+     * Suggests the songs whose titles are spelled almost like a title that
+     * was not found, for a typo or a different case.
+     *
+     * @param title the title that was looked for
+     * @param limit the largest number of songs to return
+     * @return the songs with titles within FuzzyIndex.MAX_DISTANCE edits,
+     *         closest titles first and the most played songs of a title
+     *         first
+     */
+    List<Songs> suggestSongs(String title, int limit) {
+        long stamp = lock.readLock();
+        try {
+            List<Songs> songs = new ArrayList<>();
+            for (FuzzyIndex.Match match : fuzzyTitles.search(title, FuzzyIndex.MAX_DISTANCE, limit)) {
+                List<Songs> byTitle = new ArrayList<>(songMap.getByTitle(match.term));
+                byTitle.sort((a, b) -> Integer.compare(b.getPlayCount(), a.getPlayCount()));
+                for (Songs song : byTitle) {
+                    if (songs.size() == limit) {
+                        return songs;
+                    }
+                    songs.add(song);
+                }
+            }
+            return songs;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     *
+     * Suggests the artists spelled almost like an artist that was not found.
+     *
+     * @param artist the artist that was looked for
+     * @param limit  the largest number of artists to return
+     * @return the artists within FuzzyIndex.MAX_DISTANCE edits, closest and
+     *         then those with the most songs first
+     */
+    List<String> suggestArtists(String artist, int limit) {
+        long stamp = lock.readLock();
+        try {
+            return fuzzyArtists.suggest(artist, limit);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     *
+     * Completes the first letters of a title or an artist to the most played
+     * songs that start with them, ignoring case, accents and repeated spaces.
+     *
+     * @param prefix   the letters typed so far
+     * @param byArtist true to complete artists, false to complete titles
+     * @param limit    the largest number of songs to return, at most
+     *                 CompletionTrie.TOP
+     * @return the songs, the most played first
+     */
+    List<Songs> completeSongs(String prefix, boolean byArtist, int limit) {
+        long stamp = lock.readLock();
+        try {
+            return (byArtist ? artistCompletions : titleCompletions).complete(prefix, limit);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     *
+     * Returns the values of a facet that any song in the library has.
+     *
+     * @param facet the facet
+     * @return the values, years in numeric order and text ignoring case
+     */
+    List<String> getFacetValues(FacetIndex.Facet facet) {
+        long stamp = lock.readLock();
+        try {
+            return facetIndex.values(facet);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     *
+     * Plays a playlist, adding one to the play count of each of its songs for
+     * every time it appears.
+     *
+     * @param playlistName the name of the playlist
+     * @return the songs of the playlist in order, or null if there is no such
+     *         playlist
+     */
+    List<Songs> playPlaylist(String playlistName) {
+        List<Songs> songs = getPlaylist(playlistName);
+        if (songs != null) {
+            recordPlays(songs);
+        }
+        return songs;
+    }
+
+    /**
+     *
+     * Adds plays to songs in the library, one for every time a song appears,
+     * and moves them up the play count leaderboards. Each song's new play
+     * count is recorded in the journal once. Songs that are not in the library
+     * are skipped.
+     *
+     * @param songs the songs that were played, found by title and artist
+     * @return the number of plays added
+     */
+    int recordPlays(Collection<Songs> songs) {
+        Map<Songs, Long> plays = new HashMap<>();
+        for (Songs song : songs) {
+            plays.merge(song, 1L, Long::sum);
+        }
+        return (int) addPlays(plays);
+    }
+
+    /**
+     *
+     * Adds a number of plays to each of a set of songs, moving them up the
+     * play count leaderboards, and records each song's new play count in the
+     * journal once. Play counts stop growing at Integer.MAX_VALUE. Songs that
+     * are not in the library are skipped.
+     *
+     * @param plays the number of plays of each song, found by title and
+     *              artist
+     * @return the number of plays added
+     */
+    long addPlays(Map<Songs, Long> plays) {
+        long sequence = 0;
+        long added = 0;
+        long held = lockStripes(plays.keySet());
+        try {
+            List<Songs> current = new ArrayList<>(plays.size());
+            List<Long> counts = new ArrayList<>(plays.size());
+            for (Map.Entry<Songs, Long> entry : plays.entrySet()) {
+                Songs song = songMap.get(entry.getKey().getTitle(), entry.getKey().getArtist());
+                if (song != null && entry.getValue() > 0) {
+                    current.add(song);
+                    counts.add(entry.getValue());
+                    added += entry.getValue();
+                }
+            }
+            if (current.isEmpty()) {
+                return 0;
+            }
+            long stamp = lock.writeLock();
+            try {
+                SortedSongIndex byPlayCount = sortedIndexes[SortedSongIndex.Order.PLAY_COUNT.ordinal()];
+                for (int i = 0; i < current.size(); i++) {
+                    Songs song = current.get(i);
+                    // only the play count orders change
+                    byPlayCount.remove(song);
+                    leaderboards.removePlays(song);
+                    long playCount = song.getPlayCount() + counts.get(i);
+                    song.setPlayCount((int) Math.min(Integer.MAX_VALUE, playCount));
+                    byPlayCount.add(song);
+                    leaderboards.addPlays(song);
+                    titleCompletions.promote(song);
+                    artistCompletions.promote(song);
+                    if (journal != null) {
+                        sequence = journal.songUpdated(song);
+                    }
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        } finally {
+            unlockStripes(held);
+        }
+        sync(sequence);
+        return added;
+    }
+
+    /**
+     *
+     * Creates an empty playlist.
+     *
+     * @param playlistName the name of the new playlist
+     * @return true if the playlist was created, false if there already is a
+     *         playlist with that name
+     */
+    boolean createPlaylist(String playlistName) {
+        long sequence;
+        long stamp = lock.writeLock();
+        try {
+            if (playlistLibrary.getPlaylist(playlistName) != null) {
+                return false;
+            }
+            playlistLibrary.addPlaylist(playlistName, new Playlist());
+            HistoryEntry entry = new HistoryEntry("Create playlist " + playlistName, 1);
+            entry.playlistCreated(playlistName);
+            history.record(entry);
+            sequence = journal == null ? 0 : journal.playlistCreated(playlistName);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        sync(sequence);
+        return true;
+    }
+
+    /**
+     *
+     * Deletes a playlist. The songs in it stay in the library, and undo brings
+     * the playlist back with the same songs.
+     *
+     * @param playlistName the name of the playlist
+     * @return true if the playlist was deleted, false if there is no such
+     *         playlist
+     */
+    boolean deletePlaylist(String playlistName) {
+        long sequence;
+        long stamp = lock.writeLock();
+        try {
+            Playlist playlist = playlistLibrary.getPlaylist(playlistName);
+            if (playlist == null) {
+                return false;
+            }
+            // emptied from the end, so that undo fills it again from the start
+            List<Songs> songs = new ArrayList<>(playlist.size());
+            for (Songs song : playlist) {
+                songs.add(song);
+            }
+            HistoryEntry entry = new HistoryEntry("Delete playlist " + playlistName, songs.size() + 1);
+            for (int i = songs.size() - 1; i >= 0; i--) {
+                entry.songRemoved(playlistName, i, songs.get(i));
+            }
+            entry.playlistDeleted(playlistName);
+            playlistLibrary.removePlaylist(playlistName);
+            history.record(entry);
+            playlistViews.remove(playlistName);
+            sequence = journal == null ? 0 : journal.playlistDeleted(playlistName);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        sync(sequence);
+        return true;
+    }
+
+    /**
+     *
+     * Adds a song in the library to the end of a playlist.
+     *
+     * @param playlistName the name of the playlist
+     * @param song         the song to be added
+     * @return true if the song was added, false if there is no such playlist
+     *         or the song is not in the library
+     */
+    boolean addSongToPlaylist(String playlistName, Songs song) {
+        long sequence;
+        ReentrantLock stripe = stripeOf(song.getTitle(), song.getArtist());
+        stripe.lock();
+        try {
+            // the stripe keeps the song from being deleted until it is added
+            Songs current = songMap.get(song.getTitle(), song.getArtist());
+            if (current == null) {
+                return false;
+            }
+            long stamp = lock.writeLock();
+            try {
+                if (!playlistLibrary.addSongToPlaylist(playlistName, current)) {
+                    return false;
+                }
+                playlistViews.remove(playlistName);
+                HistoryEntry entry = new HistoryEntry("Add " + describe(current) + " to " + playlistName, 1);
+                entry.songInserted(playlistName, playlistLibrary.getPlaylist(playlistName).size() - 1, current);
+                history.record(entry);
+                sequence = journal == null ? 0 : journal.songAddedToPlaylist(playlistName, current);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        } finally {
+            stripe.unlock();
+        }
+        sync(sequence);
+        return true;
+    }
+
+    /**
+     *
+     * Adds several songs in the library to the end of a playlist, in order,
+     * joining them to the playlist in a single step. Songs that are not in the
+     * library are skipped.
+     *
+     * @param playlistName the name of the playlist
+     * @param songs        the songs to be added, found by title and artist
+     * @return the songs that were added, or null if there is no such playlist
+     */
+    List<Songs> addSongsToPlaylist(String playlistName, Collection<Songs> songs) {
+        List<Songs> added = new ArrayList<>(songs.size());
+        long sequence = 0;
+        long held = lockStripes(songs);
+        try {
+            for (Songs song : songs) {
+                Songs current = songMap.get(song.getTitle(), song.getArtist());
+                if (current != null) {
+                    added.add(current);
+                }
+            }
+            long stamp = lock.writeLock();
+            try {
+                Playlist playlist = playlistLibrary.getPlaylist(playlistName);
+                if (playlist == null) {
+                    return null;
+                }
+                if (added.isEmpty()) {
+                    return added;
+                }
+                int start = playlist.size();
+                playlistLibrary.addSongsToPlaylist(playlistName, added);
+                playlistViews.remove(playlistName);
+                HistoryEntry entry = new HistoryEntry("Add " + added.size() + " songs to " + playlistName,
+                        added.size());
+                for (int i = 0; i < added.size(); i++) {
+                    entry.songInserted(playlistName, start + i, added.get(i));
+                }
+                history.record(entry);
+                if (journal != null) {
+                    for (Songs song : added) {
+                        sequence = journal.songAddedToPlaylist(playlistName, song);
+                    }
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        } finally {
+            unlockStripes(held);
+        }
+        sync(sequence);
+        return added;
+    }
+
+    /**
+     *
+     * Removes the first occurrence of a song from a playlist.
+     *
+     * @param playlistName the name of the playlist
+     * @param song         the song to be removed
+     * @return true if the song was in the playlist
+     */
+    boolean removeSongFromPlaylist(String playlistName, Songs song) {
+        long sequence;
+        ReentrantLock stripe = stripeOf(song.getTitle(), song.getArtist());
+        stripe.lock();
+        try {
+            long stamp = lock.writeLock();
+            try {
+                int index = playlistLibrary.removeFirstFromPlaylist(playlistName, song);
+                if (index < 0) {
+                    return false;
+                }
+                playlistViews.remove(playlistName);
+                HistoryEntry entry = new HistoryEntry("Remove " + describe(song) + " from " + playlistName, 1);
+                entry.songRemoved(playlistName, index, song);
+                history.record(entry);
+                sequence = journal == null ? 0 : journal.songRemovedFromPlaylist(playlistName, song);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        } finally {
+            stripe.unlock();
+        }
+        sync(sequence);
+        return true;
+    }
+
+    /**
+     *
+     * Returns the songs of a playlist in order. The list is a read-only copy
+     * that is shared by every reader until the playlist changes.
+     *
+     * @param playlistName the name of the playlist
+     * @return the songs of the playlist, or null if there is no such playlist
+     */
+    List<Songs> getPlaylist(String playlistName) {
+        List<Songs> view = playlistViews.get(playlistName);
+        if (view != null) {
+            return view;
+        }
+        long stamp = lock.readLock();
+        try {
+            Playlist playlist = playlistLibrary.getPlaylist(playlistName);
+            if (playlist == null) {
+                return null;
+            }
+            List<Songs> songs = new ArrayList<>(playlist.size());
+            for (Songs song : playlist) {
+                songs.add(song);
+            }
+            view = Collections.unmodifiableList(songs);
+            // published under the read lock, so no change can come in between
+            // and leave a stale copy behind
+            playlistViews.put(playlistName, view);
+            return view;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     *
+     * Returns the names of every playlist.
+     *
+     * @return the playlist names
+     */
+    List<String> getPlaylistNames() {
+        long stamp = lock.readLock();
+        try {
+            List<String> names = new ArrayList<>();
+            for (String playlistName : playlistLibrary.getPlaylistNames()) {
+                names.add(playlistName);
+            }
+            return names;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     *
+     * Returns the names of the playlists that contain a song.
+     *
+     * @param song the song to look for
+     * @return the names of the playlists holding the song, which may be empty
+     */
+    List<String> getPlaylistsContaining(Songs song) {
+        long stamp = lock.readLock();
+        try {
+            return playlistLibrary.getPlaylistsContaining(song);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     *
+     * Starts a journal compaction if the journal has grown past its limit.
+     * The library is read locked while the compactor copies it, so the copy
+     * matches the journal generation it covers.
+     *
+     * @param compactor the compactor of the journal
+     */
+    void compactIfNeeded(JournalCompactor compactor) {
+        long stamp = lock.readLock();
+        try {
+            compactor.compactIfNeeded(songList, playlistLibrary);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     *
+     * Describes how much memory the search indexes and the undo history use.
+     *
+     * @return a printable summary of their sizes
+     */
+    String stats() {
+        // the history reads nothing from disk here, but it is only guarded by
+        // the write lock
+        long stamp = lock.writeLock();
+        try {
+            StringBuilder stats = new StringBuilder(searchIndex.stats());
+            for (SortedSongIndex sorted : sortedIndexes) {
+                stats.append(System.lineSeparator()).append(sorted.stats());
+            }
+            stats.append(System.lineSeparator()).append(leaderboards.stats());
+            stats.append(System.lineSeparator()).append(facetIndex.stats());
+            stats.append(System.lineSeparator()).append(fuzzyTitles.stats("titles"));
+            stats.append(System.lineSeparator()).append(fuzzyArtists.stats("artists"));
+            stats.append(System.lineSeparator()).append(titleCompletions.stats());
+            stats.append(System.lineSeparator()).append(artistCompletions.stats());
+            stats.append(System.lineSeparator()).append(searchCache.stats());
+            return stats.append(System.lineSeparator()).append(history.stats()).toString();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     *
+     * Drops the undo history and deletes its spill file, when the library is
+     * closed.
+     */
+    void closeHistory() {
+        long stamp = lock.writeLock();
+        try {
+            history.close();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     *
+     * Runs a read of the sorted indexes without locking, and again under the
+     * read lock if a change was made while it ran. A read that overlaps a
+     * change may see a tree halfway through a split or merge. Every loop of
+     * those reads is bounded by the height of the tree, the size of a node or
+     * the page limit, so such a read ends, perhaps by throwing, and its
+     * result is thrown away when the stamp no longer validates.
+     */
+    private <T> T readOptimistically(Supplier<T> reader) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T result = reader.get();
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+                // a change got in while the structures were read
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private ReentrantLock stripeOf(String title, String artist) {
+        return stripes[stripeIndex(title, artist)];
+    }
+
+    private static int stripeIndex(String title, String artist) {
+        int hash = SongCatalog.hash(title, artist);
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+
+    /**
+     *
+     * Locks the stripes of a batch of songs in stripe order, so that two
+     * batches never wait for each other's stripes. Returns the held stripes as
+     * a bit mask, one bit per stripe.
+     */
+    private long lockStripes(Collection<Songs> songs) {
+        long held = 0;
+        for (Songs song : songs) {
+            held |= 1L << stripeIndex(song.getTitle(), song.getArtist());
+        }
+        return lockStripes(held);
+    }
+
+    private long lockStripes(long held) {
+        for (long rest = held; rest != 0; rest &= rest - 1) {
+            stripes[Long.numberOfTrailingZeros(rest)].lock();
+        }
+        return held;
+    }
+
+    private void unlockStripes(long held) {
+        for (long rest = held; rest != 0; rest &= rest - 1) {
+            stripes[Long.numberOfTrailingZeros(rest)].unlock();
+        }
+    }
+
+    // the search index and the sorted indexes always hold the same songs
+
+    private void index(Songs song) {
+        invalidate(song);
+        searchIndex.add(song);
+        for (SortedSongIndex sorted : sortedIndexes) {
+            sorted.add(song);
+        }
+        leaderboards.add(song);
+        facetIndex.add(song);
+        fuzzyTitles.add(song.getTitle());
+        fuzzyArtists.add(song.getArtist());
+        titleCompletions.add(song);
+        artistCompletions.add(song);
+    }
+
+    private void unindex(Songs song) {
+        invalidate(song);
+        searchIndex.remove(song);
+        for (SortedSongIndex sorted : sortedIndexes) {
+            sorted.remove(song);
+        }
+        leaderboards.remove(song);
+        facetIndex.remove(song);
+        fuzzyTitles.remove(song.getTitle());
+        fuzzyArtists.remove(song.getArtist());
+        titleCompletions.remove(song);
+        artistCompletions.remove(song);
+    }
+
+    private void indexAll(Collection<Songs> songs) {
+        invalidateAll(songs);
+        searchIndex.addAll(songs);
+        for (SortedSongIndex sorted : sortedIndexes) {
+            for (Songs song : songs) {
+                sorted.add(song);
+            }
+        }
+        for (Songs song : songs) {
+            leaderboards.add(song);
+            facetIndex.add(song);
+            fuzzyTitles.add(song.getTitle());
+            fuzzyArtists.add(song.getArtist());
+            titleCompletions.add(song);
+            artistCompletions.add(song);
+        }
+    }
+
+    private void unindexAll(Collection<Songs> songs) {
+        invalidateAll(songs);
+        searchIndex.removeAll(songs);
+        for (SortedSongIndex sorted : sortedIndexes) {
+            for (Songs song : songs) {
+                sorted.remove(song);
+            }
+        }
+        for (Songs song : songs) {
+            leaderboards.remove(song);
+            facetIndex.remove(song);
+            fuzzyTitles.remove(song.getTitle());
+            fuzzyArtists.remove(song.getArtist());
+            titleCompletions.remove(song);
+            artistCompletions.remove(song);
+        }
+    }
+
+    /**
+     *
+     * Drops the cached search results a song belongs to, or would belong to,
+     * when it is indexed or unindexed. The song is offered under every word
+     * and every three characters of its text fields, which are the terms the
+     * searches watch.
+     */
+    private void invalidate(Songs song) {
+        if (searchCache.isEmpty()) {
+            return;
+        }
+        Set<String> terms = new HashSet<>();
+        for (String token : SongSearchIndex.tokensOf(song)) {
+            terms.add(WORD_TERM + token);
+        }
+        for (String field : new String[] {song.getTitle(), song.getArtist(), song.getGenre(), song.getAlbum()}) {
+            for (int i = 0; i + GRAM <= field.length(); i++) {
+                terms.add(TEXT_TERM + field.substring(i, i + GRAM));
+            }
+        }
+        searchCache.invalidate(song, terms);
+    }
+
+    private void invalidateAll(Collection<Songs> songs) {
+        if (songs.size() > CACHE_CLEAR_BATCH) {
+            searchCache.clear();
+            return;
+        }
+        for (Songs song : songs) {
+            invalidate(song);
+        }
+    }
+
+    private List<Songs> songsOf(int[] ids) {
+        List<Songs> songs = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            songs.add(searchIndex.getSong(id));
+        }
+        return songs;
+    }
+
+    /**
+     *
+     * Adds the steps of deleting a song to a history entry: taking it out of
+     * each playlist position, last first, and then deleting it.
+     */
+    private static void deletionSteps(HistoryEntry entry, DeletedSong deleted) {
+        for (Map.Entry<String, List<Integer>> positions : deleted.getPlaylistPositions().entrySet()) {
+            List<Integer> indexes = positions.getValue();
+            for (int i = indexes.size() - 1; i >= 0; i--) {
+                entry.songRemoved(positions.getKey(), indexes.get(i), deleted.getSong());
+            }
+        }
+        entry.songDeleted(deleted.getSong());
+    }
+
+    private static String describe(Songs song) {
+        return song.getTitle() + " by " + song.getArtist();
+    }
+
+    /**
+     *
+     * Waits for the journal records of a change, after every lock has been
+     * released.
+     */
+    private void sync(long sequence) {
+        if (journal != null && sequence > 0) {
+            journal.sync(sequence);
+        }
+    }
+}
@@ -0,0 +1,701 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ *
+ * The MutationJournal class is an append-only log of every change made to the
+ * music library and the playlists since the last snapshot.
+ *
+ * Each change is written as a small binary record framed by its length and a
+ * CRC32 checksum. Records are collected in memory and a background thread
+ * writes and fsyncs whatever has built up in one go (group commit), so several
+ * changes made close together share a single disk flush. A caller waits until
+ * its own record is on disk before carrying on, unless waiting on append has
+ * been turned off; then each record method returns the sequence number of its
+ * record, and the caller waits for it with sync once it has released its own
+ * locks.
+ *
+ * The journal is split into segments, each tagged with a generation number.
+ * Compacting the journal starts a new segment and writes a snapshot that
+ * covers every older generation, after which the older segments are deleted.
+ * On startup the segments newer than the snapshot are replayed over it.
+ */
+class MutationJournal {
+
+    static final byte ADD_SONG = 1;
+    static final byte DELETE_SONG = 2;
+    static final byte RESTORE_SONG = 3;
+    static final byte CREATE_PLAYLIST = 4;
+    static final byte ADD_TO_PLAYLIST = 5;
+    static final byte REMOVE_FROM_PLAYLIST = 6;
+    static final byte INSERT_INTO_PLAYLIST = 7;
+    static final byte DELETE_PLAYLIST = 8;
+    static final byte UPDATE_SONG = 9;
+    static final byte REMOVE_FROM_PLAYLIST_AT = 10;
+
+    private static final int MAGIC = 0x4D4C4A4E; // "MLJN"
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     *
+     * Receives the changes read back from the journal on startup.
+     */
+    interface Replayer {
+
+        void addSong(Songs song);
+
+        void deleteSong(String title, String artist);
+
+        void createPlaylist(String playlistName);
+
+        /**
+         * The artist is null for records written before playlist records
+         * carried one.
+         */
+        void addToPlaylist(String playlistName, String songTitle, String songArtist);
+
+        void removeFromPlaylist(String playlistName, String songTitle, String songArtist);
+
+        void insertIntoPlaylist(String playlistName, int index, String songTitle, String songArtist);
+
+        /**
+         * Removes the song at a position, rather than the first occurrence
+         * of the song, as when an addition to a playlist is undone.
+         */
+        void removeFromPlaylistAt(String playlistName, int index, String songTitle, String songArtist);
+
+        void deletePlaylist(String playlistName);
+
+        /**
+         * The song carries the new values of the song with the same title
+         * and artist.
+         */
+        void updateSong(Songs song);
+    }
+
+    private final File activeFile;
+    private final long commitDelayMillis;
+    private FileChannel channel;
+    private int generation;
+
+    private ByteArrayOutputStream pending;
+    private long appended;
+    private long durable;
+    private IOException failure;
+    private boolean closed;
+    private boolean syncOnAppend = true;
+    private final Thread flusher;
+
+    /**
+     *
+     * Opens the active journal segment for appending, creating it with the
+     * given generation if it does not exist yet.
+     *
+     * @param journalFile       the path of the active journal segment
+     * @param generation        the generation to use for a new segment
+     * @param commitDelayMillis how long the flusher waits for more records
+     *                          before each flush
+     * @throws IOException if the journal cannot be opened
+     */
+    MutationJournal(String journalFile, int generation, long commitDelayMillis) throws IOException {
+        this.activeFile = new File(journalFile).getAbsoluteFile();
+        this.commitDelayMillis = commitDelayMillis;
+        this.pending = new ByteArrayOutputStream();
+        openActive(generation);
+
+        flusher = new Thread(this::flushLoop, "journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     *
+     * Records that a song was added.
+     *
+     * @param song the song that was added
+     * @return the sequence number of the record
+     */
+    long songAdded(Songs song) {
+        return append(songRecord(ADD_SONG, song));
+    }
+
+    /**
+     *
+     * Records that a song was deleted.
+     *
+     * @param song the song that was deleted
+     * @return the sequence number of the record
+     */
+    long songDeleted(Songs song) {
+        return append(record(DELETE_SONG, song.getTitle(), song.getArtist()));
+    }
+
+    /**
+     *
+     * Records that a deleted song was restored by undo.
+     *
+     * @param song the song that was restored
+     * @return the sequence number of the record
+     */
+    long songRestored(Songs song) {
+        return append(songRecord(RESTORE_SONG, song));
+    }
+
+    /**
+     *
+     * Records that the genre, album, track number, year, rating or play count
+     * of a song changed.
+     *
+     * @param song the song with its new values
+     * @return the sequence number of the record
+     */
+    long songUpdated(Songs song) {
+        return append(songRecord(UPDATE_SONG, song));
+    }
+
+    /**
+     *
+     * Records that a playlist was created.
+     *
+     * @param playlistName the name of the new playlist
+     * @return the sequence number of the record
+     */
+    long playlistCreated(String playlistName) {
+        return append(record(CREATE_PLAYLIST, playlistName));
+    }
+
+    /**
+     *
+     * Records that a playlist was deleted.
+     *
+     * @param playlistName the name of the deleted playlist
+     * @return the sequence number of the record
+     */
+    long playlistDeleted(String playlistName) {
+        return append(record(DELETE_PLAYLIST, playlistName));
+    }
+
+    /**
+     *
+     * Records that a song was added to a playlist.
+     *
+     * @param playlistName the name of the playlist
+     * @param song         the song that was added
+     * @return the sequence number of the record
+     */
+    long songAddedToPlaylist(String playlistName, Songs song) {
+        return append(record(ADD_TO_PLAYLIST, playlistName, song.getTitle(), song.getArtist()));
+    }
+
+    /**
+     *
+     * Records that a song was removed from a playlist.
+     *
+     * @param playlistName the name of the playlist
+     * @param song         the song that was removed
+     * @return the sequence number of the record
+     */
+    long songRemovedFromPlaylist(String playlistName, Songs song) {
+        return append(record(REMOVE_FROM_PLAYLIST, playlistName, song.getTitle(), song.getArtist()));
+    }
+
+    /**
+     *
+     * Records that a song was put back into a playlist at a given position,
+     * as when undoing a delete.
+     *
+     * @param playlistName the name of the playlist
+     * @param index        the position the song was inserted at
+     * @param song         the song that was inserted
+     * @return the sequence number of the record
+     */
+    long songInsertedIntoPlaylist(String playlistName, int index, Songs song) {
+        return append(positionRecord(INSERT_INTO_PLAYLIST, playlistName, index, song));
+    }
+
+    /**
+     *
+     * Records that the song at a given position of a playlist was removed, as
+     * when undoing an addition to the playlist.
+     *
+     * @param playlistName the name of the playlist
+     * @param index        the position the song was removed from
+     * @param song         the song that was removed
+     * @return the sequence number of the record
+     */
+    long songRemovedFromPlaylistAt(String playlistName, int index, Songs song) {
+        return append(positionRecord(REMOVE_FROM_PLAYLIST_AT, playlistName, index, song));
+    }
+
+    /**
+     *
+     * Sets whether the record methods wait for their record to reach the
+     * disk. A caller that turns this off must call sync with the returned
+     * sequence number before treating a change as saved.
+     *
+     * @param syncOnAppend true to wait on every append, which is the default
+     */
+    synchronized void setSyncOnAppend(boolean syncOnAppend) {
+        this.syncOnAppend = syncOnAppend;
+    }
+
+    /**
+     *
+     * Waits until every record up to the given sequence number is on disk.
+     * Records are flushed in order, so this also covers every earlier record.
+     *
+     * @param sequence the sequence number returned by a record method
+     */
+    void sync(long sequence) {
+        try {
+            awaitDurable(sequence);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write to the journal", e);
+        }
+    }
+
+    /**
+     *
+     * Returns the generation of the active segment.
+     *
+     * @return the generation of the active segment
+     */
+    synchronized int getGeneration() {
+        return generation;
+    }
+
+    /**
+     *
+     * Returns the size of the active segment, including records that have not
+     * been flushed yet.
+     *
+     * @return the size of the active segment in bytes
+     * @throws IOException if the size cannot be read
+     */
+    synchronized long size() throws IOException {
+        return channel.size() + pending.size();
+    }
+
+    /**
+     *
+     * Flushes the active segment and starts a new one with the next
+     * generation. The old segment stays on disk until a snapshot covering it
+     * has been written.
+     *
+     * @return the generation of the segment that was closed
+     * @throws IOException if the segments cannot be switched
+     */
+    synchronized int rotate() throws IOException {
+        awaitDurable(appended);
+        int closedGeneration = generation;
+        channel.close();
+        Files.move(activeFile.toPath(), segmentFile(activeFile, closedGeneration).toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        openActive(closedGeneration + 1);
+        return closedGeneration;
+    }
+
+    /**
+     *
+     * Flushes every pending record and stops the flusher thread.
+     *
+     * @throws IOException if the last records cannot be written
+     */
+    void close() throws IOException {
+        synchronized (this) {
+            awaitDurable(appended);
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    /**
+     *
+     * Adds a record to the pending batch and, unless waiting on append is off,
+     * waits until the flusher has written it to disk.
+     */
+    private synchronized long append(byte[] payload) {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        ByteBuffer frame = ByteBuffer.allocate(8);
+        frame.putInt(payload.length);
+        frame.putInt((int) crc.getValue());
+        pending.write(frame.array(), 0, 8);
+        pending.write(payload, 0, payload.length);
+        long sequence = ++appended;
+        notifyAll();
+        if (syncOnAppend) {
+            sync(sequence);
+        }
+        return sequence;
+    }
+
+    private synchronized void awaitDurable(long sequence) throws IOException {
+        boolean interrupted = false;
+        while (durable < sequence && failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     *
+     * Waits for records to arrive, then writes and fsyncs everything that has
+     * built up as one batch.
+     */
+    private void flushLoop() {
+        while (true) {
+            byte[] batch;
+            long batchEnd;
+            FileChannel target;
+            synchronized (this) {
+                while (pending.size() == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.size() == 0 && closed) {
+                    return;
+                }
+            }
+            if (commitDelayMillis > 0) {
+                try {
+                    Thread.sleep(commitDelayMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            synchronized (this) {
+                batch = pending.toByteArray();
+                batchEnd = appended;
+                pending = new ByteArrayOutputStream();
+                target = channel;
+            }
+            // rotate and close wait for this batch before touching the channel
+            IOException error = null;
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(batch);
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                target.force(false);
+            } catch (IOException e) {
+                error = e;
+            }
+            synchronized (this) {
+                if (error == null) {
+                    durable = batchEnd;
+                } else {
+                    failure = error;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    private void openActive(int newGeneration) throws IOException {
+        boolean exists = activeFile.exists() && activeFile.length() >= HEADER_SIZE;
+        channel = FileChannel.open(activeFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (exists) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException(activeFile + " is not a journal file");
+            }
+            generation = header.getInt();
+            channel.truncate(validLength(activeFile));
+            channel.position(channel.size());
+        } else {
+            generation = newGeneration;
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(generation).flip();
+            channel.write(header, 0);
+            channel.position(HEADER_SIZE);
+            channel.force(true);
+        }
+    }
+
+    /**
+     *
+     * Replays every journal segment newer than the snapshots and deletes the
+     * segments the snapshots already cover.
+     *
+     * @param journalFile        the path of the active journal segment
+     * @param songGeneration     the generation covered by the song snapshot
+     * @param playlistGeneration the generation covered by the playlist
+     *                           snapshot
+     * @param replayer           receives the changes that were replayed
+     * @return the highest generation seen, so a new active segment can follow
+     *         it
+     * @throws IOException if a segment cannot be read
+     */
+    static int replay(String journalFile, int songGeneration, int playlistGeneration, Replayer replayer)
+            throws IOException {
+        File active = new File(journalFile).getAbsoluteFile();
+        List<File> segments = new ArrayList<>();
+        File[] files = active.getParentFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().startsWith(active.getName() + ".")) {
+                    segments.add(file);
+                }
+            }
+        }
+        Collections.sort(segments, (a, b) -> Integer.compare(generationOf(a), generationOf(b)));
+        if (active.exists()) {
+            segments.add(active);
+        }
+
+        int highest = Math.max(songGeneration, playlistGeneration);
+        for (File segment : segments) {
+            int segmentGeneration = generationOf(segment);
+            highest = Math.max(highest, segmentGeneration);
+            if (segmentGeneration <= Math.min(songGeneration, playlistGeneration)) {
+                if (!segment.equals(active)) {
+                    segment.delete();
+                }
+                continue;
+            }
+            replaySegment(segment, segmentGeneration > songGeneration, segmentGeneration > playlistGeneration,
+                    replayer);
+        }
+        return highest;
+    }
+
+    /**
+     *
+     * Deletes the rotated segments that a snapshot of the given generation
+     * covers.
+     *
+     * @param journalFile the path of the active journal segment
+     * @param generation  the generation covered by the snapshot
+     */
+    static void deleteSegmentsThrough(String journalFile, int generation) {
+        File active = new File(journalFile).getAbsoluteFile();
+        File[] files = active.getParentFile().listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().startsWith(active.getName() + ".") && generationOf(file) <= generation) {
+                file.delete();
+            }
+        }
+    }
+
+    private static void replaySegment(File segment, boolean songs, boolean playlists, Replayer replayer)
+            throws IOException {
+        byte[] bytes = Files.readAllBytes(segment.toPath());
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.position(HEADER_SIZE);
+        while (buffer.remaining() >= 8) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length < 0 || length > buffer.remaining() || checksum(bytes, buffer.position(), length) != checksum) {
+                // a torn write at the end of the segment; everything before it is intact
+                break;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, buffer.position(), length));
+            buffer.position(buffer.position() + length);
+            byte type = in.readByte();
+            switch (type) {
+                case ADD_SONG:
+                case RESTORE_SONG:
+                case UPDATE_SONG:
+                    Songs song = new Songs(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readInt(),
+                            in.readInt(), in.readDouble());
+                    song.setPlayCount(in.readInt());
+                    if (songs && type == UPDATE_SONG) {
+                        replayer.updateSong(song);
+                    } else if (songs) {
+                        replayer.addSong(song);
+                    }
+                    break;
+                case DELETE_SONG:
+                    String title = in.readUTF();
+                    String artist = in.readUTF();
+                    if (songs) {
+                        replayer.deleteSong(title, artist);
+                    }
+                    break;
+                case CREATE_PLAYLIST:
+                    String name = in.readUTF();
+                    if (playlists) {
+                        replayer.createPlaylist(name);
+                    }
+                    break;
+                case ADD_TO_PLAYLIST:
+                    String addTo = in.readUTF();
+                    String added = in.readUTF();
+                    String addedArtist = in.available() > 0 ? in.readUTF() : null;
+                    if (playlists) {
+                        replayer.addToPlaylist(addTo, added, addedArtist);
+                    }
+                    break;
+                case REMOVE_FROM_PLAYLIST:
+                    String removeFrom = in.readUTF();
+                    String removed = in.readUTF();
+                    String removedArtist = in.available() > 0 ? in.readUTF() : null;
+                    if (playlists) {
+                        replayer.removeFromPlaylist(removeFrom, removed, removedArtist);
+                    }
+                    break;
+                case DELETE_PLAYLIST:
+                    String deletedPlaylist = in.readUTF();
+                    if (playlists) {
+                        replayer.deletePlaylist(deletedPlaylist);
+                    }
+                    break;
+                case INSERT_INTO_PLAYLIST:
+                    String insertInto = in.readUTF();
+                    int index = in.readInt();
+                    String inserted = in.readUTF();
+                    String insertedArtist = in.readUTF();
+                    if (playlists) {
+                        replayer.insertIntoPlaylist(insertInto, index, inserted, insertedArtist);
+                    }
+                    break;
+                case REMOVE_FROM_PLAYLIST_AT:
+                    String removeAt = in.readUTF();
+                    int position = in.readInt();
+                    String removedAt = in.readUTF();
+                    String removedAtArtist = in.readUTF();
+                    if (playlists) {
+                        replayer.removeFromPlaylistAt(removeAt, position, removedAt, removedAtArtist);
+                    }
+                    break;
+                default:
+                    throw new IOException(segment + " has an unknown record type " + type);
+            }
+        }
+    }
+
+    /**
+     *
+     * Returns the length of the intact part of a segment, so a torn record at
+     * the end can be cut off before appending after it.
+     */
+    private static long validLength(File segment) throws IOException {
+        byte[] bytes = Files.readAllBytes(segment.toPath());
+        int position = HEADER_SIZE;
+        while (bytes.length - position >= 8) {
+            ByteBuffer frame = ByteBuffer.wrap(bytes, position, 8);
+            int length = frame.getInt();
+            int checksum = frame.getInt();
+            if (length < 0 || length > bytes.length - position - 8
+                    || checksum(bytes, position + 8, length) != checksum) {
+                break;
+            }
+            position += 8 + length;
+        }
+        return position;
+    }
+
+    private static int generationOf(File segment) {
+        try (FileChannel in = FileChannel.open(segment.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            in.read(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                return -1;
+            }
+            return header.getInt();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static File segmentFile(File active, int generation) {
+        return new File(active.getParentFile(), active.getName() + "." + generation);
+    }
+
+    private static int checksum(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] songRecord(byte type, Songs song) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(type);
+            out.writeUTF(song.getTitle());
+            out.writeUTF(song.getArtist());
+            out.writeUTF(song.getGenre());
+            out.writeUTF(song.getAlbum());
+            out.writeInt(song.getTrackNumber());
+            out.writeInt(song.getYear());
+            out.writeDouble(song.getRating());
+            out.writeInt(song.getPlayCount());
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] positionRecord(byte type, String playlistName, int index, Songs song) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(type);
+            out.writeUTF(playlistName);
+            out.writeInt(index);
+            out.writeUTF(song.getTitle());
+            out.writeUTF(song.getArtist());
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] record(byte type, String... values) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(type);
+            for (String value : values) {
+                out.writeUTF(value);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+import java.io.PrintStream;
+import java.util.Scanner;
+
+/**
+ *
+ * The PagedOutput class shows a long list on the console a page at a time,
+ * asking before each page after the first whether to go on.
+ *
+ * The caller hands over one line at a time, reading its songs as it goes,
+ * and stops as soon as println returns false, so only the pages the user
+ * asks for are ever read and the first page costs the same however long the
+ * list is. The lines of a page are gathered in a buffer and written to the
+ * console with one call, instead of one flush per line.
+ *
+ * When a page is full, the user is asked whether to show the next one before
+ * the next line is accepted, so there is no question after the last line.
+ * Typing a number instead of pressing Enter changes the page size from then
+ * on.
+ */
+final class PagedOutput {
+
+    private final Scanner scanner;
+    private final PrintStream out;
+    private final StringBuilder page = new StringBuilder();
+    private int pageSize;
+    private int lines;
+    private boolean stopped;
+
+    /**
+     *
+     * Constructs a new PagedOutput object. The scanner must be at the start
+     * of a line, so the newline after a number read from it has to be
+     * consumed first.
+     *
+     * @param scanner  the Scanner object used for reading user input
+     * @param out      the stream pages are written to
+     * @param pageSize the number of lines shown at a time
+     */
+    PagedOutput(Scanner scanner, PrintStream out, int pageSize) {
+        this.scanner = scanner;
+        this.out = out;
+        this.pageSize = Math.max(1, pageSize);
+    }
+
+    /**
+     *
+     * Returns the number of lines shown at a time, which the user may have
+     * changed.
+     *
+     * @return the page size
+     */
+    int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     *
+     * Adds a line to the current page. If the page is already full, it is
+     * written first and the user is asked whether to go on.
+     *
+     * @param line the line to be shown
+     * @return false if the user stopped, so no more lines should be made
+     */
+    boolean println(String line) {
+        if (stopped) {
+            return false;
+        }
+        if (lines == pageSize) {
+            flush();
+            out.println("Press Enter for the next " + pageSize + " lines, a number to show that many at a time, "
+                    + "or 0 to stop:");
+            String answer = scanner.nextLine().trim();
+            if (answer.equals("0")) {
+                stopped = true;
+                return false;
+            }
+            try {
+                if (!answer.isEmpty()) {
+                    pageSize = Math.max(1, Integer.parseInt(answer));
+                }
+            } catch (NumberFormatException e) {
+                // anything else goes on with the same page size
+            }
+        }
+        page.append(line).append(System.lineSeparator());
+        lines++;
+        return true;
+    }
+
+    /**
+     *
+     * Writes the lines of the last page, which ends the list.
+     */
+    void finish() {
+        flush();
+    }
+
+    private void flush() {
+        out.print(page);
+        out.flush();
+        page.setLength(0);
+        lines = 0;
+    }
+}
@@ -0,0 +1,307 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ *
+ * The ParallelCatalogLoader class reads a CSV music library file on several
+ * cores at once.
+ *
+ * The file is cut into roughly equal chunks. A first parallel pass counts the
+ * quotes and line breaks in each chunk, which tells every chunk whether it
+ * starts inside a quoted field and which line it starts on. Each chunk then
+ * moves its start forward to the first line break outside quotes, so no row
+ * is split between two chunks, and is parsed by its own CatalogCsvReader on a
+ * ForkJoinPool. The songs of each chunk are finally appended to the song list
+ * and song catalog in chunk order, so the library ends up in file order.
+ */
+class ParallelCatalogLoader {
+
+    /**
+     * Files smaller than this are read on one thread, as splitting them costs
+     * more than it saves.
+     */
+    static final long MIN_PARALLEL_BYTES = 8L * 1024 * 1024;
+
+    private final int threads;
+    private long errorCount;
+    private long duplicateCount;
+    private final List<String> errors = new ArrayList<>();
+
+    /**
+     *
+     * Constructs a new ParallelCatalogLoader object.
+     *
+     * @param threads the number of threads to parse with
+     */
+    ParallelCatalogLoader(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     *
+     * Reads a CSV music library file and appends its songs to the song list
+     * and song catalog in file order. A song whose title and artist are
+     * already in the catalog is skipped and counted as a duplicate.
+     *
+     * @param musicLibraryFile the path of the CSV file
+     * @param songList         the custom linked list where songs will be stored
+     * @param songMap          the catalog where songs will be stored by title
+     *                         and artist
+     * @return the number of songs added
+     * @throws IOException if the file cannot be read
+     */
+    long load(String musicLibraryFile, CustomLinkedList songList, SongCatalog songMap)
+            throws IOException {
+        errorCount = 0;
+        duplicateCount = 0;
+        errors.clear();
+        try (FileChannel channel = FileChannel.open(new File(musicLibraryFile).toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            int chunkCount = size < MIN_PARALLEL_BYTES ? 1 : (int) Math.min(threads * 4L, size / (1 << 20) + 1);
+            final Chunk[] chunks = new Chunk[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                chunks[i] = new Chunk(size * i / chunkCount, size * (i + 1) / chunkCount);
+            }
+
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                if (chunkCount > 1) {
+                    pool.invoke(new ForEachChunk(chunks, 0, chunkCount, chunk -> chunk.count(channel)));
+                    alignChunks(chunks);
+                    pool.invoke(new ForEachChunk(chunks, 1, chunkCount, chunk -> chunk.findRowStart()));
+                    trimChunks(chunks, size);
+                }
+                pool.invoke(new ForEachChunk(chunks, 0, chunkCount, chunk -> chunk.parse(channel)));
+            } finally {
+                pool.shutdown();
+            }
+
+            long total = 0;
+            for (Chunk chunk : chunks) {
+                if (chunk.failure != null) {
+                    throw chunk.failure;
+                }
+                for (Songs song : chunk.songs) {
+                    if (songMap.add(song)) {
+                        songList.add(song);
+                        total++;
+                    } else {
+                        duplicateCount++;
+                    }
+                }
+                errorCount += chunk.errorCount;
+                for (String error : chunk.errors) {
+                    if (errors.size() < 100) {
+                        errors.add(error);
+                    }
+                }
+            }
+            return total;
+        }
+    }
+
+    /**
+     *
+     * Returns the number of rows that could not be read by the last load.
+     *
+     * @return the number of malformed rows
+     */
+    long getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     *
+     * Returns the number of songs skipped by the last load because a song
+     * with the same title and artist was already in the catalog.
+     *
+     * @return the number of duplicate songs
+     */
+    long getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    /**
+     *
+     * Returns a description of each malformed row, with its line number, in
+     * file order. Only the first hundred are kept.
+     *
+     * @return the error messages
+     */
+    List<String> getErrors() {
+        return errors;
+    }
+
+    /**
+     *
+     * Works out from the per-chunk counts whether each chunk starts inside a
+     * quoted field and which line it starts on.
+     */
+    private static void alignChunks(Chunk[] chunks) {
+        boolean inQuotes = false;
+        long line = 1;
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i].startsInQuotes = inQuotes;
+            chunks[i].firstLineOfRange = line;
+            if ((chunks[i].quotes & 1) == 1) {
+                inQuotes = !inQuotes;
+            }
+            line += chunks[i].lineBreaks;
+        }
+    }
+
+    /**
+     *
+     * Moves each chunk to start at the first row that begins inside it and to
+     * end where the next chunk now starts.
+     */
+    private static void trimChunks(Chunk[] chunks, long size) {
+        // a chunk with no row starting in it is left empty, and the chunk
+        // before it carries on through it
+        long nextStart = size;
+        for (int i = chunks.length - 1; i >= 0; i--) {
+            long rowStart = i == 0 ? 0 : chunks[i].rowStart;
+            if (rowStart < 0) {
+                chunks[i].start = nextStart;
+                chunks[i].end = nextStart;
+            } else {
+                chunks[i].start = rowStart;
+                chunks[i].end = nextStart;
+                nextStart = rowStart;
+            }
+        }
+    }
+
+    /**
+     *
+     * A byte range of the file together with what was learned about it.
+     */
+    private static class Chunk {
+
+        long start;
+        long end;
+        long quotes;
+        long lineBreaks;
+        boolean startsInQuotes;
+        long firstLineOfRange;
+        long firstLine = 1;
+        long rowStart = -1;
+        MappedByteBuffer mapped;
+        List<Songs> songs = new ArrayList<>();
+        long errorCount;
+        List<String> errors = new ArrayList<>();
+        IOException failure;
+
+        Chunk(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        void count(FileChannel channel) {
+            try {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            } catch (IOException e) {
+                failure = e;
+                return;
+            }
+            for (int i = 0; i < mapped.limit(); i++) {
+                byte b = mapped.get(i);
+                if (b == '"') {
+                    quotes++;
+                } else if (b == '\n') {
+                    lineBreaks++;
+                }
+            }
+        }
+
+        /**
+         *
+         * Finds the offset just after the first line break in this chunk that
+         * is outside quotes, and the line number found there. The offset stays
+         * -1 if no row starts in this chunk.
+         */
+        void findRowStart() {
+            if (mapped == null) {
+                return;
+            }
+            boolean inQuotes = startsInQuotes;
+            long line = firstLineOfRange;
+            for (int i = 0; i < mapped.limit(); i++) {
+                byte b = mapped.get(i);
+                if (b == '"') {
+                    inQuotes = !inQuotes;
+                } else if (b == '\n') {
+                    line++;
+                    if (!inQuotes) {
+                        firstLine = line;
+                        rowStart = start + i + 1;
+                        return;
+                    }
+                }
+            }
+        }
+
+        void parse(FileChannel channel) {
+            mapped = null;
+            if (start >= end || failure != null) {
+                return;
+            }
+            CatalogCsvReader reader = new CatalogCsvReader();
+            try {
+                reader.read(channel, start, end, firstLine, songs::add);
+            } catch (IOException e) {
+                failure = e;
+            }
+            errorCount = reader.getErrorCount();
+            errors.addAll(reader.getErrors());
+        }
+    }
+
+    /**
+     *
+     * Something to do for one chunk.
+     */
+    private interface ChunkTask {
+
+        void run(Chunk chunk);
+    }
+
+    /**
+     *
+     * Runs a task for a range of chunks, splitting the range in half until a
+     * single chunk is left.
+     */
+    private static class ForEachChunk extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Chunk[] chunks;
+        private final int from;
+        private final int to;
+        private final ChunkTask task;
+
+        ForEachChunk(Chunk[] chunks, int from, int to, ChunkTask task) {
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+            this.task = task;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                task.run(chunks[from]);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ForEachChunk(chunks, from, middle, task), new ForEachChunk(chunks, middle, to, task));
+        }
+    }
+}
@@ -0,0 +1,158 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * The PlayCounter class takes in play events as fast as they arrive and adds
+ * them to the library in batches.
+ *
+ * Adding a play straight to the library locks the song and the write lock
+ * and writes a journal record, which is far too slow for tens of thousands of
+ * plays a second. Recording a play here only adds one to a counter kept for
+ * the song. The counters are LongAdders, which spread updates from different
+ * threads over separate cells, so threads playing the same hit song do not
+ * fight over one memory location, and once a song has its counter a play
+ * takes no locks and allocates nothing.
+ *
+ * A call to flush, made every so often from a background thread, reads every
+ * counter and hands the plays added since the last flush to the library in
+ * batches, one journal record per song and batch. Counters are never reset,
+ * only read: each counter remembers how much of it has been flushed, so a
+ * play recorded while a flush is running is simply part of the next one and
+ * no play is lost or counted twice.
+ *
+ * Plays of songs that are not in the library when they are flushed are
+ * dropped, as MusicLibraryService.addPlays does. A flush also drops the
+ * counter of every song that is no longer in the library, looked up without
+ * locking, so deleted songs are not kept alive by their counters. The
+ * counter is taken out before it is read for the last time, so only a play
+ * of the deleted song that arrives during that flush can be missed.
+ */
+class PlayCounter {
+
+    // songs per call to addPlays, which bounds how long a flush holds the
+    // library's write lock at a time
+    private static final int FLUSH_BATCH = 4096;
+
+    private final MusicLibraryService library;
+    private final ConcurrentHashMap<Songs, Tally> tallies = new ConcurrentHashMap<>();
+
+    // only read and written by flush, which is synchronized
+    private long flushedPlays;
+    private long addedPlays;
+    private long flushes;
+    // the plays of the counters dropped with their songs, written only by
+    // flush and read by recorded
+    private volatile long droppedPlays;
+
+    /**
+     *
+     * Constructs a new PlayCounter object.
+     *
+     * @param library the library the plays are added to
+     */
+    PlayCounter(MusicLibraryService library) {
+        this.library = library;
+    }
+
+    /**
+     *
+     * Records one play of a song. Safe to call from any number of threads at
+     * once.
+     *
+     * @param song the song that was played, found by title and artist when
+     *             the plays are flushed
+     */
+    void record(Songs song) {
+        Tally tally = tallies.get(song);
+        if (tally == null) {
+            // the first play of a song only; the lambda captures nothing, so
+            // it is not allocated again on every call
+            tally = tallies.computeIfAbsent(song, key -> new Tally());
+        }
+        tally.plays.increment();
+    }
+
+    /**
+     *
+     * Adds every play recorded since the last flush to the library. Only one
+     * flush runs at a time.
+     *
+     * @return the number of plays handed to the library
+     */
+    synchronized long flush() {
+        Map<Songs, Long> batch = new HashMap<>();
+        long plays = 0;
+        for (Map.Entry<Songs, Tally> entry : tallies.entrySet()) {
+            Songs song = entry.getKey();
+            Tally tally = entry.getValue();
+            // deleted, or replaced by another song with its title and
+            // artist; a new play starts a new counter
+            boolean dropped = library.getSong(song.getTitle(), song.getArtist()) != song
+                    && tallies.remove(song, tally);
+            // sum does not stop other threads from adding, but it never goes
+            // backwards, so whatever it misses is still there next time
+            long total = tally.plays.sum();
+            if (total != tally.flushed) {
+                batch.put(song, total - tally.flushed);
+                plays += total - tally.flushed;
+                tally.flushed = total;
+                if (batch.size() == FLUSH_BATCH) {
+                    addedPlays += library.addPlays(batch);
+                    batch.clear();
+                }
+            }
+            if (dropped) {
+                droppedPlays += total;
+            }
+        }
+        if (!batch.isEmpty()) {
+            addedPlays += library.addPlays(batch);
+        }
+        if (plays > 0) {
+            flushedPlays += plays;
+            flushes++;
+        }
+        return plays;
+    }
+
+    /**
+     *
+     * Returns the number of plays recorded so far, flushed or not.
+     *
+     * @return the number of plays recorded
+     */
+    long recorded() {
+        long plays = droppedPlays;
+        for (Tally tally : tallies.values()) {
+            plays += tally.plays.sum();
+        }
+        return plays;
+    }
+
+    /**
+     *
+     * Describes the counters and the flushes so far.
+     *
+     * @return a printable summary of the play counter
+     */
+    synchronized String stats() {
+        long recorded = recorded();
+        return String.format("Play counter: %,d songs played, %,d plays recorded, %,d waiting%n"
+                + "  %,d flushes, %,d plays added to the library, %,d of songs no longer in it",
+                tallies.size(), recorded, recorded - flushedPlays, flushes, addedPlays, flushedPlays - addedPlays);
+    }
+
+    /**
+     *
+     * The plays of one song: how many were recorded and how many of those
+     * have been flushed.
+     */
+    private static final class Tally {
+
+        final LongAdder plays = new LongAdder();
+        long flushed;
+    }
+}
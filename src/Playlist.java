@@ -1,7 +1,11 @@
-
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  *
@@ -15,38 +19,207 @@ import java.util.List;
  *
  * It also implements the Iterable interface to allow iteration over the songs
  * in the playlist.
+ *
+ * The songs are kept in a treap ordered by position, where every node knows
+ * the size of its subtree and its parent. Getting, inserting, moving and
+ * removing a song at a position take O(log n), and iterating takes O(1) per
+ * song. Each song also has a chain through every node that holds it, so the
+ * occurrences of a song can be found and removed without scanning the
+ * playlist.
+ *
+ * Once enough songs have been read by position since the last change, the
+ * playlist is copied into an array, and get is O(1) from then until the next
+ * change. The copy costs O(n), which is spread over at least n/16 reads.
  */
 public class Playlist implements Iterable<Songs> {
 
-    private final List<Songs> songs;
+    private Node root;
+    private final HashMap<Songs, Node> occurrences;
+    private int seed = 0x2545F491;
+    private int modCount;
     private String name;
+    private Node splitLeft;
+    private Node splitRight;
+    private Songs[] snapshot = new Songs[0];
+    private int snapshotModCount = -1;
+    private int readsSinceChange;
 
     /**
      *
-     * Constructs a new Playlist object with an empty ArrayList of songs.
+     * Constructs a new, empty Playlist object.
      */
     public Playlist() {
-        songs = new ArrayList<>();
+        occurrences = new HashMap<>();
+    }
+
+    /**
+     *
+     * Constructs a new Playlist object holding the songs of another playlist
+     * in the same order. The name is copied too.
+     *
+     * @param other the playlist to copy
+     */
+    public Playlist(Playlist other) {
+        occurrences = new HashMap<>(Math.max(16, other.occurrences.size() * 4 / 3 + 1));
+        List<Songs> songs = new ArrayList<>(other.size());
+        for (Songs song : other) {
+            songs.add(song);
+        }
+        addAll(songs);
+        name = other.name;
     }
 
     /**
      *
-     * Adds a Songs object to the playlist.
+     * Adds a Songs object to the end of the playlist.
      *
      * @param song The Songs object to add to the playlist
      */
     public void addSong(Songs song) {
-        songs.add(song);
+        insert(size(), song);
+    }
+
+    /**
+     *
+     * Adds several Songs objects to the end of the playlist, in order.
+     *
+     * The new positions are built into a tree of their own in one pass, using
+     * a stack of the rightmost path, and then joined to the playlist with a
+     * single merge, instead of one split and merge per song.
+     *
+     * @param songs The Songs objects to add to the playlist
+     */
+    public void addAll(Collection<Songs> songs) {
+        if (songs.isEmpty()) {
+            return;
+        }
+        Node[] path = new Node[songs.size()];
+        int depth = 0;
+        for (Songs song : songs) {
+            Node node = new Node(song, nextPriority());
+            Node last = null;
+            while (depth > 0 && path[depth - 1].priority < node.priority) {
+                last = path[--depth];
+                // everything below a node leaving the path is final
+                update(last);
+            }
+            node.left = last;
+            if (depth > 0) {
+                path[depth - 1].right = node;
+            }
+            path[depth++] = node;
+
+            Node first = occurrences.put(song, node);
+            if (first != null) {
+                node.nextSame = first;
+                first.prevSame = node;
+            }
+        }
+        while (depth > 0) {
+            update(path[--depth]);
+        }
+        root = merge(root, path[0]);
+        root.parent = null;
+        modCount++;
+        readsSinceChange = 0;
+    }
+
+    /**
+     *
+     * Inserts a Songs object at the given position, moving the songs from that
+     * position on one place later.
+     *
+     * @param index The position to insert at, from 0 to the playlist size
+     * @param song  The Songs object to insert
+     */
+    public void insert(int index, Songs song) {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        Node node = new Node(song, nextPriority());
+        split(root, index);
+        Node right = splitRight;
+        root = merge(merge(splitLeft, node), right);
+        root.parent = null;
+
+        Node first = occurrences.put(song, node);
+        if (first != null) {
+            node.nextSame = first;
+            first.prevSame = node;
+        }
+        modCount++;
+        readsSinceChange = 0;
+    }
+
+    /**
+     *
+     * Removes the first occurrence of a Songs object from the playlist.
+     *
+     * @param song The Songs object to remove from the playlist
+     * @return true if the song was in the playlist
+     */
+    public boolean removeSong(Songs song) {
+        Node first = null;
+        int firstIndex = Integer.MAX_VALUE;
+        for (Node node = occurrences.get(song); node != null; node = node.nextSame) {
+            int index = indexOf(node);
+            if (index < firstIndex) {
+                first = node;
+                firstIndex = index;
+            }
+        }
+        if (first == null) {
+            return false;
+        }
+        unlink(first);
+        return true;
     }
 
     /**
      *
-     * Removes a Songs object from the playlist.
+     * Removes every occurrence of a Songs object from the playlist.
      *
      * @param song The Songs object to remove from the playlist
+     * @return the number of songs removed
+     */
+    public int removeAll(Songs song) {
+        int removed = 0;
+        Node node = occurrences.get(song);
+        while (node != null) {
+            Node next = node.nextSame;
+            unlink(node);
+            removed++;
+            node = next;
+        }
+        return removed;
+    }
+
+    /**
+     *
+     * Removes the song at the given position.
+     *
+     * @param index The position of the song to remove
+     * @return the song that was removed
      */
-    public void removeSong(Songs song) {
-        songs.remove(song);
+    public Songs remove(int index) {
+        Node node = nodeAt(index);
+        unlink(node);
+        return node.song;
+    }
+
+    /**
+     *
+     * Moves the song at one position to another. The songs in between shift
+     * by one place to make room.
+     *
+     * @param from The current position of the song
+     * @param to   The position the song should end up at
+     */
+    public void move(int from, int to) {
+        if (to < 0 || to >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + to + ", Size: " + size());
+        }
+        insert(to, remove(from));
     }
 
     /**
@@ -57,7 +230,28 @@ public class Playlist implements Iterable<Songs> {
      */
     @Override
     public Iterator<Songs> iterator() {
-        return songs.iterator();
+        return new Iterator<Songs>() {
+            private Node next = first(root);
+            private final int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Songs next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Songs song = next.song;
+                next = successor(next);
+                return song;
+            }
+        };
     }
 
     /**
@@ -67,7 +261,17 @@ public class Playlist implements Iterable<Songs> {
      * @return The number of Songs objects in the playlist
      */
     public int size() {
-        return songs.size();
+        return size(root);
+    }
+
+    /**
+     *
+     * Returns whether the playlist has no songs.
+     *
+     * @return true if the playlist is empty
+     */
+    public boolean isEmpty() {
+        return root == null;
     }
 
     /**
@@ -78,7 +282,61 @@ public class Playlist implements Iterable<Songs> {
      * @return The Songs object at the specified index in the playlist
      */
     public Songs get(int index) {
-        return songs.get(index);
+        if (snapshotModCount != modCount && ++readsSinceChange > (size() >> 4)) {
+            takeSnapshot();
+        }
+        if (snapshotModCount == modCount) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            return snapshot[index];
+        }
+        return nodeAt(index).song;
+    }
+
+    /**
+     *
+     * Returns whether the playlist holds a Songs object.
+     *
+     * @param song The Songs object to look for
+     * @return true if the song is in the playlist
+     */
+    public boolean contains(Songs song) {
+        return occurrences.containsKey(song);
+    }
+
+    /**
+     *
+     * Returns the position of the first occurrence of a Songs object.
+     *
+     * @param song The Songs object to look for
+     * @return the position of the song, or -1 if it is not in the playlist
+     */
+    public int indexOf(Songs song) {
+        int first = -1;
+        for (Node node = occurrences.get(song); node != null; node = node.nextSame) {
+            int index = indexOf(node);
+            if (first < 0 || index < first) {
+                first = index;
+            }
+        }
+        return first;
+    }
+
+    /**
+     *
+     * Returns the positions of every occurrence of a Songs object, in order.
+     *
+     * @param song The Songs object to look for
+     * @return the positions of the song, which may be empty
+     */
+    public List<Integer> positionsOf(Songs song) {
+        List<Integer> positions = new ArrayList<>();
+        for (Node node = occurrences.get(song); node != null; node = node.nextSame) {
+            positions.add(indexOf(node));
+        }
+        positions.sort(null);
+        return positions;
     }
 
     /**
@@ -88,7 +346,7 @@ public class Playlist implements Iterable<Songs> {
      * @param song The Songs object to remove from the playlist
      */
     public void remove(Songs song) {
-        songs.remove(song);
+        removeSong(song);
     }
 
     /**
@@ -121,19 +379,209 @@ public class Playlist implements Iterable<Songs> {
      */
     public Iterable<String> getAllSongTitles() {
         List<String> songTitles = new ArrayList<>();
-        for (Songs song : songs) {
+        for (Songs song : this) {
             songTitles.add(song.getTitle());
         }
         return songTitles;
     }
+
+    private Node nodeAt(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        Node node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     *
+     * Returns the position of a node by adding up the songs to its left on
+     * the way to the root.
+     */
+    private static int indexOf(Node node) {
+        int index = size(node.left);
+        for (Node child = node; child.parent != null; child = child.parent) {
+            if (child == child.parent.right) {
+                index += size(child.parent.left) + 1;
+            }
+        }
+        return index;
+    }
+
     /**
      *
-     * Adds a song to a data structure. This method should be implemented by a
-     * specific class. The method currently throws an
-     * UnsupportedOperationException, indicating that it should be overridden.
+     * Takes a node out of the tree and out of the chain of its song.
+     */
+    private void unlink(Node node) {
+        // the merged children have lower priorities than the node, so they
+        // can take its place without breaking the heap order
+        Node merged = merge(node.left, node.right);
+        Node parent = node.parent;
+        if (merged != null) {
+            merged.parent = parent;
+        }
+        if (parent == null) {
+            root = merged;
+        } else if (parent.left == node) {
+            parent.left = merged;
+        } else {
+            parent.right = merged;
+        }
+        for (Node ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+            ancestor.size--;
+        }
+
+        if (node.prevSame != null) {
+            node.prevSame.nextSame = node.nextSame;
+        } else if (node.nextSame != null) {
+            occurrences.put(node.song, node.nextSame);
+        } else {
+            occurrences.remove(node.song);
+        }
+        if (node.nextSame != null) {
+            node.nextSame.prevSame = node.prevSame;
+        }
+        modCount++;
+        readsSinceChange = 0;
+    }
+
+    /**
      *
-     * @param songToAdd The Songs object to be added
-     * @throws UnsupportedOperationException If the method is not implemented by
-     *                                       a specific class
+     * Copies the songs into the snapshot array in order.
      */
+    private void takeSnapshot() {
+        if (snapshot.length < size() || snapshot.length > 2 * size()) {
+            snapshot = new Songs[size()];
+        }
+        int index = 0;
+        for (Node node = first(root); node != null; node = successor(node)) {
+            snapshot[index++] = node.song;
+        }
+        // drop songs left over from a longer playlist
+        Arrays.fill(snapshot, index, snapshot.length, null);
+        snapshotModCount = modCount;
+    }
+
+    /**
+     *
+     * Splits a tree into its first count songs and the rest, leaving the two
+     * trees in splitLeft and splitRight.
+     */
+    private void split(Node node, int count) {
+        if (node == null) {
+            splitLeft = null;
+            splitRight = null;
+            return;
+        }
+        if (size(node.left) < count) {
+            split(node.right, count - size(node.left) - 1);
+            node.right = splitLeft;
+            update(node);
+            splitLeft = node;
+        } else {
+            split(node.left, count);
+            node.left = splitRight;
+            update(node);
+            splitRight = node;
+        }
+        node.parent = null;
+    }
+
+    /**
+     *
+     * Joins two trees, with every song of the first coming before every song
+     * of the second.
+     */
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    private static void update(Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+        if (node.left != null) {
+            node.left.parent = node;
+        }
+        if (node.right != null) {
+            node.right.parent = node;
+        }
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static Node first(Node node) {
+        if (node == null) {
+            return null;
+        }
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node;
+    }
+
+    private static Node successor(Node node) {
+        if (node.right != null) {
+            return first(node.right);
+        }
+        while (node.parent != null && node == node.parent.right) {
+            node = node.parent;
+        }
+        return node.parent;
+    }
+
+    /**
+     *
+     * Returns the next pseudo-random node priority (xorshift).
+     */
+    private int nextPriority() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+
+    /**
+     *
+     * A position in the playlist.
+     */
+    private static final class Node {
+
+        final Songs song;
+        final int priority;
+        Node left;
+        Node right;
+        Node parent;
+        int size = 1;
+        Node prevSame;
+        Node nextSame;
+
+        Node(Songs song, int priority) {
+            this.song = song;
+            this.priority = priority;
+        }
+    }
 }
@@ -1,20 +1,33 @@
-
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  *
  * The PlaylistLibrary class represents a library of playlists, where each
- * playlist is a LinkedList of Songs objects.
+ * playlist is a Playlist of Songs objects.
  *
  * It provides methods to add and remove playlists, get a playlist by name,
  * check if a playlist is empty,
  *
  * add and remove songs from a playlist, and retrieve all playlist names.
+ *
+ * It also keeps a reverse index from each song to the names of the playlists
+ * that contain it, so the playlists holding a song can be found, and a song
+ * removed from all of them, without looking through every playlist. Songs
+ * must be added to and removed from playlists through the library, not
+ * through the Playlist objects it hands out, for the index to stay correct.
  */
 public class PlaylistLibrary {
 
-    private final HashMap<String, LinkedList> playlists;
+    private final HashMap<String, Playlist> playlists;
+    private final HashMap<Songs, Set<String>> containing;
 
     /**
      *
@@ -23,17 +36,24 @@ public class PlaylistLibrary {
      */
     public PlaylistLibrary() {
         this.playlists = new HashMap<>();
+        this.containing = new HashMap<>();
     }
 
     /**
      *
-     * Adds a new playlist to the library.
+     * Adds a new playlist to the library, replacing any playlist with the same
+     * name.
      *
      * @param playlistName The name of the playlist to add
-     * @param playlist The LinkedList of Songs objects to add as the playlist
+     * @param playlist The Playlist of Songs objects to add as the playlist
      */
-    public void addPlaylist(String playlistName, LinkedList playlist) {
+    public void addPlaylist(String playlistName, Playlist playlist) {
+        removePlaylist(playlistName);
+        playlist.setName(playlistName);
         playlists.put(playlistName, playlist);
+        for (Songs song : playlist) {
+            containing.computeIfAbsent(song, key -> new LinkedHashSet<>(2)).add(playlistName);
+        }
     }
 
     /**
@@ -41,10 +61,10 @@ public class PlaylistLibrary {
      * Returns the playlist with the specified name from the library.
      *
      * @param playlistName The name of the playlist to retrieve
-     * @return The LinkedList of Songs objects that represents the playlist with
+     * @return The Playlist of Songs objects that represents the playlist with
      * the specified name
      */
-    LinkedList<Songs> getPlaylist(String playlistName) {
+    Playlist getPlaylist(String playlistName) {
         return playlists.get(playlistName);
     }
 
@@ -55,7 +75,12 @@ public class PlaylistLibrary {
      * @param playlistName The name of the playlist to remove
      */
     void removePlaylist(String playlistName) {
-        playlists.remove(playlistName);
+        Playlist playlist = playlists.remove(playlistName);
+        if (playlist != null) {
+            for (Songs song : playlist) {
+                forget(song, playlistName);
+            }
+        }
     }
 
     /**
@@ -66,7 +91,7 @@ public class PlaylistLibrary {
      * @return true if the playlist is empty or does not exist, false otherwise
      */
     boolean isPlaylistEmpty(String playlistName) {
-        LinkedList<Songs> playlist = playlists.get(playlistName);
+        Playlist playlist = playlists.get(playlistName);
         return playlist == null || playlist.isEmpty();
     }
 
@@ -76,26 +101,161 @@ public class PlaylistLibrary {
      *
      * @param playlistName The name of the playlist to add the song to
      * @param song The Songs object to add to the playlist
+     * @return true if the playlist exists
      */
-    void addSongToPlaylist(String playlistName, Songs song) {
-        LinkedList<Songs> playlist = playlists.get(playlistName);
-        if (playlist != null) {
-            playlist.add(song);
+    boolean addSongToPlaylist(String playlistName, Songs song) {
+        Playlist playlist = playlists.get(playlistName);
+        if (playlist == null) {
+            return false;
+        }
+        playlist.addSong(song);
+        containing.computeIfAbsent(song, key -> new LinkedHashSet<>(2)).add(playlistName);
+        return true;
+    }
+
+    /**
+     *
+     * Adds several Songs objects to the end of the playlist with the specified
+     * name, in order, joining them to the playlist in a single step.
+     *
+     * @param playlistName The name of the playlist to add the songs to
+     * @param songs The Songs objects to add to the playlist
+     * @return true if the playlist exists
+     */
+    boolean addSongsToPlaylist(String playlistName, Collection<Songs> songs) {
+        Playlist playlist = playlists.get(playlistName);
+        if (playlist == null) {
+            return false;
+        }
+        playlist.addAll(songs);
+        for (Songs song : songs) {
+            containing.computeIfAbsent(song, key -> new LinkedHashSet<>(2)).add(playlistName);
+        }
+        return true;
+    }
+
+    /**
+     *
+     * Inserts a Songs object into the playlist with the specified name at a
+     * given position. A position past the end of the playlist adds the song
+     * at the end.
+     *
+     * @param playlistName The name of the playlist to insert the song into
+     * @param index The position to insert the song at
+     * @param song The Songs object to insert
+     * @return true if the playlist exists
+     */
+    boolean insertSongIntoPlaylist(String playlistName, int index, Songs song) {
+        Playlist playlist = playlists.get(playlistName);
+        if (playlist == null) {
+            return false;
         }
+        playlist.insert(Math.max(0, Math.min(index, playlist.size())), song);
+        containing.computeIfAbsent(song, key -> new LinkedHashSet<>(2)).add(playlistName);
+        return true;
     }
 
     /**
      *
-     * Removes a Songs object from the playlist with the specified name.
+     * Removes the first occurrence of a Songs object from the playlist with the
+     * specified name.
      *
      * @param playlistName The name of the playlist to remove the song from
      * @param song The Songs object to remove from the playlist
+     * @return true if the song was in the playlist
      */
-    void removeSongFromPlaylist(String playlistName, Songs song) {
-        LinkedList<Songs> playlist = playlists.get(playlistName);
-        if (playlist != null) {
-            playlist.remove(song);
+    boolean removeSongFromPlaylist(String playlistName, Songs song) {
+        Playlist playlist = playlists.get(playlistName);
+        if (playlist == null || !playlist.removeSong(song)) {
+            return false;
+        }
+        if (!playlist.contains(song)) {
+            forget(song, playlistName);
+        }
+        return true;
+    }
+
+    /**
+     *
+     * Removes the first occurrence of a Songs object from the playlist with
+     * the specified name and tells where it was.
+     *
+     * @param playlistName The name of the playlist to remove the song from
+     * @param song The Songs object to remove from the playlist
+     * @return the position the song was removed from, or -1 if it was not in
+     * the playlist
+     */
+    int removeFirstFromPlaylist(String playlistName, Songs song) {
+        Playlist playlist = playlists.get(playlistName);
+        int index = playlist == null ? -1 : playlist.indexOf(song);
+        if (index < 0) {
+            return -1;
+        }
+        playlist.remove(index);
+        if (!playlist.contains(song)) {
+            forget(song, playlistName);
+        }
+        return index;
+    }
+
+    /**
+     *
+     * Removes the song at a given position of the playlist with the specified
+     * name, if it is the expected song.
+     *
+     * @param playlistName The name of the playlist to remove the song from
+     * @param index The position of the song
+     * @param song The Songs object expected at that position
+     * @return true if the song was removed
+     */
+    boolean removeSongFromPlaylistAt(String playlistName, int index, Songs song) {
+        Playlist playlist = playlists.get(playlistName);
+        if (playlist == null || index < 0 || index >= playlist.size() || !playlist.get(index).equals(song)) {
+            return false;
         }
+        Songs removed = playlist.remove(index);
+        if (!playlist.contains(removed)) {
+            forget(removed, playlistName);
+        }
+        return true;
+    }
+
+    /**
+     *
+     * Removes every occurrence of a Songs object from every playlist, as when
+     * the song is deleted from the library. Only the playlists that contain
+     * the song are touched.
+     *
+     * @param song The Songs object to remove
+     * @return the positions the song was removed from, in ascending order,
+     * for each playlist that contained it; inserting the song back at those
+     * positions in that order restores the playlists
+     */
+    Map<String, List<Integer>> removeSongFromAllPlaylists(Songs song) {
+        Set<String> names = containing.remove(song);
+        if (names == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, List<Integer>> removed = new LinkedHashMap<>();
+        for (String playlistName : names) {
+            Playlist playlist = playlists.get(playlistName);
+            List<Integer> positions = playlist.positionsOf(song);
+            playlist.removeAll(song);
+            removed.put(playlistName, positions);
+        }
+        return removed;
+    }
+
+    /**
+     *
+     * Returns the names of the playlists that contain a song.
+     *
+     * @param song The Songs object to look for
+     * @return the names of the playlists holding the song, which may be empty
+     */
+    List<String> getPlaylistsContaining(Songs song) {
+        Set<String> names = containing.get(song);
+        return names == null ? Collections.<String>emptyList() : new ArrayList<>(names);
     }
 
     /**
@@ -111,22 +271,26 @@ public class PlaylistLibrary {
 
     /**
      *
-     * Adds a new playlist to the library. This method should be implemented by
-     * a specific class. The method currently throws an
-     * UnsupportedOperationException, indicating that it should be overridden.
+     * Returns an Iterable of all playlist names in the library.
      *
-     * @param playlistName The name of the playlist to add
-     * @param playlist The CustomLinkedList of Songs objects to add as the
-     * playlist
-     * @throws UnsupportedOperationException If the method is not implemented by
-     * a specific class
+     * @return An Iterable of Strings, containing the names of all playlists in
+     * the library
      */
-    void addPlaylist(String playlistName, CustomLinkedList playlist) {
-        throw new UnsupportedOperationException("Not supported yet."); // Generated from nbfs://nbhost/SystemFileSystem/Templates/Classes/Code/GeneratedMethodBody
-
+    Iterable<String> getPlaylistNames() {
+        return playlists.keySet();
     }
 
-    Iterable<String> getPlaylistNames() {
-        throw new UnsupportedOperationException("Not supported yet."); // Generated from nbfs://nbhost/SystemFileSystem/Templates/Classes/Code/GeneratedMethodBody
+    /**
+     *
+     * Removes a playlist name from the reverse index entry of a song.
+     */
+    private void forget(Songs song, String playlistName) {
+        Set<String> names = containing.get(song);
+        if (names != null) {
+            names.remove(playlistName);
+            if (names.isEmpty()) {
+                containing.remove(song);
+            }
+        }
     }
 }
@@ -0,0 +1,434 @@
+import java.util.Arrays;
+
+/**
+ *
+ * The PostingList class is a growable, sorted array of song IDs with no
+ * duplicates.
+ *
+ * It is used by the search indexes to record which songs contain a given
+ * token. IDs are usually handed out in increasing order, so adding a new song
+ * is an append; out of order IDs (for example a song restored by undo) are
+ * inserted at their sorted position.
+ */
+class PostingList {
+
+    private static final int[] EMPTY = new int[0];
+
+    private int[] ids;
+    private int size;
+
+    /**
+     *
+     * Constructs a new empty PostingList object.
+     */
+    PostingList() {
+        ids = new int[2];
+        size = 0;
+    }
+
+    /**
+     *
+     * Adds a song ID to the list, keeping it sorted.
+     *
+     * @param id the song ID to add
+     * @return true if the ID was added, false if it was already present
+     */
+    boolean add(int id) {
+        if (size == 0 || ids[size - 1] < id) {
+            ensureCapacity(size + 1);
+            ids[size++] = id;
+            return true;
+        }
+        int pos = Arrays.binarySearch(ids, 0, size, id);
+        if (pos >= 0) {
+            return false;
+        }
+        pos = -pos - 1;
+        ensureCapacity(size + 1);
+        System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+        ids[pos] = id;
+        size++;
+        return true;
+    }
+
+    /**
+     *
+     * Removes a song ID from the list.
+     *
+     * @param id the song ID to remove
+     * @return true if the ID was removed, false if it was not present
+     */
+    boolean remove(int id) {
+        int pos = Arrays.binarySearch(ids, 0, size, id);
+        if (pos < 0) {
+            return false;
+        }
+        System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+        size--;
+        return true;
+    }
+
+    /**
+     *
+     * Returns the largest ID in the list.
+     *
+     * @return the last ID, or -1 if the list is empty
+     */
+    int last() {
+        return size == 0 ? -1 : ids[size - 1];
+    }
+
+    /**
+     *
+     * Tells whether the list holds a song ID.
+     *
+     * @param id the song ID to look for
+     * @return true if the ID is in the list
+     */
+    boolean contains(int id) {
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    /**
+     *
+     * Adds every ID of another list in one pass, instead of inserting them
+     * one at a time. IDs already present are skipped.
+     *
+     * @param other the IDs to add
+     * @return the number of IDs that were added
+     */
+    int addAll(PostingList other) {
+        if (other.size == 0) {
+            return 0;
+        }
+        if (size == 0 || ids[size - 1] < other.ids[0]) {
+            ensureCapacity(size + other.size);
+            System.arraycopy(other.ids, 0, ids, size, other.size);
+            size += other.size;
+            return other.size;
+        }
+        int[] merged = new int[Math.max(ids.length, size + other.size)];
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < size && j < other.size) {
+            if (ids[i] < other.ids[j]) {
+                merged[count++] = ids[i++];
+            } else if (ids[i] > other.ids[j]) {
+                merged[count++] = other.ids[j++];
+            } else {
+                merged[count++] = ids[i++];
+                j++;
+            }
+        }
+        while (i < size) {
+            merged[count++] = ids[i++];
+        }
+        while (j < other.size) {
+            merged[count++] = other.ids[j++];
+        }
+        int added = count - size;
+        ids = merged;
+        size = count;
+        return added;
+    }
+
+    /**
+     *
+     * Removes every ID of another list in one pass over this list, instead of
+     * shifting the array once per ID. Only the part of the list from the first
+     * removed ID on is moved, one run of kept IDs at a time.
+     *
+     * @param other the IDs to remove
+     * @return the number of IDs that were removed
+     */
+    int removeAll(PostingList other) {
+        int write = -1;
+        int read = 0;
+        for (int j = 0; j < other.size; j++) {
+            int pos = Arrays.binarySearch(ids, read, size, other.ids[j]);
+            if (pos < 0) {
+                continue;
+            }
+            if (write < 0) {
+                write = pos;
+            } else {
+                System.arraycopy(ids, read, ids, write, pos - read);
+                write += pos - read;
+            }
+            read = pos + 1;
+        }
+        if (write < 0) {
+            return 0;
+        }
+        System.arraycopy(ids, read, ids, write, size - read);
+        int removed = read - write;
+        size -= removed;
+        return removed;
+    }
+
+    /**
+     *
+     * Returns the number of IDs in the list.
+     *
+     * @return the number of IDs in the list
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     *
+     * Returns the ID at the given position in the list.
+     *
+     * @param index the position of the ID
+     * @return the ID at that position
+     */
+    int get(int index) {
+        return ids[index];
+    }
+
+    /**
+     *
+     * Returns the number of bytes held by the backing array.
+     *
+     * @return the capacity of the backing array in bytes
+     */
+    long capacityBytes() {
+        return 4L * ids.length;
+    }
+
+    /**
+     *
+     * Returns a copy of the IDs in the list.
+     *
+     * @return a sorted array holding the IDs in the list
+     */
+    int[] toArray() {
+        return Arrays.copyOf(ids, size);
+    }
+
+    /**
+     *
+     * Shrinks the backing array to the number of IDs held.
+     */
+    void trimToSize() {
+        if (ids.length != size) {
+            ids = Arrays.copyOf(ids, Math.max(size, 1));
+        }
+    }
+
+    /**
+     *
+     * Grows the backing array so that it can hold at least the given number
+     * of IDs without copying again.
+     *
+     * @param capacity the number of IDs to make room for
+     */
+    void ensureCapacity(int capacity) {
+        if (capacity > ids.length) {
+            ids = Arrays.copyOf(ids, Math.max(capacity, ids.length + (ids.length >> 1) + 1));
+        }
+    }
+
+    /**
+     *
+     * Intersects several posting lists, starting from the shortest one and
+     * probing the others with a galloping search.
+     *
+     * @param lists the posting lists to intersect
+     * @return a sorted array of the IDs found in every list
+     */
+    static int[] intersect(PostingList... lists) {
+        if (lists.length == 0) {
+            return EMPTY;
+        }
+        PostingList[] sorted = lists.clone();
+        Arrays.sort(sorted, (a, b) -> Integer.compare(a.size, b.size));
+        PostingList smallest = sorted[0];
+        int[] result = new int[smallest.size];
+        int count = 0;
+        int[] cursors = new int[sorted.length];
+        outer:
+        for (int i = 0; i < smallest.size; i++) {
+            int id = smallest.ids[i];
+            for (int l = 1; l < sorted.length; l++) {
+                PostingList other = sorted[l];
+                int pos = other.gallop(id, cursors[l]);
+                cursors[l] = pos;
+                if (pos >= other.size) {
+                    break outer;
+                }
+                if (other.ids[pos] != id) {
+                    continue outer;
+                }
+            }
+            result[count++] = id;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     *
+     * Merges several sorted ID arrays into one sorted array without
+     * duplicates. Two arrays are merged directly, while more are merged all
+     * at once, into a bitset when their IDs are dense and with a heap
+     * otherwise, so the cost grows with the number of IDs rather than with
+     * the number of arrays times the size of the result.
+     *
+     * @param arrays the sorted ID arrays to merge
+     * @return a sorted array of the IDs found in any of the arrays
+     */
+    static int[] union(int[]... arrays) {
+        if (arrays.length > 2) {
+            long total = 0;
+            int max = -1;
+            for (int[] array : arrays) {
+                total += array.length;
+                if (array.length > 0) {
+                    max = Math.max(max, array[array.length - 1]);
+                }
+            }
+            // a bitset costs a word per 64 IDs up to the largest, a heap merge
+            // a few comparisons per ID of every array
+            return max / 64 <= total ? unionBits(arrays, max) : unionHeap(arrays, (int) total);
+        }
+        int[] result = EMPTY;
+        for (int[] array : arrays) {
+            int[] merged = new int[result.length + array.length];
+            int i = 0;
+            int j = 0;
+            int count = 0;
+            while (i < result.length && j < array.length) {
+                if (result[i] < array[j]) {
+                    merged[count++] = result[i++];
+                } else if (result[i] > array[j]) {
+                    merged[count++] = array[j++];
+                } else {
+                    merged[count++] = result[i++];
+                    j++;
+                }
+            }
+            while (i < result.length) {
+                merged[count++] = result[i++];
+            }
+            while (j < array.length) {
+                merged[count++] = array[j++];
+            }
+            result = Arrays.copyOf(merged, count);
+        }
+        return result;
+    }
+
+    /**
+     *
+     * Merges many arrays by setting the bit of every ID and reading the bits
+     * back in order.
+     */
+    private static int[] unionBits(int[][] arrays, int max) {
+        if (max < 0) {
+            return EMPTY;
+        }
+        long[] bits = new long[(max >>> 6) + 1];
+        for (int[] array : arrays) {
+            for (int id : array) {
+                bits[id >>> 6] |= 1L << id;
+            }
+        }
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        int[] result = new int[count];
+        int next = 0;
+        for (int w = 0; w < bits.length; w++) {
+            for (long word = bits[w]; word != 0; word &= word - 1) {
+                result[next++] = (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+        return result;
+    }
+
+    /**
+     *
+     * Merges many arrays at once with a heap of the arrays ordered by their
+     * next ID, which takes O(n log k) for n IDs in k arrays.
+     */
+    private static int[] unionHeap(int[][] arrays, int total) {
+        int[] heap = new int[arrays.length];
+        int[] positions = new int[arrays.length];
+        int size = 0;
+        for (int a = 0; a < arrays.length; a++) {
+            if (arrays[a].length > 0) {
+                heap[size++] = a;
+            }
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(heap, size, i, arrays, positions);
+        }
+        int[] result = new int[total];
+        int count = 0;
+        while (size > 0) {
+            int top = heap[0];
+            int id = arrays[top][positions[top]++];
+            if (count == 0 || result[count - 1] != id) {
+                result[count++] = id;
+            }
+            if (positions[top] == arrays[top].length) {
+                heap[0] = heap[--size];
+            }
+            siftDown(heap, size, 0, arrays, positions);
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static void siftDown(int[] heap, int size, int index, int[][] arrays, int[] positions) {
+        int entry = heap[index];
+        int id = size > 0 ? arrays[entry][positions[entry]] : 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            int right = child + 1;
+            if (right < size && arrays[heap[right]][positions[heap[right]]]
+                    < arrays[heap[child]][positions[heap[child]]]) {
+                child = right;
+            }
+            if (arrays[heap[child]][positions[heap[child]]] >= id) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = entry;
+    }
+
+    /**
+     *
+     * Finds the first position at or after start whose ID is not less than
+     * the target, doubling the step before finishing with a binary search.
+     *
+     * @param target the ID to look for
+     * @param start  the position to start from
+     * @return the position found, or size if every remaining ID is smaller
+     */
+    private int gallop(int target, int start) {
+        if (start >= size || ids[start] >= target) {
+            return start;
+        }
+        int step = 1;
+        int low = start;
+        int high = start + step;
+        while (high < size && ids[high] < target) {
+            low = high;
+            step <<= 1;
+            high = start + step;
+        }
+        if (high > size) {
+            high = size;
+        }
+        int pos = Arrays.binarySearch(ids, low + 1, high, target);
+        return pos >= 0 ? pos : -pos - 1;
+    }
+}
@@ -0,0 +1,772 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ *
+ * The RoaringBitmap class is a compressed set of non-negative ints, used for
+ * the song IDs that have a given genre, year, artist or rating.
+ *
+ * The IDs are split by their upper 16 bits into chunks of 65,536, and each
+ * chunk that holds any ID gets a container for the lower 16 bits. A chunk
+ * with up to 4,096 IDs keeps them as a sorted char array, two bytes an ID,
+ * and a fuller chunk keeps a bitmap of 65,536 bits, which never takes more
+ * than 8 KB. That way sparse and dense sets both stay small, and AND, OR and
+ * the size of an AND work a chunk at a time, skipping chunks only one side
+ * has and using word-wide operations on bitmaps.
+ *
+ * The containers are stored directly as char[] or long[] arrays next to the
+ * sorted chunk keys, without an object around each one.
+ *
+ * A set of up to 4,096 IDs is kept as one sorted int array instead. Such a
+ * set, like the songs of one artist, is usually spread over many chunks with
+ * a handful of IDs in each, where an array per chunk would cost far more
+ * than the four bytes an ID the flat array takes.
+ */
+final class RoaringBitmap {
+
+    // the largest chunk kept as an array; a bitmap takes the same 8 KB
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1024;
+    // the largest set kept as a flat int array, and the size a set in chunks
+    // shrinks to before it is flattened again
+    private static final int SPARSE_MAX = 4096;
+    private static final int SPARSE_MIN = 2048;
+
+    // the IDs while the set is flat, or null once it is kept in chunks
+    private int[] sparse;
+
+    private char[] keys;
+    private Object[] containers;
+    private int[] cardinalities;
+    private int size;
+    private int cardinality;
+
+    /**
+     *
+     * Constructs a new empty RoaringBitmap object.
+     */
+    RoaringBitmap() {
+        sparse = new int[2];
+    }
+
+    private RoaringBitmap(int capacity) {
+        keys = new char[capacity];
+        containers = new Object[capacity];
+        cardinalities = new int[capacity];
+    }
+
+    private RoaringBitmap(int[] ids, int count) {
+        sparse = ids;
+        cardinality = count;
+    }
+
+    /**
+     *
+     * Adds an ID to the set.
+     *
+     * @param id the ID to add, which must not be negative
+     * @return true if the ID was added, false if it was already present
+     */
+    boolean add(int id) {
+        if (sparse != null) {
+            int position = Arrays.binarySearch(sparse, 0, cardinality, id);
+            if (position >= 0) {
+                return false;
+            }
+            if (cardinality == SPARSE_MAX) {
+                toChunks();
+                return add(id);
+            }
+            position = -position - 1;
+            if (cardinality == sparse.length) {
+                sparse = Arrays.copyOf(sparse, Math.min(SPARSE_MAX, cardinality * 2));
+            }
+            System.arraycopy(sparse, position, sparse, position + 1, cardinality - position);
+            sparse[position] = id;
+            cardinality++;
+            return true;
+        }
+        char key = (char) (id >>> 16);
+        char low = (char) id;
+        int index = findKey(key);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, key, new char[]{low}, 1);
+            cardinality++;
+            return true;
+        }
+        Object container = containers[index];
+        int count = cardinalities[index];
+        if (container instanceof long[]) {
+            long[] bits = (long[]) container;
+            long mask = 1L << low;
+            if ((bits[low >>> 6] & mask) != 0) {
+                return false;
+            }
+            bits[low >>> 6] |= mask;
+        } else {
+            char[] values = (char[]) container;
+            int position = Arrays.binarySearch(values, 0, count, low);
+            if (position >= 0) {
+                return false;
+            }
+            position = -position - 1;
+            if (count == ARRAY_MAX) {
+                long[] bits = toBitmap(values, count);
+                bits[low >>> 6] |= 1L << low;
+                containers[index] = bits;
+            } else {
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, Math.min(ARRAY_MAX, count * 2));
+                    containers[index] = values;
+                }
+                System.arraycopy(values, position, values, position + 1, count - position);
+                values[position] = low;
+            }
+        }
+        cardinalities[index]++;
+        cardinality++;
+        return true;
+    }
+
+    /**
+     *
+     * Removes an ID from the set.
+     *
+     * @param id the ID to remove
+     * @return true if the ID was removed, false if it was not present
+     */
+    boolean remove(int id) {
+        if (sparse != null) {
+            int position = Arrays.binarySearch(sparse, 0, cardinality, id);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(sparse, position + 1, sparse, position, cardinality - position - 1);
+            cardinality--;
+            return true;
+        }
+        int index = findKey((char) (id >>> 16));
+        if (index < 0) {
+            return false;
+        }
+        char low = (char) id;
+        Object container = containers[index];
+        int count = cardinalities[index];
+        if (container instanceof long[]) {
+            long[] bits = (long[]) container;
+            long mask = 1L << low;
+            if ((bits[low >>> 6] & mask) == 0) {
+                return false;
+            }
+            bits[low >>> 6] &= ~mask;
+            if (count - 1 == ARRAY_MAX) {
+                containers[index] = toArray(bits, ARRAY_MAX);
+            }
+        } else {
+            char[] values = (char[]) container;
+            int position = Arrays.binarySearch(values, 0, count, low);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(values, position + 1, values, position, count - position - 1);
+        }
+        cardinality--;
+        if (--cardinalities[index] == 0) {
+            System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+            System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+            System.arraycopy(cardinalities, index + 1, cardinalities, index, size - index - 1);
+            containers[--size] = null;
+        }
+        if (cardinality == SPARSE_MIN) {
+            sparse = page(0, SPARSE_MIN);
+            keys = null;
+            containers = null;
+            cardinalities = null;
+            size = 0;
+        }
+        return true;
+    }
+
+    /**
+     *
+     * Returns whether an ID is in the set.
+     *
+     * @param id the ID to look for
+     * @return true if the set holds the ID
+     */
+    boolean contains(int id) {
+        if (sparse != null) {
+            return Arrays.binarySearch(sparse, 0, cardinality, id) >= 0;
+        }
+        int index = findKey((char) (id >>> 16));
+        if (index < 0) {
+            return false;
+        }
+        char low = (char) id;
+        Object container = containers[index];
+        if (container instanceof long[]) {
+            return (((long[]) container)[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) container, 0, cardinalities[index], low) >= 0;
+    }
+
+    /**
+     *
+     * Returns the number of IDs in the set.
+     *
+     * @return the cardinality of the set
+     */
+    int cardinality() {
+        return cardinality;
+    }
+
+    boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    /**
+     *
+     * Returns the IDs of a page of the set, in ascending order. Whole chunks
+     * before the page are skipped by their size.
+     *
+     * @param offset the number of IDs to skip
+     * @param limit  the largest number of IDs to return
+     * @return the IDs of the page
+     */
+    int[] page(int offset, int limit) {
+        int[] page = new int[Math.max(0, Math.min(limit, cardinality - offset))];
+        if (sparse != null) {
+            if (page.length > 0) {
+                System.arraycopy(sparse, offset, page, 0, page.length);
+            }
+            return page;
+        }
+        int filled = 0;
+        int skip = offset;
+        for (int i = 0; i < size && filled < page.length; i++) {
+            int count = cardinalities[i];
+            if (skip >= count) {
+                skip -= count;
+                continue;
+            }
+            int high = keys[i] << 16;
+            Object container = containers[i];
+            if (container instanceof long[]) {
+                long[] bits = (long[]) container;
+                for (int word = 0; word < BITMAP_WORDS && filled < page.length; word++) {
+                    long bitsLeft = bits[word];
+                    while (bitsLeft != 0 && filled < page.length) {
+                        int low = word << 6 | Long.numberOfTrailingZeros(bitsLeft);
+                        bitsLeft &= bitsLeft - 1;
+                        if (skip > 0) {
+                            skip--;
+                        } else {
+                            page[filled++] = high | low;
+                        }
+                    }
+                }
+            } else {
+                char[] values = (char[]) container;
+                for (int j = skip; j < count && filled < page.length; j++) {
+                    page[filled++] = high | values[j];
+                }
+                skip = 0;
+            }
+        }
+        return page;
+    }
+
+    /**
+     *
+     * Returns the IDs in both sets.
+     *
+     * @param a the first set
+     * @param b the second set
+     * @return a new set holding the intersection
+     */
+    static RoaringBitmap and(RoaringBitmap a, RoaringBitmap b) {
+        if (a.sparse != null || b.sparse != null) {
+            // look up each ID of the smaller set in the other
+            RoaringBitmap small = a.cardinality <= b.cardinality ? a : b;
+            RoaringBitmap other = small == a ? b : a;
+            int[] ids = small.page(0, small.cardinality);
+            int count = 0;
+            for (int id : ids) {
+                if (other.contains(id)) {
+                    ids[count++] = id;
+                }
+            }
+            return flatOrChunks(ids, count);
+        }
+        RoaringBitmap result = new RoaringBitmap(Math.max(1, Math.min(a.size, b.size)));
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                Object container = and(a.containers[i], a.cardinalities[i], b.containers[j], b.cardinalities[j]);
+                int count = countOf(container);
+                if (count > 0) {
+                    result.appendContainer(a.keys[i], container, count);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     *
+     * Returns the IDs in either set.
+     *
+     * @param a the first set
+     * @param b the second set
+     * @return a new set holding the union
+     */
+    static RoaringBitmap or(RoaringBitmap a, RoaringBitmap b) {
+        if (a.sparse != null && b.sparse != null) {
+            int[] ids = new int[a.cardinality + b.cardinality];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < a.cardinality || j < b.cardinality) {
+                if (j == b.cardinality || i < a.cardinality && a.sparse[i] < b.sparse[j]) {
+                    ids[count++] = a.sparse[i++];
+                } else if (i == a.cardinality || a.sparse[i] > b.sparse[j]) {
+                    ids[count++] = b.sparse[j++];
+                } else {
+                    ids[count++] = a.sparse[i];
+                    i++;
+                    j++;
+                }
+            }
+            return flatOrChunks(ids, count);
+        }
+        if (a.sparse != null || b.sparse != null) {
+            return or(a.sparse != null ? flatOrChunks(a.sparse, a.cardinality).chunked() : a,
+                    b.sparse != null ? flatOrChunks(b.sparse, b.cardinality).chunked() : b);
+        }
+        RoaringBitmap result = new RoaringBitmap(Math.max(1, a.size + b.size));
+        int i = 0;
+        int j = 0;
+        while (i < a.size || j < b.size) {
+            if (j == b.size || i < a.size && a.keys[i] < b.keys[j]) {
+                result.appendContainer(a.keys[i], copy(a.containers[i], a.cardinalities[i]), a.cardinalities[i]);
+                i++;
+            } else if (i == a.size || a.keys[i] > b.keys[j]) {
+                result.appendContainer(b.keys[j], copy(b.containers[j], b.cardinalities[j]), b.cardinalities[j]);
+                j++;
+            } else {
+                Object container = or(a.containers[i], a.cardinalities[i], b.containers[j], b.cardinalities[j]);
+                result.appendContainer(a.keys[i], container, countOf(container));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     *
+     * Returns the IDs in any of the sets. Each chunk is gathered in one bitmap
+     * from every set before it is stored, instead of building a new set for
+     * each set added.
+     *
+     * @param sets the sets
+     * @return a new set holding the union
+     */
+    static RoaringBitmap or(List<RoaringBitmap> sets) {
+        long total = 0;
+        for (RoaringBitmap set : sets) {
+            total += set.cardinality;
+        }
+        if (total <= SPARSE_MAX || sets.size() < 3) {
+            RoaringBitmap result = new RoaringBitmap();
+            for (RoaringBitmap set : sets) {
+                result = or(result, set);
+            }
+            return result;
+        }
+        TreeMap<Character, long[]> chunks = new TreeMap<>();
+        for (RoaringBitmap set : sets) {
+            if (set.sparse != null) {
+                for (int i = 0; i < set.cardinality; i++) {
+                    int id = set.sparse[i];
+                    long[] bits = chunks.computeIfAbsent((char) (id >>> 16), key -> new long[BITMAP_WORDS]);
+                    bits[(char) id >>> 6] |= 1L << id;
+                }
+                continue;
+            }
+            for (int i = 0; i < set.size; i++) {
+                long[] bits = chunks.computeIfAbsent(set.keys[i], key -> new long[BITMAP_WORDS]);
+                Object container = set.containers[i];
+                if (container instanceof long[]) {
+                    long[] other = (long[]) container;
+                    for (int w = 0; w < BITMAP_WORDS; w++) {
+                        bits[w] |= other[w];
+                    }
+                } else {
+                    char[] values = (char[]) container;
+                    for (int j = 0; j < set.cardinalities[i]; j++) {
+                        bits[values[j] >>> 6] |= 1L << values[j];
+                    }
+                }
+            }
+        }
+        RoaringBitmap result = new RoaringBitmap(Math.max(1, chunks.size()));
+        for (Map.Entry<Character, long[]> chunk : chunks.entrySet()) {
+            int count = countOf(chunk.getValue());
+            result.appendContainer(chunk.getKey(), count > ARRAY_MAX ? chunk.getValue()
+                    : toArray(chunk.getValue(), count), count);
+        }
+        return result;
+    }
+
+    /**
+     *
+     * Counts the IDs in both sets without building the intersection.
+     *
+     * @param a the first set
+     * @param b the second set
+     * @return the size of the intersection
+     */
+    static int andCardinality(RoaringBitmap a, RoaringBitmap b) {
+        int count = 0;
+        if (a.sparse != null || b.sparse != null) {
+            RoaringBitmap small = a.sparse != null ? a : b;
+            RoaringBitmap other = small == a ? b : a;
+            for (int i = 0; i < small.cardinality; i++) {
+                if (other.contains(small.sparse[i])) {
+                    count++;
+                }
+            }
+            return count;
+        }
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                count += andCardinality(a.containers[i], a.cardinalities[i], b.containers[j], b.cardinalities[j]);
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     *
+     * Shrinks the arrays to what the set holds, after a bulk build.
+     */
+    void trimToSize() {
+        if (sparse != null) {
+            sparse = Arrays.copyOf(sparse, Math.max(1, cardinality));
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            if (containers[i] instanceof char[] && ((char[]) containers[i]).length > cardinalities[i]) {
+                containers[i] = Arrays.copyOf((char[]) containers[i], cardinalities[i]);
+            }
+        }
+        if (keys.length > size) {
+            keys = Arrays.copyOf(keys, Math.max(1, size));
+            containers = Arrays.copyOf(containers, Math.max(1, size));
+            cardinalities = Arrays.copyOf(cardinalities, Math.max(1, size));
+        }
+    }
+
+    /**
+     *
+     * Estimates the memory the set takes, counting the object, its arrays
+     * and every container.
+     *
+     * @return the estimated size in bytes
+     */
+    long sizeInBytes() {
+        if (sparse != null) {
+            return 32 + 16 + 4L * sparse.length;
+        }
+        long bytes = 32 + 3 * 16 + keys.length * (2L + 4 + 4);
+        for (int i = 0; i < size; i++) {
+            bytes += 16 + (containers[i] instanceof long[] ? 8L * BITMAP_WORDS : 2L * ((char[]) containers[i]).length);
+        }
+        return bytes;
+    }
+
+    /**
+     *
+     * Returns the number of chunks kept as bitmaps rather than arrays.
+     *
+     * @return the number of bitmap containers
+     */
+    int bitmapContainers() {
+        int bitmaps = 0;
+        for (int i = 0; i < size; i++) {
+            if (containers[i] instanceof long[]) {
+                bitmaps++;
+            }
+        }
+        return bitmaps;
+    }
+
+    int containers() {
+        return size;
+    }
+
+    boolean isFlat() {
+        return sparse != null;
+    }
+
+    /**
+     *
+     * Returns a set of sorted IDs, flat if it is small enough and in chunks
+     * otherwise.
+     */
+    private static RoaringBitmap flatOrChunks(int[] ids, int count) {
+        RoaringBitmap result = new RoaringBitmap(ids, count);
+        return count > SPARSE_MAX ? result.chunked() : result;
+    }
+
+    /**
+     *
+     * Returns this set with its IDs moved into chunks.
+     */
+    private RoaringBitmap chunked() {
+        if (sparse != null) {
+            toChunks();
+        }
+        return this;
+    }
+
+    private void toChunks() {
+        int[] ids = sparse;
+        int count = cardinality;
+        sparse = null;
+        cardinality = 0;
+        keys = new char[2];
+        containers = new Object[2];
+        cardinalities = new int[2];
+        // the IDs are sorted, so each chunk is filled in one go
+        int start = 0;
+        while (start < count) {
+            char key = (char) (ids[start] >>> 16);
+            int end = start;
+            while (end < count && ids[end] >>> 16 == key) {
+                end++;
+            }
+            char[] values = new char[end - start];
+            for (int i = start; i < end; i++) {
+                values[i - start] = (char) ids[i];
+            }
+            appendContainer(key, values.length > ARRAY_MAX ? toBitmap(values, values.length) : values,
+                    values.length);
+            start = end;
+        }
+    }
+
+    private int findKey(char key) {
+        // IDs are mostly added in increasing order, so try the last chunk first
+        if (size > 0 && keys[size - 1] == key) {
+            return size - 1;
+        }
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insertContainer(int index, char key, Object container, int count) {
+        if (size == keys.length) {
+            int capacity = size * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+            cardinalities = Arrays.copyOf(cardinalities, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        System.arraycopy(cardinalities, index, cardinalities, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        cardinalities[index] = count;
+        size++;
+    }
+
+    private void appendContainer(char key, Object container, int count) {
+        insertContainer(size, key, container, count);
+        cardinality += count;
+    }
+
+    // the container operations below take a char[] with its count or a
+    // long[] bitmap, and return containers sized exactly for their content
+    // unless they are bitmaps
+
+    private static Object and(Object a, int countA, Object b, int countB) {
+        if (a instanceof char[] && b instanceof char[]) {
+            char[] x = (char[]) a;
+            char[] y = (char[]) b;
+            char[] out = new char[Math.min(countA, countB)];
+            int n = 0;
+            int i = 0;
+            int j = 0;
+            while (i < countA && j < countB) {
+                if (x[i] < y[j]) {
+                    i++;
+                } else if (x[i] > y[j]) {
+                    j++;
+                } else {
+                    out[n++] = x[i];
+                    i++;
+                    j++;
+                }
+            }
+            return Arrays.copyOf(out, n);
+        }
+        if (a instanceof long[] && b instanceof long[]) {
+            long[] x = (long[]) a;
+            long[] y = (long[]) b;
+            long[] out = new long[BITMAP_WORDS];
+            int count = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                out[w] = x[w] & y[w];
+                count += Long.bitCount(out[w]);
+            }
+            return count > ARRAY_MAX ? out : toArray(out, count);
+        }
+        // an array and a bitmap: keep the array values the bitmap has
+        char[] values = (char[]) (a instanceof char[] ? a : b);
+        int count = a instanceof char[] ? countA : countB;
+        long[] bits = (long[]) (a instanceof long[] ? a : b);
+        char[] out = new char[count];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            char value = values[i];
+            if ((bits[value >>> 6] & (1L << value)) != 0) {
+                out[n++] = value;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static Object or(Object a, int countA, Object b, int countB) {
+        if (a instanceof char[] && b instanceof char[]) {
+            char[] x = (char[]) a;
+            char[] y = (char[]) b;
+            char[] out = new char[countA + countB];
+            int n = 0;
+            int i = 0;
+            int j = 0;
+            while (i < countA || j < countB) {
+                if (j == countB || i < countA && x[i] < y[j]) {
+                    out[n++] = x[i++];
+                } else if (i == countA || x[i] > y[j]) {
+                    out[n++] = y[j++];
+                } else {
+                    out[n++] = x[i];
+                    i++;
+                    j++;
+                }
+            }
+            return n > ARRAY_MAX ? toBitmap(out, n) : Arrays.copyOf(out, n);
+        }
+        long[] out;
+        if (a instanceof long[] && b instanceof long[]) {
+            long[] x = (long[]) a;
+            long[] y = (long[]) b;
+            out = new long[BITMAP_WORDS];
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                out[w] = x[w] | y[w];
+            }
+        } else {
+            char[] values = (char[]) (a instanceof char[] ? a : b);
+            int count = a instanceof char[] ? countA : countB;
+            out = ((long[]) (a instanceof long[] ? a : b)).clone();
+            for (int i = 0; i < count; i++) {
+                out[values[i] >>> 6] |= 1L << values[i];
+            }
+        }
+        // the union of a bitmap and anything holds more than ARRAY_MAX values
+        return out;
+    }
+
+    private static int andCardinality(Object a, int countA, Object b, int countB) {
+        int count = 0;
+        if (a instanceof char[] && b instanceof char[]) {
+            char[] x = (char[]) a;
+            char[] y = (char[]) b;
+            int i = 0;
+            int j = 0;
+            while (i < countA && j < countB) {
+                if (x[i] < y[j]) {
+                    i++;
+                } else if (x[i] > y[j]) {
+                    j++;
+                } else {
+                    count++;
+                    i++;
+                    j++;
+                }
+            }
+        } else if (a instanceof long[] && b instanceof long[]) {
+            long[] x = (long[]) a;
+            long[] y = (long[]) b;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                count += Long.bitCount(x[w] & y[w]);
+            }
+        } else {
+            char[] values = (char[]) (a instanceof char[] ? a : b);
+            int n = a instanceof char[] ? countA : countB;
+            long[] bits = (long[]) (a instanceof long[] ? a : b);
+            for (int i = 0; i < n; i++) {
+                if ((bits[values[i] >>> 6] & (1L << values[i])) != 0) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static Object copy(Object container, int count) {
+        return container instanceof long[] ? ((long[]) container).clone()
+                : Arrays.copyOf((char[]) container, count);
+    }
+
+    private static int countOf(Object container) {
+        if (container instanceof char[]) {
+            return ((char[]) container).length;
+        }
+        int count = 0;
+        for (long word : (long[]) container) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    private static long[] toBitmap(char[] values, int count) {
+        long[] bits = new long[BITMAP_WORDS];
+        for (int i = 0; i < count; i++) {
+            bits[values[i] >>> 6] |= 1L << values[i];
+        }
+        return bits;
+    }
+
+    private static char[] toArray(long[] bits, int count) {
+        char[] values = new char[count];
+        int n = 0;
+        for (int word = 0; word < BITMAP_WORDS; word++) {
+            long bitsLeft = bits[word];
+            while (bitsLeft != 0) {
+                values[n++] = (char) (word << 6 | Long.numberOfTrailingZeros(bitsLeft));
+                bitsLeft &= bitsLeft - 1;
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,391 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ *
+ * The SearchCache class remembers the results of recent searches, so that the
+ * few queries that make up most of the traffic are answered without running
+ * the search again.
+ *
+ * A result is kept as the IDs of the matching songs, under the query in a
+ * normalized form, and the cache holds no more than a budget of bytes, as
+ * estimated from the sizes of the keys and ID arrays. When it is full, one of
+ * two policies chooses what goes:
+ *
+ * LRU drops the result used longest ago.
+ *
+ * TINY_LFU follows W-TinyLFU: new results go into a small LRU window, and a
+ * result pushed out of the window only enters the main LRU area, in place of
+ * the main area's oldest result, if it has been asked for more often. How
+ * often keys are asked for is counted approximately in a count-min sketch of
+ * four rows of small counters, which are halved every so often so that old
+ * popularity fades. A burst of one-off queries therefore passes through the
+ * window without pushing the popular results out. Unlike the full policy the
+ * main area is one LRU list rather than a probation and a protected segment.
+ *
+ * Each result is registered under a few watch terms chosen by the caller,
+ * such that a song can only change the result if it has one of them, and
+ * comes with a test of whether a song would be part of it. When a song is
+ * added, deleted or changed, only the results watching one of its terms are
+ * tested, and only those the song matches are dropped. A change to many
+ * songs at once drops everything instead.
+ *
+ * All methods are synchronized, as searches on many threads use the cache at
+ * once.
+ */
+final class SearchCache {
+
+    /**
+     *
+     * How a full cache chooses the results to drop.
+     */
+    enum Policy {
+        LRU, TINY_LFU
+    }
+
+    /**
+     *
+     * The watch term of a result that any change to any song may affect.
+     */
+    static final String ANY_SONG = "";
+
+    // the share of the budget given to the window of TINY_LFU, in percent
+    private static final int WINDOW_PERCENT = 1;
+    // a result larger than this share of the budget is not kept at all
+    private static final int LARGEST_SHARE = 8;
+    // about what an entry costs besides its key and IDs: the entry, its
+    // place in the maps and the watch lists
+    private static final int ENTRY_BYTES = 160;
+
+    private final Policy policy;
+    private final long maxBytes;
+    private final long windowBytes;
+    private final LinkedHashMap<String, Entry> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Entry> main = new LinkedHashMap<>(16, 0.75f, true);
+    private final HashMap<String, Set<Entry>> watchers = new HashMap<>();
+    private final FrequencySketch sketch;
+    private long windowUsed;
+    private long mainUsed;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejections;
+    private long invalidations;
+    private long clears;
+    private long tooLarge;
+
+    /**
+     *
+     * Constructs a new, empty SearchCache object.
+     *
+     * @param policy   how the cache chooses the results to drop
+     * @param maxBytes the most memory the results may take, estimated
+     */
+    SearchCache(Policy policy, long maxBytes) {
+        this.policy = policy;
+        this.maxBytes = maxBytes;
+        this.windowBytes = policy == Policy.TINY_LFU ? Math.max(1, maxBytes * WINDOW_PERCENT / 100) : 0;
+        this.sketch = policy == Policy.TINY_LFU ? new FrequencySketch(maxBytes / 1024) : null;
+    }
+
+    /**
+     *
+     * Returns the cached result of a query, or null if it is not cached.
+     *
+     * @param key the normalized query
+     * @return the IDs of the matching songs, which must not be changed
+     */
+    synchronized int[] get(String key) {
+        if (sketch != null) {
+            sketch.increment(key);
+        }
+        Entry entry = main.get(key);
+        if (entry == null) {
+            entry = window.get(key);
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.ids;
+    }
+
+    /**
+     *
+     * Caches the result of a query, which was just worked out with no change
+     * to the library since, dropping other results if the cache is full.
+     *
+     * @param key     the normalized query
+     * @param ids     the IDs of the matching songs
+     * @param watch   the terms a song must have one of to change the result,
+     *                or ANY_SONG
+     * @param affects whether a song is part of the result, before or after a
+     *                change to it
+     */
+    synchronized void put(String key, int[] ids, Collection<String> watch, Predicate<Songs> affects) {
+        long bytes = ENTRY_BYTES + 2L * key.length() + 4L * ids.length;
+        for (String term : watch) {
+            bytes += 48 + 2L * term.length();
+        }
+        if (bytes > maxBytes / LARGEST_SHARE) {
+            tooLarge++;
+            return;
+        }
+        Entry old = main.containsKey(key) ? main.get(key) : window.get(key);
+        if (old != null) {
+            drop(old);
+        }
+        Entry entry = new Entry(key, ids, new ArrayList<>(watch), affects, bytes);
+        for (String term : entry.watch) {
+            watchers.computeIfAbsent(term, t -> new HashSet<>()).add(entry);
+        }
+        if (policy == Policy.LRU) {
+            entry.inWindow = false;
+            main.put(key, entry);
+            mainUsed += bytes;
+            while (mainUsed > maxBytes) {
+                evict(main.values().iterator().next());
+            }
+            return;
+        }
+        entry.inWindow = true;
+        window.put(key, entry);
+        windowUsed += bytes;
+        while (windowUsed > windowBytes && !window.isEmpty()) {
+            admit(window.values().iterator().next());
+        }
+    }
+
+    /**
+     *
+     * Drops the cached results a change to a song may have changed.
+     *
+     * @param song  the song, as it was before or is after the change
+     * @param terms the watch terms the song has
+     */
+    synchronized void invalidate(Songs song, Collection<String> terms) {
+        if (main.isEmpty() && window.isEmpty()) {
+            return;
+        }
+        List<Entry> affected = new ArrayList<>();
+        check(watchers.get(ANY_SONG), song, affected);
+        for (String term : terms) {
+            check(watchers.get(term), song, affected);
+        }
+        for (Entry entry : affected) {
+            if (entry.live) {
+                drop(entry);
+                invalidations++;
+            }
+        }
+    }
+
+    /**
+     *
+     * Drops every cached result, after a change to many songs at once.
+     */
+    synchronized void clear() {
+        if (main.isEmpty() && window.isEmpty()) {
+            return;
+        }
+        invalidations += main.size() + window.size();
+        clears++;
+        main.clear();
+        window.clear();
+        watchers.clear();
+        mainUsed = 0;
+        windowUsed = 0;
+    }
+
+    /**
+     *
+     * Returns true if nothing is cached, so a change has nothing to drop.
+     *
+     * @return true if the cache is empty
+     */
+    synchronized boolean isEmpty() {
+        return main.isEmpty() && window.isEmpty();
+    }
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     *
+     * Describes how full the cache is and how well it did so far.
+     *
+     * @return a printable summary of the cache
+     */
+    synchronized String stats() {
+        long lookups = hits + misses;
+        return String.format("Search cache (%s): %,d results, about %,d of %,d bytes%n"
+                + "  %,d hits, %,d misses, %.1f%% hit rate; %,d evicted, %,d not admitted, %,d too large, "
+                + "%,d invalidated (%,d in full clears)", policy, main.size() + window.size(),
+                mainUsed + windowUsed, maxBytes, hits, misses, lookups == 0 ? 0.0 : 100.0 * hits / lookups,
+                evictions, rejections, tooLarge, invalidations, clears);
+    }
+
+    /**
+     *
+     * Moves the oldest result of the window to the main area if there is
+     * room or it is asked for more often than the main area's oldest result.
+     */
+    private void admit(Entry candidate) {
+        window.remove(candidate.key);
+        windowUsed -= candidate.bytes;
+        int frequency = sketch.frequency(candidate.key);
+        while (mainUsed + candidate.bytes > maxBytes - windowBytes && !main.isEmpty()) {
+            Entry victim = main.values().iterator().next();
+            if (sketch.frequency(victim.key) >= frequency) {
+                unwatch(candidate);
+                candidate.live = false;
+                rejections++;
+                return;
+            }
+            evict(victim);
+        }
+        candidate.inWindow = false;
+        main.put(candidate.key, candidate);
+        mainUsed += candidate.bytes;
+    }
+
+    private void evict(Entry entry) {
+        drop(entry);
+        evictions++;
+    }
+
+    private void drop(Entry entry) {
+        if (entry.inWindow) {
+            window.remove(entry.key);
+            windowUsed -= entry.bytes;
+        } else {
+            main.remove(entry.key);
+            mainUsed -= entry.bytes;
+        }
+        unwatch(entry);
+        entry.live = false;
+    }
+
+    private void unwatch(Entry entry) {
+        for (String term : entry.watch) {
+            Set<Entry> entries = watchers.get(term);
+            if (entries != null && entries.remove(entry) && entries.isEmpty()) {
+                watchers.remove(term);
+            }
+        }
+    }
+
+    private static void check(Set<Entry> entries, Songs song, List<Entry> affected) {
+        if (entries == null) {
+            return;
+        }
+        for (Entry entry : entries) {
+            if (entry.affects.test(song)) {
+                affected.add(entry);
+            }
+        }
+    }
+
+    /**
+     *
+     * A cached result with the terms it watches and its estimated size.
+     */
+    private static final class Entry {
+
+        final String key;
+        final int[] ids;
+        final List<String> watch;
+        final Predicate<Songs> affects;
+        final long bytes;
+        boolean inWindow;
+        boolean live = true;
+
+        Entry(String key, int[] ids, List<String> watch, Predicate<Songs> affects, long bytes) {
+            this.key = key;
+            this.ids = ids;
+            this.watch = watch;
+            this.affects = affects;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     *
+     * Counts how often keys are asked for, approximately, in four rows of
+     * counters indexed by different hashes of the key. A key's count is the
+     * smallest of its four counters, which other keys can only have made too
+     * large. The counters stop at 15 and are all halved once the number of
+     * increments reaches ten times the width, so the counts follow what is
+     * popular now.
+     */
+    private static final class FrequencySketch {
+
+        private static final int ROWS = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+        private final byte[][] counters;
+        private final int mask;
+        private final int resetAt;
+        private int increments;
+
+        FrequencySketch(long expectedKeys) {
+            int width = Integer.highestOneBit((int) Math.max(256, Math.min(1 << 20, expectedKeys)) * 2 - 1);
+            counters = new byte[ROWS][width];
+            mask = width - 1;
+            resetAt = width * 10;
+        }
+
+        void increment(String key) {
+            int hash = spread(key.hashCode());
+            boolean added = false;
+            for (int row = 0; row < ROWS; row++) {
+                int index = index(hash, row);
+                if (counters[row][index] < MAX_COUNT) {
+                    counters[row][index]++;
+                    added = true;
+                }
+            }
+            if (added && ++increments >= resetAt) {
+                for (byte[] row : counters) {
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] >>= 1;
+                    }
+                }
+                increments /= 2;
+            }
+        }
+
+        int frequency(String key) {
+            int hash = spread(key.hashCode());
+            int frequency = MAX_COUNT;
+            for (int row = 0; row < ROWS; row++) {
+                frequency = Math.min(frequency, counters[row][index(hash, row)]);
+            }
+            return frequency;
+        }
+
+        private int index(int hash, int row) {
+            int h = (hash ^ SEEDS[row]) * SEEDS[(row + 1) % ROWS];
+            return (h ^ (h >>> 15)) & mask;
+        }
+
+        private static int spread(int hash) {
+            hash *= 0x85EBCA6B;
+            return hash ^ (hash >>> 13);
+        }
+    }
+}
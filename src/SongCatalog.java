@@ -0,0 +1,228 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ * The SongCatalog class stores the songs of the library by their primary key,
+ * which is the title together with the artist, the same pair that Songs uses
+ * for compareTo, equals and hashCode.
+ *
+ * The songs are kept under their title only, so songs by different artists
+ * that share a title are all kept and can all be found, and a lookup by title
+ * and artist goes through the few songs with that title. A title with one
+ * song, which is most of them, maps straight to the song, and a title with
+ * more maps to an array of them in the order they were added. Nothing else is
+ * allocated per song: there is no key object and no second map, which saves
+ * about 60 bytes a song over keeping a map by title and artist as well. A
+ * song whose key is already in the catalog is rejected instead of replacing
+ * the one that is there, which keeps the catalog and the song list in step.
+ *
+ * The title and artist of a song must not be changed while it is in the
+ * catalog, as it is found by both.
+ *
+ * The catalog can be read and changed from several threads at once. The
+ * titles are the keys of a concurrent hash map, so lookups never lock, and
+ * the array of songs with a title is copied on every change, so a reader
+ * always sees a complete array. Adding and removing songs with the same title
+ * is serialized on that title.
+ */
+class SongCatalog implements Iterable<Songs> {
+
+    private static final Songs[] NO_SONGS = new Songs[0];
+
+    // a title maps to its only song, or to a Songs[] of two or more
+    private final ConcurrentHashMap<String, Object> byTitle = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     *
+     * Adds a song to the catalog unless a song with the same title and artist
+     * is already in it.
+     *
+     * @param song the song to be added
+     * @return true if the song was added, false if its key was already taken
+     */
+    boolean add(Songs song) {
+        String artist = song.getArtist();
+        boolean[] added = new boolean[1];
+        byTitle.compute(song.getTitle(), (title, songs) -> {
+            if (songs == null) {
+                added[0] = true;
+                return song;
+            }
+            if (find(songs, artist) != null) {
+                return songs;
+            }
+            added[0] = true;
+            if (songs instanceof Songs) {
+                return new Songs[] {(Songs) songs, song};
+            }
+            Songs[] grown = Arrays.copyOf((Songs[]) songs, ((Songs[]) songs).length + 1);
+            grown[grown.length - 1] = song;
+            return grown;
+        });
+        if (added[0]) {
+            size.incrementAndGet();
+        }
+        return added[0];
+    }
+
+    /**
+     *
+     * Removes the song with the title and artist of the given song from the
+     * catalog.
+     *
+     * @param song the song to be removed
+     * @return true if the song was in the catalog
+     */
+    boolean remove(Songs song) {
+        String artist = song.getArtist();
+        boolean[] removed = new boolean[1];
+        byTitle.computeIfPresent(song.getTitle(), (title, songs) -> {
+            Songs current = find(songs, artist);
+            if (current == null) {
+                return songs;
+            }
+            removed[0] = true;
+            if (songs instanceof Songs) {
+                return null;
+            }
+            Songs[] all = (Songs[]) songs;
+            if (all.length == 2) {
+                return all[0] == current ? all[1] : all[0];
+            }
+            Songs[] shrunk = new Songs[all.length - 1];
+            int count = 0;
+            for (Songs other : all) {
+                if (other != current) {
+                    shrunk[count++] = other;
+                }
+            }
+            return shrunk;
+        });
+        if (removed[0]) {
+            size.decrementAndGet();
+        }
+        return removed[0];
+    }
+
+    /**
+     *
+     * Returns the song with the given title and artist.
+     *
+     * @param title  the title of the song
+     * @param artist the artist of the song
+     * @return the song, or null if there is no such song
+     */
+    Songs get(String title, String artist) {
+        Object songs = byTitle.get(title);
+        return songs == null ? null : find(songs, artist);
+    }
+
+    /**
+     *
+     * Returns every song with the given title, in the order they were added.
+     *
+     * @param title the title to look up
+     * @return the songs with that title, which may be empty
+     */
+    List<Songs> getByTitle(String title) {
+        Object songs = byTitle.get(title);
+        if (songs == null) {
+            return Collections.<Songs>emptyList();
+        }
+        return songs instanceof Songs ? Collections.singletonList((Songs) songs)
+                : Collections.unmodifiableList(Arrays.asList((Songs[]) songs));
+    }
+
+    /**
+     *
+     * Returns whether a song with the given title and artist is in the
+     * catalog.
+     *
+     * @param title  the title of the song
+     * @param artist the artist of the song
+     * @return true if there is such a song
+     */
+    boolean contains(String title, String artist) {
+        return get(title, artist) != null;
+    }
+
+    /**
+     *
+     * Returns the number of songs in the catalog.
+     *
+     * @return the number of songs
+     */
+    int size() {
+        return size.get();
+    }
+
+    /**
+     *
+     * Returns an iterator over the songs in no particular order.
+     *
+     * @return an iterator over the songs
+     */
+    @Override
+    public Iterator<Songs> iterator() {
+        Iterator<Object> titles = byTitle.values().iterator();
+        return new Iterator<Songs>() {
+            private Songs[] songs = NO_SONGS;
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == songs.length && titles.hasNext()) {
+                    Object value = titles.next();
+                    songs = value instanceof Songs ? new Songs[] {(Songs) value} : (Songs[]) value;
+                    next = 0;
+                }
+                return next < songs.length;
+            }
+
+            @Override
+            public Songs next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return songs[next++];
+            }
+        };
+    }
+
+    /**
+     *
+     * Returns the hash code of a (title, artist) key. Songs uses the same
+     * function, so a song and its key hash alike.
+     *
+     * @param title  the title of the song
+     * @param artist the artist of the song
+     * @return the hash code of the key
+     */
+    static int hash(String title, String artist) {
+        return 31 * title.hashCode() + artist.hashCode();
+    }
+
+    /**
+     *
+     * Returns the song by the given artist among the songs kept under one
+     * title, or null.
+     */
+    private static Songs find(Object songs, String artist) {
+        if (songs instanceof Songs) {
+            return ((Songs) songs).getArtist().equals(artist) ? (Songs) songs : null;
+        }
+        for (Songs song : (Songs[]) songs) {
+            if (song.getArtist().equals(artist)) {
+                return song;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,393 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ *
+ * The SongSearchIndex class is an inverted index from normalized tokens to the
+ * songs that contain them.
+ *
+ * The title, artist, genre and album of every song are split into lower case
+ * words, and each word maps to a sorted posting list of song IDs. A query is
+ * answered by intersecting the posting lists of its words instead of scanning
+ * the whole library.
+ *
+ * Queries are made of words separated by spaces, which must all match (AND).
+ * Groups of words separated by "OR" or "|" are alternatives, so "rock 1999 OR
+ * jazz" finds songs matching both "rock" and "1999", or matching "jazz".
+ *
+ * It also keeps a TrigramIndex over the same songs for substring queries that
+ * behave exactly like String.contains.
+ */
+class SongSearchIndex {
+
+    private final HashMap<String, PostingList> postings;
+    private final ArrayList<Songs> songsById;
+    private final TrigramIndex trigrams;
+    private int songCount;
+
+    /**
+     *
+     * Constructs a new empty SongSearchIndex object.
+     */
+    SongSearchIndex() {
+        postings = new HashMap<>();
+        songsById = new ArrayList<>();
+        trigrams = new TrigramIndex();
+        songCount = 0;
+    }
+
+    /**
+     *
+     * Constructs a new SongSearchIndex object holding every song in the list.
+     *
+     * @param songList the songs to be indexed
+     */
+    SongSearchIndex(Iterable<Songs> songList) {
+        this();
+        for (Songs song : songList) {
+            add(song);
+        }
+        for (PostingList list : postings.values()) {
+            list.trimToSize();
+        }
+    }
+
+    /**
+     *
+     * Adds a song to the index, giving it an ID if it does not have one yet.
+     *
+     * @param song the song to be indexed
+     */
+    void add(Songs song) {
+        if (song.getId() < 0) {
+            song.setId(songsById.size());
+            songsById.add(song);
+        } else {
+            while (songsById.size() <= song.getId()) {
+                songsById.add(null);
+            }
+            songsById.set(song.getId(), song);
+        }
+
+        boolean added = false;
+        for (String token : tokensOf(song)) {
+            PostingList list = postings.get(token);
+            if (list == null) {
+                list = new PostingList();
+                postings.put(token, list);
+            }
+            added |= list.add(song.getId());
+        }
+        if (added) {
+            songCount++;
+        }
+        trigrams.add(song);
+    }
+
+    /**
+     *
+     * Removes a song from the index. The song keeps its ID so that it can be
+     * added back later, for example when a delete is undone.
+     *
+     * @param song the song to be removed
+     */
+    void remove(Songs song) {
+        if (song.getId() < 0) {
+            return;
+        }
+        boolean removed = false;
+        for (String token : tokensOf(song)) {
+            PostingList list = postings.get(token);
+            if (list != null && list.remove(song.getId())) {
+                removed = true;
+                if (list.size() == 0) {
+                    postings.remove(token);
+                }
+            }
+        }
+        if (removed) {
+            songCount--;
+        }
+        trigrams.remove(song);
+    }
+
+    /**
+     *
+     * Adds a batch of songs to the index, giving IDs to those that do not
+     * have one yet. New songs are appended to the posting lists, while a batch
+     * with IDs among the indexed ones, such as restored songs, is gathered per
+     * token first and merged into every posting list once.
+     *
+     * @param songs the songs to be indexed
+     */
+    void addAll(Collection<Songs> songs) {
+        for (Songs song : songs) {
+            if (song.getId() < 0) {
+                song.setId(songsById.size());
+                songsById.add(song);
+            } else {
+                while (songsById.size() <= song.getId()) {
+                    songsById.add(null);
+                }
+                songsById.set(song.getId(), song);
+            }
+        }
+        // both indexes always hold the same songs, so the trigram index tells
+        // which songs of the batch are new
+        int lastId = trigrams.lastId();
+        List<Songs> added = trigrams.addAll(songs);
+        if (!added.isEmpty() && added.get(0).getId() > lastId) {
+            for (Songs song : added) {
+                boolean any = false;
+                for (String token : tokensOf(song)) {
+                    postings.computeIfAbsent(token, key -> new PostingList()).add(song.getId());
+                    any = true;
+                }
+                if (any) {
+                    songCount++;
+                }
+            }
+            return;
+        }
+        for (Map.Entry<String, PostingList> entry : groupByToken(added, 1).entrySet()) {
+            PostingList list = postings.get(entry.getKey());
+            if (list == null) {
+                postings.put(entry.getKey(), entry.getValue());
+            } else {
+                list.addAll(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     *
+     * Removes a batch of songs from the index, compacting every posting list
+     * they appear in once for the whole batch. The songs keep their IDs.
+     *
+     * @param songs the songs to be removed
+     */
+    void removeAll(Collection<Songs> songs) {
+        List<Songs> removed = trigrams.removeAll(songs);
+        for (Map.Entry<String, PostingList> entry : groupByToken(removed, -1).entrySet()) {
+            PostingList list = postings.get(entry.getKey());
+            if (list != null) {
+                list.removeAll(entry.getValue());
+                if (list.size() == 0) {
+                    postings.remove(entry.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     *
+     * Returns the IDs of a batch of songs per token, moving the song count by
+     * the given step for every song that has a token. The songs must be in ID
+     * order, so that every list is built by appending.
+     */
+    private HashMap<String, PostingList> groupByToken(List<Songs> sorted, int step) {
+        HashMap<String, PostingList> byToken = new HashMap<>(Math.max(16, sorted.size() * 2));
+        for (Songs song : sorted) {
+            Set<String> tokens = tokensOf(song);
+            if (!tokens.isEmpty()) {
+                songCount += step;
+            }
+            for (String token : tokens) {
+                byToken.computeIfAbsent(token, key -> new PostingList()).add(song.getId());
+            }
+        }
+        return byToken;
+    }
+
+    /**
+     *
+     * Returns the songs matching a query, in the order they were added to the
+     * library.
+     *
+     * @param query the words to search for
+     * @return the matching songs
+     */
+    List<Songs> search(String query) {
+        int[] ids = searchIds(query);
+        List<Songs> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            result.add(songsById.get(id));
+        }
+        return result;
+    }
+
+    /**
+     *
+     * Returns the songs whose title, artist, genre or album contain the query
+     * as a substring, in the order they were added to the library.
+     *
+     * @param query the text to look for
+     * @return the matching songs
+     */
+    List<Songs> searchSubstring(String query) {
+        return trigrams.search(query);
+    }
+
+    /**
+     *
+     * Returns the IDs of the songs matching a query.
+     *
+     * @param query the words to search for
+     * @return a sorted array of matching song IDs
+     */
+    int[] searchIds(String query) {
+        return searchIds(parseQuery(query));
+    }
+
+    /**
+     *
+     * Returns the IDs of the songs matching a query that has been parsed.
+     *
+     * @param groups the alternatives of the query, as returned by parseQuery
+     * @return a sorted array of matching song IDs
+     */
+    int[] searchIds(List<List<String>> groups) {
+        int[][] matches = new int[groups.size()][];
+        for (int i = 0; i < matches.length; i++) {
+            matches[i] = matchAll(groups.get(i));
+        }
+        return PostingList.union(matches);
+    }
+
+    /**
+     *
+     * Splits a query into its alternatives, each the list of tokens a song
+     * must all contain. An alternative without tokens matches nothing.
+     *
+     * @param query the words to search for
+     * @return the token lists of the groups separated by "OR" or "|"
+     */
+    static List<List<String>> parseQuery(String query) {
+        List<List<String>> groups = new ArrayList<>();
+        List<String> words = new ArrayList<>();
+        for (String part : query.trim().split("\\s+")) {
+            if (part.equals("OR") || part.equals("|")) {
+                groups.add(words);
+                words = new ArrayList<>();
+            } else {
+                words.addAll(tokenize(part));
+            }
+        }
+        groups.add(words);
+        return groups;
+    }
+
+    /**
+     *
+     * Returns the IDs of the songs containing every token.
+     *
+     * @param tokens the normalized tokens to look up
+     * @return a sorted array of song IDs
+     */
+    int[] matchAll(List<String> tokens) {
+        if (tokens.isEmpty()) {
+            return new int[0];
+        }
+        PostingList[] lists = new PostingList[tokens.size()];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = postings.get(tokens.get(i));
+            if (lists[i] == null) {
+                return new int[0];
+            }
+        }
+        return PostingList.intersect(lists);
+    }
+
+    /**
+     *
+     * Returns the IDs of the songs containing at least one of the tokens.
+     *
+     * @param tokens the normalized tokens to look up
+     * @return a sorted array of song IDs
+     */
+    int[] matchAny(List<String> tokens) {
+        int[][] arrays = new int[tokens.size()][];
+        for (int i = 0; i < arrays.length; i++) {
+            PostingList list = postings.get(tokens.get(i));
+            arrays[i] = list == null ? new int[0] : list.toArray();
+        }
+        return PostingList.union(arrays);
+    }
+
+    /**
+     *
+     * Returns the song with the given ID.
+     *
+     * @param id the ID of the song
+     * @return the song, or null if no song has that ID
+     */
+    Songs getSong(int id) {
+        return id >= 0 && id < songsById.size() ? songsById.get(id) : null;
+    }
+
+    /**
+     *
+     * Returns the number of songs currently in the index.
+     *
+     * @return the number of indexed songs
+     */
+    int size() {
+        return songCount;
+    }
+
+    /**
+     *
+     * Describes how much memory the substring index uses.
+     *
+     * @return a printable summary of the index size
+     */
+    String stats() {
+        return trigrams.stats();
+    }
+
+    /**
+     *
+     * Returns the distinct tokens found in the text fields of a song.
+     *
+     * @param song the song to tokenize
+     * @return the tokens of the title, artist, genre and album
+     */
+    static Set<String> tokensOf(Songs song) {
+        Set<String> tokens = new LinkedHashSet<>();
+        tokens.addAll(tokenize(song.getTitle()));
+        tokens.addAll(tokenize(song.getArtist()));
+        tokens.addAll(tokenize(song.getGenre()));
+        tokens.addAll(tokenize(song.getAlbum()));
+        return tokens;
+    }
+
+    /**
+     *
+     * Splits text into lower case runs of letters and digits.
+     *
+     * @param text the text to split
+     * @return the tokens found in the text
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
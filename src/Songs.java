@@ -3,7 +3,9 @@
  * Represents a song with its attributes such as title, artist, genre, album,
  * track number, year, rating, and play count.
  * Implements the Comparable interface to compare two songs based on their title
- * and artist.
+ * and artist. The title and artist are also what makes two songs equal.
+ * The artist, genre and album are interned in the library-wide SymbolTable,
+ * so songs that share one of those values share the same String.
  */
 public class Songs implements Comparable<Songs> {
 
@@ -15,11 +17,13 @@ public class Songs implements Comparable<Songs> {
     private int year;
     private double rating;
     private int playCount;
+    private int id = -1;
 
     /**
      *
      * Constructs a song with the given title, artist, genre, album, track
-     * number, year, and rating. Initializes the play count to 0.
+     * number, year, and rating. Initializes the play count to 0. The artist,
+     * genre and album are replaced by their canonical strings.
      *
      * @param title       the title of the song
      * @param artist      the artist of the song
@@ -31,9 +35,9 @@ public class Songs implements Comparable<Songs> {
      */
     public Songs(String title, String artist, String genre, String album, int trackNumber, int year, double rating) {
         this.title = title;
-        this.artist = artist;
-        this.genre = genre;
-        this.album = album;
+        this.artist = SymbolTable.LIBRARY.intern(artist);
+        this.genre = SymbolTable.LIBRARY.intern(genre);
+        this.album = SymbolTable.LIBRARY.intern(album);
         this.trackNumber = trackNumber;
         this.year = year;
         this.rating = rating;
@@ -77,7 +81,7 @@ public class Songs implements Comparable<Songs> {
      * @param artist the artist to be set
      */
     public void setArtist(String artist) {
-        this.artist = artist;
+        this.artist = SymbolTable.LIBRARY.intern(artist);
     }
 
     /**
@@ -97,7 +101,7 @@ public class Songs implements Comparable<Songs> {
      * @param genre the genre to be set
      */
     public void setGenre(String genre) {
-        this.genre = genre;
+        this.genre = SymbolTable.LIBRARY.intern(genre);
     }
 
     /**
@@ -117,7 +121,7 @@ public class Songs implements Comparable<Songs> {
      * @param album the album to be set
      */
     public void setAlbum(String album) {
-        this.album = album;
+        this.album = SymbolTable.LIBRARY.intern(album);
     }
 
     /**
@@ -170,9 +174,79 @@ public class Songs implements Comparable<Songs> {
         this.playCount = playCount;
     }
 
+    /**
+     *
+     * Copies the genre, album, track number, year, rating and play count of
+     * another song. The title and artist, which identify the song, are left
+     * as they are.
+     *
+     * @param other the song to copy the values from
+     */
+    void setDetails(Songs other) {
+        setGenre(other.getGenre());
+        setAlbum(other.getAlbum());
+        setTrackNumber(other.getTrackNumber());
+        setYear(other.getYear());
+        setRating(other.getRating());
+        setPlayCount(other.getPlayCount());
+    }
+
+    /**
+     *
+     * Returns the ID the library assigned to this song, or -1 if the song has
+     * not been added to the library yet.
+     *
+     * @return the ID of the song
+     */
+    int getId() {
+        return id;
+    }
+
+    /**
+     *
+     * Sets the ID the library uses to refer to this song in its indexes.
+     *
+     * @param id the ID to be set
+     */
+    void setId(int id) {
+        this.id = id;
+    }
+
     @Override
     public int compareTo(Songs other) {
-        int titleComparison = this.title.compareTo(other.title);
-        return titleComparison != 0 ? titleComparison : this.artist.compareTo(other.artist);
+        int titleComparison = getTitle().compareTo(other.getTitle());
+        return titleComparison != 0 ? titleComparison : getArtist().compareTo(other.getArtist());
+    }
+
+    /**
+     *
+     * Returns whether the other object is a song with the same title and
+     * artist, which together identify a song in the library.
+     *
+     * @param other the object to compare with
+     * @return true if the other object is the same song
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof Songs)) {
+            return false;
+        }
+        Songs song = (Songs) other;
+        return getTitle().equals(song.getTitle()) && getArtist().equals(song.getArtist());
+    }
+
+    /**
+     *
+     * Returns a hash code built from the title and artist, consistent with
+     * equals.
+     *
+     * @return the hash code of the song
+     */
+    @Override
+    public int hashCode() {
+        return SongCatalog.hash(getTitle(), getArtist());
     }
 }
@@ -1,51 +1,67 @@
-
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
 /**
  *
- * This class represents a node in a singly-linked list of songs. Each node
- * contains a reference
- *
- * to a Songs object and a reference to the next node in the list.
+ * This class represents a node in a doubly-linked list of songs. Each node
+ * contains a reference to a Songs object and references to the previous and
+ * next nodes in the list.
  */
 class SongsNode {
 
     Songs data;
+    SongsNode prev;
     SongsNode next;
 
     /**
      *
-     * Constructs a new SongsNode object with the specified Songs object and a
-     * null reference to the next node in the list.
+     * The next node in the same list that holds the same Songs object, or null
+     * if this is the last occurrence. Lets the list keep a single handle per
+     * song even when a song has been added more than once.
+     */
+    SongsNode nextSame;
+
+    /**
+     *
+     * Constructs a new SongsNode object with the specified Songs object and
+     * null references to the previous and next nodes in the list.
      *
      * @param data the Songs object to be stored in this node.
      */
     public SongsNode(Songs data) {
         this.data = data;
+        this.prev = null;
         this.next = null;
     }
 }
 
 /**
  *
- * This class represents a custom implementation of a singly-linked list of
+ * This class represents a custom implementation of a doubly-linked list of
  * songs.
  *
- * It provides methods for adding and removing Songs objects, as well as
- * iterating over the list.
+ * It keeps a tail pointer and a running count so that adding to the end and
+ * asking for the size are O(1), and a node handle per Songs object so that
+ * removing a song does not have to scan the list.
  */
 class CustomLinkedList implements Iterable<Songs> {
 
     private SongsNode head;
+    private SongsNode tail;
+    private int size;
+    private final IdentityHashMap<Songs, SongsNode> handles;
 
     /**
      *
-     * Constructs a new empty CustomLinkedList object with a null reference to
-     * the head node.
+     * Constructs a new empty CustomLinkedList object with null references to
+     * the head and tail nodes.
      */
     public CustomLinkedList() {
         head = null;
+        tail = null;
+        size = 0;
+        handles = new IdentityHashMap<>();
     }
 
     /**
@@ -56,20 +72,31 @@ class CustomLinkedList implements Iterable<Songs> {
      */
     public void add(Songs songs) {
         SongsNode newNode = new SongsNode(songs);
-        if (head == null) {
+        if (tail == null) {
             head = newNode;
         } else {
-            SongsNode current = head;
-            while (current.next != null) {
-                current = current.next;
+            newNode.prev = tail;
+            tail.next = newNode;
+        }
+        tail = newNode;
+        size++;
+
+        SongsNode first = handles.get(songs);
+        if (first == null) {
+            handles.put(songs, newNode);
+        } else {
+            // Only reached when the same song is added twice
+            while (first.nextSame != null) {
+                first = first.nextSame;
             }
-            current.next = newNode;
+            first.nextSame = newNode;
         }
     }
 
     /**
      *
-     * Removes a specified Songs object from the list, if it exists.
+     * Removes the first occurrence of a specified Songs object from the list,
+     * if it exists.
      *
      * @param songToRemove the Songs object to be removed from the list.
      *
@@ -77,25 +104,53 @@ class CustomLinkedList implements Iterable<Songs> {
      *         false otherwise.
      */
     public boolean remove(Songs songToRemove) {
-        if (head == null) {
+        SongsNode node = handles.get(songToRemove);
+        if (node == null) {
             return false;
         }
 
-        if (head.data.equals(songToRemove)) {
-            head = head.next;
-            return true;
+        if (node.nextSame != null) {
+            handles.put(songToRemove, node.nextSame);
+        } else {
+            handles.remove(songToRemove);
         }
+        unlink(node);
+        return true;
+    }
 
-        SongsNode current = head;
-        while (current.next != null) {
-            if (current.next.data.equals(songToRemove)) {
-                current.next = current.next.next;
-                return true;
-            }
-            current = current.next;
-        }
+    /**
+     *
+     * Returns true if the specified Songs object is in the list.
+     *
+     * @param song the Songs object to look for.
+     *
+     * @return true if the list contains the song, false otherwise.
+     */
+    boolean contains(Songs song) {
+        return handles.containsKey(song);
+    }
 
-        return false;
+    /**
+     *
+     * Detaches a node from its neighbours and updates the head, tail and size.
+     *
+     * @param node the node to be detached.
+     */
+    private void unlink(SongsNode node) {
+        if (node.prev == null) {
+            head = node.next;
+        } else {
+            node.prev.next = node.next;
+        }
+        if (node.next == null) {
+            tail = node.prev;
+        } else {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+        node.nextSame = null;
+        size--;
     }
 
     /**
@@ -138,7 +193,7 @@ class CustomLinkedList implements Iterable<Songs> {
      * @return true if the list is empty, false otherwise.
      */
     boolean isEmpty() {
-        return head == null;
+        return size == 0;
     }
 
     /**
@@ -148,16 +203,6 @@ class CustomLinkedList implements Iterable<Songs> {
      * @return the number of Songs objects in the list.
      */
     int size() {
-        int count = 0;
-        SongsNode current = head;
-        while (current != null) {
-            count++;
-            current = current.next;
-        }
-        return count;
+        return size;
     }
 }
-/**
- * Returns the Songs object at the specified index in the list.
- *
- */
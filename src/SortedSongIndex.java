@@ -0,0 +1,850 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *
+ * The SortedSongIndex class keeps the songs of the library sorted in one
+ * order, by title, artist, year, rating or play count, so they can be browsed
+ * a page at a time and searched by range or prefix without sorting the
+ * library.
+ *
+ * The songs are held in a B+ tree. Every leaf holds up to 64 songs in order
+ * and is linked to its neighbours, and every branch knows how many songs each
+ * of its children holds. Finding a position or the start of a range takes
+ * O(log n), after which the songs are read along the leaves, so a page of k
+ * songs takes O(log n + k). The number of songs in a range is found without
+ * reading them.
+ *
+ * Songs with the same artist, year, rating or play count are ordered by title
+ * ignoring case, and then as Songs.compareTo orders them, so the order is
+ * total. The number a song is sorted by is copied into the tree when the song
+ * is added, so a song must be removed before that number changes and added
+ * again afterwards, the same way as for SongSearchIndex.
+ */
+final class SortedSongIndex {
+
+    /**
+     *
+     * The orders a SortedSongIndex can keep. Titles and artists are compared
+     * ignoring case.
+     */
+    enum Order {
+        TITLE, ARTIST, YEAR, RATING, PLAY_COUNT;
+
+        /**
+         *
+         * Returns whether the order is by a number, year, rating or play
+         * count, rather than by text.
+         *
+         * @return true for YEAR, RATING and PLAY_COUNT
+         */
+        boolean isNumeric() {
+            return this != TITLE && this != ARTIST;
+        }
+    }
+
+    private static final int LEAF_CAPACITY = 64;
+    private static final int BRANCH_CAPACITY = 64;
+    // a node that falls below a quarter full is merged with or refilled from
+    // a neighbour, which keeps the tree shallow however songs are removed
+    private static final int LEAF_MINIMUM = LEAF_CAPACITY / 4;
+    private static final int BRANCH_MINIMUM = BRANCH_CAPACITY / 4;
+    // a new tree is built with room to grow in every node
+    private static final int BUILD_FILL = LEAF_CAPACITY * 3 / 4;
+
+    private abstract static class Node {
+        int size;
+    }
+
+    private static final class Leaf extends Node {
+        final Songs[] songs = new Songs[LEAF_CAPACITY + 1];
+        final double[] numbers;
+        Leaf previous;
+        Leaf next;
+
+        Leaf(boolean numeric) {
+            numbers = numeric ? new double[LEAF_CAPACITY + 1] : null;
+        }
+    }
+
+    // the first song of each child and its number bound the songs of that
+    // child from below; they stay valid when that song is removed
+    private static final class Branch extends Node {
+        final Node[] children = new Node[BRANCH_CAPACITY + 1];
+        final Songs[] lowSongs = new Songs[BRANCH_CAPACITY + 1];
+        final double[] lowNumbers = new double[BRANCH_CAPACITY + 1];
+        int count;
+    }
+
+    // where a read is in the leaves
+    private static final class Cursor {
+        Leaf leaf;
+        int index;
+    }
+
+    private final Order order;
+    private final boolean numeric;
+    private Node root;
+    private int height;
+
+    /**
+     *
+     * Constructs a new SortedSongIndex object holding the given songs. They
+     * are sorted once here, and every change after that is made in place.
+     *
+     * @param order the order to keep the songs in
+     * @param songs the songs to be indexed, each at most once
+     */
+    SortedSongIndex(Order order, Iterable<Songs> songs) {
+        this.order = order;
+        this.numeric = order.isNumeric();
+        List<Songs> sorted = new ArrayList<>();
+        for (Songs song : songs) {
+            sorted.add(song);
+        }
+        sorted.sort((a, b) -> compare(numberOf(a), a, numberOf(b), b));
+        build(sorted);
+    }
+
+    /**
+     *
+     * Returns the order the songs are kept in.
+     *
+     * @return the order of the index
+     */
+    Order getOrder() {
+        return order;
+    }
+
+    /**
+     *
+     * Returns the number of songs in the index.
+     *
+     * @return the number of songs
+     */
+    int size() {
+        return root.size;
+    }
+
+    /**
+     *
+     * Adds a song to the index, unless a song with the same title and artist
+     * is already in it.
+     *
+     * @param song the song to be added
+     * @return true if the song was added
+     */
+    boolean add(Songs song) {
+        double number = numberOf(song);
+        Branch[] path = new Branch[height];
+        int[] indexes = new int[height];
+        Leaf leaf = descend(number, song, path, indexes);
+
+        int position = leafPosition(leaf, number, song);
+        if (position < leaf.size && compare(number(leaf, position), leaf.songs[position], number, song) == 0) {
+            return false;
+        }
+        System.arraycopy(leaf.songs, position, leaf.songs, position + 1, leaf.size - position);
+        leaf.songs[position] = song;
+        if (numeric) {
+            System.arraycopy(leaf.numbers, position, leaf.numbers, position + 1, leaf.size - position);
+            leaf.numbers[position] = number;
+        }
+        leaf.size++;
+        for (Branch branch : path) {
+            branch.size++;
+        }
+
+        // split full nodes from the leaf up, growing a new root if needed
+        Node split = leaf.size > LEAF_CAPACITY ? splitLeaf(leaf) : null;
+        for (int level = height - 1; level >= 0 && split != null; level--) {
+            Branch parent = path[level];
+            insertChild(parent, indexes[level] + 1, split, lowSong(split), lowNumber(split));
+            split = parent.count > BRANCH_CAPACITY ? splitBranch(parent) : null;
+        }
+        if (split != null) {
+            Branch newRoot = new Branch();
+            newRoot.children[0] = root;
+            newRoot.lowSongs[0] = lowSong(root);
+            newRoot.lowNumbers[0] = lowNumber(root);
+            newRoot.count = 1;
+            newRoot.size = root.size;
+            insertChild(newRoot, 1, split, lowSong(split), lowNumber(split));
+            newRoot.size += split.size;
+            root = newRoot;
+            height++;
+        }
+        return true;
+    }
+
+    /**
+     *
+     * Removes a song from the index. The number it is sorted by must be the
+     * same as when it was added.
+     *
+     * @param song the song to be removed
+     * @return true if the song was in the index
+     */
+    boolean remove(Songs song) {
+        double number = numberOf(song);
+        Branch[] path = new Branch[height];
+        int[] indexes = new int[height];
+        Leaf leaf = descend(number, song, path, indexes);
+
+        int position = leafPosition(leaf, number, song);
+        if (position == leaf.size || compare(number(leaf, position), leaf.songs[position], number, song) != 0) {
+            return false;
+        }
+        System.arraycopy(leaf.songs, position + 1, leaf.songs, position, leaf.size - position - 1);
+        if (numeric) {
+            System.arraycopy(leaf.numbers, position + 1, leaf.numbers, position, leaf.size - position - 1);
+        }
+        leaf.size--;
+        leaf.songs[leaf.size] = null;
+        for (Branch branch : path) {
+            branch.size--;
+        }
+
+        // refill nodes that became too small from the leaf up
+        Node node = leaf;
+        for (int level = height - 1; level >= 0; level--) {
+            Branch parent = path[level];
+            if (node instanceof Leaf ? node.size >= LEAF_MINIMUM : ((Branch) node).count >= BRANCH_MINIMUM) {
+                break;
+            }
+            rebalance(parent, indexes[level]);
+            node = parent;
+        }
+        while (root instanceof Branch && ((Branch) root).count == 1) {
+            root = ((Branch) root).children[0];
+            height--;
+        }
+        return true;
+    }
+
+    /**
+     *
+     * Returns a page of the songs in order.
+     *
+     * @param offset     the number of songs to skip
+     * @param limit      the largest number of songs to return
+     * @param descending true to go from the last song to the first
+     * @return the songs of the page
+     */
+    List<Songs> page(int offset, int limit, boolean descending) {
+        return window(0, size(), offset, limit, descending);
+    }
+
+    /**
+     *
+     * Returns the page of the songs in order that follows a song, or that
+     * comes before it when descending. The song does not have to be in the
+     * index any more, so a page that ended with it can be continued even if
+     * songs were added or deleted since, without showing a song twice or
+     * skipping one that stayed.
+     *
+     * @param after      the last song of the previous page, or null to start
+     *                   from the first song
+     * @param limit      the largest number of songs to return
+     * @param descending true to go from the last song to the first
+     * @return the songs of the page
+     */
+    List<Songs> page(Songs after, int limit, boolean descending) {
+        return window(0, size(), after, limit, descending);
+    }
+
+    /**
+     *
+     * Returns a page of the songs whose year, rating or play count is between
+     * two values, both included, in order. Infinities leave a side of the
+     * range open.
+     *
+     * @param from       the lowest value
+     * @param to         the highest value
+     * @param offset     the number of songs of the range to skip
+     * @param limit      the largest number of songs to return
+     * @param descending true to go from the highest value to the lowest
+     * @return the songs of the page
+     */
+    List<Songs> range(double from, double to, int offset, int limit, boolean descending) {
+        requireNumeric(true);
+        return window(rank(from, null, false), rank(to, null, true), offset, limit, descending);
+    }
+
+    /**
+     *
+     * Returns the page of the songs whose year, rating or play count is
+     * between two values that follows a song, as page(Songs, int, boolean)
+     * does for all songs.
+     *
+     * @param from       the lowest value
+     * @param to         the highest value
+     * @param after      the last song of the previous page, or null
+     * @param limit      the largest number of songs to return
+     * @param descending true to go from the highest value to the lowest
+     * @return the songs of the page
+     */
+    List<Songs> range(double from, double to, Songs after, int limit, boolean descending) {
+        requireNumeric(true);
+        return window(rank(from, null, false), rank(to, null, true), after, limit, descending);
+    }
+
+    /**
+     *
+     * Returns the number of songs whose year, rating or play count is between
+     * two values, both included.
+     *
+     * @param from the lowest value
+     * @param to   the highest value
+     * @return the number of songs in the range
+     */
+    int count(double from, double to) {
+        requireNumeric(true);
+        return Math.max(0, rank(to, null, true) - rank(from, null, false));
+    }
+
+    /**
+     *
+     * Returns a page of the songs whose title or artist lies between two
+     * prefixes, ignoring case, in order. Both prefixes are included, so the
+     * range from "a" to "c" holds every title starting with a, b or c; the
+     * same prefix twice gives the titles starting with it.
+     *
+     * @param from       the lowest prefix
+     * @param to         the highest prefix
+     * @param offset     the number of songs of the range to skip
+     * @param limit      the largest number of songs to return
+     * @param descending true to go from the last song to the first
+     * @return the songs of the page
+     */
+    List<Songs> range(String from, String to, int offset, int limit, boolean descending) {
+        requireNumeric(false);
+        return window(rank(0, from, false), rank(0, to, true), offset, limit, descending);
+    }
+
+    /**
+     *
+     * Returns the page of the songs whose title or artist lies between two
+     * prefixes that follows a song, as page(Songs, int, boolean) does for all
+     * songs.
+     *
+     * @param from       the lowest prefix
+     * @param to         the highest prefix
+     * @param after      the last song of the previous page, or null
+     * @param limit      the largest number of songs to return
+     * @param descending true to go from the last song to the first
+     * @return the songs of the page
+     */
+    List<Songs> range(String from, String to, Songs after, int limit, boolean descending) {
+        requireNumeric(false);
+        return window(rank(0, from, false), rank(0, to, true), after, limit, descending);
+    }
+
+    /**
+     *
+     * Returns the number of songs whose title or artist lies between two
+     * prefixes, ignoring case, both included.
+     *
+     * @param from the lowest prefix
+     * @param to   the highest prefix
+     * @return the number of songs in the range
+     */
+    int count(String from, String to) {
+        requireNumeric(false);
+        return Math.max(0, rank(0, to, true) - rank(0, from, false));
+    }
+
+    /**
+     *
+     * Describes the shape and estimated memory of the tree.
+     *
+     * @return a printable summary of the index
+     */
+    String stats() {
+        long[] counts = new long[2];
+        countNodes(root, counts);
+        long leafBytes = 16 + 16 + 4L * (LEAF_CAPACITY + 1) + (numeric ? 16 + 8L * (LEAF_CAPACITY + 1) : 0) + 16;
+        long branchBytes = 16 + 3 * 16 + (4 + 4 + 8L) * (BRANCH_CAPACITY + 1);
+        return String.format("%s order: %d songs in %d leaves and %d branches, height %d, about %,d bytes",
+                order, size(), counts[0], counts[1], height + 1, counts[0] * leafBytes + counts[1] * branchBytes);
+    }
+
+    private void build(List<Songs> sorted) {
+        List<Node> level = new ArrayList<>();
+        Leaf previous = null;
+        for (int start = 0; start < sorted.size() || level.isEmpty(); start += BUILD_FILL) {
+            Leaf leaf = new Leaf(numeric);
+            for (int i = start; i < Math.min(sorted.size(), start + BUILD_FILL); i++) {
+                leaf.songs[leaf.size] = sorted.get(i);
+                if (numeric) {
+                    leaf.numbers[leaf.size] = numberOf(sorted.get(i));
+                }
+                leaf.size++;
+            }
+            leaf.previous = previous;
+            if (previous != null) {
+                previous.next = leaf;
+            }
+            previous = leaf;
+            level.add(leaf);
+        }
+        height = 0;
+        while (level.size() > 1) {
+            List<Node> parents = new ArrayList<>();
+            for (int start = 0; start < level.size(); start += BUILD_FILL) {
+                Branch branch = new Branch();
+                for (int i = start; i < Math.min(level.size(), start + BUILD_FILL); i++) {
+                    insertChild(branch, branch.count, level.get(i), lowSong(level.get(i)), lowNumber(level.get(i)));
+                    branch.size += level.get(i).size;
+                }
+                parents.add(branch);
+            }
+            // a last branch with too few children takes some from the one before
+            if (parents.size() > 1 && ((Branch) parents.get(parents.size() - 1)).count < BRANCH_MINIMUM) {
+                Branch last = (Branch) parents.get(parents.size() - 1);
+                Branch before = (Branch) parents.get(parents.size() - 2);
+                while (last.count < BRANCH_MINIMUM) {
+                    Node moved = before.children[before.count - 1];
+                    insertChild(last, 0, moved, before.lowSongs[before.count - 1],
+                            before.lowNumbers[before.count - 1]);
+                    removeChild(before, before.count - 1);
+                    last.size += moved.size;
+                    before.size -= moved.size;
+                }
+            }
+            level = parents;
+            height++;
+        }
+        root = level.get(0);
+    }
+
+    /**
+     *
+     * Walks from the root to the leaf a song belongs in, recording every
+     * branch on the way and the child taken from it.
+     */
+    private Leaf descend(double number, Songs song, Branch[] path, int[] indexes) {
+        Node node = root;
+        for (int level = 0; level < height; level++) {
+            Branch branch = (Branch) node;
+            // the last child whose lower bound is not above the song
+            int low = 1;
+            int high = branch.count - 1;
+            int child = 0;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (compare(branch.lowNumbers[middle], branch.lowSongs[middle], number, song) <= 0) {
+                    child = middle;
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            path[level] = branch;
+            indexes[level] = child;
+            node = branch.children[child];
+        }
+        return (Leaf) node;
+    }
+
+    /**
+     *
+     * Returns the position of the first song in a leaf that is not below the
+     * given song.
+     */
+    private int leafPosition(Leaf leaf, double number, Songs song) {
+        int low = 0;
+        int high = leaf.size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(number(leaf, middle), leaf.songs[middle], number, song) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     *
+     * Returns the number of songs below a bound, or below or at it when
+     * inclusive. The bound is a number for numeric orders and a prefix for
+     * text orders, where a song is at the bound if its title or artist starts
+     * with the prefix.
+     */
+    private int rank(double bound, String prefix, boolean inclusive) {
+        int rank = 0;
+        Node node = root;
+        for (int level = 0; level < height; level++) {
+            Branch branch = (Branch) node;
+            int low = 1;
+            int high = branch.count - 1;
+            int child = 0;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (below(branch.lowNumbers[middle], branch.lowSongs[middle], bound, prefix, inclusive)) {
+                    child = middle;
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            for (int i = 0; i < child; i++) {
+                rank += branch.children[i].size;
+            }
+            node = branch.children[child];
+        }
+        Leaf leaf = (Leaf) node;
+        int low = 0;
+        int high = leaf.size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (below(number(leaf, middle), leaf.songs[middle], bound, prefix, inclusive)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return rank + low;
+    }
+
+    /**
+     *
+     * Returns the number of songs below a song, or below or at it when
+     * inclusive, whether or not the song is in the tree. The song is placed
+     * by its title, artist and the number it has now.
+     */
+    private int rank(Songs song, boolean inclusive) {
+        double number = numberOf(song);
+        int rank = 0;
+        Node node = root;
+        for (int level = 0; level < height; level++) {
+            Branch branch = (Branch) node;
+            int low = 1;
+            int high = branch.count - 1;
+            int child = 0;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int comparison = compare(branch.lowNumbers[middle], branch.lowSongs[middle], number, song);
+                if (inclusive ? comparison <= 0 : comparison < 0) {
+                    child = middle;
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            for (int i = 0; i < child; i++) {
+                rank += branch.children[i].size;
+            }
+            node = branch.children[child];
+        }
+        Leaf leaf = (Leaf) node;
+        int low = 0;
+        int high = leaf.size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compare(number(leaf, middle), leaf.songs[middle], number, song);
+            if (inclusive ? comparison <= 0 : comparison < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return rank + low;
+    }
+
+    private boolean below(double number, Songs song, double bound, String prefix, boolean inclusive) {
+        int comparison = prefix == null ? Double.compare(number, bound) : comparePrefix(textOf(song), prefix);
+        return inclusive ? comparison <= 0 : comparison < 0;
+    }
+
+    /**
+     *
+     * Returns a page of the songs at positions from start up to end, going
+     * backwards from end when descending.
+     */
+    private List<Songs> window(int start, int end, int offset, int limit, boolean descending) {
+        limit = Math.min(limit, Math.max(0, end - start));
+        int from = descending ? Math.max(start, end - offset - limit) : start + offset;
+        int to = descending ? end - offset : Math.min(end, start + offset + limit);
+        List<Songs> songs = new ArrayList<>(Math.max(0, Math.min(to - from, limit)));
+        if (from >= to || offset < 0 || limit <= 0) {
+            return songs;
+        }
+        Cursor cursor = locate(descending ? to - 1 : from);
+        for (int n = to - from; n > 0; n--) {
+            songs.add(cursor.leaf.songs[cursor.index]);
+            if (descending) {
+                if (--cursor.index < 0 && cursor.leaf.previous != null) {
+                    cursor.leaf = cursor.leaf.previous;
+                    cursor.index = cursor.leaf.size - 1;
+                }
+            } else if (++cursor.index == cursor.leaf.size && cursor.leaf.next != null) {
+                cursor.leaf = cursor.leaf.next;
+                cursor.index = 0;
+            }
+        }
+        return songs;
+    }
+
+    /**
+     *
+     * Returns the page of the songs at positions from start up to end that
+     * follows a song, going backwards from it when descending.
+     */
+    private List<Songs> window(int start, int end, Songs after, int limit, boolean descending) {
+        if (after != null && descending) {
+            end = Math.min(end, rank(after, false));
+        } else if (after != null) {
+            start = Math.max(start, rank(after, true));
+        }
+        return window(start, Math.max(start, end), 0, limit, descending);
+    }
+
+    private Cursor locate(int position) {
+        Node node = root;
+        int rest = position;
+        while (node instanceof Branch) {
+            Branch branch = (Branch) node;
+            int child = 0;
+            while (rest >= branch.children[child].size) {
+                rest -= branch.children[child].size;
+                child++;
+            }
+            node = branch.children[child];
+        }
+        Cursor cursor = new Cursor();
+        cursor.leaf = (Leaf) node;
+        cursor.index = rest;
+        return cursor;
+    }
+
+    private Leaf splitLeaf(Leaf leaf) {
+        Leaf right = new Leaf(numeric);
+        int half = leaf.size / 2;
+        right.size = leaf.size - half;
+        System.arraycopy(leaf.songs, half, right.songs, 0, right.size);
+        Arrays.fill(leaf.songs, half, leaf.size, null);
+        if (numeric) {
+            System.arraycopy(leaf.numbers, half, right.numbers, 0, right.size);
+        }
+        leaf.size = half;
+        right.next = leaf.next;
+        right.previous = leaf;
+        if (leaf.next != null) {
+            leaf.next.previous = right;
+        }
+        leaf.next = right;
+        return right;
+    }
+
+    private Branch splitBranch(Branch branch) {
+        Branch right = new Branch();
+        int half = branch.count / 2;
+        for (int i = half; i < branch.count; i++) {
+            insertChild(right, right.count, branch.children[i], branch.lowSongs[i], branch.lowNumbers[i]);
+            right.size += branch.children[i].size;
+        }
+        while (branch.count > half) {
+            branch.size -= branch.children[branch.count - 1].size;
+            removeChild(branch, branch.count - 1);
+        }
+        return right;
+    }
+
+    /**
+     *
+     * Merges the child at an index of a branch with a neighbour, or moves one
+     * song or child over from the neighbour when both together would not fit
+     * in one node.
+     */
+    private void rebalance(Branch parent, int index) {
+        if (parent.count < 2) {
+            return;
+        }
+        int left = index == parent.count - 1 ? index - 1 : index;
+        Node leftNode = parent.children[left];
+        Node rightNode = parent.children[left + 1];
+        if (leftNode instanceof Leaf) {
+            Leaf a = (Leaf) leftNode;
+            Leaf b = (Leaf) rightNode;
+            if (a.size + b.size <= LEAF_CAPACITY) {
+                System.arraycopy(b.songs, 0, a.songs, a.size, b.size);
+                if (numeric) {
+                    System.arraycopy(b.numbers, 0, a.numbers, a.size, b.size);
+                }
+                a.size += b.size;
+                a.next = b.next;
+                if (b.next != null) {
+                    b.next.previous = a;
+                }
+                removeChild(parent, left + 1);
+            } else if (a.size < b.size) {
+                // the first song of the right leaf moves to the end of the left
+                a.songs[a.size] = b.songs[0];
+                if (numeric) {
+                    a.numbers[a.size] = b.numbers[0];
+                    System.arraycopy(b.numbers, 1, b.numbers, 0, b.size - 1);
+                }
+                System.arraycopy(b.songs, 1, b.songs, 0, b.size - 1);
+                a.size++;
+                b.size--;
+                b.songs[b.size] = null;
+                parent.lowSongs[left + 1] = b.songs[0];
+                parent.lowNumbers[left + 1] = number(b, 0);
+            } else {
+                // the last song of the left leaf moves to the start of the right
+                System.arraycopy(b.songs, 0, b.songs, 1, b.size);
+                b.songs[0] = a.songs[a.size - 1];
+                if (numeric) {
+                    System.arraycopy(b.numbers, 0, b.numbers, 1, b.size);
+                    b.numbers[0] = a.numbers[a.size - 1];
+                }
+                a.size--;
+                a.songs[a.size] = null;
+                b.size++;
+                parent.lowSongs[left + 1] = b.songs[0];
+                parent.lowNumbers[left + 1] = number(b, 0);
+            }
+            return;
+        }
+
+        Branch a = (Branch) leftNode;
+        Branch b = (Branch) rightNode;
+        if (a.count + b.count <= BRANCH_CAPACITY) {
+            // the first child of the right branch is bounded by its own slot
+            // in the parent
+            insertChild(a, a.count, b.children[0], parent.lowSongs[left + 1], parent.lowNumbers[left + 1]);
+            for (int i = 1; i < b.count; i++) {
+                insertChild(a, a.count, b.children[i], b.lowSongs[i], b.lowNumbers[i]);
+            }
+            a.size += b.size;
+            removeChild(parent, left + 1);
+        } else if (a.count < b.count) {
+            Node moved = b.children[0];
+            insertChild(a, a.count, moved, parent.lowSongs[left + 1], parent.lowNumbers[left + 1]);
+            parent.lowSongs[left + 1] = b.lowSongs[1];
+            parent.lowNumbers[left + 1] = b.lowNumbers[1];
+            removeChild(b, 0);
+            a.size += moved.size;
+            b.size -= moved.size;
+        } else {
+            Node moved = a.children[a.count - 1];
+            Songs movedSong = a.lowSongs[a.count - 1];
+            double movedNumber = a.lowNumbers[a.count - 1];
+            b.lowSongs[0] = parent.lowSongs[left + 1];
+            b.lowNumbers[0] = parent.lowNumbers[left + 1];
+            insertChild(b, 0, moved, movedSong, movedNumber);
+            parent.lowSongs[left + 1] = movedSong;
+            parent.lowNumbers[left + 1] = movedNumber;
+            removeChild(a, a.count - 1);
+            a.size -= moved.size;
+            b.size += moved.size;
+        }
+    }
+
+    private static void insertChild(Branch branch, int index, Node child, Songs lowSong, double lowNumber) {
+        int moved = branch.count - index;
+        System.arraycopy(branch.children, index, branch.children, index + 1, moved);
+        System.arraycopy(branch.lowSongs, index, branch.lowSongs, index + 1, moved);
+        System.arraycopy(branch.lowNumbers, index, branch.lowNumbers, index + 1, moved);
+        branch.children[index] = child;
+        branch.lowSongs[index] = lowSong;
+        branch.lowNumbers[index] = lowNumber;
+        branch.count++;
+    }
+
+    private static void removeChild(Branch branch, int index) {
+        int moved = branch.count - index - 1;
+        System.arraycopy(branch.children, index + 1, branch.children, index, moved);
+        System.arraycopy(branch.lowSongs, index + 1, branch.lowSongs, index, moved);
+        System.arraycopy(branch.lowNumbers, index + 1, branch.lowNumbers, index, moved);
+        branch.count--;
+        branch.children[branch.count] = null;
+        branch.lowSongs[branch.count] = null;
+    }
+
+    private static Songs lowSong(Node node) {
+        return node instanceof Leaf ? ((Leaf) node).songs[0] : ((Branch) node).lowSongs[0];
+    }
+
+    private double lowNumber(Node node) {
+        return node instanceof Leaf ? number((Leaf) node, 0) : ((Branch) node).lowNumbers[0];
+    }
+
+    private double number(Leaf leaf, int index) {
+        return numeric ? leaf.numbers[index] : 0;
+    }
+
+    private static void countNodes(Node node, long[] counts) {
+        if (node instanceof Leaf) {
+            counts[0]++;
+            return;
+        }
+        counts[1]++;
+        Branch branch = (Branch) node;
+        for (int i = 0; i < branch.count; i++) {
+            countNodes(branch.children[i], counts);
+        }
+    }
+
+    private void requireNumeric(boolean expected) {
+        if (numeric != expected) {
+            throw new IllegalArgumentException("The " + order + " order is not ranged by "
+                    + (expected ? "number" : "text"));
+        }
+    }
+
+    private double numberOf(Songs song) {
+        switch (order) {
+            case YEAR:
+                return song.getYear();
+            case RATING:
+                return song.getRating();
+            case PLAY_COUNT:
+                return song.getPlayCount();
+            default:
+                return 0;
+        }
+    }
+
+    private String textOf(Songs song) {
+        return order == Order.ARTIST ? song.getArtist() : song.getTitle();
+    }
+
+    /**
+     *
+     * Compares two songs in the order of the index, given their years or
+     * ratings as copied into the tree.
+     */
+    private int compare(double aNumber, Songs a, double bNumber, Songs b) {
+        int comparison = numeric ? Double.compare(aNumber, bNumber) : 0;
+        if (comparison == 0 && order == Order.ARTIST) {
+            comparison = String.CASE_INSENSITIVE_ORDER.compare(a.getArtist(), b.getArtist());
+        }
+        if (comparison == 0) {
+            comparison = String.CASE_INSENSITIVE_ORDER.compare(a.getTitle(), b.getTitle());
+        }
+        return comparison != 0 ? comparison : a.compareTo(b);
+    }
+
+    /**
+     *
+     * Compares text with a prefix the way String.CASE_INSENSITIVE_ORDER
+     * compares them, except that text starting with the prefix counts as
+     * equal to it.
+     */
+    static int comparePrefix(String text, String prefix) {
+        int length = Math.min(text.length(), prefix.length());
+        for (int i = 0; i < length; i++) {
+            char a = Character.toLowerCase(Character.toUpperCase(text.charAt(i)));
+            char b = Character.toLowerCase(Character.toUpperCase(prefix.charAt(i)));
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return text.length() < prefix.length() ? -1 : 0;
+    }
+}
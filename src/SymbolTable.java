@@ -0,0 +1,158 @@
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * The SymbolTable class is a pool of canonical strings. Interning a string
+ * returns the first equal string the pool was given, so every song with the
+ * same artist, genre or album shares a single String object.
+ *
+ * Songs interns those three fields through the library-wide table when it is
+ * constructed or changed. Two interned values are equal exactly when they are
+ * the same object, so filters on them can compare references instead of
+ * characters.
+ *
+ * The pool only holds its strings weakly, so a value stays in it while a
+ * song, an index or anything else still uses the canonical string, and goes
+ * once nothing does. Deleted and changed songs and the songs built only to
+ * look others up therefore do not make the pool grow for the life of the
+ * application. As a canonical string is only dropped when nothing refers to
+ * it, every live copy of a value is still the same object.
+ *
+ * The pool is split into segments by hash, each a weak hash map behind its
+ * own lock, so the threads of the parallel catalog loader rarely wait for
+ * each other. Titles are not interned, as they are unique to one song.
+ */
+class SymbolTable {
+
+    /**
+     * The table used for the artist, genre and album of every song.
+     */
+    static final SymbolTable LIBRARY = new SymbolTable();
+
+    private static final int SEGMENTS = 64;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+
+    /**
+     *
+     * Constructs a new, empty SymbolTable object.
+     */
+    SymbolTable() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     *
+     * Returns the canonical string equal to the given one, adding it to the
+     * pool if no equal string is in it yet.
+     *
+     * @param value the string to intern, which may be null
+     * @return the canonical string, or null if the value was null
+     */
+    String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        int hash = value.hashCode();
+        Segment segment = segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+        String canonical;
+        synchronized (segment) {
+            WeakReference<String> reference = segment.pool.get(value);
+            canonical = reference == null ? null : reference.get();
+            if (canonical == null) {
+                // the map holds the key weakly, and the reference in the value
+                // does not keep it alive either
+                segment.pool.put(value, new WeakReference<>(value));
+            }
+        }
+        if (canonical == null) {
+            misses.increment();
+            return value;
+        }
+        hits.increment();
+        if (canonical != value) {
+            bytesSaved.add(sizeOf(value));
+        }
+        return canonical;
+    }
+
+    /**
+     *
+     * Returns the number of distinct strings in the pool that are still in
+     * use.
+     *
+     * @return the number of canonical strings
+     */
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.pool.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     *
+     * Returns the share of calls to intern that found the string already in
+     * the pool.
+     *
+     * @return the hit rate, between 0 and 1
+     */
+    double hitRate() {
+        long found = hits.sum();
+        long total = found + misses.sum();
+        return total == 0 ? 0.0 : (double) found / total;
+    }
+
+    /**
+     *
+     * Returns an estimate of the heap saved by handing out canonical strings
+     * instead of keeping the copies that were interned.
+     *
+     * @return the bytes saved
+     */
+    long bytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    /**
+     *
+     * Describes how well the pool is working.
+     *
+     * @return a summary of the pool statistics
+     */
+    String stats() {
+        long found = hits.sum();
+        long added = misses.sum();
+        return String.format("Symbol table: %d distinct values, %d lookups, %.1f%% hit rate%n"
+                + "  about %,d bytes saved by sharing strings",
+                size(), found + added, 100 * hitRate(), bytesSaved());
+    }
+
+    /**
+     *
+     * Estimates the heap taken by a string: the String object and its byte
+     * array, each rounded up to eight bytes.
+     */
+    private static long sizeOf(String value) {
+        return 24 + ((16 + value.length() + 7) & ~7);
+    }
+
+    /**
+     *
+     * One part of the pool, locked on itself.
+     */
+    private static final class Segment {
+
+        final WeakHashMap<String, WeakReference<String>> pool = new WeakHashMap<>();
+    }
+}
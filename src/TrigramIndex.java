@@ -0,0 +1,452 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * The TrigramIndex class finds songs whose title, artist, genre or album
+ * contain a piece of text, with the same case-sensitive semantics as
+ * String.contains, without scanning the whole library.
+ *
+ * Every field is padded with a marker character at both ends and cut into
+ * overlapping three character grams. Each gram maps to a posting list of the
+ * songs that contain it. A query of three or more characters must have all of
+ * its grams in a song, so the posting lists are intersected to get a short list
+ * of candidates, which are then checked with String.contains. Shorter queries
+ * are answered from the grams that end with (two characters) or have in the
+ * middle (one character) the query, which the padding guarantees to exist.
+ */
+class TrigramIndex {
+
+    private static final char PAD = '\0';
+
+    private final GramMap grams;
+    private final ArrayList<Songs> songsById;
+    private final PostingList allIds;
+
+    /**
+     *
+     * Constructs a new empty TrigramIndex object.
+     */
+    TrigramIndex() {
+        grams = new GramMap();
+        songsById = new ArrayList<>();
+        allIds = new PostingList();
+    }
+
+    /**
+     *
+     * Constructs a new TrigramIndex object holding every song in the list.
+     *
+     * @param songList the songs to be indexed
+     */
+    TrigramIndex(Iterable<Songs> songList) {
+        this();
+        for (Songs song : songList) {
+            add(song);
+        }
+        grams.trimToSize();
+        allIds.trimToSize();
+    }
+
+    /**
+     *
+     * Adds a song to the index, giving it an ID if it does not have one yet.
+     *
+     * @param song the song to be indexed
+     */
+    void add(Songs song) {
+        if (song.getId() < 0) {
+            song.setId(songsById.size());
+            songsById.add(song);
+        } else {
+            while (songsById.size() <= song.getId()) {
+                songsById.add(null);
+            }
+            songsById.set(song.getId(), song);
+        }
+
+        if (allIds.add(song.getId())) {
+            for (long gram : gramsOf(song)) {
+                grams.getOrCreate(gram).add(song.getId());
+            }
+        }
+    }
+
+    /**
+     *
+     * Removes a song from the index. The song keeps its ID so that it can be
+     * added back later.
+     *
+     * @param song the song to be removed
+     */
+    void remove(Songs song) {
+        if (song.getId() < 0 || !allIds.remove(song.getId())) {
+            return;
+        }
+        for (long gram : gramsOf(song)) {
+            PostingList list = grams.get(gram);
+            if (list != null) {
+                list.remove(song.getId());
+            }
+        }
+    }
+
+    /**
+     *
+     * Adds a batch of songs to the index, giving IDs to those that do not
+     * have one yet. New songs have IDs past every indexed one and are simply
+     * appended to the posting lists. Otherwise, as when deleted songs are
+     * restored, the IDs of the batch are gathered per gram first, so every
+     * posting list is merged once for the whole batch instead of shifted once
+     * per song.
+     *
+     * @param songs the songs to be indexed
+     * @return the songs that were not in the index before, in ID order
+     */
+    List<Songs> addAll(Collection<Songs> songs) {
+        List<Songs> sorted = new ArrayList<>(songs.size());
+        for (Songs song : songs) {
+            if (song.getId() < 0) {
+                song.setId(songsById.size());
+                songsById.add(song);
+            } else {
+                while (songsById.size() <= song.getId()) {
+                    songsById.add(null);
+                }
+                songsById.set(song.getId(), song);
+            }
+            sorted.add(song);
+        }
+        sorted.sort(Comparator.comparingInt(Songs::getId));
+
+        List<Songs> added = new ArrayList<>(sorted.size());
+        PostingList batchIds = new PostingList();
+        batchIds.ensureCapacity(sorted.size());
+        for (Songs song : sorted) {
+            if (!allIds.contains(song.getId()) && batchIds.add(song.getId())) {
+                added.add(song);
+            }
+        }
+        if (!added.isEmpty() && added.get(0).getId() > allIds.last()) {
+            for (Songs song : added) {
+                for (long gram : gramsOf(song)) {
+                    grams.getOrCreate(gram).add(song.getId());
+                }
+            }
+        } else {
+            for (Map.Entry<Long, PostingList> entry : groupByGram(added).entrySet()) {
+                grams.getOrCreate(entry.getKey()).addAll(entry.getValue());
+            }
+        }
+        allIds.addAll(batchIds);
+        return added;
+    }
+
+    /**
+     *
+     * Removes a batch of songs from the index, compacting every posting list
+     * they appear in once for the whole batch. The songs keep their IDs.
+     *
+     * @param songs the songs to be removed
+     * @return the songs that were in the index, in ID order
+     */
+    List<Songs> removeAll(Collection<Songs> songs) {
+        List<Songs> sorted = new ArrayList<>(songs.size());
+        for (Songs song : songs) {
+            if (song.getId() >= 0) {
+                sorted.add(song);
+            }
+        }
+        sorted.sort(Comparator.comparingInt(Songs::getId));
+
+        List<Songs> removed = new ArrayList<>(sorted.size());
+        PostingList batchIds = new PostingList();
+        batchIds.ensureCapacity(sorted.size());
+        for (Songs song : sorted) {
+            if (allIds.contains(song.getId()) && batchIds.add(song.getId())) {
+                removed.add(song);
+            }
+        }
+        allIds.removeAll(batchIds);
+        for (Map.Entry<Long, PostingList> entry : groupByGram(removed).entrySet()) {
+            PostingList list = grams.get(entry.getKey());
+            if (list != null) {
+                list.removeAll(entry.getValue());
+            }
+        }
+        return removed;
+    }
+
+    /**
+     *
+     * Returns the IDs of a batch of songs per gram. The songs must be in ID
+     * order, so that every list is built by appending.
+     */
+    private static Map<Long, PostingList> groupByGram(List<Songs> sorted) {
+        Map<Long, PostingList> byGram = new HashMap<>(Math.max(16, sorted.size() * 8));
+        for (Songs song : sorted) {
+            for (long gram : gramsOf(song)) {
+                byGram.computeIfAbsent(gram, key -> new PostingList()).add(song.getId());
+            }
+        }
+        return byGram;
+    }
+
+    /**
+     *
+     * Returns the songs whose title, artist, genre or album contain the query,
+     * in ID order.
+     *
+     * @param query the text to look for
+     * @return the matching songs
+     */
+    List<Songs> search(String query) {
+        List<Songs> result = new ArrayList<>();
+        for (int id : candidates(query)) {
+            Songs song = songsById.get(id);
+            if (contains(song, query)) {
+                result.add(song);
+            }
+        }
+        return result;
+    }
+
+    /**
+     *
+     * Returns true if the title, artist, genre or album of a song contain the
+     * query, which is what a search checks every candidate for.
+     *
+     * @param song  the song to check
+     * @param query the text to look for
+     * @return true if the song matches the query
+     */
+    static boolean contains(Songs song, String query) {
+        return song.getTitle().contains(query) || song.getArtist().contains(query)
+                || song.getGenre().contains(query) || song.getAlbum().contains(query);
+    }
+
+    /**
+     *
+     * Returns the IDs of the songs that may contain the query. Every song that
+     * does contain it is included.
+     *
+     * @param query the text to look for
+     * @return a sorted array of candidate song IDs
+     */
+    int[] candidates(String query) {
+        if (query.length() >= 3) {
+            long[] queryGrams = new long[query.length() - 2];
+            for (int i = 0; i < queryGrams.length; i++) {
+                queryGrams[i] = gram(query.charAt(i), query.charAt(i + 1), query.charAt(i + 2));
+            }
+            queryGrams = distinct(queryGrams, queryGrams.length);
+            PostingList[] lists = new PostingList[queryGrams.length];
+            for (int i = 0; i < lists.length; i++) {
+                lists[i] = grams.get(queryGrams[i]);
+                if (lists[i] == null) {
+                    return new int[0];
+                }
+            }
+            return PostingList.intersect(lists);
+        }
+        if (query.isEmpty()) {
+            return allIds.toArray();
+        }
+
+        List<PostingList> matches = new ArrayList<>();
+        long postings = 0;
+        for (int slot = 0; slot < grams.keys.length; slot++) {
+            long gram = grams.keys[slot];
+            if (grams.values[slot] == null || grams.values[slot].size() == 0) {
+                continue;
+            }
+            boolean match;
+            if (query.length() == 2) {
+                match = (gram & 0xFFFFFFFFL) == gram(PAD, query.charAt(0), query.charAt(1));
+            } else {
+                match = ((gram >>> 16) & 0xFFFF) == query.charAt(0);
+            }
+            if (match) {
+                matches.add(grams.values[slot]);
+                postings += grams.values[slot].size();
+            }
+        }
+        // a common character is in more grams than there are songs, and then
+        // checking every song is cheaper than merging the lists
+        if (postings >= allIds.size()) {
+            return allIds.toArray();
+        }
+        int[][] arrays = new int[matches.size()][];
+        for (int i = 0; i < arrays.length; i++) {
+            arrays[i] = matches.get(i).toArray();
+        }
+        return PostingList.union(arrays);
+    }
+
+    /**
+     *
+     * Returns the number of songs currently in the index.
+     *
+     * @return the number of indexed songs
+     */
+    int size() {
+        return allIds.size();
+    }
+
+    /**
+     *
+     * Returns the largest ID of the songs currently in the index.
+     *
+     * @return the largest indexed ID, or -1 if the index is empty
+     */
+    int lastId() {
+        return allIds.last();
+    }
+
+    /**
+     *
+     * Describes how much memory the index uses, in total and per song.
+     *
+     * @return a printable summary of the index size
+     */
+    String stats() {
+        long entries = 0;
+        long postingBytes = 0;
+        int distinct = 0;
+        for (PostingList list : grams.values) {
+            if (list != null) {
+                distinct++;
+                entries += list.size();
+                // array header plus the PostingList object itself
+                postingBytes += list.capacityBytes() + 16 + 24;
+            }
+        }
+        long tableBytes = 8L * grams.keys.length + 4L * grams.values.length;
+        long idBytes = 4L * songsById.size() + allIds.capacityBytes();
+        long total = postingBytes + tableBytes + idBytes;
+        return String.format("Trigram index: %d songs, %d distinct grams, %d postings%n"
+                + "  posting lists %,d bytes, gram table %,d bytes, ID table %,d bytes%n"
+                + "  total %,d bytes, %.1f bytes per song",
+                size(), distinct, entries, postingBytes, tableBytes, idBytes, total,
+                size() == 0 ? 0.0 : (double) total / size());
+    }
+
+    /**
+     *
+     * Returns the distinct padded grams of the text fields of a song.
+     *
+     * @param song the song to cut into grams
+     * @return a sorted array of distinct grams
+     */
+    private static long[] gramsOf(Songs song) {
+        String[] fields = {song.getTitle(), song.getArtist(), song.getGenre(), song.getAlbum()};
+        int total = 0;
+        for (String field : fields) {
+            total += field.length();
+        }
+        long[] result = new long[total];
+        int count = 0;
+        for (String field : fields) {
+            // the gram starting at i covers the padded characters i-1, i and i+1
+            int length = field.length();
+            for (int i = 0; i < length; i++) {
+                char c0 = i == 0 ? PAD : field.charAt(i - 1);
+                char c2 = i + 1 == length ? PAD : field.charAt(i + 1);
+                result[count++] = gram(c0, field.charAt(i), c2);
+            }
+        }
+        return distinct(result, count);
+    }
+
+    private static long[] distinct(long[] values, int count) {
+        Arrays.sort(values, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || values[unique - 1] != values[i]) {
+                values[unique++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, unique);
+    }
+
+    private static long gram(char c0, char c1, char c2) {
+        return ((long) c0 << 32) | ((long) c1 << 16) | c2;
+    }
+
+    /**
+     *
+     * An open addressing hash map from grams to posting lists, which avoids
+     * boxing a Long for every gram.
+     */
+    private static class GramMap {
+
+        private static final long EMPTY = -1L;
+
+        long[] keys;
+        PostingList[] values;
+        private int size;
+
+        GramMap() {
+            keys = new long[1024];
+            Arrays.fill(keys, EMPTY);
+            values = new PostingList[1024];
+        }
+
+        PostingList get(long key) {
+            int slot = slot(key, keys);
+            return keys[slot] == key ? values[slot] : null;
+        }
+
+        PostingList getOrCreate(long key) {
+            int slot = slot(key, keys);
+            if (keys[slot] != key) {
+                if (2 * (size + 1) > keys.length) {
+                    resize();
+                    slot = slot(key, keys);
+                }
+                keys[slot] = key;
+                values[slot] = new PostingList();
+                size++;
+            }
+            return values[slot];
+        }
+
+        void trimToSize() {
+            for (PostingList list : values) {
+                if (list != null) {
+                    list.trimToSize();
+                }
+            }
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            PostingList[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            Arrays.fill(keys, EMPTY);
+            values = new PostingList[oldValues.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int slot = slot(oldKeys[i], keys);
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int slot(long key, long[] table) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            int mask = table.length - 1;
+            int slot = (int) (hash >>> 40) & mask;
+            while (table[slot] != EMPTY && table[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}